@@ -0,0 +1,153 @@
+package com.myvnc.client;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 디코더 단독 처리량: 미리 인코딩한 사각형 데이터를 메모리에서 바로 디코딩합니다. (소켓/파싱 제외)
+// 보조 카운터 bytes/pixels가 초당 입력 바이트와 픽셀 수이고, 할당량은 -prof gc로 봅니다.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DecoderBenchmark {
+    static final int WIDTH = 512;
+    static final int HEIGHT = 384;
+    // scroll 화면에서 새로 들어오는 줄 높이
+    static final int SCROLL_LINES = 16;
+    // ZRLE는 zlib 스트림이 이어지므로 연속 프레임을 미리 만들어 두고 다 쓰면 디코더를 새로 만듭니다.
+    private static final int FRAMES = 16;
+
+    @Param({"raw", "rre", "hextile", "zrle", "tight", "tight-jpeg"})
+    public String encoding;
+
+    @Param({"text", "photo", "scroll", "solid"})
+    public String screen;
+
+    @Param({"rgb888", "rgb565", "bgr233"})
+    public String pixelFormat;
+
+    private RFBPixelFormat pf;
+    private int encodingType;
+    private RFBEncoding decoder;
+    private final CopyRectEncoding copyRect = new CopyRectEncoding();
+    private BufferedImage image;
+    private final List<Frame> frames = new ArrayList<>();
+    private int next;
+
+    // 프레임 하나 = 사각형 몇 개
+    private static final class Frame {
+        final List<Rect> rects = new ArrayList<>();
+        long bytes;
+        long pixels;
+    }
+
+    private static final class Rect {
+        final int x, y, width, height, type;
+        final ByteArrayInputStream bytes;
+        final DataInputStream in;
+
+        Rect(int x, int y, int width, int height, int type, byte[] data) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.type = type;
+            this.bytes = new ByteArrayInputStream(data);
+            this.in = new DataInputStream(bytes);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public long bytes;
+        public long pixels;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            pixels = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        pf = pixelFormat(pixelFormat);
+        encodingType = SyntheticEncoder.TYPES.get(encoding);
+        decoder = RFBClient.createEncodings(null).get(encodingType);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = SyntheticScreens.create(screen, WIDTH, HEIGHT);
+        SyntheticEncoder encoder = new SyntheticEncoder(pf);
+        for (int i = 0; i < FRAMES; i++) {
+            Frame frame = new Frame();
+            if (screen.equals("scroll")) {
+                // 한 줄 위로 스크롤: 남는 부분은 CopyRect, 아래 새 줄만 인코딩
+                add(frame, 0, 0, WIDTH, HEIGHT - SCROLL_LINES, 1, new byte[]{0, 0, 0, SCROLL_LINES});
+                add(frame, 0, HEIGHT - SCROLL_LINES, WIDTH, SCROLL_LINES, encodingType,
+                        encoder.encode(encoding, pixels, WIDTH, 0, HEIGHT - SCROLL_LINES, WIDTH, SCROLL_LINES));
+            } else {
+                add(frame, 0, 0, WIDTH, HEIGHT, encodingType, encoder.encode(encoding, pixels, WIDTH, 0, 0, WIDTH, HEIGHT));
+            }
+            frames.add(frame);
+        }
+    }
+
+    private static void add(Frame frame, int x, int y, int width, int height, int type, byte[] data) {
+        frame.rects.add(new Rect(x, y, width, height, type, data));
+        frame.bytes += data.length;
+        frame.pixels += (long) width * height;
+    }
+
+    static RFBPixelFormat pixelFormat(String name) {
+        switch (name) {
+            case "rgb888":
+                return RFBPixelFormat.rgb888();
+            case "rgb565":
+                return RFBPixelFormat.rgb565();
+            case "bgr233":
+                return RFBPixelFormat.bgr233();
+            default:
+                throw new IllegalArgumentException("알 수 없는 픽셀 포맷: " + name);
+        }
+    }
+
+    @Benchmark
+    public BufferedImage decode(Throughput throughput) throws IOException {
+        if (next == frames.size()) {
+            next = 0;
+            if (encodingType == 16) {
+                decoder = new ZRLEEncoding(); // 인코더의 zlib 스트림 처음으로
+            }
+        }
+        Frame frame = frames.get(next++);
+        for (Rect rect : frame.rects) {
+            rect.bytes.reset();
+            RFBEncoding target = rect.type == 1 ? copyRect : decoder;
+            target.decode(rect.in, image, rect.x, rect.y, rect.width, rect.height, pf);
+        }
+        throughput.bytes += frame.bytes;
+        throughput.pixels += frame.pixels;
+        return image;
+    }
+}
@@ -0,0 +1,290 @@
+package com.myvnc.client;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 합성 RFB 서버(SyntheticRfbServer)에 루프백으로 RFBClient N개를 붙여 부하와 지연 시간을 잽니다.
+// 작업 부하 × 인코딩 조합마다 새 서버를 띄우고, 워밍업 뒤 측정 구간 동안 다음을 보고합니다.
+//   fps: 세션마다 적용한 업데이트 수 / 초 (평균, 최소, 최대)
+//   종단 간 지연: 서버 화면이 바뀐 시각부터 클라이언트가 그 업데이트를 프레임버퍼에 적용할 때까지
+//   전달 지연: 서버가 보내기 시작한 시각부터 적용까지 (전송 + 파싱 + 디코딩)
+//   세션당 CPU: 프로세스 CPU 시간에서 서버 스레드 몫을 뺀 값 / 세션 수 (GC, JIT 포함, 코어 대비 %)
+//   업데이트당 바이트: 서버가 보낸 FramebufferUpdate 메시지 크기 평균
+// 서버와 클라이언트가 한 JVM에 있어 System.nanoTime을 그대로 비교합니다.
+// --csv를 주면 결과를 한 줄씩 덧붙여 디코더/파이프라인 변경 전후를 비교할 수 있습니다.
+public final class LoadHarness {
+    private static final double MILLIS = 1e6;
+
+    // 측정 조건 하나
+    private static final class Options {
+        int clients = 4;
+        List<String> workloads = List.of("typing");
+        List<String> encodings = List.of("tight");
+        int seconds = 10;
+        int warmup = 3;
+        int width = 1280;
+        int height = 800;
+        RFBClient.ColorMode colorMode = RFBClient.ColorMode.SERVER;
+        int decodeThreads; // 모니터 월처럼 세션마다 디코딩 풀을 두지 않음
+        int maxFps;
+        int inFlight = 1;
+        long tileCacheBudget = 32L << 20;
+        int rate;
+        Path csv;
+    }
+
+    // 클라이언트 하나와 서버 쪽 연결. 구독 콜백은 수신 스레드에서 업데이트를 적용할 때마다 불립니다.
+    private static final class Session implements Runnable {
+        final RFBClient client;
+        final SharedFramebuffer.Subscription subscription;
+        final AtomicLong applied = new AtomicLong();
+        final AtomicLong bytes = new AtomicLong();
+        final LatencyHistogram endToEnd;
+        final LatencyHistogram delivery;
+        volatile SyntheticRfbServer.Connection connection;
+        volatile boolean measuring;
+
+        Session(RFBClient client, LatencyHistogram endToEnd, LatencyHistogram delivery) {
+            this.client = client;
+            this.endToEnd = endToEnd;
+            this.delivery = delivery;
+            this.subscription = client.getSharedFramebuffer().subscribe(this);
+        }
+
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            subscription.takeDamage(); // 비워 두어야 다음 업데이트에도 불림
+            SyntheticRfbServer.Connection c = connection;
+            // 연결 직후 빈 프레임버퍼를 알리는 호출은 서버 업데이트가 없으므로 null
+            SyntheticRfbServer.Update update = c != null ? c.pollUpdate() : null;
+            if (update == null || !measuring) {
+                return;
+            }
+            endToEnd.record(now - update.changedNanos);
+            delivery.record(now - update.sentNanos);
+            applied.incrementAndGet();
+            bytes.addAndGet(update.bytes);
+        }
+    }
+
+    private LoadHarness() {
+    }
+
+    static void run(Options options, String workload, String encoding) throws IOException, InterruptedException {
+        SyntheticRfbServer server = new SyntheticRfbServer(options.width, options.height, workload, encoding);
+        server.setTickRate(options.rate);
+        server.setRecordUpdates(true);
+        Session[] connecting = new Session[1];
+        server.setAcceptHook(connection -> {
+            synchronized (connecting) {
+                if (connecting[0] != null) {
+                    connecting[0].connection = connection;
+                }
+            }
+        });
+        server.start(0);
+
+        ExecutorService sessionThreads = SessionThreads.create("load-client-");
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "load-pacer");
+            t.setDaemon(true);
+            return t;
+        });
+        LatencyHistogram endToEnd = new LatencyHistogram();
+        LatencyHistogram delivery = new LatencyHistogram();
+        List<Session> sessions = new ArrayList<>();
+        try {
+            // 차례로 연결해야 서버가 받은 연결과 클라이언트를 짝지을 수 있습니다.
+            for (int i = 0; i < options.clients; i++) {
+                RFBClient client = new RFBClient("127.0.0.1", server.getPort());
+                client.setSessionExecutors(sessionThreads, scheduler);
+                client.setAutoReconnect(false);
+                client.setAdaptiveEncoding(false); // 고른 인코딩을 유지
+                client.setDecodeThreads(options.decodeThreads);
+                client.setTileCacheBudget(options.tileCacheBudget);
+                client.setColorMode(options.colorMode);
+                client.setMaxFps(options.maxFps);
+                client.setMaxRequestsInFlight(options.inFlight);
+                Session session = new Session(client, endToEnd, delivery);
+                synchronized (connecting) {
+                    connecting[0] = session;
+                }
+                client.connect();
+                sessions.add(session);
+            }
+            synchronized (connecting) {
+                connecting[0] = null;
+            }
+
+            Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmup));
+            com.sun.management.OperatingSystemMXBean os =
+                    (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+            long processCpu = os.getProcessCpuTime();
+            long serverCpu = server.getCpuNanos();
+            long start = System.nanoTime();
+            for (Session session : sessions) {
+                session.measuring = true;
+            }
+            Thread.sleep(TimeUnit.SECONDS.toMillis(options.seconds));
+            for (Session session : sessions) {
+                session.measuring = false;
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            serverCpu = server.getCpuNanos() - serverCpu;
+            long clientCpu = os.getProcessCpuTime() - processCpu - serverCpu;
+
+            report(options, workload, encoding, sessions, elapsed, clientCpu, serverCpu, endToEnd, delivery);
+        } finally {
+            for (Session session : sessions) {
+                session.subscription.close();
+                session.client.disconnect();
+            }
+            server.close();
+            sessionThreads.shutdownNow();
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static void report(Options options, String workload, String encoding, List<Session> sessions, double elapsed,
+                               long clientCpu, long serverCpu, LatencyHistogram endToEnd, LatencyHistogram delivery)
+            throws IOException {
+        double[] fps = new double[sessions.size()];
+        long frames = 0;
+        long bytes = 0;
+        for (int i = 0; i < fps.length; i++) {
+            Session session = sessions.get(i);
+            fps[i] = session.applied.get() / elapsed;
+            frames += session.applied.get();
+            bytes += session.bytes.get();
+        }
+        double fpsMean = Arrays.stream(fps).average().orElse(0);
+        double fpsMin = Arrays.stream(fps).min().orElse(0);
+        double fpsMax = Arrays.stream(fps).max().orElse(0);
+        double clientCpuPercent = clientCpu / 1e9 / elapsed / sessions.size() * 100;
+        double serverCpuPercent = serverCpu / 1e9 / elapsed * 100;
+        double bytesPerFrame = frames == 0 ? 0 : (double) bytes / frames;
+        double mbitPerSecond = bytes * 8 / elapsed / 1e6;
+
+        System.out.printf("%n%s / %s / %s, 세션 %d개, %.1f초%n", workload, encoding, options.colorMode, sessions.size(), elapsed);
+        System.out.printf("  fps: 평균 %.1f (최소 %.1f, 최대 %.1f)%n", fpsMean, fpsMin, fpsMax);
+        System.out.printf("  종단 간 지연: p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, 최대 %.2f ms (n=%d)%n",
+                endToEnd.percentileNanos(50) / MILLIS, endToEnd.percentileNanos(90) / MILLIS,
+                endToEnd.percentileNanos(99) / MILLIS, endToEnd.percentileNanos(99.9) / MILLIS,
+                endToEnd.getMaxMicros() / 1000, endToEnd.getCount());
+        System.out.printf("  전달 지연: p50 %.2f, p99 %.2f ms%n",
+                delivery.percentileNanos(50) / MILLIS, delivery.percentileNanos(99) / MILLIS);
+        System.out.printf("  CPU: 세션당 %.1f%%, 서버 %.1f%% (코어 하나 기준)%n", clientCpuPercent, serverCpuPercent);
+        if (serverCpuPercent > 50 * Runtime.getRuntime().availableProcessors()) {
+            System.out.println("  주의: 서버가 CPU의 절반 이상을 썼습니다. fps와 지연이 클라이언트가 아니라 서버에 묶였을 수 있습니다.");
+        }
+        System.out.printf("  업데이트당 %.1f KB, 합계 %.1f Mbit/s%n", bytesPerFrame / 1024, mbitPerSecond);
+
+        if (options.csv == null) {
+            return;
+        }
+        boolean header = !Files.exists(options.csv) || Files.size(options.csv) == 0;
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(options.csv, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (header) {
+                out.println("time,workload,encoding,color,clients,decode_threads,seconds,fps_mean,fps_min,fps_max,"
+                        + "e2e_p50_ms,e2e_p90_ms,e2e_p99_ms,e2e_p999_ms,e2e_max_ms,delivery_p50_ms,delivery_p99_ms,"
+                        + "client_cpu_pct,server_cpu_pct,bytes_per_update,mbit_per_s");
+            }
+            out.printf(Locale.ROOT, "%s,%s,%s,%s,%d,%d,%.1f,%.2f,%.2f,%.2f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.2f,%.2f,%.0f,%.2f%n",
+                    LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME), workload, encoding, options.colorMode,
+                    sessions.size(), options.decodeThreads, elapsed, fpsMean, fpsMin, fpsMax,
+                    endToEnd.percentileNanos(50) / MILLIS, endToEnd.percentileNanos(90) / MILLIS,
+                    endToEnd.percentileNanos(99) / MILLIS, endToEnd.percentileNanos(99.9) / MILLIS,
+                    endToEnd.getMaxMicros() / 1000, delivery.percentileNanos(50) / MILLIS, delivery.percentileNanos(99) / MILLIS,
+                    clientCpuPercent, serverCpuPercent, bytesPerFrame, mbitPerSecond);
+        }
+        System.out.println("  결과 추가: " + options.csv);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Options options = new Options();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--clients":
+                    options.clients = Integer.parseInt(value);
+                    break;
+                case "--workload":
+                    options.workloads = value.equals("all") ? SyntheticRfbServer.WORKLOADS : List.of(value.split(","));
+                    break;
+                case "--encoding":
+                    options.encodings = value.equals("all") ? new ArrayList<>(SyntheticEncoder.TYPES.keySet()) : List.of(value.split(","));
+                    break;
+                case "--seconds":
+                    options.seconds = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    options.warmup = Integer.parseInt(value);
+                    break;
+                case "--size":
+                    String[] size = value.split("x");
+                    options.width = Integer.parseInt(size[0]);
+                    options.height = Integer.parseInt(size[1]);
+                    break;
+                case "--color":
+                    options.colorMode = RFBClient.ColorMode.valueOf(value.toUpperCase());
+                    break;
+                case "--decode-threads":
+                    options.decodeThreads = Integer.parseInt(value);
+                    break;
+                case "--max-fps":
+                    options.maxFps = Integer.parseInt(value);
+                    break;
+                case "--in-flight":
+                    options.inFlight = Integer.parseInt(value);
+                    break;
+                case "--tile-cache":
+                    options.tileCacheBudget = Long.parseLong(value) << 20;
+                    break;
+                case "--rate":
+                    options.rate = Integer.parseInt(value);
+                    break;
+                case "--csv":
+                    options.csv = Path.of(value);
+                    break;
+                default:
+                    usage();
+                    return;
+            }
+        }
+        if (args.length % 2 != 0) {
+            usage();
+            return;
+        }
+        for (String workload : options.workloads) {
+            for (String encoding : options.encodings) {
+                run(options, workload, encoding);
+            }
+        }
+        System.exit(0); // 클라이언트 쪽 비데몬 스레드가 남아 있어도 끝냄
+    }
+
+    private static void usage() {
+        System.out.println("사용법: java LoadHarness [--clients 4] [--workload " + String.join(",", SyntheticRfbServer.WORKLOADS) + "|all]");
+        System.out.println("    [--encoding " + String.join(",", SyntheticEncoder.TYPES.keySet()) + "|all] [--seconds 10] [--warmup 3]");
+        System.out.println("    [--size 1280x800] [--color server|rgb565|bgr233] [--decode-threads 0] [--max-fps 0] [--in-flight 1]");
+        System.out.println("    [--tile-cache <MB>] [--rate <초당 화면 변경 수>] [--csv <결과 파일>]");
+    }
+}
@@ -0,0 +1,162 @@
+package com.myvnc.client;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// 실제 서버에서 녹화한 세션(--record로 만든 파일)의 수신 바이트 전체를 최대 속도로 다시 디코딩합니다.
+// 한 번 실행이 세션 하나 전체이고, 매번 새 디코더로 처음부터 시작합니다. (타이밍 정보는 무시)
+// gradle :benchmarks:jmh -Pjmh.recording=<파일> 로 실행합니다.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordedSessionBenchmark {
+
+    @Param({""})
+    public String recording;
+
+    private byte[] data;
+    private int width;
+    private int height;
+    private RFBPixelFormat initialFormat;
+    // 포맷 변경: 이 스트림 위치의 메시지부터 적용
+    private final List<Long> formatOffsets = new ArrayList<>();
+    private final List<RFBPixelFormat> formats = new ArrayList<>();
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public long bytes;
+        public long updates;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            updates = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (recording.isEmpty()) {
+            throw new IllegalStateException("녹화 파일이 필요합니다: -p recording=<파일>");
+        }
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(recording)))) {
+            byte[] magic = new byte[SessionRecorder.MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, SessionRecorder.MAGIC)) {
+                throw new IOException("녹화 파일이 아닙니다: " + recording);
+            }
+            in.readUnsignedShort(); // 버전
+            in.readLong(); // 시작 시각
+            width = in.readUnsignedShort();
+            height = in.readUnsignedShort();
+            initialFormat = SessionRecorder.readPixelFormat(in);
+            in.skipNBytes(in.readInt()); // 서버 이름
+            // 색인 레코드나 (비정상 종료된 파일이면) 잘린 레코드에서 멈춤
+            while (true) {
+                int type;
+                int length;
+                try {
+                    type = in.readUnsignedByte();
+                    in.readLong(); // 경과 시간
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (type == SessionRecorder.INDEX) {
+                    break;
+                }
+                byte[] content = new byte[length];
+                try {
+                    in.readFully(content);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (type == SessionRecorder.DATA) {
+                    stream.write(content);
+                } else if (type == SessionRecorder.FORMAT) {
+                    DataInputStream format = new DataInputStream(new ByteArrayInputStream(content));
+                    formatOffsets.add(format.readLong());
+                    formats.add(SessionRecorder.readPixelFormat(format));
+                }
+            }
+        }
+        data = stream.toByteArray();
+    }
+
+    @Benchmark
+    public BufferedImage replay(Throughput throughput) throws IOException {
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+        RFBProtocolHandler handler = new RFBProtocolHandler(in, new DataOutputStream(OutputStream.nullOutputStream()));
+        Map<Integer, RFBEncoding> encodings = RFBClient.createEncodings(null);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        RFBPixelFormat pf = initialFormat;
+        int nextFormat = 0;
+        try {
+            while (bytes.available() > 0) {
+                long position = data.length - bytes.available();
+                while (nextFormat < formats.size() && formatOffsets.get(nextFormat) <= position) {
+                    pf = formats.get(nextFormat++);
+                }
+                int messageType = handler.readServerMessageHeader();
+                switch (messageType) {
+                    case 0: // FramebufferUpdate
+                        handler.handleFramebufferUpdate(pf, encodings, image);
+                        throughput.updates++;
+                        break;
+                    case 1: // SetColourMapEntries
+                        handler.handleSetColourMapEntries(pf);
+                        break;
+                    case 2: // Bell
+                    case 150: // EndOfContinuousUpdates
+                        break;
+                    case 3: // ServerCutText
+                        in.skipNBytes(3);
+                        in.skipNBytes(in.readInt());
+                        break;
+                    case 248: // Fence
+                        handler.readFence();
+                        break;
+                    default:
+                        throw new IOException("알 수 없는 서버 메시지 타입: " + messageType);
+                }
+            }
+        } catch (EOFException e) {
+            // 녹화가 메시지 중간에서 끝남
+        }
+        throughput.bytes += data.length;
+        return image;
+    }
+}
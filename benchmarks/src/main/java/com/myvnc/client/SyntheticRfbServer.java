@@ -0,0 +1,791 @@
+package com.myvnc.client;
+
+import java.awt.Rectangle;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// 부하/지연 시간 측정용 로컬 RFB 서버 (실제 VNC 서버와 네트워크 없이 RFBClient를 끝까지 돌려 보기 위한 것)
+// RFBClient.connect가 기대하는 핸드셰이크(3.3/3.7/3.8, 보안 None, SecurityResult, ClientInit, ServerInit)를 마치고,
+// 모든 연결이 공유하는 화면 하나를 작업 부하 대본에 따라 주기적으로 바꿉니다.
+//   idle: 텍스트 화면에서 캐럿만 0.5초마다 깜박임
+//   typing: 초당 12자씩 글자 칸(8x16)을 씀
+//   scrolling: 초당 30번 한 줄(16픽셀)씩 위로 스크롤 (CopyRect + 새 줄)
+//   video: 가운데 640x360 영역이 초당 30번 바뀜 (나머지는 텍스트)
+//   churn: 초당 30번 전체 화면이 바뀜
+// 실제 서버처럼 FramebufferUpdateRequest 하나에 업데이트 하나를, 보낼 변경이 생겼을 때 보냅니다.
+// 클라이언트가 Fence 의사 인코딩을 보내면 Fence를 지원한다고 알리고 Fence 요청에 응답합니다. (요청 파이프라인, 포맷 전환)
+// 변경 영역은 연결마다 쌓였다가 한 업데이트로 합쳐지므로 클라이언트가 느리면 fps가 떨어집니다.
+// 인코딩은 생성자에서 고른 것을 클라이언트가 SetEncodings에 넣었으면 그대로, 아니면 목록의 첫 지원 인코딩을 씁니다.
+// 업데이트마다 서버 쪽 시각(화면이 바뀐 시각, 보내기 시작한 시각)과 크기를 남겨 LoadHarness가 종단 간 지연을 계산합니다.
+public final class SyntheticRfbServer implements AutoCloseable {
+    static final List<String> WORKLOADS = List.of("idle", "typing", "scrolling", "video", "churn");
+
+    private static final int TILE = 256; // 큰 영역을 나눠 보내는 단위
+    private static final int LINE = 16; // 텍스트 줄 높이
+    private static final int VIDEO_WIDTH = 640;
+    private static final int VIDEO_HEIGHT = 360;
+    private static final int PAN = 256; // video/churn 원본이 화면보다 큰 만큼 (프레임마다 이동)
+
+    // 업데이트 하나의 서버 쪽 기록
+    static final class Update {
+        final long changedNanos; // 담긴 변경 중 가장 오래된 것 (변경 없이 전체 화면을 요청받았으면 요청 시각)
+        final long sentNanos; // 인코딩을 마치고 쓰기 시작한 시각
+        final int bytes; // 메시지 전체
+
+        Update(long changedNanos, long sentNanos, int bytes) {
+            this.changedNanos = changedNanos;
+            this.sentNanos = sentNanos;
+            this.bytes = bytes;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final String workload;
+    private final String encoding;
+    private final int[] screen;
+    private final ReentrantReadWriteLock screenLock = new ReentrantReadWriteLock(); // 틱이 쓰고 연결이 복사
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final List<Thread> threads = new CopyOnWriteArrayList<>(); // 서버 CPU 시간 계산용
+    // 지금 화면에서 인코딩한 사각형 (인코딩, 픽셀 포맷, 위치 -> 바이트). 틱마다 새 맵으로 바꿉니다.
+    // 연결마다 같은 화면을 다시 인코딩하면 서버가 먼저 병목이 되므로 상태 없는 인코딩은 결과를 나눠 씁니다. (ZRLE는 연결마다 zlib 스트림)
+    private volatile Map<String, byte[]> encodedTiles = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicLong updatesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private int tickRate; // 초당 화면 변경 수 (0이면 작업 부하 기본값)
+    private boolean recordUpdates; // 연결마다 Update 기록을 쌓음 (꺼내 가는 쪽이 있을 때만)
+    private volatile Consumer<Connection> acceptHook;
+    private ServerSocket serverSocket;
+    private ScheduledExecutorService ticker;
+
+    // 아래는 틱 스레드 전용
+    private final Random random = new Random(3);
+    private int[] texture; // video/churn 원본
+    private int frame;
+    private int cursorColumn;
+    private int cursorLine;
+
+    // encoding은 SyntheticEncoder.TYPES의 이름
+    public SyntheticRfbServer(int width, int height, String workload, String encoding) {
+        if (!WORKLOADS.contains(workload)) {
+            throw new IllegalArgumentException("알 수 없는 작업 부하: " + workload);
+        }
+        if (!SyntheticEncoder.TYPES.containsKey(encoding)) {
+            throw new IllegalArgumentException("알 수 없는 인코딩: " + encoding);
+        }
+        this.width = width;
+        this.height = height;
+        this.workload = workload;
+        this.encoding = encoding;
+        this.screen = SyntheticScreens.create("text", width, height);
+        if (workload.equals("video")) {
+            texture = SyntheticScreens.create("photo", Math.min(VIDEO_WIDTH, width) + PAN, Math.min(VIDEO_HEIGHT, height) + PAN);
+        } else if (workload.equals("churn")) {
+            texture = SyntheticScreens.create("photo", width + PAN, height + PAN);
+        }
+    }
+
+    // start 전에 호출
+    public void setTickRate(int tickRate) {
+        this.tickRate = tickRate;
+    }
+
+    // start 전에 호출. 연결마다 Update를 쌓아 두고 Connection.pollUpdate()로 꺼냅니다.
+    void setRecordUpdates(boolean recordUpdates) {
+        this.recordUpdates = recordUpdates;
+    }
+
+    // 연결을 받은 직후 (핸드셰이크 전) 수락 스레드에서 호출됩니다.
+    void setAcceptHook(Consumer<Connection> acceptHook) {
+        this.acceptHook = acceptHook;
+    }
+
+    // port가 0이면 빈 포트
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> newThread("synthetic-rfb-tick", r));
+        long period = TimeUnit.SECONDS.toNanos(1) / (tickRate > 0 ? tickRate : defaultTickRate());
+        ticker.scheduleAtFixedRate(this::tick, period, period, TimeUnit.NANOSECONDS);
+        newThread("synthetic-rfb-accept", this::acceptLoop).start();
+        System.out.printf("합성 RFB 서버: 포트 %d, %dx%d, %s, %s%n", getPort(), width, height, workload, encoding);
+    }
+
+    private int defaultTickRate() {
+        switch (workload) {
+            case "idle":
+                return 2;
+            case "typing":
+                return 12;
+            default:
+                return 30;
+        }
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getWorkload() {
+        return workload;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public long getUpdatesSent() {
+        return updatesSent.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    // 서버 스레드(틱, 수락, 연결별 수신/송신)가 쓴 CPU 시간. 끝난 스레드의 몫은 빠집니다.
+    public long getCpuNanos() {
+        ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (Thread t : threads) {
+            long nanos = mx.getThreadCpuTime(t.getId());
+            if (nanos > 0) {
+                total += nanos;
+            }
+        }
+        return total;
+    }
+
+    private Thread newThread(String name, Runnable r) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        threads.add(t);
+        return t;
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket, connectionCount.incrementAndGet());
+                Consumer<Connection> hook = acceptHook;
+                if (hook != null) {
+                    hook.accept(connection);
+                }
+                newThread("synthetic-rfb-" + connection.id + "-in", connection::readLoop).start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("연결 수락 오류: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // --- 작업 부하 (틱 스레드) ---
+
+    // 화면을 바꾸고, 바뀐 영역을 쓰기 잠금 안에서 모든 연결에 넣습니다.
+    // 연결이 읽기 잠금 안에서 변경 목록과 픽셀을 함께 가져가므로 스크롤(CopyRect)과 새 내용이 어긋나지 않습니다.
+    private void tick() {
+        screenLock.writeLock().lock();
+        try {
+            long now = System.nanoTime();
+            int scroll = 0;
+            Rectangle changed;
+            switch (workload) {
+                case "idle":
+                    changed = blinkCaret();
+                    break;
+                case "typing":
+                    changed = typeCharacter();
+                    break;
+                case "scrolling":
+                    scroll = LINE;
+                    changed = scrollLine();
+                    break;
+                case "video":
+                    changed = pan(Math.min(VIDEO_WIDTH, width), Math.min(VIDEO_HEIGHT, height));
+                    break;
+                default:
+                    changed = pan(width, height);
+                    break;
+            }
+            frame++;
+            encodedTiles = new ConcurrentHashMap<>();
+            for (Connection connection : connections) {
+                connection.changed(scroll, changed, now);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("작업 부하 오류: " + e); // 예외가 나가면 주기 작업이 멈춤
+        } finally {
+            screenLock.writeLock().unlock();
+        }
+    }
+
+    private Rectangle blinkCaret() {
+        Rectangle caret = new Rectangle(Math.min(8 * 10, width - 2), Math.min(LINE * 2, height - LINE) + 2, 2, 12);
+        for (int y = caret.y; y < caret.y + caret.height; y++) {
+            for (int x = caret.x; x < caret.x + caret.width; x++) {
+                screen[y * width + x] ^= 0xFFFFFF;
+            }
+        }
+        return caret;
+    }
+
+    // 글자 하나를 쓰고 다음 칸으로. 줄 끝이면 다음 줄을 지우고 처음부터
+    private Rectangle typeCharacter() {
+        int columns = Math.min(width / 8, 80);
+        int lines = height / LINE;
+        Rectangle changed = new Rectangle(cursorColumn * 8, cursorLine * LINE, 8, LINE);
+        drawGlyph(changed.x, changed.y, 0x000000);
+        if (++cursorColumn == columns) {
+            cursorColumn = 0;
+            cursorLine = (cursorLine + 1) % lines;
+            fill(0, cursorLine * LINE, width, LINE, 0xFFFFFF);
+            changed = changed.union(new Rectangle(0, cursorLine * LINE, width, LINE));
+        }
+        return changed;
+    }
+
+    // 한 줄 위로 밀고 맨 아래에 새 줄
+    private Rectangle scrollLine() {
+        System.arraycopy(screen, LINE * width, screen, 0, (height - LINE) * width);
+        int y = height - LINE;
+        fill(0, y, width, LINE, 0xFFFFFF);
+        int length = random.nextInt(width / 8);
+        int[] inks = {0x000000, 0x202020, 0x1F4E9E, 0xA31515};
+        int ink = inks[random.nextInt(inks.length)];
+        for (int column = 0; column < length; column++) {
+            if (random.nextInt(6) != 0) {
+                drawGlyph(column * 8, y, ink);
+            }
+        }
+        return new Rectangle(0, y, width, LINE);
+    }
+
+    // 가운데 w x h 영역을 원본 사진 위에서 조금씩 옮겨 보이는 장면으로 바꿈 (모든 픽셀이 바뀜)
+    private Rectangle pan(int w, int h) {
+        int textureWidth = w + PAN;
+        int offsetX = (frame * 7) % PAN;
+        int offsetY = (frame * 3) % PAN;
+        Rectangle changed = new Rectangle((width - w) / 2, (height - h) / 2, w, h);
+        for (int row = 0; row < h; row++) {
+            System.arraycopy(texture, (offsetY + row) * textureWidth + offsetX, screen, (changed.y + row) * width + changed.x, w);
+        }
+        return changed;
+    }
+
+    // 8x16 칸에 획 몇 개 (SyntheticScreens의 text와 같은 모양)
+    private void drawGlyph(int gx, int gy, int ink) {
+        fill(gx, gy, 8, LINE, 0xFFFFFF);
+        for (int stroke = 0; stroke < 3; stroke++) {
+            if (random.nextBoolean()) {
+                fill(gx + 1, gy + 2 + random.nextInt(12), 6, 1, ink);
+            } else {
+                fill(gx + 1 + random.nextInt(6), gy + 2, 1, 12, ink);
+            }
+        }
+    }
+
+    private void fill(int x, int y, int w, int h, int rgb) {
+        for (int row = y; row < y + h; row++) {
+            Arrays.fill(screen, row * width + x, row * width + x + w, rgb);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            System.err.println("서버 소켓 닫기 오류: " + e.getMessage());
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    // --- 연결 하나 ---
+
+    // 수신 스레드가 핸드셰이크와 클라이언트 메시지를, 송신 스레드가 인코딩과 전송을 맡습니다.
+    final class Connection {
+        private final Socket socket;
+        private final int id;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final SyntheticEncoder encoder = new SyntheticEncoder(RFBPixelFormat.rgb888());
+        private String formatKey = formatKey(RFBPixelFormat.rgb888()); // 송신 스레드 전용
+        private final Queue<Update> updates = new ConcurrentLinkedQueue<>();
+        // 아래는 this로 보호
+        private final DamageRegion dirty = new DamageRegion(); // 클라이언트에 아직 보내지 않은 영역
+        private int scroll; // 마지막 업데이트 이후 위로 스크롤한 픽셀 수
+        private long changedNanos; // 보내지 않은 가장 오래된 변경 (0이면 없음)
+        private int requests; // 응답하지 않은 FramebufferUpdateRequest
+        private RFBPixelFormat pixelFormat;
+        private int[] clientEncodings = {0};
+        private boolean fenceAnnounced;
+        private final ByteArrayOutputStream fences = new ByteArrayOutputStream(); // 송신 스레드가 보낼 Fence 메시지
+        private boolean closed;
+
+        Connection(Socket socket, int id) throws IOException {
+            this.socket = socket;
+            this.id = id;
+            this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+
+        int getId() {
+            return id;
+        }
+
+        // 보낸 순서대로 (setRecordUpdates(true)일 때만 쌓임)
+        Update pollUpdate() {
+            return updates.poll();
+        }
+
+        private void readLoop() {
+            try {
+                handshake();
+                connections.add(this);
+                newThread("synthetic-rfb-" + id + "-out", this::writeLoop).start();
+                while (true) {
+                    int type = in.readUnsignedByte();
+                    switch (type) {
+                        case 0: // SetPixelFormat
+                            in.readFully(new byte[3]);
+                            RFBPixelFormat pf = SessionRecorder.readPixelFormat(in);
+                            synchronized (this) {
+                                pixelFormat = pf; // 클라이언트는 요청한 업데이트를 다 받은 뒤 보냄
+                            }
+                            break;
+                        case 2: // SetEncodings
+                            in.readUnsignedByte();
+                            int[] list = new int[in.readUnsignedShort()];
+                            for (int i = 0; i < list.length; i++) {
+                                list[i] = in.readInt();
+                            }
+                            synchronized (this) {
+                                clientEncodings = list;
+                                if (!fenceAnnounced && contains(list, RFBProtocolHandler.PSEUDO_FENCE)) {
+                                    fenceAnnounced = true;
+                                    queueFence(RFBProtocolHandler.FENCE_SUPPORTED_FLAGS, new byte[0]);
+                                }
+                            }
+                            break;
+                        case 3: // FramebufferUpdateRequest
+                            boolean incremental = in.readUnsignedByte() != 0;
+                            Rectangle region = new Rectangle(in.readUnsignedShort(), in.readUnsignedShort(),
+                                    in.readUnsignedShort(), in.readUnsignedShort());
+                            requested(incremental, region);
+                            break;
+                        case 4: // KeyEvent
+                            in.readFully(new byte[7]);
+                            break;
+                        case 5: // PointerEvent
+                            in.readFully(new byte[5]);
+                            break;
+                        case 6: // ClientCutText
+                            in.readFully(new byte[3]);
+                            in.readFully(new byte[in.readInt()]);
+                            break;
+                        case 150: // EnableContinuousUpdates (지원한다고 알리지 않았으므로 무시)
+                            in.readFully(new byte[9]);
+                            break;
+                        case 248: // Fence
+                            in.readFully(new byte[3]);
+                            int flags = in.readInt();
+                            byte[] payload = new byte[in.readUnsignedByte()];
+                            in.readFully(payload);
+                            if ((flags & RFBProtocolHandler.FENCE_REQUEST) != 0) {
+                                // 메시지를 순서대로 처리하므로 BlockBefore/BlockAfter는 그대로 만족합니다.
+                                // SyncNext: 응답은 송신 스레드가 다음 업데이트보다 먼저 보내므로, 이 뒤에 오는 SetPixelFormat은
+                                // 응답 이후의 업데이트부터 적용됩니다.
+                                synchronized (this) {
+                                    queueFence(flags & RFBProtocolHandler.FENCE_SUPPORTED_FLAGS & ~RFBProtocolHandler.FENCE_REQUEST, payload);
+                                }
+                            }
+                            break;
+                        default:
+                            throw new IOException("알 수 없는 클라이언트 메시지 타입: " + type);
+                    }
+                }
+            } catch (EOFException e) {
+                if (!isClosed()) {
+                    System.out.println("합성 RFB 서버: 연결 " + id + " 종료");
+                }
+            } catch (IOException e) {
+                if (!isClosed()) {
+                    System.out.println("합성 RFB 서버: 연결 " + id + " 종료 (" + e.getMessage() + ")");
+                }
+            } finally {
+                close();
+            }
+        }
+
+        private void handshake() throws IOException {
+            out.write("RFB 003.008\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            byte[] version = new byte[12];
+            in.readFully(version);
+            int minor = Integer.parseInt(new String(version, 8, 3, StandardCharsets.US_ASCII));
+            if (minor >= 7) {
+                out.writeByte(1); // 보안 타입 1개
+                out.writeByte(1); // None
+                out.flush();
+                int type = in.readUnsignedByte();
+                if (type != 1) {
+                    throw new IOException("지원하지 않는 보안 타입: " + type);
+                }
+                if (minor >= 8) {
+                    out.writeInt(0); // SecurityResult OK
+                }
+            } else {
+                out.writeInt(1); // 3.3: 서버가 보안 타입을 정함
+            }
+            out.flush();
+            in.readUnsignedByte(); // ClientInit (공유 플래그)
+            byte[] name = ("Synthetic " + workload).getBytes(StandardCharsets.UTF_8);
+            out.writeShort(width);
+            out.writeShort(height);
+            SessionRecorder.writePixelFormat(out, RFBPixelFormat.rgb888());
+            out.writeInt(name.length);
+            out.write(name);
+            out.flush();
+        }
+
+        // this를 잡은 채로 호출
+        private void queueFence(int flags, byte[] payload) {
+            DataOutputStream message = new DataOutputStream(fences);
+            try {
+                message.writeByte(248);
+                message.write(new byte[3]);
+                message.writeInt(flags);
+                message.writeByte(payload.length);
+                message.write(payload);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            notifyAll();
+        }
+
+        private synchronized void requested(boolean incremental, Rectangle region) {
+            requests++;
+            if (!incremental) {
+                Rectangle r = region.intersection(new Rectangle(0, 0, width, height));
+                if (!r.isEmpty()) {
+                    dirty.add(r);
+                    if (changedNanos == 0) {
+                        changedNanos = System.nanoTime();
+                    }
+                }
+            }
+            notifyAll();
+        }
+
+        // 틱 스레드 (화면 쓰기 잠금 안)
+        private synchronized void changed(int dy, Rectangle r, long now) {
+            if (dy > 0) {
+                // 이미 쌓인 영역도 같이 올라감
+                Rectangle bounds = new Rectangle(0, 0, width, height);
+                for (Rectangle old : dirty.drain()) {
+                    old.translate(0, -dy);
+                    Rectangle moved = old.intersection(bounds);
+                    if (!moved.isEmpty()) {
+                        dirty.add(moved);
+                    }
+                }
+                scroll += dy;
+                if (scroll >= height) {
+                    scroll = 0;
+                    dirty.add(bounds);
+                }
+            }
+            dirty.add(r);
+            if (changedNanos == 0) {
+                changedNanos = now;
+            }
+            notifyAll();
+        }
+
+        private void writeLoop() {
+            try {
+                while (true) {
+                    synchronized (this) {
+                        while (!closed && fences.size() == 0 && (requests == 0 || changedNanos == 0)) {
+                            wait();
+                        }
+                        if (closed) {
+                            return;
+                        }
+                    }
+                    writeUpdate();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                if (!isClosed()) {
+                    System.out.println("합성 RFB 서버: 연결 " + id + " 전송 오류 (" + e.getMessage() + ")");
+                }
+            } finally {
+                close();
+            }
+        }
+
+        // 쌓인 변경을 업데이트 하나로 보냄. 변경 목록과 픽셀은 같은 읽기 잠금 안에서 가져옵니다.
+        private void writeUpdate() throws IOException {
+            int dy;
+            long changed;
+            String chosen;
+            List<Rectangle> tiles = new ArrayList<>();
+            List<int[]> tilePixels = new ArrayList<>(); // 공유 결과가 있으면 null
+            List<byte[]> encoded = new ArrayList<>();
+            Map<String, byte[]> shared;
+            byte[] fenceMessages;
+            screenLock.readLock().lock();
+            try {
+                synchronized (this) {
+                    // Fence 응답을 포맷과 같은 잠금 안에서 꺼내야, 새 포맷으로 만든 업데이트가 응답보다 앞서 나가지 않습니다.
+                    fenceMessages = fences.toByteArray();
+                    fences.reset();
+                    if (requests == 0 || changedNanos == 0) {
+                        chosen = null; // 보낼 업데이트 없이 Fence만
+                        changed = 0;
+                        dy = 0;
+                    } else {
+                        if (pixelFormat != null) {
+                        encoder.setPixelFormat(pixelFormat);
+                        formatKey = formatKey(pixelFormat);
+                            pixelFormat = null;
+                        }
+                        chosen = chooseEncoding();
+                        dy = scroll;
+                        if (dy > 0 && !contains(clientEncodings, 1)) {
+                            dirty.add(0, 0, width, height - dy); // CopyRect를 못 쓰면 밀린 영역을 다시 보냄
+                            dy = 0;
+                        }
+                        for (Rectangle r : dirty.drain()) {
+                            split(r, tiles);
+                        }
+                        changed = changedNanos;
+                        scroll = 0;
+                        changedNanos = 0;
+                        requests--;
+                    }
+                }
+                shared = !"zrle".equals(chosen) ? encodedTiles : null; // 지금 화면의 맵
+                for (Rectangle t : tiles) {
+                    byte[] cached = shared != null ? shared.get(tileKey(chosen, t)) : null;
+                    encoded.add(cached);
+                    if (cached != null) {
+                        tilePixels.add(null);
+                        continue;
+                    }
+                    int[] px = new int[t.width * t.height];
+                    for (int row = 0; row < t.height; row++) {
+                        System.arraycopy(screen, (t.y + row) * width + t.x, px, row * t.width, t.width);
+                    }
+                    tilePixels.add(px);
+                }
+            } finally {
+                screenLock.readLock().unlock();
+            }
+
+            if (chosen == null) {
+                out.write(fenceMessages);
+                out.flush();
+                return;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream message = new DataOutputStream(bytes);
+            message.writeByte(0); // FramebufferUpdate
+            message.writeByte(0); // padding
+            message.writeShort(tiles.size() + (dy > 0 ? 1 : 0));
+            if (dy > 0) {
+                writeRectHeader(message, 0, 0, width, height - dy, 1);
+                message.writeShort(0);
+                message.writeShort(dy);
+            }
+            int type = SyntheticEncoder.TYPES.get(chosen);
+            for (int i = 0; i < tiles.size(); i++) {
+                Rectangle t = tiles.get(i);
+                writeRectHeader(message, t.x, t.y, t.width, t.height, type);
+                byte[] data = encoded.get(i);
+                if (data == null) {
+                    data = encoder.encode(chosen, tilePixels.get(i), t.width, 0, 0, t.width, t.height);
+                    if (shared != null) {
+                        shared.put(tileKey(chosen, t), data); // 그사이 틱이 지났으면 이미 버려진 맵
+                    }
+                }
+                message.write(data);
+            }
+            long sent = System.nanoTime();
+            if (recordUpdates && (dy > 0 || !tiles.isEmpty())) {
+                updates.add(new Update(changed, sent, bytes.size())); // 클라이언트가 받기 전에 넣어 둠
+            }
+            out.write(fenceMessages);
+            bytes.writeTo(out);
+            out.flush();
+            updatesSent.incrementAndGet();
+            bytesSent.addAndGet(bytes.size());
+        }
+
+        private String tileKey(String chosen, Rectangle t) {
+            return chosen + formatKey + t.x + ',' + t.y + ',' + t.width + ',' + t.height;
+        }
+
+        // 고른 인코딩을 클라이언트가 받으면 그대로, 아니면 클라이언트 목록의 첫 지원 인코딩
+        private String chooseEncoding() {
+            if (contains(clientEncodings, SyntheticEncoder.TYPES.get(encoding))) {
+                if (encoding.equals("tight-jpeg") && !acceptsJpeg()) {
+                    return "tight";
+                }
+                return encoding;
+            }
+            for (int e : clientEncodings) {
+                for (String name : SyntheticEncoder.TYPES.keySet()) {
+                    if (SyntheticEncoder.TYPES.get(name) == e && !name.equals("tight-jpeg")) {
+                        return name;
+                    }
+                }
+            }
+            return "raw";
+        }
+
+        private boolean acceptsJpeg() {
+            for (int e : clientEncodings) {
+                if (e >= RFBProtocolHandler.PSEUDO_JPEG_QUALITY_LEVEL_0 && e <= RFBProtocolHandler.PSEUDO_JPEG_QUALITY_LEVEL_0 + 9) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private synchronized boolean isClosed() {
+            return closed;
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // 이미 닫힘
+            }
+        }
+    }
+
+    private static void split(Rectangle r, List<Rectangle> tiles) {
+        for (int y = r.y; y < r.y + r.height; y += TILE) {
+            for (int x = r.x; x < r.x + r.width; x += TILE) {
+                tiles.add(new Rectangle(x, y, Math.min(TILE, r.x + r.width - x), Math.min(TILE, r.y + r.height - y)));
+            }
+        }
+    }
+
+    private static String formatKey(RFBPixelFormat pf) {
+        return "/" + pf.bitsPerPixel + ":" + pf.depth + ":" + pf.bigEndianFlag + ":" + pf.redMax + "." + pf.redShift
+                + ":" + pf.greenMax + "." + pf.greenShift + ":" + pf.blueMax + "." + pf.blueShift + "/";
+    }
+
+    private static boolean contains(int[] list, int value) {
+        for (int v : list) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void writeRectHeader(DataOutputStream out, int x, int y, int width, int height, int type) throws IOException {
+        out.writeShort(x);
+        out.writeShort(y);
+        out.writeShort(width);
+        out.writeShort(height);
+        out.writeInt(type);
+    }
+
+    // 뷰어로 직접 붙어 보거나 다른 머신의 부하 도구가 쓸 수 있게 단독으로 실행합니다.
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = 5900;
+        int width = 1280;
+        int height = 800;
+        String workload = "typing";
+        String encoding = "tight";
+        int rate = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--size":
+                    String[] size = args[i + 1].split("x");
+                    width = Integer.parseInt(size[0]);
+                    height = Integer.parseInt(size[1]);
+                    break;
+                case "--workload":
+                    workload = args[i + 1];
+                    break;
+                case "--encoding":
+                    encoding = args[i + 1];
+                    break;
+                case "--rate":
+                    rate = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    System.out.println("사용법: java SyntheticRfbServer [--port 5900] [--size 1280x800] "
+                            + "[--workload " + String.join("|", WORKLOADS) + "] "
+                            + "[--encoding " + String.join("|", SyntheticEncoder.TYPES.keySet()) + "] [--rate <초당 변경 수>]");
+                    return;
+            }
+        }
+        SyntheticRfbServer server = new SyntheticRfbServer(width, height, workload, encoding);
+        server.setTickRate(rate);
+        server.start(port);
+        long updates = 0;
+        long bytes = 0;
+        while (true) {
+            Thread.sleep(5000);
+            long u = server.getUpdatesSent() - updates;
+            long b = server.getBytesSent() - bytes;
+            updates += u;
+            bytes += b;
+            System.out.printf("연결 %d개, 업데이트 %.1f/s, %.1f KB/업데이트%n",
+                    server.connections.size(), u / 5.0, u == 0 ? 0.0 : b / 1024.0 / u);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.myvnc.client;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// 업데이트 처리 전체: FramebufferUpdate 메시지 바이트를 메모리 스트림에서 읽어
+// RFBProtocolHandler.handleFramebufferUpdate로 사각형 헤더 파싱, 디코딩, 손상 영역 누적까지 수행합니다.
+// decodeThreads가 0보다 크면 RFBClient와 같은 병렬 디코더를 씁니다.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdatePipelineBenchmark {
+    private static final int WIDTH = 1024;
+    private static final int HEIGHT = 768;
+    // 서버가 큰 영역을 나눠 보내는 단위
+    private static final int RECT_SIZE = 256;
+    private static final int FRAMES = 8;
+
+    @Param({"raw", "hextile", "zrle", "tight"})
+    public String encoding;
+
+    @Param({"text", "photo", "scroll"})
+    public String screen;
+
+    @Param({"0", "4"})
+    public int decodeThreads;
+
+    private final RFBPixelFormat pf = RFBPixelFormat.rgb888();
+    private ByteArrayInputStream stream;
+    private long streamBytes;
+    private RFBProtocolHandler handler;
+    private ParallelRectDecoder parallelDecoder;
+    private Map<Integer, RFBEncoding> encodings;
+    private BufferedImage image;
+    private final DamageRegion damage = new DamageRegion();
+    private int next;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public long bytes;
+        public long pixels;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            pixels = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int type = SyntheticEncoder.TYPES.get(encoding);
+        int[] pixels = SyntheticScreens.create(screen, WIDTH, HEIGHT);
+        SyntheticEncoder encoder = new SyntheticEncoder(pf);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < FRAMES; i++) {
+            if (screen.equals("scroll")) {
+                int lines = DecoderBenchmark.SCROLL_LINES;
+                writeUpdate(out, encoder, pixels, type, 0, HEIGHT - lines, lines, true);
+            } else {
+                writeUpdate(out, encoder, pixels, type, 0, 0, HEIGHT, false);
+            }
+        }
+        streamBytes = bytes.size();
+        stream = new ByteArrayInputStream(bytes.toByteArray());
+        handler = new RFBProtocolHandler(new DataInputStream(stream), new DataOutputStream(OutputStream.nullOutputStream()));
+        if (decodeThreads > 0) {
+            Map<Integer, Supplier<RFBEncoding>> factories = new LinkedHashMap<>();
+            factories.put(7, TightEncoding::new);
+            factories.put(5, HextileEncoding::new);
+            factories.put(2, RREEncoding::new);
+            parallelDecoder = new ParallelRectDecoder(decodeThreads, factories);
+            handler.setParallelDecoder(parallelDecoder);
+        }
+        encodings = RFBClient.createEncodings(null);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+
+    // y..y+height 띠를 RECT_SIZE 사각형으로 나눈 FramebufferUpdate (scroll이면 앞에 CopyRect)
+    private void writeUpdate(DataOutputStream out, SyntheticEncoder encoder, int[] pixels, int type,
+                             int x, int y, int height, boolean scroll) throws IOException {
+        int columns = (WIDTH + RECT_SIZE - 1) / RECT_SIZE;
+        int rows = (height + RECT_SIZE - 1) / RECT_SIZE;
+        out.writeByte(0); // FramebufferUpdate
+        out.writeByte(0); // padding
+        out.writeShort(columns * rows + (scroll ? 1 : 0));
+        if (scroll) {
+            writeRectHeader(out, 0, 0, WIDTH, HEIGHT - height, 1);
+            out.writeShort(0);
+            out.writeShort(height);
+        }
+        for (int ry = y; ry < y + height; ry += RECT_SIZE) {
+            int h = Math.min(RECT_SIZE, y + height - ry);
+            for (int rx = x; rx < WIDTH; rx += RECT_SIZE) {
+                int w = Math.min(RECT_SIZE, WIDTH - rx);
+                writeRectHeader(out, rx, ry, w, h, type);
+                out.write(encoder.encode(encoding, pixels, WIDTH, rx, ry, w, h));
+            }
+        }
+    }
+
+    private static void writeRectHeader(DataOutputStream out, int x, int y, int width, int height, int type) throws IOException {
+        out.writeShort(x);
+        out.writeShort(y);
+        out.writeShort(width);
+        out.writeShort(height);
+        out.writeInt(type);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (parallelDecoder != null) {
+            parallelDecoder.shutdown();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage update(Throughput throughput) throws IOException {
+        if (next == FRAMES) {
+            // 스트림 처음으로: 인코더 쪽 zlib 스트림도 처음부터이므로 디코더를 새로 만듭니다.
+            next = 0;
+            stream.reset();
+            encodings = RFBClient.createEncodings(null);
+        }
+        next++;
+        handler.readServerMessageHeader();
+        handler.handleFramebufferUpdate(pf, encodings, image, damage);
+        for (Rectangle r : damage.drain()) {
+            throughput.pixels += (long) r.width * r.height;
+        }
+        throughput.bytes += streamBytes / FRAMES;
+        return image;
+    }
+}
@@ -0,0 +1,188 @@
+package com.myvnc;
+
+import com.myvnc.client.ConnectionListener;
+import com.myvnc.client.RFBClient;
+import com.myvnc.client.SessionThreads;
+import com.myvnc.ui.ThumbnailView;
+import com.myvnc.ui.VNCDisplayPanel;
+
+import javax.swing.*;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.GridLayout;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+// 여러 VNC 서버를 한 창에 썸네일로 모아 보는 모니터 월
+// 모든 세션이 한 JVM에서 수신/송신 루프는 공유 세션 스레드 실행기에, 업데이트 페이싱은 타이머 스레드 하나에 올라갑니다.
+// 평소에는 8비트 색상과 낮은 fps로 받고, 타일을 더블 클릭하면 그 세션만 원래 색상/fps로 전체 화면 창을 엽니다.
+public class MonitorWall extends JFrame {
+    private static final int THUMB_WIDTH = 320;
+    private static final int WALL_FPS = 2; // 확대하지 않은 세션의 업데이트 상한
+    private static final long WALL_TILE_CACHE = 4L << 20; // 세션마다 32MB씩 잡지 않도록
+
+    private final ExecutorService sessionThreads = SessionThreads.create("rfb-wall-");
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "rfb-wall-pacer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final List<Tile> tiles = new ArrayList<>();
+
+    // 세션 하나: 헤드리스 RFBClient + 썸네일, 확대 중이면 전체 화면 창
+    private final class Tile {
+        final String address;
+        final RFBClient client;
+        final ThumbnailView thumbnail;
+        final JLabel label;
+        JFrame fullView;
+
+        Tile(String host, int port) {
+            address = host + ":" + port;
+            client = new RFBClient(host, port);
+            client.setSessionExecutors(sessionThreads, scheduler);
+            client.setDecodeThreads(0); // 세션마다 디코딩 풀을 두지 않음
+            client.setTileCacheBudget(WALL_TILE_CACHE);
+            client.setColorMode(RFBClient.ColorMode.BGR233);
+            client.setMaxFps(WALL_FPS);
+            client.setPassword(System.getenv("VNC_PASSWORD")); // 모든 서버에 같은 비밀번호
+            thumbnail = new ThumbnailView(client.getSharedFramebuffer(), THUMB_WIDTH, sessionThreads);
+            label = new JLabel(address + " (연결 중)", SwingConstants.CENTER);
+            client.setConnectionListener(new ConnectionListener() {
+                @Override
+                public void connected() {
+                    SwingUtilities.invokeLater(() -> label.setText(address));
+                }
+
+                @Override
+                public void disconnected(String reason, boolean retrying) {
+                    String state = retrying ? " (다시 연결하는 중)" : " (연결 끊김)";
+                    SwingUtilities.invokeLater(() -> label.setText(address + state));
+                }
+            });
+        }
+
+        void connect() {
+            sessionThreads.execute(() -> {
+                try {
+                    client.connect();
+                } catch (IOException e) {
+                    System.err.println(address + " 연결 오류: " + e.getMessage());
+                    SwingUtilities.invokeLater(() -> label.setText(address + " (다시 연결하는 중)"));
+                    client.reconnect(); // 서버가 아직 안 떠 있어도 백오프로 계속 시도
+                }
+            });
+        }
+
+        // 전체 화면 창을 열고 원래 색상/fps로 받음 (포맷 변경 후 전체 화면을 다시 받음)
+        void promote() {
+            if (fullView != null) {
+                fullView.toFront();
+                return;
+            }
+            VNCDisplayPanel panel = new VNCDisplayPanel();
+            VNCViewer.attachInput(panel, client);
+            fullView = new JFrame(address);
+            fullView.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+            fullView.add(panel, BorderLayout.CENTER);
+            fullView.addWindowListener(new WindowAdapter() {
+                @Override
+                public void windowClosed(WindowEvent e) {
+                    demote();
+                }
+            });
+            client.setDisplayPanel(panel);
+            // 포맷을 먼저 바꿔야 합니다. 전환을 기다리는 동안에는 ContinuousUpdates를 켜지 않으며, 전환이 끝나면 다시 켭니다.
+            client.setColorMode(RFBClient.ColorMode.SERVER);
+            client.setMaxFps(0);
+            fullView.pack();
+            fullView.setLocationRelativeTo(MonitorWall.this);
+            fullView.setVisible(true);
+            panel.requestFocusInWindow();
+        }
+
+        void demote() {
+            fullView = null;
+            client.setDisplayPanel(null);
+            client.setColorMode(RFBClient.ColorMode.BGR233);
+            client.setMaxFps(WALL_FPS);
+        }
+
+        void close() {
+            if (fullView != null) {
+                fullView.dispose();
+            }
+            thumbnail.close();
+            client.disconnect();
+        }
+    }
+
+    public MonitorWall(List<String> addresses) {
+        setTitle("VNC Monitor Wall");
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        int columns = (int) Math.ceil(Math.sqrt(addresses.size()));
+        JPanel grid = new JPanel(new GridLayout(0, Math.max(1, columns), 4, 4));
+        grid.setBackground(Color.DARK_GRAY);
+
+        for (String address : addresses) {
+            int colon = address.lastIndexOf(':');
+            String host = colon > 0 ? address.substring(0, colon) : address;
+            int port = colon > 0 ? Integer.parseInt(address.substring(colon + 1)) : 5900;
+            Tile tile = new Tile(host, port);
+            tiles.add(tile);
+
+            JPanel cell = new JPanel(new BorderLayout());
+            cell.add(tile.thumbnail, BorderLayout.CENTER);
+            cell.add(tile.label, BorderLayout.SOUTH);
+            tile.thumbnail.setToolTipText("더블 클릭하면 확대");
+            tile.thumbnail.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    if (e.getClickCount() == 2) {
+                        tile.promote();
+                    }
+                }
+            });
+            grid.add(cell);
+        }
+        add(grid, BorderLayout.CENTER);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                for (Tile tile : tiles) {
+                    tile.close();
+                }
+                sessionThreads.shutdownNow();
+                scheduler.shutdownNow();
+            }
+        });
+
+        pack();
+        setLocationRelativeTo(null);
+        setVisible(true);
+
+        for (Tile tile : tiles) {
+            tile.connect();
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("사용법: java MonitorWall <host:port> [<host:port> ...]");
+            System.out.println("예시: java MonitorWall 10.0.0.5:5900 10.0.0.6:5901");
+            System.out.println("VNC 인증 비밀번호는 환경 변수 VNC_PASSWORD로 지정합니다.");
+            return;
+        }
+        List<String> addresses = List.of(args);
+        SwingUtilities.invokeLater(() -> new MonitorWall(addresses));
+    }
+}
@@ -0,0 +1,103 @@
+package com.myvnc;
+
+import com.myvnc.client.SessionPlayer;
+import com.myvnc.ui.VNCDisplayPanel;
+
+import javax.swing.*;
+import java.awt.BorderLayout;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// 세션 녹화 파일 재생 창 (재생/일시 정지, 배속, 위치 이동)
+public class PlaybackViewer extends JFrame {
+    private static final int SLIDER_STEPS = 1000;
+
+    private final VNCDisplayPanel displayPanel = new VNCDisplayPanel();
+    private final SessionPlayer player;
+    private final JSlider slider = new JSlider(0, SLIDER_STEPS, 0);
+    private final JLabel timeLabel = new JLabel();
+    private final JButton playButton = new JButton("재생");
+
+    public PlaybackViewer(Path file) throws IOException {
+        setTitle("세션 재생 - " + file.getFileName());
+        setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        add(displayPanel, BorderLayout.CENTER);
+        player = new SessionPlayer(file, displayPanel);
+
+        playButton.addActionListener(e -> {
+            if (player.isPlaying()) {
+                player.pause();
+            } else {
+                player.play();
+            }
+        });
+        // 배속: 0은 최대 속도
+        JComboBox<String> speedBox = new JComboBox<>(new String[]{"1x", "2x", "4x", "8x", "최대"});
+        double[] speeds = {1, 2, 4, 8, 0};
+        speedBox.addActionListener(e -> player.setSpeed(speeds[speedBox.getSelectedIndex()]));
+        // 놓았을 때만 이동 (끄는 동안 키프레임 복원을 반복하지 않음)
+        slider.addChangeListener(e -> {
+            if (!slider.getValueIsAdjusting() && slider.hasFocus()) {
+                player.seek(player.getDurationNanos() * slider.getValue() / SLIDER_STEPS);
+            }
+        });
+
+        JPanel controls = new JPanel(new BorderLayout(8, 0));
+        JPanel buttons = new JPanel();
+        buttons.add(playButton);
+        buttons.add(speedBox);
+        controls.add(buttons, BorderLayout.WEST);
+        controls.add(slider, BorderLayout.CENTER);
+        controls.add(timeLabel, BorderLayout.EAST);
+        add(controls, BorderLayout.SOUTH);
+
+        // 재생 위치 표시
+        Timer timer = new Timer(200, e -> updatePosition());
+        timer.start();
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                timer.stop();
+                player.close();
+            }
+        });
+
+        pack();
+        setLocationRelativeTo(null);
+        setVisible(true);
+    }
+
+    private void updatePosition() {
+        long duration = player.getDurationNanos();
+        long position = player.getPositionNanos();
+        if (!slider.getValueIsAdjusting() && duration > 0) {
+            slider.setValue((int) (position * SLIDER_STEPS / duration));
+        }
+        timeLabel.setText(format(position) + " / " + format(duration));
+        playButton.setText(player.isPlaying() ? "일시 정지" : "재생");
+    }
+
+    private static String format(long nanos) {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(nanos);
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.out.println("사용법: java PlaybackViewer <녹화 파일>");
+            return;
+        }
+        Path file = Path.of(args[0]);
+        SwingUtilities.invokeLater(() -> {
+            try {
+                new PlaybackViewer(file);
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(null, "녹화 파일 열기 오류: " + e.getMessage(), "오류", JOptionPane.ERROR_MESSAGE);
+                e.printStackTrace();
+            }
+        });
+    }
+}
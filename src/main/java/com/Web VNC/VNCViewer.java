@@ -1,9 +1,11 @@
 package com.myvnc;
 
+import com.myvnc.client.ConnectionListener;
 import com.myvnc.client.RFBClient;
 import com.myvnc.ui.VNCDisplayPanel;
 
 import javax.swing.*;
+import java.awt.BorderLayout;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.event.MouseAdapter;
@@ -11,6 +13,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.io.IOException;
+import java.nio.file.Path;
 
 public class VNCViewer extends JFrame {
 
@@ -18,6 +21,21 @@ public class VNCViewer extends JFrame {
     private VNCDisplayPanel displayPanel;
 
     public VNCViewer(String host, int port) {
+        this(host, port, null);
+    }
+
+    // recordingFile이 있으면 세션을 녹화합니다. (PlaybackViewer로 재생)
+    public VNCViewer(String host, int port, Path recordingFile) {
+        this(host, port, recordingFile, 0);
+    }
+
+    // metricsDumpSeconds가 0보다 크면 그 간격으로 세션 통계를 표준 출력에 씁니다. (JMX로는 항상 조회 가능)
+    public VNCViewer(String host, int port, Path recordingFile, int metricsDumpSeconds) {
+        this(host, port, recordingFile, metricsDumpSeconds, null);
+    }
+
+    // exportFile이 있으면 프레임버퍼를 그 파일에 메모리 맵으로 내보냅니다. (FramebufferExportReader로 읽음)
+    public VNCViewer(String host, int port, Path recordingFile, int metricsDumpSeconds, Path exportFile) {
         setTitle("Simple Java VNC Viewer");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
@@ -25,77 +43,152 @@ public class VNCViewer extends JFrame {
         add(displayPanel, BorderLayout.CENTER);
 
         rfbClient = new RFBClient(host, port, displayPanel);
+        if (recordingFile != null) {
+            rfbClient.setRecordingFile(recordingFile);
+        }
+        // 명령줄에 남지 않도록 비밀번호는 환경 변수로 받습니다.
+        rfbClient.setPassword(System.getenv("VNC_PASSWORD"));
+        rfbClient.setMetricsDumpInterval(metricsDumpSeconds);
+        rfbClient.setFramebufferExport(exportFile);
+
+        // 보기 메뉴: 화면 배율 모드 선택
+        JMenu viewMenu = new JMenu("보기");
+        ButtonGroup scaleGroup = new ButtonGroup();
+        addScaleModeItem(viewMenu, scaleGroup, "창에 맞춤", VNCDisplayPanel.ScaleMode.FIT);
+        addScaleModeItem(viewMenu, scaleGroup, "원본 크기 (1:1)", VNCDisplayPanel.ScaleMode.ONE_TO_ONE);
+        addScaleModeItem(viewMenu, scaleGroup, "정수 배율", VNCDisplayPanel.ScaleMode.INTEGER);
+        // 색상 수: 연결 중에도 바꿀 수 있습니다. (저속 회선용)
+        viewMenu.addSeparator();
+        ButtonGroup colorGroup = new ButtonGroup();
+        addColorModeItem(viewMenu, colorGroup, "서버 색상", RFBClient.ColorMode.SERVER);
+        addColorModeItem(viewMenu, colorGroup, "16비트 색상 (RGB565)", RFBClient.ColorMode.RGB565);
+        addColorModeItem(viewMenu, colorGroup, "8비트 색상 (BGR233)", RFBClient.ColorMode.BGR233);
+        JMenuBar menuBar = new JMenuBar();
+        menuBar.add(viewMenu);
+        setJMenuBar(menuBar);
+
+        attachInput(displayPanel, rfbClient);
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                rfbClient.disconnect();
+            }
+        });
 
+        pack();
+        setLocationRelativeTo(null); // 화면 중앙에 배치
+        setVisible(true);
+
+        // 연결 상태는 제목 표시줄에 표시 (끊기면 마지막 화면을 유지한 채 자동으로 다시 연결)
+        String title = getTitle();
+        rfbClient.setConnectionListener(new ConnectionListener() {
+            @Override
+            public void connected() {
+                SwingUtilities.invokeLater(() -> setTitle(title + " - " + host + ":" + port));
+            }
+
+            @Override
+            public void disconnected(String reason, boolean retrying) {
+                String state = retrying ? "다시 연결하는 중" : "연결 끊김";
+                SwingUtilities.invokeLater(() -> setTitle(title + " - " + state + " (" + reason + ")"));
+            }
+        });
+
+        // 연결 시작. 첫 연결이 실패해도 창을 닫지 않고 백그라운드에서 다시 시도합니다.
+        new Thread(() -> {
+            try {
+                rfbClient.connect();
+            } catch (IOException e) {
+                System.err.println("VNC 서버 연결 오류: " + e.getMessage());
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                        "VNC 서버 연결 오류: " + e.getMessage() + "\n백그라운드에서 계속 다시 연결합니다.",
+                        "오류", JOptionPane.ERROR_MESSAGE));
+                rfbClient.reconnect();
+            }
+        }).start();
+    }
+
+    // 패널의 마우스/키보드 입력을 서버로 보냅니다. (모니터 월에서 확대한 화면도 같은 방식)
+    static void attachInput(VNCDisplayPanel panel, RFBClient client) {
         // 마우스 리스너 추가
-        displayPanel.addMouseListener(new MouseAdapter() {
+        panel.addMouseListener(new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
-                rfbClient.sendMouseEvent(e, MouseEvent.MOUSE_PRESSED);
+                client.sendMouseEvent(e, MouseEvent.MOUSE_PRESSED);
             }
 
             @Override
             public void mouseReleased(MouseEvent e) {
-                rfbClient.sendMouseEvent(e, MouseEvent.MOUSE_RELEASED);
+                client.sendMouseEvent(e, MouseEvent.MOUSE_RELEASED);
             }
         });
-        displayPanel.addMouseMotionListener(new MouseAdapter() {
+        panel.addMouseMotionListener(new MouseAdapter() {
             @Override
             public void mouseMoved(MouseEvent e) {
-                rfbClient.sendMouseEvent(e, MouseEvent.MOUSE_MOVED);
+                client.sendMouseEvent(e, MouseEvent.MOUSE_MOVED);
             }
 
             @Override
             public void mouseDragged(MouseEvent e) {
-                rfbClient.sendMouseEvent(e, MouseEvent.MOUSE_DRAGGED);
+                client.sendMouseEvent(e, MouseEvent.MOUSE_DRAGGED);
             }
         });
 
         // 키보드 리스너 추가
-        displayPanel.addKeyListener(new KeyAdapter() {
+        panel.addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
-                rfbClient.sendKeyEvent(e, true); // Key down
+                client.sendKeyEvent(e, true); // Key down
             }
 
             @Override
             public void keyReleased(KeyEvent e) {
-                rfbClient.sendKeyEvent(e, false); // Key up
-            }
-        });
-        displayPanel.setFocusable(true); // 키보드 이벤트 받기 위함
-
-        addWindowListener(new WindowAdapter() {
-            @Override
-            public void windowClosing(WindowEvent e) {
-                rfbClient.disconnect();
+                client.sendKeyEvent(e, false); // Key up
             }
         });
+        panel.setFocusable(true); // 키보드 이벤트 받기 위함
+    }
 
-        pack();
-        setLocationRelativeTo(null); // 화면 중앙에 배치
-        setVisible(true);
+    private void addScaleModeItem(JMenu menu, ButtonGroup group, String label, VNCDisplayPanel.ScaleMode mode) {
+        JRadioButtonMenuItem item = new JRadioButtonMenuItem(label, displayPanel.getScaleMode() == mode);
+        item.addActionListener(e -> displayPanel.setScaleMode(mode));
+        group.add(item);
+        menu.add(item);
+    }
 
-        // 연결 시작
-        new Thread(() -> {
-            try {
-                rfbClient.connect();
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(this, "VNC 서버 연결 오류: " + e.getMessage(), "오류", JOptionPane.ERROR_MESSAGE);
-                e.printStackTrace();
-                System.exit(1);
-            }
-        }).start();
+    private void addColorModeItem(JMenu menu, ButtonGroup group, String label, RFBClient.ColorMode mode) {
+        JRadioButtonMenuItem item = new JRadioButtonMenuItem(label, rfbClient.getColorMode() == mode);
+        item.addActionListener(e -> rfbClient.setColorMode(mode));
+        group.add(item);
+        menu.add(item);
     }
 
     public static void main(String[] args) {
         if (args.length < 2) {
-            System.out.println("사용법: java VNCViewer <host> <port>");
+            System.out.println("사용법: java VNCViewer <host> <port> [--record <파일>] [--metrics <초>] [--export <파일>]");
             System.out.println("예시: java VNCViewer localhost 5900");
+            System.out.println("VNC 인증 비밀번호는 환경 변수 VNC_PASSWORD로 지정합니다.");
             return;
         }
         String host = args[0];
         int port = Integer.parseInt(args[1]);
+        Path recordingFile = null;
+        int metricsDumpSeconds = 0;
+        Path exportFile = null;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--record")) {
+                recordingFile = Path.of(args[i + 1]);
+            } else if (args[i].equals("--metrics")) {
+                metricsDumpSeconds = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--export")) {
+                exportFile = Path.of(args[i + 1]);
+            }
+        }
 
-        SwingUtilities.invokeLater(() -> new VNCViewer(host, port));
+        Path record = recordingFile;
+        int metricsInterval = metricsDumpSeconds;
+        Path export = exportFile;
+        SwingUtilities.invokeLater(() -> new VNCViewer(host, port, record, metricsInterval, export));
     }
 }
\ No newline at end of file
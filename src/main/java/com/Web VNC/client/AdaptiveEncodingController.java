@@ -0,0 +1,211 @@
+package com.myvnc.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+// 링크 상태에 따라 선호 인코딩, JPEG 품질, 압축 수준을 고릅니다.
+// 처리량: 충분히 큰 FramebufferUpdate의 수신 바이트 / 그동안 소켓 읽기에서 기다린 시간 (EWMA)
+//   (디코딩과 적용 시간을 넣으면 빠른 링크에서 디코더 속도를 재게 되어 압축을 더 올리는 악순환이 생깁니다)
+// 왕복 시간: 서버가 Fence를 지원하면 주기적인 Fence 요청/응답, 아니면 업데이트 요청 후 응답 시작까지의 최솟값
+//   (서버는 변경이 없으면 증분 요청의 응답을 미루므로 최근 표본의 최솟값만 왕복 시간에 가깝습니다)
+// 설정이 오락가락하지 않도록 경계에 여유를 두고, 같은 판정이 여러 번 이어지고 최소 유지 시간이 지난 뒤에만 바꿉니다.
+class AdaptiveEncodingController {
+
+    // 빠른 순서. minKbps 이상이면 해당 단계입니다.
+    enum LinkClass {
+        LAN(50_000, 5, -1, 1), // Hextile: 압축보다 CPU가 병목인 구간
+        BROADBAND(5_000, 7, 8, 2), // Tight 기본값
+        SLOW(1_000, 7, 5, 6),
+        VERY_SLOW(0, 7, 2, 9);
+
+        final int minKbps;
+        final int preferredEncoding;
+        final int jpegQuality; // -1이면 JPEG 사용 안 함 (무손실)
+        final int compressionLevel;
+
+        LinkClass(int minKbps, int preferredEncoding, int jpegQuality, int compressionLevel) {
+            this.minKbps = minKbps;
+            this.preferredEncoding = preferredEncoding;
+            this.jpegQuality = jpegQuality;
+            this.compressionLevel = compressionLevel;
+        }
+    }
+
+    private static final long EVALUATE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MIN_DWELL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final int CONFIRMATIONS = 3;
+    private static final double MARGIN = 1.25; // 경계 위아래로 25% 여유
+    private static final double EWMA_ALPHA = 0.3;
+    private static final int MIN_SAMPLE_BYTES = 16 * 1024; // 작은 업데이트는 지연이 지배해 처리량을 과소평가
+    private static final double HIGH_RTT_MILLIS = 100; // 이보다 느리면 한 단계 더 압축
+    private static final int RTT_WINDOW = 8;
+    private static final byte FENCE_MARKER = 'R';
+
+    private final RFBProtocolHandler protocolHandler;
+    private final LongSupplier bytesRead;
+    private final LongSupplier readNanos;
+    private final UpdatePacer pacer;
+    private final Consumer<LinkClass> apply;
+
+    private LinkClass current;
+    private LinkClass candidate;
+    private int candidateCount;
+    private long lastChangeNanos;
+    private long lastEvaluateNanos;
+
+    private double kbps = -1;
+    private double rttMillis = -1;
+    private final double[] requestRtts = new double[RTT_WINDOW];
+    private int requestRttCount;
+    private volatile boolean fenceRtt; // 서버가 Fence를 지원하면 그쪽 측정을 씁니다.
+
+    private long updateStartBytes;
+    private long updateStartReadNanos;
+
+    AdaptiveEncodingController(RFBProtocolHandler protocolHandler, LongSupplier bytesRead, LongSupplier readNanos, UpdatePacer pacer,
+                               LinkClass initial, Consumer<LinkClass> apply) {
+        this.protocolHandler = protocolHandler;
+        this.bytesRead = bytesRead;
+        this.readNanos = readNanos;
+        this.pacer = pacer;
+        this.apply = apply;
+        this.current = initial;
+        this.lastChangeNanos = System.nanoTime();
+        this.lastEvaluateNanos = lastChangeNanos;
+    }
+
+    // 수신 스레드: FramebufferUpdate 헤더(메시지 타입)를 읽은 직후
+    // requestedNanos: 이 업데이트가 응답한 가장 오래된 요청의 전송 시각 (UpdatePacer.takeRequestNanos, 없으면 0)
+    synchronized void onUpdateStart(long requestedNanos) {
+        long updateStartNanos = System.nanoTime();
+        // 소켓에서 읽은 바이트 기준이므로 미리 읽어 둔 만큼 오차가 있지만 EWMA로 평균됩니다.
+        updateStartBytes = bytesRead.getAsLong();
+        updateStartReadNanos = readNanos.getAsLong();
+        // Fence가 없으면 요청을 하나씩만 보내므로 짝지은 요청 시각으로 왕복 시간을 어림합니다.
+        if (!fenceRtt && !pacer.isContinuous() && requestedNanos != 0 && requestedNanos < updateStartNanos) {
+            requestRtts[requestRttCount++ % RTT_WINDOW] = (updateStartNanos - requestedNanos) / 1e6;
+        }
+    }
+
+    // 수신 스레드: FramebufferUpdate를 모두 적용한 뒤
+    void onUpdateEnd() {
+        long now = System.nanoTime();
+        synchronized (this) {
+            long bytes = bytesRead.getAsLong() - updateStartBytes;
+            long elapsed = readNanos.getAsLong() - updateStartReadNanos;
+            if (bytes >= MIN_SAMPLE_BYTES && elapsed > 0) {
+                double sample = bytes * 8.0 / (elapsed / 1e6); // bit/ms == kbit/s
+                kbps = kbps < 0 ? sample : kbps + EWMA_ALPHA * (sample - kbps);
+            }
+            if (now - lastEvaluateNanos < EVALUATE_INTERVAL_NANOS) {
+                return;
+            }
+            lastEvaluateNanos = now;
+        }
+        sendRttProbe();
+        evaluate(now);
+    }
+
+    // 서버가 Fence를 지원하면 이후 왕복 시간은 Fence로 잽니다.
+    void setFenceSupported(boolean supported) {
+        fenceRtt = supported;
+    }
+
+    // Fence 응답(REQUEST 플래그 없음). 우리가 보낸 측정용이면 true
+    boolean onFenceResponse(byte[] payload) {
+        if (payload.length != 9 || payload[0] != FENCE_MARKER) {
+            return false;
+        }
+        double sample = (System.nanoTime() - ByteBuffer.wrap(payload, 1, 8).getLong()) / 1e6;
+        synchronized (this) {
+            rttMillis = rttMillis < 0 ? sample : rttMillis + EWMA_ALPHA * (sample - rttMillis);
+        }
+        return true;
+    }
+
+    synchronized double getThroughputKbps() {
+        return kbps;
+    }
+
+    synchronized double getRttMillis() {
+        return fenceRtt ? rttMillis : minRequestRtt();
+    }
+
+    synchronized LinkClass getLinkClass() {
+        return current;
+    }
+
+    private void sendRttProbe() {
+        if (!fenceRtt) {
+            return;
+        }
+        byte[] payload = ByteBuffer.allocate(9).put(FENCE_MARKER).putLong(System.nanoTime()).array();
+        try {
+            // BlockBefore: 앞서 보낸 메시지를 모두 처리한 뒤 응답하므로 큐 지연까지 포함한 왕복 시간입니다.
+            protocolHandler.writeFence(RFBProtocolHandler.FENCE_REQUEST | RFBProtocolHandler.FENCE_BLOCK_BEFORE, payload);
+        } catch (IOException e) {
+            System.err.println("Fence 전송 오류: " + e.getMessage());
+        }
+    }
+
+    private void evaluate(long now) {
+        LinkClass next;
+        synchronized (this) {
+            if (kbps < 0) {
+                return;
+            }
+            double rtt = fenceRtt ? rttMillis : minRequestRtt();
+            // 빨라지는 쪽은 경계를 여유만큼 넘어야, 느려지는 쪽은 여유만큼 밑돌아야 바뀝니다.
+            LinkClass faster = classify(kbps / MARGIN, rtt);
+            LinkClass slower = classify(kbps * MARGIN, rtt);
+            LinkClass target = faster.ordinal() < current.ordinal() ? faster
+                    : slower.ordinal() > current.ordinal() ? slower : current;
+            if (target == current) {
+                candidate = null;
+                candidateCount = 0;
+                return;
+            }
+            if (target != candidate) {
+                candidate = target;
+                candidateCount = 0;
+            }
+            if (++candidateCount < CONFIRMATIONS || now - lastChangeNanos < MIN_DWELL_NANOS) {
+                return;
+            }
+            System.out.printf("링크 상태 변경: %s -> %s (%.0f kbps, RTT %.1f ms)%n", current, target, kbps, rtt);
+            current = target;
+            candidate = null;
+            candidateCount = 0;
+            lastChangeNanos = now;
+            next = target;
+        }
+        apply.accept(next);
+    }
+
+    private static LinkClass classify(double kbps, double rttMillis) {
+        LinkClass[] classes = LinkClass.values();
+        int i = 0;
+        while (i < classes.length - 1 && kbps < classes[i].minKbps) {
+            i++;
+        }
+        if (rttMillis > HIGH_RTT_MILLIS && i < classes.length - 1) {
+            i++;
+        }
+        return classes[i];
+    }
+
+    private double minRequestRtt() {
+        int n = Math.min(requestRttCount, RTT_WINDOW);
+        if (n == 0) {
+            return -1;
+        }
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            min = Math.min(min, requestRtts[i]);
+        }
+        return min;
+    }
+}
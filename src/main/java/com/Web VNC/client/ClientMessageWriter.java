@@ -0,0 +1,255 @@
+package com.myvnc.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 클라이언트 -> 서버 메시지 송신 파이프라인
+// 메시지는 재사용 버퍼(pending)에 인코딩되고, 전용 writer 스레드가 쌓인 배치를 한 번의 write/flush로 보냅니다.
+// 같은 버튼 마스크의 PointerEvent가 연속되면 마지막 위치만 남깁니다. 다른 메시지 뒤이거나 마스크가 바뀌면
+// 합치지 않으므로 키 이벤트와 버튼 눌림/뗌의 순서는 그대로 유지됩니다.
+// 서버가 읽지 않아 배치가 MAX_PENDING_BYTES를 넘으면 새 메시지는 writer 스레드가 배치를 가져갈 때까지 기다립니다.
+//
+// 사용법: begin() -> writeByte/writeShort/writeInt/write -> end()
+public class ClientMessageWriter implements Closeable {
+    private static final int POINTER_EVENT = 5;
+    // 아직 보내지 않은 배치의 상한. 이미 시작한 메시지(큰 ClientCutText 등)는 넘어서도 끝까지 씁니다.
+    private static final int MAX_PENDING_BYTES = 256 * 1024;
+
+    private final OutputStream out;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition hasData = lock.newCondition();
+    private final Condition hasRoom = lock.newCondition();
+
+    // lock으로 보호되는 상태
+    private byte[] pending = new byte[8192];
+    private int pendingLength;
+    private int pendingMessages;
+    private int lastPointerOffset = -1; // pending 맨 끝에 있는 PointerEvent의 위치 (-1이면 없음)
+    private byte[] sending = new byte[8192];
+    private boolean closed;
+    private IOException failure;
+    private int messageStart; // 작성 중인 메시지의 시작 위치 (통계용)
+    private volatile SessionMetrics metrics;
+
+    private final AtomicLong messagesQueued = new AtomicLong();
+    private final AtomicLong messagesSent = new AtomicLong();
+    private final AtomicLong pointerEventsCoalesced = new AtomicLong();
+    private final AtomicLong batchesSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+
+    public ClientMessageWriter(OutputStream out) {
+        this(out, null);
+    }
+
+    // threads가 있으면 writer 루프를 그 실행기에서 돌립니다. (여러 세션이 스레드를 나눠 쓰는 경우)
+    public ClientMessageWriter(OutputStream out, Executor threads) {
+        this.out = out;
+        if (threads != null) {
+            threads.execute(this::writeLoop);
+            return;
+        }
+        Thread writerThread = new Thread(this::writeLoop, "rfb-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // 메시지 하나의 시작. end()까지 다른 스레드의 메시지가 끼어들지 않습니다.
+    public void begin() throws IOException {
+        lock.lock();
+        if (lock.getHoldCount() == 1) {
+            awaitRoom(); // 묶음 안에서는 기다리지 않음 (기다리는 동안 잠금이 풀려 다른 메시지가 끼어듦)
+        }
+        if (failure != null || closed) {
+            IOException cause = failure;
+            lock.unlock();
+            throw new IOException("메시지 전송 파이프라인이 닫혔습니다.", cause);
+        }
+        messageStart = pendingLength;
+    }
+
+    // 여러 메시지를 다른 스레드의 메시지가 끼어들지 않게 이어서 보낼 때 begin()/end() 묶음을 감쌉니다.
+    public void beginSequence() {
+        lock.lock();
+        if (lock.getHoldCount() == 1) {
+            awaitRoom();
+        }
+    }
+
+    public void endSequence() {
+        lock.unlock();
+    }
+
+    public void writeByte(int v) {
+        ensure(1);
+        pending[pendingLength++] = (byte) v;
+    }
+
+    public void writeShort(int v) {
+        ensure(2);
+        pending[pendingLength++] = (byte) (v >>> 8);
+        pending[pendingLength++] = (byte) v;
+    }
+
+    public void writeInt(int v) {
+        ensure(4);
+        pending[pendingLength++] = (byte) (v >>> 24);
+        pending[pendingLength++] = (byte) (v >>> 16);
+        pending[pendingLength++] = (byte) (v >>> 8);
+        pending[pendingLength++] = (byte) v;
+    }
+
+    public void write(byte[] b) {
+        ensure(b.length);
+        System.arraycopy(b, 0, pending, pendingLength, b.length);
+        pendingLength += b.length;
+    }
+
+    // ASCII 문자열 (DataOutputStream.writeBytes와 같이 각 문자의 하위 바이트)
+    public void writeBytes(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            pending[pendingLength++] = (byte) s.charAt(i);
+        }
+    }
+
+    // 메시지의 끝. writer 스레드를 깨웁니다.
+    public void end() {
+        finish(-1);
+    }
+
+    // PointerEvent: 아직 전송되지 않은 배치의 마지막 메시지가 같은 마스크의 PointerEvent면 좌표만 덮어씁니다.
+    public void writePointerEvent(int buttonMask, int x, int y) throws IOException {
+        begin();
+        if (lastPointerOffset >= 0 && (pending[lastPointerOffset + 1] & 0xFF) == (buttonMask & 0xFF)) {
+            pending[lastPointerOffset + 2] = (byte) (x >>> 8);
+            pending[lastPointerOffset + 3] = (byte) x;
+            pending[lastPointerOffset + 4] = (byte) (y >>> 8);
+            pending[lastPointerOffset + 5] = (byte) y;
+            pointerEventsCoalesced.incrementAndGet();
+            lock.unlock();
+            return;
+        }
+        int offset = pendingLength;
+        writeByte(POINTER_EVENT); // Message type: PointerEvent
+        writeByte(buttonMask); // Button mask
+        writeShort(x);
+        writeShort(y);
+        finish(offset);
+    }
+
+    // 메시지 타입별 송신 바이트 통계 (null이면 끔). 합쳐진 PointerEvent는 보내지 않으므로 세지 않습니다.
+    void setMetrics(SessionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public long getMessagesQueued() {
+        return messagesQueued.get();
+    }
+
+    public long getMessagesSent() {
+        return messagesSent.get();
+    }
+
+    public long getPointerEventsCoalesced() {
+        return pointerEventsCoalesced.get();
+    }
+
+    public long getBatchesSent() {
+        return batchesSent.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            hasData.signal();
+            hasRoom.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finish(int pointerOffset) {
+        SessionMetrics m = metrics;
+        if (m != null && pendingLength > messageStart) {
+            m.messageOut(pending[messageStart], pendingLength - messageStart);
+        }
+        lastPointerOffset = pointerOffset;
+        pendingMessages++;
+        messagesQueued.incrementAndGet();
+        hasData.signal();
+        lock.unlock();
+    }
+
+    // lock을 쥔 상태에서 호출. 배치가 상한 아래로 내려가거나 파이프라인이 닫힐 때까지 기다립니다.
+    private void awaitRoom() {
+        while (pendingLength >= MAX_PENDING_BYTES && !closed) {
+            hasRoom.awaitUninterruptibly();
+        }
+    }
+
+    private void ensure(int n) {
+        if (pendingLength + n > pending.length) {
+            byte[] grown = new byte[Math.max(pending.length * 2, pendingLength + n)];
+            System.arraycopy(pending, 0, grown, 0, pendingLength);
+            pending = grown;
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            int length;
+            int messages;
+            lock.lock();
+            try {
+                while (pendingLength == 0 && !closed) {
+                    hasData.awaitUninterruptibly();
+                }
+                if (pendingLength == 0) {
+                    return; // 닫혔고 보낼 것이 없음
+                }
+                // 이중 버퍼: 쌓인 배치를 가져가고 빈 버퍼를 돌려줍니다.
+                byte[] batch = pending;
+                pending = sending;
+                sending = batch;
+                length = pendingLength;
+                messages = pendingMessages;
+                pendingLength = 0;
+                pendingMessages = 0;
+                lastPointerOffset = -1;
+                hasRoom.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                out.write(sending, 0, length);
+                out.flush();
+            } catch (IOException e) {
+                lock.lock();
+                try {
+                    failure = e;
+                    closed = true;
+                    hasRoom.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                System.err.println("메시지 전송 오류: " + e.getMessage());
+                return;
+            }
+            messagesSent.addAndGet(messages);
+            batchesSent.incrementAndGet();
+            bytesSent.addAndGet(length);
+        }
+    }
+}
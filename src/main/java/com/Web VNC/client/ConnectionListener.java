@@ -0,0 +1,10 @@
+package com.myvnc.client;
+
+// 연결 상태가 바뀔 때 호출됩니다. (수신/재연결 스레드)
+public interface ConnectionListener {
+    // 핸드셰이크를 마치고 업데이트를 요청하기 시작했을 때 (재연결 포함)
+    void connected();
+
+    // 연결이 끊겼거나 재연결 시도가 실패했을 때. retrying이면 자동 재연결을 계속 시도합니다.
+    void disconnected(String reason, boolean retrying);
+}
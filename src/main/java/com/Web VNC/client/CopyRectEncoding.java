@@ -0,0 +1,57 @@
+package com.myvnc.client;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+// CopyRect 인코딩 (type 1)
+// 프레임버퍼의 다른 위치(srcX, srcY)에서 사각형을 복사합니다. 스크롤과 창 이동이 이 경로로 옵니다.
+class CopyRectEncoding implements RFBEncoding {
+    @Override
+    public int getEncodingType() {
+        return 1; // CopyRect encoding type
+    }
+
+    @Override
+    public void decode(DataInputStream in, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        copy(image, in.readUnsignedShort(), in.readUnsignedShort(), x, y, width, height);
+    }
+
+    @Override
+    public void decode(RFBChannelReader reader, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        copy(image, reader.readU16(), reader.readU16(), x, y, width, height);
+    }
+
+    // 원본 좌표 4바이트. 프레임버퍼를 읽으므로 독립적이지 않습니다. (파이프라인이 앞선 사각형을 기다림)
+    @Override
+    public boolean readPayload(DataInputStream in, RectPayload payload, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        payload.read(in, 4);
+        return true;
+    }
+
+    private void copy(BufferedImage image, int srcX, int srcY, int x, int y, int width, int height) {
+        // 원본과 대상 모두 프레임버퍼 안에 들어가도록 잘라냅니다.
+        int left = Math.max(Math.max(-x, -srcX), 0);
+        int top = Math.max(Math.max(-y, -srcY), 0);
+        int right = Math.min(Math.min(image.getWidth() - x, image.getWidth() - srcX), width);
+        int bottom = Math.min(Math.min(image.getHeight() - y, image.getHeight() - srcY), height);
+        int w = right - left;
+        if (w <= 0 || bottom <= top) {
+            return;
+        }
+
+        int[] pixels = RasterAccess.pixels(image);
+        int stride = RasterAccess.stride(image);
+        // 원본과 대상이 겹칠 수 있으므로 아래로 옮길 때는 아래 행부터 복사합니다.
+        // (같은 행 안의 겹침은 System.arraycopy가 처리합니다)
+        if (srcY < y) {
+            for (int row = bottom - 1; row >= top; row--) {
+                System.arraycopy(pixels, (srcY + row) * stride + srcX + left, pixels, (y + row) * stride + x + left, w);
+            }
+        } else {
+            for (int row = top; row < bottom; row++) {
+                System.arraycopy(pixels, (srcY + row) * stride + srcX + left, pixels, (y + row) * stride + x + left, w);
+            }
+        }
+    }
+}
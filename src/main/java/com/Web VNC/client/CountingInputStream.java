@@ -0,0 +1,52 @@
+package com.myvnc.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// 소켓에서 읽은 바이트 수와 읽기에서 기다린 시간을 셉니다. (스트림 수신 경로의 처리량 측정용, NIO 경로는 RFBChannelReader가 셈)
+final class CountingInputStream extends FilterInputStream {
+    private volatile long count;
+    private volatile long readNanos;
+
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int b = super.read();
+        readNanos += System.nanoTime() - start;
+        if (b >= 0) {
+            count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        int n = super.read(b, off, len);
+        readNanos += System.nanoTime() - start;
+        if (n > 0) {
+            count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getReadNanos() {
+        return readNanos;
+    }
+}
@@ -0,0 +1,90 @@
+package com.myvnc.client;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Cursor 의사 인코딩 (-239)
+// 사각형의 x, y는 핫스팟, 데이터는 width x height 픽셀과 행마다 바이트 경계로 패딩된 1비트 마스크입니다.
+// 서버가 커서를 프레임버퍼에 그리지 않으므로 클라이언트가 로컬에서 오버레이로 그립니다.
+// 같은 모양이 반복해서 오는 경우가 많아 (텍스트 커서 <-> 화살표) 원본 바이트의 해시로 변환 결과를 캐시합니다.
+class CursorEncoding implements RFBEncoding {
+    private static final int CACHE_SIZE = 32;
+
+    private final CursorListener listener;
+    private final Map<Long, BufferedImage> cache = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private byte[] buffer = new byte[0];
+    private RFBPixelFormat cachedFormat;
+    private PixelConverter converter;
+
+    CursorEncoding(CursorListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public int getEncodingType() {
+        return -239; // Cursor pseudo-encoding
+    }
+
+    @Override
+    public void decode(DataInputStream in, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        if (width == 0 || height == 0) {
+            listener.cursorShapeChanged(null, x, y);
+            return;
+        }
+        if (pixelFormat != cachedFormat) {
+            // 변환 결과가 포맷에 따라 달라지므로 캐시도 비웁니다.
+            converter = PixelConverter.forFormat(pixelFormat);
+            cachedFormat = pixelFormat;
+            cache.clear();
+        }
+        int pixelBytes = width * height * converter.bytesPerPixel;
+        int maskRowBytes = (width + 7) / 8;
+        int total = pixelBytes + maskRowBytes * height;
+        if (buffer.length < total) {
+            buffer = new byte[total];
+        }
+        in.readFully(buffer, 0, total);
+
+        long key = contentHash(buffer, total, width, height);
+        BufferedImage shape = cache.get(key);
+        if (shape == null) {
+            shape = toImage(width, height, pixelBytes, maskRowBytes);
+            cache.put(key, shape);
+        }
+        listener.cursorShapeChanged(shape, x, y);
+    }
+
+    private BufferedImage toImage(int width, int height, int pixelBytes, int maskRowBytes) {
+        BufferedImage shape = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] argb = new int[width];
+        for (int row = 0; row < height; row++) {
+            converter.convertRow(buffer, row * width * converter.bytesPerPixel, argb, 0, width);
+            int mask = pixelBytes + row * maskRowBytes;
+            for (int col = 0; col < width; col++) {
+                boolean visible = ((buffer[mask + (col >> 3)] >> (7 - (col & 7))) & 1) != 0;
+                argb[col] = visible ? 0xFF000000 | argb[col] : 0;
+            }
+            shape.setRGB(0, row, width, 1, argb, 0, width);
+        }
+        return shape;
+    }
+
+    // 64비트 FNV-1a (크기 포함)
+    private static long contentHash(byte[] data, int length, int width, int height) {
+        long h = 0xcbf29ce484222325L;
+        h = (h ^ width) * 0x100000001b3L;
+        h = (h ^ height) * 0x100000001b3L;
+        for (int i = 0; i < length; i++) {
+            h = (h ^ (data[i] & 0xFF)) * 0x100000001b3L;
+        }
+        return h;
+    }
+}
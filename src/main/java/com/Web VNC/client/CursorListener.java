@@ -0,0 +1,12 @@
+package com.myvnc.client;
+
+import java.awt.image.BufferedImage;
+
+// Cursor / PointerPos 의사 인코딩 수신 시 호출됩니다. (수신 스레드)
+public interface CursorListener {
+    // shape가 null이면 커서를 숨깁니다. 같은 모양은 캐시된 같은 이미지 인스턴스로 전달됩니다.
+    void cursorShapeChanged(BufferedImage shape, int hotX, int hotY);
+
+    // 서버가 알려준 포인터 위치 (프레임버퍼 좌표)
+    void cursorMoved(int x, int y);
+}
@@ -0,0 +1,79 @@
+package com.myvnc.client;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+// 프레임버퍼에서 변경된(다시 그려야 하는) 영역의 모음
+// 겹치거나 맞닿는 사각형은 합치고, 개수가 MAX_RECTS를 넘으면 전체 경계 하나로 줄입니다.
+// 수신 스레드가 채우고 EDT가 비우므로 모든 메서드는 동기화되어 있습니다.
+public class DamageRegion {
+    private static final int MAX_RECTS = 32;
+
+    private final List<Rectangle> rects = new ArrayList<>();
+
+    public synchronized void add(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        Rectangle merged = new Rectangle(x, y, width, height);
+        // 합친 결과가 다른 사각형과 다시 겹칠 수 있으므로 더 이상 합칠 것이 없을 때까지 반복
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = rects.size() - 1; i >= 0; i--) {
+                Rectangle r = rects.get(i);
+                if (touches(r, merged)) {
+                    merged = merged.union(r);
+                    rects.remove(i);
+                    changed = true;
+                }
+            }
+        }
+        rects.add(merged);
+        if (rects.size() > MAX_RECTS) {
+            Rectangle bounds = getBoundsLocked();
+            rects.clear();
+            rects.add(bounds);
+        }
+    }
+
+    public void add(Rectangle r) {
+        add(r.x, r.y, r.width, r.height);
+    }
+
+    // other의 영역을 모두 옮겨 옵니다. (other는 비워짐)
+    public void addAll(DamageRegion other) {
+        for (Rectangle r : other.drain()) {
+            add(r);
+        }
+    }
+
+    // 현재 영역을 반환하고 비웁니다.
+    public synchronized List<Rectangle> drain() {
+        List<Rectangle> result = new ArrayList<>(rects);
+        rects.clear();
+        return result;
+    }
+
+    public synchronized boolean isEmpty() {
+        return rects.isEmpty();
+    }
+
+    public synchronized Rectangle getBounds() {
+        return getBoundsLocked();
+    }
+
+    private Rectangle getBoundsLocked() {
+        Rectangle bounds = null;
+        for (Rectangle r : rects) {
+            bounds = bounds == null ? new Rectangle(r) : bounds.union(r);
+        }
+        return bounds == null ? new Rectangle() : bounds;
+    }
+
+    private static boolean touches(Rectangle a, Rectangle b) {
+        return a.x <= b.x + b.width && b.x <= a.x + a.width
+                && a.y <= b.y + b.height && b.y <= a.y + a.height;
+    }
+}
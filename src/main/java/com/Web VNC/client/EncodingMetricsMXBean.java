@@ -0,0 +1,6 @@
+package com.myvnc.client;
+
+// 인코딩 하나의 통계: 사각형 수(= 히스토그램 기록 수), 픽셀 수, 사각형당 디코딩 시간
+public interface EncodingMetricsMXBean extends LatencyHistogramMXBean {
+    long getPixels();
+}
@@ -0,0 +1,167 @@
+package com.myvnc.client;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// 프레임버퍼를 메모리 맵 파일로 내보내 다른 로컬 프로세스(OCR, 스크린샷 비교 등)가 복사 없이 읽게 합니다.
+// 디코더는 힙의 int[] 래스터에 직접 쓰므로 매핑 위에 프레임버퍼를 둘 수 없고, 업데이트마다 변경된 사각형만 매핑으로 복사합니다.
+//
+// 파일 구조 (모든 값 리틀 엔디언)
+//   0  int   매직 'WVFB' (0x42465657)
+//   4  int   버전 (1)
+//   8  long  시퀀스: 쓰는 동안 홀수, 업데이트 하나를 다 쓰면 짝수 (seqlock)
+//   16 int   너비, 20 int 높이, 24 int 줄 간격(픽셀)
+//   28 int   상태 비트: 1 = 연결됨, 2 = 오래된 화면 (재연결 중), 4 = 파일이 새로 바뀜 (다시 열어야 함)
+//   32 16B   픽셀 포맷 (RFB PIXEL_FORMAT: 32bpp, 깊이 24, 리틀 엔디언 0x00RRGGBB)
+//   48 int   변경 영역 링 크기, 52 int 예약
+//   56 long  지금까지 링에 쓴 사각형 수 (다음 항목 번호)
+//   64       링 항목 × 크기: int x, y, 너비, 높이, long 시퀀스(그 사각형을 쓴 업데이트의 짝수 시퀀스)
+//   4096~    픽셀 (줄 간격 × 높이 × 4바이트)
+//
+// 읽는 쪽: 시퀀스 s1(짝수여야 함)을 읽고, 링과 픽셀을 읽은 뒤 시퀀스 s2를 다시 읽어 s1과 같으면 일관된 프레임입니다.
+// 마지막으로 본 사각형 번호부터 현재 번호까지만 다시 처리하면 되고, 그 차이가 링 크기보다 크면 전체 화면을 다시 읽습니다.
+// 크기가 바뀌면 새 파일을 만들어 이름을 바꿔 끼우고 이전 파일에 4번 비트를 켭니다. (열려 있는 매핑을 줄이지 않음)
+public class FramebufferExport implements AutoCloseable {
+    public static final int MAGIC = 0x42465657; // "WVFB"
+    public static final int VERSION = 1;
+    public static final int STATE_CONNECTED = 1;
+    public static final int STATE_STALE = 2;
+    public static final int STATE_REPLACED = 4;
+
+    static final int OFFSET_SEQUENCE = 8;
+    static final int OFFSET_WIDTH = 16;
+    static final int OFFSET_HEIGHT = 20;
+    static final int OFFSET_STRIDE = 24;
+    static final int OFFSET_STATE = 28;
+    static final int OFFSET_PIXEL_FORMAT = 32;
+    static final int OFFSET_RING_SIZE = 48;
+    static final int OFFSET_RING_HEAD = 56;
+    static final int OFFSET_RING = 64;
+    static final int RING_ENTRY_BYTES = 24;
+    static final int RING_SIZE = 160; // 64 + 160 * 24 <= 4096
+    static final int OFFSET_PIXELS = 4096;
+
+    // 다른 프로세스가 시퀀스와 데이터의 순서를 보도록 시퀀스는 volatile 접근으로 씁니다.
+    static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path file;
+    private MappedByteBuffer map;
+    private IntBuffer pixels;
+    private int width;
+    private int height;
+    private long sequence;
+    private long ringHead;
+    private int state;
+
+    public FramebufferExport(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // 연결(또는 크기 변경) 시 수신 스레드에서. 크기가 같으면 매핑을 유지하고 전체 화면을 다시 씁니다.
+    void setFramebuffer(BufferedImage framebuffer) throws IOException {
+        if (map == null || framebuffer.getWidth() != width || framebuffer.getHeight() != height) {
+            map(framebuffer.getWidth(), framebuffer.getHeight());
+        }
+        publish(framebuffer, List.of(new Rectangle(0, 0, width, height)));
+    }
+
+    private void map(int width, int height) throws IOException {
+        long size = OFFSET_PIXELS + (long) width * height * 4;
+        // 다른 프로세스가 매핑 중인 파일을 줄이면 그쪽이 SIGBUS로 죽으므로 항상 새 파일을 만들어 바꿔 끼웁니다.
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        MappedByteBuffer created;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            created = channel.map(FileChannel.MapMode.READ_WRITE, 0, size); // 매핑은 채널을 닫아도 유효
+        }
+        created.order(ByteOrder.LITTLE_ENDIAN);
+        MappedByteBuffer previous = map;
+        map = created;
+        pixels = map.slice(OFFSET_PIXELS, (int) (size - OFFSET_PIXELS)).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        this.width = width;
+        this.height = height;
+        sequence = 0;
+        ringHead = 0;
+        map.putInt(0, MAGIC);
+        map.putInt(4, VERSION);
+        map.putInt(OFFSET_WIDTH, width);
+        map.putInt(OFFSET_HEIGHT, height);
+        map.putInt(OFFSET_STRIDE, width);
+        map.putInt(OFFSET_STATE, state);
+        ByteArrayOutputStream format = new ByteArrayOutputStream(16);
+        SessionRecorder.writePixelFormat(new DataOutputStream(format), RFBPixelFormat.rgb888());
+        map.put(OFFSET_PIXEL_FORMAT, format.toByteArray());
+        map.putInt(OFFSET_RING_SIZE, RING_SIZE);
+        LONGS.setVolatile(map, OFFSET_RING_HEAD, 0L);
+        LONGS.setVolatile(map, OFFSET_SEQUENCE, 0L);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (previous != null) {
+            previous.putInt(OFFSET_STATE, STATE_REPLACED);
+        }
+    }
+
+    // 수신 스레드: 업데이트 하나를 적용한 뒤 변경된 사각형을 복사하고 링에 기록합니다.
+    void publish(BufferedImage framebuffer, List<Rectangle> damage) {
+        if (map == null || damage.isEmpty()) {
+            return;
+        }
+        LONGS.setVolatile(map, OFFSET_SEQUENCE, ++sequence); // 홀수: 쓰는 중
+        VarHandle.storeStoreFence(); // 아래 픽셀 쓰기가 홀수 시퀀스보다 먼저 보이지 않도록
+        int[] src = RasterAccess.pixels(framebuffer);
+        int srcStride = RasterAccess.stride(framebuffer);
+        long frameSequence = sequence + 1;
+        for (Rectangle r : damage) {
+            Rectangle c = r.intersection(new Rectangle(0, 0, width, height));
+            if (c.isEmpty()) {
+                continue;
+            }
+            for (int row = c.y; row < c.y + c.height; row++) {
+                pixels.put(row * width + c.x, src, row * srcStride + c.x, c.width);
+            }
+            int entry = OFFSET_RING + (int) (ringHead % RING_SIZE) * RING_ENTRY_BYTES;
+            map.putInt(entry, c.x);
+            map.putInt(entry + 4, c.y);
+            map.putInt(entry + 8, c.width);
+            map.putInt(entry + 12, c.height);
+            map.putLong(entry + 16, frameSequence);
+            ringHead++;
+        }
+        map.putLong(OFFSET_RING_HEAD, ringHead);
+        LONGS.setVolatile(map, OFFSET_SEQUENCE, ++sequence); // 짝수: 일관된 프레임
+    }
+
+    // 연결 상태 표시 (STATE_* 비트)
+    void setState(int state) {
+        this.state = state;
+        if (map != null) {
+            map.putInt(OFFSET_STATE, state);
+        }
+    }
+
+    // 파일은 남겨 두어 읽는 쪽이 마지막 프레임을 계속 볼 수 있게 합니다.
+    @Override
+    public void close() {
+        setState(0);
+        if (map != null) {
+            map.force();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.myvnc.client;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// FramebufferExport 파일을 읽는 쪽 (다른 JVM의 OCR/스크린샷 비교 도구용). 파일 구조는 FramebufferExport 참고
+// 픽셀을 직접 보려면 beginRead() -> getPixels() 읽기 -> endRead()가 true인지 확인하고,
+// 바뀐 부분만 자기 버퍼로 가져오려면 readChanges()를 씁니다. 매핑은 별도로 닫지 않고 GC가 해제합니다.
+public class FramebufferExportReader {
+    private static final int SPIN_LIMIT = 1000;
+
+    private final MappedByteBuffer map;
+    private final IntBuffer pixels;
+    private final int width;
+    private final int height;
+    private final int ringSize;
+    private long seenRingHead = -1; // 아직 한 번도 읽지 않았으면 -1
+
+    public FramebufferExportReader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (map.getInt(0) != FramebufferExport.MAGIC || map.getInt(4) != FramebufferExport.VERSION) {
+            throw new IOException("프레임버퍼 내보내기 파일이 아닙니다: " + file);
+        }
+        width = map.getInt(FramebufferExport.OFFSET_WIDTH);
+        height = map.getInt(FramebufferExport.OFFSET_HEIGHT);
+        ringSize = map.getInt(FramebufferExport.OFFSET_RING_SIZE);
+        pixels = map.slice(FramebufferExport.OFFSET_PIXELS, map.capacity() - FramebufferExport.OFFSET_PIXELS)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // FramebufferExport.STATE_* 비트. STATE_REPLACED면 닫고 다시 열어야 합니다.
+    public int getState() {
+        return map.getInt(FramebufferExport.OFFSET_STATE);
+    }
+
+    // 0x00RRGGBB, 줄 간격 = 너비 (읽기 전용 매핑 그대로)
+    public IntBuffer getPixels() {
+        return pixels.duplicate();
+    }
+
+    // 쓰는 중이 아닐 때의 시퀀스 (짝수)
+    public long beginRead() {
+        for (int spin = 0; ; spin++) {
+            long sequence = (long) FramebufferExport.LONGS.getVolatile(map, FramebufferExport.OFFSET_SEQUENCE);
+            if ((sequence & 1) == 0) {
+                return sequence;
+            }
+            if (spin >= SPIN_LIMIT) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    // beginRead() 이후 읽은 내용이 한 업데이트 안에서 일관되면 true
+    public boolean endRead(long sequence) {
+        VarHandle.loadLoadFence();
+        return (long) FramebufferExport.LONGS.getVolatile(map, FramebufferExport.OFFSET_SEQUENCE) == sequence;
+    }
+
+    // 마지막 호출 이후 바뀐 사각형만 dst(너비 × 높이)에 복사하고 그 목록을 돌려줍니다.
+    // 첫 호출이거나 링이 넘쳐 놓친 영역이 있으면 전체 화면 하나를 돌려줍니다.
+    public List<Rectangle> readChanges(int[] dst) {
+        while (true) {
+            long sequence = beginRead();
+            long head = map.getLong(FramebufferExport.OFFSET_RING_HEAD);
+            List<Rectangle> changed = new ArrayList<>();
+            if (seenRingHead < 0 || head - seenRingHead > ringSize || head < seenRingHead) {
+                changed.add(new Rectangle(0, 0, width, height));
+            } else {
+                for (long i = seenRingHead; i < head; i++) {
+                    int entry = FramebufferExport.OFFSET_RING + (int) (i % ringSize) * FramebufferExport.RING_ENTRY_BYTES;
+                    changed.add(new Rectangle(map.getInt(entry), map.getInt(entry + 4),
+                            map.getInt(entry + 8), map.getInt(entry + 12)));
+                }
+            }
+            Rectangle screen = new Rectangle(0, 0, width, height);
+            for (Rectangle entry : changed) {
+                Rectangle r = entry.intersection(screen); // 쓰는 도중 읽은 항목은 값이 깨졌을 수 있음 (endRead에서 버림)
+                for (int row = r.y; row < r.y + r.height; row++) {
+                    pixels.get(row * width + r.x, dst, row * width + r.x, r.width);
+                }
+            }
+            if (endRead(sequence)) {
+                seenRingHead = head;
+                return changed;
+            }
+        }
+    }
+}
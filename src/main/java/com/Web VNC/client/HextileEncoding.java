@@ -0,0 +1,161 @@
+package com.myvnc.client;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+// Hextile 인코딩 (type 5)
+// 16x16 타일마다 서브인코딩 마스크가 붙습니다. 배경/전경색은 같은 사각형 안의 다음 타일로 이어집니다.
+class HextileEncoding implements RFBEncoding {
+    private static final int TILE_SIZE = 16;
+    private static final int RAW = 1;
+    private static final int BACKGROUND_SPECIFIED = 2;
+    private static final int FOREGROUND_SPECIFIED = 4;
+    private static final int ANY_SUBRECTS = 8;
+    private static final int SUBRECTS_COLOURED = 16;
+
+    // 타일 하나의 최대 크기: raw 16x16x4 또는 하위 사각형 255 x (4 + 2) 중 큰 쪽
+    private final byte[] buffer = new byte[Math.max(TILE_SIZE * TILE_SIZE * 4, 255 * (4 + 2))];
+    private final int[] rowPixels = new int[TILE_SIZE];
+    private RFBPixelFormat cachedFormat;
+    private PixelConverter converter;
+    // decode 동안의 입력 (스트림 또는 수신 버퍼) - fetch() 참고
+    private DataInputStream in;
+    private RFBChannelReader reader;
+    private byte[] src;
+
+    @Override
+    public int getEncodingType() {
+        return 5; // Hextile encoding type
+    }
+
+    @Override
+    public void decode(DataInputStream in, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        this.in = in;
+        this.reader = null;
+        decodeRect(image, x, y, width, height, pixelFormat);
+    }
+
+    @Override
+    public void decode(RFBChannelReader reader, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        this.in = null;
+        this.reader = reader;
+        decodeRect(image, x, y, width, height, pixelFormat);
+    }
+
+    private void decodeRect(BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        if (pixelFormat != cachedFormat) {
+            converter = PixelConverter.forFormat(pixelFormat);
+            cachedFormat = pixelFormat;
+        }
+        int bpp = converter.bytesPerPixel;
+        int[] pixels = RasterAccess.pixels(image);
+        int stride = RasterAccess.stride(image);
+        int background = 0;
+        int foreground = 0;
+
+        for (int ty = y; ty < y + height; ty += TILE_SIZE) {
+            int th = Math.min(TILE_SIZE, y + height - ty);
+            for (int tx = x; tx < x + width; tx += TILE_SIZE) {
+                int tw = Math.min(TILE_SIZE, x + width - tx);
+                int offset = fetch(1);
+                int mask = src[offset] & 0xFF;
+
+                if ((mask & RAW) != 0) {
+                    int rowBytes = tw * bpp;
+                    int p = fetch(rowBytes * th);
+                    for (int row = 0; row < th; row++) {
+                        converter.convertRow(src, p + row * rowBytes, rowPixels, 0, tw);
+                        putRow(image, pixels, stride, tx, ty + row, tw);
+                    }
+                    continue;
+                }
+
+                if ((mask & BACKGROUND_SPECIFIED) != 0) {
+                    offset = fetch(bpp);
+                    background = converter.toRGB(src, offset);
+                }
+                if ((mask & FOREGROUND_SPECIFIED) != 0) {
+                    offset = fetch(bpp);
+                    foreground = converter.toRGB(src, offset);
+                }
+                RasterAccess.fill(image, pixels, stride, tx, ty, tw, th, background);
+
+                if ((mask & ANY_SUBRECTS) != 0) {
+                    offset = fetch(1);
+                    int count = src[offset] & 0xFF;
+                    boolean coloured = (mask & SUBRECTS_COLOURED) != 0;
+                    int entrySize = coloured ? bpp + 2 : 2;
+                    int p = fetch(count * entrySize);
+                    int color = foreground;
+                    for (int i = 0; i < count; i++) {
+                        if (coloured) {
+                            color = converter.toRGB(src, p);
+                            p += bpp;
+                        }
+                        int xy = src[p++] & 0xFF;
+                        int wh = src[p++] & 0xFF;
+                        int sx = xy >> 4;
+                        int sy = xy & 0x0F;
+                        RasterAccess.fill(image, pixels, stride, tx + sx, ty + sy,
+                                Math.min((wh >> 4) + 1, tw - sx), Math.min((wh & 0x0F) + 1, th - sy), color);
+                    }
+                }
+            }
+        }
+    }
+
+    // 타일 헤더만 따라가며 길이를 계산합니다. (픽셀 변환 없음)
+    @Override
+    public boolean readPayload(DataInputStream in, RectPayload payload, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        int bpp = pixelFormat.bitsPerPixel / 8;
+        for (int ty = 0; ty < height; ty += TILE_SIZE) {
+            int th = Math.min(TILE_SIZE, height - ty);
+            for (int tx = 0; tx < width; tx += TILE_SIZE) {
+                int tw = Math.min(TILE_SIZE, width - tx);
+                int mask = payload.readU8(in);
+                if ((mask & RAW) != 0) {
+                    payload.read(in, tw * th * bpp);
+                    continue;
+                }
+                int n = ((mask & BACKGROUND_SPECIFIED) != 0 ? bpp : 0) + ((mask & FOREGROUND_SPECIFIED) != 0 ? bpp : 0);
+                if (n > 0) {
+                    payload.read(in, n);
+                }
+                if ((mask & ANY_SUBRECTS) != 0) {
+                    int count = payload.readU8(in);
+                    payload.read(in, count * ((mask & SUBRECTS_COLOURED) != 0 ? bpp + 2 : 2));
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isIndependent(RectPayload payload) {
+        return true;
+    }
+
+    // n바이트를 읽어 src 배열 안의 시작 위치를 반환 (수신 버퍼 경로는 복사 없음)
+    private int fetch(int n) throws IOException {
+        if (reader != null) {
+            int offset = reader.take(n);
+            src = reader.array();
+            return offset;
+        }
+        in.readFully(buffer, 0, n);
+        src = buffer;
+        return 0;
+    }
+
+    private void putRow(BufferedImage image, int[] pixels, int stride, int x, int row, int width) {
+        if (row < 0 || row >= image.getHeight()) {
+            return;
+        }
+        int x0 = Math.max(x, 0);
+        int x1 = Math.min(x + width, image.getWidth());
+        if (x1 > x0) {
+            System.arraycopy(rowPixels, x0 - x, pixels, row * stride + x0, x1 - x0);
+        }
+    }
+}
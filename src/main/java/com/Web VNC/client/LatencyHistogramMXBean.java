@@ -0,0 +1,20 @@
+package com.myvnc.client;
+
+// JMX로 공개하는 지연 시간 히스토그램 (단위: 마이크로초)
+public interface LatencyHistogramMXBean {
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP90Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
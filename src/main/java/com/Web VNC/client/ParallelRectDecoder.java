@@ -0,0 +1,371 @@
+package com.myvnc.client;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// FramebufferUpdate의 사각형을 여러 스레드에서 디코딩하는 파이프라인
+// 1) 파싱 (수신 스레드): 사각형 데이터를 RFBEncoding.readPayload()로 RectPayload에 모읍니다.
+//    NIO 경로는 수신 버퍼를 그대로 가리키고(peek), 다른 스레드로 넘기는 사각형만 재사용 버퍼로 한 번 복사합니다.
+// 2) 디코딩: 독립적인 사각형(RRE, Hextile, Tight fill/JPEG)은 작업 스레드 풀에서,
+//    세션 zlib 스트림을 쓰는 사각형(ZRLE, Tight basic)은 순서 보장용 단일 스레드에서 원래 인스턴스로 디코딩합니다.
+//    CopyRect는 프레임버퍼를 읽으므로 겹치는 앞선 사각형이 끝난 뒤 수신 스레드에서 바로 적용합니다.
+//    Raw와 작은 사각형은 넘기는 비용이 디코딩보다 크므로 수신 스레드에서 바로 디코딩합니다.
+// 겹치는 사각형은 RFB 순서대로 적용되도록 먼저 들어온 작업을 기다리고,
+// 모든 사각형이 적용된 뒤에 decodeUpdate()가 반환하므로 화면 갱신/다음 요청은 프레임 단위로 일어납니다.
+// 프레임버퍼 잠금은 사각형 하나를 쓰는 동안만 잡으므로, 수신 스레드가 다음 사각형을 받는 동안에는 쥐고 있지 않습니다.
+public class ParallelRectDecoder {
+    // 이보다 작은 사각형은 작업 전달 비용이 더 크므로 수신 스레드에서 바로 디코딩합니다.
+    private static final int INLINE_PIXELS = 64 * 64;
+    // 재사용할 RectPayload 수의 상한 (업데이트 하나에 동시에 걸린 사각형 수만큼만 필요)
+    private static final int MAX_FREE_PAYLOADS = 64;
+
+    private final ExecutorService workers;
+    private final ExecutorService orderedLane;
+    // 작업 스레드마다 따로 쓰는 디코더 (인코딩 인스턴스는 내부 버퍼가 있어 공유할 수 없음)
+    private final Map<Integer, Supplier<RFBEncoding>> factories;
+    private final ThreadLocal<Map<Integer, RFBEncoding>> localDecoders = ThreadLocal.withInitial(HashMap::new);
+    // 아직 끝나지 않았을 수 있는 사각형 작업 (수신 스레드만 접근)
+    private final List<Pending> inFlight = new ArrayList<>();
+    // 작업이 끝난 뒤 돌려받은 버퍼와 NIO 경로의 수신 버퍼 뷰 (수신 스레드만 접근)
+    private final ArrayDeque<RectPayload> freePayloads = new ArrayDeque<>();
+    private final RectPayload view = new RectPayload();
+    private volatile TileCache tileCache; // null이면 캐시 없이 디코딩
+    private volatile SessionMetrics metrics; // null이면 디코딩 시간을 기록하지 않음
+    // 사각형 하나를 쓰는 동안 잡는 잠금 (작업 스레드끼리 공유할 수 있어야 함)
+    private volatile Lock framebufferLock = new ReentrantReadWriteLock().readLock();
+
+    private static final class Pending {
+        final Rectangle bounds;
+        final RectPayload payload; // 작업이 끝나면 freePayloads로 돌아감
+        final Future<?> future;
+
+        Pending(Rectangle bounds, RectPayload payload, Future<?> future) {
+            this.bounds = bounds;
+            this.payload = payload;
+            this.future = future;
+        }
+    }
+
+    public ParallelRectDecoder(int threads, Map<Integer, Supplier<RFBEncoding>> factories) {
+        this.factories = factories;
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "rfb-decoder-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.orderedLane = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "rfb-decoder-ordered");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void setTileCache(TileCache tileCache) {
+        this.tileCache = tileCache;
+    }
+
+    // SharedFramebuffer.decoderLock()
+    public void setFramebufferLock(Lock framebufferLock) {
+        this.framebufferLock = framebufferLock;
+    }
+
+    // 작업 스레드에서 디코딩한 사각형은 작업 스레드의 실행 시간을 기록합니다. (대기열에서 기다린 시간 제외)
+    public void setMetrics(SessionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // 패딩부터 마지막 사각형까지 읽고, 모든 사각형이 프레임버퍼에 적용된 뒤 반환합니다.
+    public void decodeUpdate(DataInputStream in, RFBPixelFormat pixelFormat, Map<Integer, RFBEncoding> encodingMap,
+                             BufferedImage image, DamageRegion damage) throws IOException {
+        decodeUpdate(in, null, pixelFormat, encodingMap, image, damage);
+    }
+
+    // NIO 경로: 헤더와 사각형 데이터를 수신 버퍼에서 바로 파싱합니다.
+    public void decodeUpdate(RFBChannelReader reader, RFBPixelFormat pixelFormat, Map<Integer, RFBEncoding> encodingMap,
+                             BufferedImage image, DamageRegion damage) throws IOException {
+        decodeUpdate(reader.asDataInputStream(), reader, pixelFormat, encodingMap, image, damage);
+    }
+
+    // reader가 null이 아니면 in은 같은 수신 버퍼 위의 스트림 어댑터입니다.
+    private void decodeUpdate(DataInputStream in, RFBChannelReader reader, RFBPixelFormat pixelFormat,
+                              Map<Integer, RFBEncoding> encodingMap, BufferedImage image, DamageRegion damage) throws IOException {
+        int numRectangles;
+        if (reader != null) {
+            ByteBuffer header = reader.require(3);
+            header.get(); // Padding
+            numRectangles = header.getShort() & 0xFFFF;
+        } else {
+            in.readUnsignedByte(); // Padding
+            numRectangles = in.readUnsignedShort();
+        }
+        try {
+            for (int i = 0; i < numRectangles; i++) {
+                int x;
+                int y;
+                int width;
+                int height;
+                int encodingType;
+                if (reader != null) {
+                    ByteBuffer header = reader.require(12);
+                    x = header.getShort() & 0xFFFF;
+                    y = header.getShort() & 0xFFFF;
+                    width = header.getShort() & 0xFFFF;
+                    height = header.getShort() & 0xFFFF;
+                    encodingType = header.getInt();
+                } else {
+                    x = in.readUnsignedShort();
+                    y = in.readUnsignedShort();
+                    width = in.readUnsignedShort();
+                    height = in.readUnsignedShort();
+                    encodingType = in.readInt();
+                }
+
+                RFBEncoding encoding = encodingMap.get(encodingType);
+                if (encoding == null) {
+                    System.err.println("지원되지 않는 인코딩: " + encodingType);
+                    throw new IOException("Unsupported encoding: " + encodingType);
+                }
+                SessionMetrics m = metrics;
+                long start = m != null ? m.decodeClock() : 0;
+                if (encodingType < 0) {
+                    // 의사 인코딩(커서 등)은 프레임버퍼를 건드리지 않으므로 바로 처리
+                    if (reader != null) {
+                        encoding.decode(reader, image, x, y, width, height, pixelFormat);
+                    } else {
+                        encoding.decode(in, image, x, y, width, height, pixelFormat);
+                    }
+                    if (m != null) {
+                        m.rectDecoded(encodingType, width, height, m.decodeClock() - start);
+                    }
+                    continue;
+                }
+                Rectangle bounds = new Rectangle(x, y, width, height);
+                if (encoding instanceof RawEncoding) {
+                    // Raw는 변환이 곧 복사라 모아서 넘기면 복사만 한 번 더 하므로 스캔라인 단위로 바로 씁니다.
+                    awaitOverlapping(bounds);
+                    RawEncoding raw = (RawEncoding) encoding;
+                    if (reader != null) {
+                        raw.decode(reader, image, x, y, width, height, pixelFormat, framebufferLock);
+                    } else {
+                        raw.decode(in, image, x, y, width, height, pixelFormat, framebufferLock);
+                    }
+                    if (m != null) {
+                        m.rectDecoded(encodingType, width, height, m.decodeClock() - start);
+                    }
+                    if (damage != null) {
+                        damage.add(bounds);
+                    }
+                    continue;
+                }
+                RectPayload payload;
+                if (reader != null) {
+                    view.peek(reader);
+                    payload = view;
+                } else {
+                    payload = acquirePayload();
+                }
+                if (!encoding.readPayload(in, payload, width, height, pixelFormat)) {
+                    // 길이를 모르는 인코딩: 모든 작업이 끝난 뒤 스트림에서 바로 디코딩 (이때만 잠금 중에 읽음)
+                    release(payload);
+                    awaitAll();
+                    start = m != null ? m.decodeClock() : 0;
+                    Lock lock = framebufferLock;
+                    lock.lock();
+                    try {
+                        if (reader != null) {
+                            encoding.decode(reader, image, x, y, width, height, pixelFormat);
+                        } else {
+                            encoding.decode(in, image, x, y, width, height, pixelFormat);
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (m != null) {
+                        m.rectDecoded(encodingType, width, height, m.decodeClock() - start);
+                    }
+                } else if (encodingType == 1) {
+                    // CopyRect: 원본과 대상 영역을 건드리는 앞선 사각형을 기다림
+                    awaitOverlapping(bounds);
+                    awaitOverlapping(new Rectangle(payload.getU16(0), payload.getU16(2), width, height));
+                    start = m != null ? System.nanoTime() : 0;
+                    Lock lock = framebufferLock;
+                    lock.lock();
+                    try {
+                        encoding.decode(payload, image, x, y, width, height, pixelFormat);
+                    } finally {
+                        lock.unlock();
+                    }
+                    if (m != null) {
+                        m.rectDecoded(encodingType, width, height, System.nanoTime() - start);
+                    }
+                    finish(payload, reader);
+                } else if (factories.containsKey(encodingType) && encoding.isIndependent(payload)) {
+                    awaitOverlapping(bounds);
+                    if ((long) width * height < INLINE_PIXELS) {
+                        decodeLocal(encodingType, payload, image, x, y, width, height, pixelFormat);
+                        finish(payload, reader);
+                    } else {
+                        RectPayload owned = detach(payload, reader);
+                        inFlight.add(new Pending(bounds, owned, workers.submit(
+                                () -> decodeLocal(encodingType, owned, image, x, y, width, height, pixelFormat))));
+                    }
+                } else {
+                    awaitOverlapping(bounds);
+                    RectPayload owned = detach(payload, reader);
+                    inFlight.add(new Pending(bounds, owned, orderedLane.submit(() -> {
+                        long laneStart = System.nanoTime();
+                        Lock lock = framebufferLock;
+                        lock.lock();
+                        try {
+                            encoding.decode(owned, image, x, y, width, height, pixelFormat);
+                        } finally {
+                            lock.unlock();
+                        }
+                        if (m != null) {
+                            m.rectDecoded(encodingType, width, height, System.nanoTime() - laneStart);
+                        }
+                        return null;
+                    })));
+                }
+                if (damage != null) {
+                    damage.add(bounds);
+                }
+            }
+            awaitAll();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RejectedExecutionException e) {
+            // disconnect()가 수신 스레드보다 먼저 작업 스레드를 멈춘 경우
+            throw new IOException("사각형 디코더가 종료되었습니다.", e);
+        } finally {
+            // 오류로 빠져나가더라도 남은 작업이 다음 프레임과 섞이지 않도록 정리
+            // (아직 돌고 있을 수 있는 작업의 버퍼는 재사용하지 않고 버림)
+            for (Pending p : inFlight) {
+                p.future.cancel(false);
+            }
+            inFlight.clear();
+        }
+    }
+
+    private RectPayload acquirePayload() {
+        RectPayload payload = freePayloads.poll();
+        if (payload == null) {
+            return new RectPayload();
+        }
+        payload.reset();
+        return payload;
+    }
+
+    private void release(RectPayload payload) {
+        if (payload != view && freePayloads.size() < MAX_FREE_PAYLOADS) {
+            freePayloads.push(payload);
+        }
+    }
+
+    // 다른 스레드로 넘길 payload: 수신 버퍼를 가리키고 있으면 재사용 버퍼로 복사하고 수신 버퍼에서는 소비합니다.
+    private RectPayload detach(RectPayload payload, RFBChannelReader reader) throws IOException {
+        if (payload != view) {
+            return payload;
+        }
+        RectPayload owned = acquirePayload();
+        owned.copyFrom(view);
+        reader.take(view.length);
+        return owned;
+    }
+
+    // 수신 스레드에서 디코딩을 마친 payload 정리
+    private void finish(RectPayload payload, RFBChannelReader reader) throws IOException {
+        if (payload == view) {
+            reader.take(view.length);
+        } else {
+            release(payload);
+        }
+    }
+
+    private void decodeLocal(int encodingType, RectPayload payload, BufferedImage image,
+                             int x, int y, int width, int height, RFBPixelFormat pixelFormat) {
+        RFBEncoding decoder = localDecoders.get().computeIfAbsent(encodingType, type -> factories.get(type).get());
+        TileCache cache = tileCache;
+        SessionMetrics m = metrics;
+        Lock lock = framebufferLock;
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            if (cache != null) {
+                cache.decode(decoder, encodingType, payload, image, x, y, width, height, pixelFormat);
+            } else {
+                decoder.decode(payload, image, x, y, width, height, pixelFormat);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+        if (m != null) {
+            m.rectDecoded(encodingType, width, height, System.nanoTime() - start);
+        }
+    }
+
+    private void awaitOverlapping(Rectangle bounds) throws IOException {
+        for (int i = inFlight.size() - 1; i >= 0; i--) {
+            Pending p = inFlight.get(i);
+            if (p.future.isDone() || p.bounds.intersects(bounds)) {
+                await(p);
+                inFlight.remove(i);
+                release(p.payload);
+            }
+        }
+    }
+
+    private void awaitAll() throws IOException {
+        for (Pending p : inFlight) {
+            await(p);
+        }
+        for (Pending p : inFlight) {
+            release(p.payload);
+        }
+        inFlight.clear();
+    }
+
+    private static void await(Pending p) throws IOException {
+        try {
+            p.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("사각형 디코딩 대기 중 인터럽트", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("사각형 디코딩 실패: " + cause, cause);
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+        orderedLane.shutdownNow();
+    }
+}
@@ -0,0 +1,327 @@
+package com.myvnc.client;
+
+// 협상된 RFBPixelFormat의 픽셀 바이트를 0x00RRGGBB(TYPE_INT_RGB)로 변환합니다.
+// 픽셀마다 포맷을 해석하지 않도록 forFormat()에서 포맷에 특화된 구현을 한 번만 고릅니다.
+abstract class PixelConverter {
+
+    final int bytesPerPixel;
+
+    PixelConverter(int bytesPerPixel) {
+        this.bytesPerPixel = bytesPerPixel;
+    }
+
+    // src[off]부터 한 픽셀을 읽어 RGB 값으로 반환
+    abstract int toRGB(byte[] src, int off);
+
+    // 스캔라인 단위 변환 (count 픽셀). 하위 클래스가 루프를 특화합니다.
+    void convertRow(byte[] src, int srcOff, int[] dst, int dstOff, int count) {
+        for (int i = 0; i < count; i++) {
+            dst[dstOff + i] = toRGB(src, srcOff);
+            srcOff += bytesPerPixel;
+        }
+    }
+
+    // 같은 포맷 객체에는 같은 변환기를 돌려줍니다. (16bpp 테이블은 256KB이므로 디코더마다 만들지 않음)
+    static PixelConverter forFormat(RFBPixelFormat pf) {
+        synchronized (pf) {
+            if (pf.converter == null) {
+                pf.converter = create(pf);
+            }
+            return pf.converter;
+        }
+    }
+
+    private static PixelConverter create(RFBPixelFormat pf) {
+        switch (pf.bitsPerPixel) {
+            case 32:
+                if (pf.redMax == 255 && pf.greenMax == 255 && pf.blueMax == 255) {
+                    if (pf.redShift == 16 && pf.greenShift == 8 && pf.blueShift == 0) {
+                        return pf.bigEndianFlag ? new Direct32BE() : new Direct32LE();
+                    }
+                    return new Shift32(pf);
+                }
+                return new Lut32(pf);
+            case 16:
+                return new Lut16(pf);
+            case 8:
+                return new Lut8(pf);
+            default:
+                throw new IllegalArgumentException("지원되지 않는 bitsPerPixel: " + pf.bitsPerPixel);
+        }
+    }
+
+    // ZRLE/Tight의 CPIXEL: 32bpp 트루컬러이고 depth가 24 이하이면 3바이트로 압축되어 전송됩니다.
+    static PixelConverter forCompactFormat(RFBPixelFormat pf) {
+        if (pf.trueColorFlag && pf.bitsPerPixel == 32 && pf.depth <= 24) {
+            return new Compact24(pf);
+        }
+        return forFormat(pf);
+    }
+
+    // Tight의 TPIXEL: 32bpp, depth 24, 8비트 채널이면 바이트 순서와 무관하게 R, G, B 3바이트로 전송됩니다.
+    static PixelConverter forTightFormat(RFBPixelFormat pf) {
+        if (isTightRgb24(pf)) {
+            return new Rgb24();
+        }
+        return forFormat(pf);
+    }
+
+    static boolean isTightRgb24(RFBPixelFormat pf) {
+        return pf.trueColorFlag && pf.bitsPerPixel == 32 && pf.depth == 24
+                && pf.redMax == 255 && pf.greenMax == 255 && pf.blueMax == 255;
+    }
+
+    // 채널 값(0..max)을 0..255로 확장하는 테이블
+    static int[] channelTable(int max) {
+        int[] table = new int[max + 1];
+        for (int v = 0; v <= max; v++) {
+            table[v] = max == 0 ? 0 : (v * 255 + max / 2) / max;
+        }
+        return table;
+    }
+
+    // 포맷에 맞춰 원시 픽셀 값을 RGB로 변환 (테이블 생성용, 느린 경로)
+    static int rawToRGB(RFBPixelFormat pf, int p, int[] rt, int[] gt, int[] bt) {
+        int r = rt[(p >>> pf.redShift) & pf.redMax];
+        int g = gt[(p >>> pf.greenShift) & pf.greenMax];
+        int b = bt[(p >>> pf.blueShift) & pf.blueMax];
+        return (r << 16) | (g << 8) | b;
+    }
+
+    // 32bpp, 8비트 채널, 표준 시프트(16/8/0) - 빅 엔디언
+    static final class Direct32BE extends PixelConverter {
+        Direct32BE() {
+            super(4);
+        }
+
+        @Override
+        int toRGB(byte[] src, int off) {
+            return ((src[off + 1] & 0xFF) << 16) | ((src[off + 2] & 0xFF) << 8) | (src[off + 3] & 0xFF);
+        }
+
+        @Override
+        void convertRow(byte[] src, int srcOff, int[] dst, int dstOff, int count) {
+            int end = dstOff + count;
+            for (int d = dstOff; d < end; d++, srcOff += 4) {
+                dst[d] = ((src[srcOff + 1] & 0xFF) << 16) | ((src[srcOff + 2] & 0xFF) << 8) | (src[srcOff + 3] & 0xFF);
+            }
+        }
+    }
+
+    // 32bpp, 8비트 채널, 표준 시프트(16/8/0) - 리틀 엔디언 (가장 흔한 서버 기본값)
+    static final class Direct32LE extends PixelConverter {
+        Direct32LE() {
+            super(4);
+        }
+
+        @Override
+        int toRGB(byte[] src, int off) {
+            return ((src[off + 2] & 0xFF) << 16) | ((src[off + 1] & 0xFF) << 8) | (src[off] & 0xFF);
+        }
+
+        @Override
+        void convertRow(byte[] src, int srcOff, int[] dst, int dstOff, int count) {
+            int end = dstOff + count;
+            for (int d = dstOff; d < end; d++, srcOff += 4) {
+                dst[d] = ((src[srcOff + 2] & 0xFF) << 16) | ((src[srcOff + 1] & 0xFF) << 8) | (src[srcOff] & 0xFF);
+            }
+        }
+    }
+
+    // 32bpp, 8비트 채널, 임의의 시프트
+    static final class Shift32 extends PixelConverter {
+        private final boolean bigEndian;
+        private final int redShift;
+        private final int greenShift;
+        private final int blueShift;
+
+        Shift32(RFBPixelFormat pf) {
+            super(4);
+            this.bigEndian = pf.bigEndianFlag;
+            this.redShift = pf.redShift;
+            this.greenShift = pf.greenShift;
+            this.blueShift = pf.blueShift;
+        }
+
+        @Override
+        int toRGB(byte[] src, int off) {
+            int p = read32(src, off, bigEndian);
+            return (((p >>> redShift) & 0xFF) << 16) | (((p >>> greenShift) & 0xFF) << 8) | ((p >>> blueShift) & 0xFF);
+        }
+    }
+
+    // 32bpp, 8비트가 아닌 채널 (예: 10비트 depth 30) - 채널별 테이블
+    static final class Lut32 extends PixelConverter {
+        private final boolean bigEndian;
+        private final RFBPixelFormat pf;
+        private final int[] redTable;
+        private final int[] greenTable;
+        private final int[] blueTable;
+
+        Lut32(RFBPixelFormat pf) {
+            super(4);
+            this.bigEndian = pf.bigEndianFlag;
+            this.pf = pf;
+            this.redTable = channelTable(pf.redMax);
+            this.greenTable = channelTable(pf.greenMax);
+            this.blueTable = channelTable(pf.blueMax);
+        }
+
+        @Override
+        int toRGB(byte[] src, int off) {
+            return rawToRGB(pf, read32(src, off, bigEndian), redTable, greenTable, blueTable);
+        }
+    }
+
+    // 3바이트 CPIXEL. 색상 비트가 하위 3바이트에 들어가면 상위 바이트를, 아니면 하위 바이트를 생략한 형태입니다.
+    static final class Compact24 extends PixelConverter {
+        private final boolean bigEndian;
+        private final int shift; // 3바이트 값을 32비트 픽셀 값으로 되돌리는 시프트 (0 또는 8)
+        private final RFBPixelFormat pf;
+        private final int[] redTable;
+        private final int[] greenTable;
+        private final int[] blueTable;
+
+        Compact24(RFBPixelFormat pf) {
+            super(3);
+            this.bigEndian = pf.bigEndianFlag;
+            this.pf = pf;
+            boolean fitsInLow3Bytes = ((pf.redMax << pf.redShift) < (1 << 24))
+                    && ((pf.greenMax << pf.greenShift) < (1 << 24))
+                    && ((pf.blueMax << pf.blueShift) < (1 << 24));
+            boolean fitsInHigh3Bytes = pf.redShift > 7 && pf.greenShift > 7 && pf.blueShift > 7;
+            this.shift = (!fitsInLow3Bytes && fitsInHigh3Bytes) ? 8 : 0;
+            this.redTable = channelTable(pf.redMax);
+            this.greenTable = channelTable(pf.greenMax);
+            this.blueTable = channelTable(pf.blueMax);
+        }
+
+        @Override
+        int toRGB(byte[] src, int off) {
+            int p = bigEndian
+                    ? ((src[off] & 0xFF) << 16) | ((src[off + 1] & 0xFF) << 8) | (src[off + 2] & 0xFF)
+                    : ((src[off + 2] & 0xFF) << 16) | ((src[off + 1] & 0xFF) << 8) | (src[off] & 0xFF);
+            return rawToRGB(pf, p << shift, redTable, greenTable, blueTable);
+        }
+    }
+
+    // R, G, B 순서의 3바이트 픽셀 (Tight TPIXEL)
+    static final class Rgb24 extends PixelConverter {
+        Rgb24() {
+            super(3);
+        }
+
+        @Override
+        int toRGB(byte[] src, int off) {
+            return ((src[off] & 0xFF) << 16) | ((src[off + 1] & 0xFF) << 8) | (src[off + 2] & 0xFF);
+        }
+
+        @Override
+        void convertRow(byte[] src, int srcOff, int[] dst, int dstOff, int count) {
+            int end = dstOff + count;
+            for (int d = dstOff; d < end; d++, srcOff += 3) {
+                dst[d] = ((src[srcOff] & 0xFF) << 16) | ((src[srcOff + 1] & 0xFF) << 8) | (src[srcOff + 2] & 0xFF);
+            }
+        }
+    }
+
+    // 16bpp - 가능한 모든 픽셀 값(65536개)을 미리 변환한 테이블로 한 번에 조회
+    static final class Lut16 extends PixelConverter {
+        private final boolean bigEndian;
+        final int[] table = new int[65536];
+
+        Lut16(RFBPixelFormat pf) {
+            super(2);
+            this.bigEndian = pf.bigEndianFlag;
+            if (pf.trueColorFlag) {
+                int[] rt = channelTable(pf.redMax);
+                int[] gt = channelTable(pf.greenMax);
+                int[] bt = channelTable(pf.blueMax);
+                for (int p = 0; p < table.length; p++) {
+                    table[p] = rawToRGB(pf, p, rt, gt, bt);
+                }
+            }
+            // 컬러맵 모드는 SetColourMapEntries로 채워집니다.
+        }
+
+        @Override
+        int toRGB(byte[] src, int off) {
+            return bigEndian
+                    ? table[((src[off] & 0xFF) << 8) | (src[off + 1] & 0xFF)]
+                    : table[((src[off + 1] & 0xFF) << 8) | (src[off] & 0xFF)];
+        }
+
+        @Override
+        void convertRow(byte[] src, int srcOff, int[] dst, int dstOff, int count) {
+            int end = dstOff + count;
+            if (bigEndian) {
+                for (int d = dstOff; d < end; d++, srcOff += 2) {
+                    dst[d] = table[((src[srcOff] & 0xFF) << 8) | (src[srcOff + 1] & 0xFF)];
+                }
+            } else {
+                for (int d = dstOff; d < end; d++, srcOff += 2) {
+                    dst[d] = table[((src[srcOff + 1] & 0xFF) << 8) | (src[srcOff] & 0xFF)];
+                }
+            }
+        }
+    }
+
+    // 8bpp - 256개 항목 테이블
+    static final class Lut8 extends PixelConverter {
+        final int[] table = new int[256];
+
+        Lut8(RFBPixelFormat pf) {
+            super(1);
+            if (pf.trueColorFlag) {
+                int[] rt = channelTable(pf.redMax);
+                int[] gt = channelTable(pf.greenMax);
+                int[] bt = channelTable(pf.blueMax);
+                for (int p = 0; p < table.length; p++) {
+                    table[p] = rawToRGB(pf, p, rt, gt, bt);
+                }
+            } else {
+                // 컬러맵 모드: SetColourMapEntries를 받기 전까지는 회색조로 표시
+                for (int p = 0; p < table.length; p++) {
+                    table[p] = (p << 16) | (p << 8) | p;
+                }
+            }
+        }
+
+        @Override
+        int toRGB(byte[] src, int off) {
+            return table[src[off] & 0xFF];
+        }
+
+        @Override
+        void convertRow(byte[] src, int srcOff, int[] dst, int dstOff, int count) {
+            int end = dstOff + count;
+            for (int d = dstOff; d < end; d++) {
+                dst[d] = table[src[srcOff++] & 0xFF];
+            }
+        }
+    }
+
+    // SetColourMapEntries: 컬러맵 모드 포맷의 테이블 항목을 바꿉니다. (트루컬러 포맷이면 false)
+    static boolean setColourMapEntry(RFBPixelFormat pf, int index, int rgb) {
+        if (pf.trueColorFlag) {
+            return false;
+        }
+        PixelConverter converter = forFormat(pf);
+        int[] table = converter instanceof Lut8 ? ((Lut8) converter).table
+                : converter instanceof Lut16 ? ((Lut16) converter).table : null;
+        if (table == null || index >= table.length) {
+            return false;
+        }
+        table[index] = rgb;
+        return true;
+    }
+
+    static int read32(byte[] src, int off, boolean bigEndian) {
+        if (bigEndian) {
+            return ((src[off] & 0xFF) << 24) | ((src[off + 1] & 0xFF) << 16)
+                    | ((src[off + 2] & 0xFF) << 8) | (src[off + 3] & 0xFF);
+        }
+        return ((src[off + 3] & 0xFF) << 24) | ((src[off + 2] & 0xFF) << 16)
+                | ((src[off + 1] & 0xFF) << 8) | (src[off] & 0xFF);
+    }
+}
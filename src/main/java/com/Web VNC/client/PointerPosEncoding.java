@@ -0,0 +1,24 @@
+package com.myvnc.client;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+
+// PointerPos 의사 인코딩 (-232)
+// 사각형의 x, y가 서버 쪽 포인터 위치입니다. 데이터는 없습니다.
+class PointerPosEncoding implements RFBEncoding {
+    private final CursorListener listener;
+
+    PointerPosEncoding(CursorListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public int getEncodingType() {
+        return -232; // PointerPos pseudo-encoding
+    }
+
+    @Override
+    public void decode(DataInputStream in, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) {
+        listener.cursorMoved(x, y);
+    }
+}
@@ -0,0 +1,163 @@
+package com.myvnc.client;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+// SocketChannel 위의 RFB 수신 버퍼
+// 큰 힙 ByteBuffer 하나를 재사용하며, 메시지 헤더와 사각형 데이터를 버퍼 안에서 그대로 파싱합니다.
+// 힙 버퍼이므로 디코더는 array()와 take()가 돌려준 위치로 PixelConverter에 바로 넘길 수 있습니다.
+// take()/slice()로 받은 위치나 슬라이스는 다음 require()/take()/slice() 호출 전까지만 유효합니다.
+public class RFBChannelReader {
+    private final ReadableByteChannel channel;
+    private final int capacity; // 평소 버퍼 크기. 큰 사각형 때문에 키웠으면 다 소비한 뒤 이 크기로 되돌림
+    private ByteBuffer buffer; // 항상 읽기 모드 (position = 다음에 읽을 위치, limit = 받은 데이터 끝)
+    private final DataInputStream stream;
+    private long bytesRead;
+    private volatile long readNanos; // 채널 읽기에서 기다린 시간 (디코딩 시간에서 네트워크 대기를 빼는 데 씀)
+    private SessionRecorder recorder; // 세션 녹화 중이면 채널에서 읽은 바이트를 그대로 넘김
+
+    public RFBChannelReader(ReadableByteChannel channel, int capacity) {
+        this.channel = channel;
+        this.capacity = capacity;
+        this.buffer = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        this.stream = new DataInputStream(new BufferInputStream());
+    }
+
+    // n바이트 이상이 버퍼에 남아 있도록 채우고 버퍼를 반환합니다. (position은 움직이지 않음)
+    public ByteBuffer require(int n) throws IOException {
+        if (n < 0) {
+            throw new IOException("잘못된 읽기 길이: " + n);
+        }
+        if (buffer.remaining() >= n) {
+            return buffer;
+        }
+        if (buffer.capacity() < n) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(n, buffer.capacity() * 2));
+            grown.put(buffer);
+            buffer = grown;
+        } else if (buffer.capacity() > capacity && n <= capacity) {
+            // 키운 버퍼의 큰 사각형은 이미 소비했으므로 (남은 바이트 < n) 평소 크기로 되돌립니다.
+            // 세션이 많을 때 사각형 하나 때문에 커진 버퍼를 계속 쥐고 있지 않도록
+            ByteBuffer shrunk = ByteBuffer.allocate(capacity);
+            shrunk.put(buffer);
+            buffer = shrunk;
+        } else {
+            buffer.compact();
+        }
+        // 쓰기 모드: 필요한 만큼 찰 때까지 채널에서 읽음 (가능하면 버퍼 여유분만큼 한꺼번에)
+        while (buffer.position() < n) {
+            long start = System.nanoTime();
+            int read = channel.read(buffer);
+            readNanos += System.nanoTime() - start;
+            if (read < 0) {
+                buffer.flip();
+                throw new EOFException("서버 연결이 끊어졌습니다.");
+            }
+            bytesRead += read;
+            if (recorder != null) {
+                recorder.data(buffer.array(), buffer.arrayOffset() + buffer.position() - read, read);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // n바이트를 소비하고 array() 안에서의 시작 위치를 반환합니다.
+    public int take(int n) throws IOException {
+        require(n);
+        int offset = buffer.arrayOffset() + buffer.position();
+        buffer.position(buffer.position() + n);
+        return offset;
+    }
+
+    // take() 이후에 다시 조회해야 합니다. (버퍼가 커지면 배열이 바뀜)
+    public byte[] array() {
+        return buffer.array();
+    }
+
+    // n바이트짜리 읽기 전용 뷰 (데이터 복사 없음)
+    public ByteBuffer slice(int n) throws IOException {
+        require(n);
+        ByteBuffer slice = buffer.slice();
+        slice.limit(n);
+        buffer.position(buffer.position() + n);
+        return slice;
+    }
+
+    public int readU8() throws IOException {
+        return require(1).get() & 0xFF;
+    }
+
+    public int readU16() throws IOException {
+        return require(2).getShort() & 0xFFFF;
+    }
+
+    public int readS32() throws IOException {
+        return require(4).getInt();
+    }
+
+    // 버퍼 기반 디코드를 구현하지 않은 인코딩을 위한 스트림 어댑터 (같은 버퍼를 공유)
+    public DataInputStream asDataInputStream() {
+        return stream;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    long getReadNanos() {
+        return readNanos;
+    }
+
+    // 녹화 시작: 이미 받아 둔(아직 소비하지 않은) 바이트부터 기록합니다. (수신 스레드에서 호출)
+    void setRecorder(SessionRecorder recorder) {
+        recorder.data(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        this.recorder = recorder;
+    }
+
+    // 받았지만 아직 소비하지 않은 바이트 수
+    int getBuffered() {
+        return buffer.remaining();
+    }
+
+    private class BufferInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                try {
+                    require(1);
+                } catch (EOFException e) {
+                    return -1;
+                }
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                try {
+                    require(1);
+                } catch (EOFException e) {
+                    return -1;
+                }
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
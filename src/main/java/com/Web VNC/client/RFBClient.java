@@ -2,99 +2,735 @@ package com.myvnc.client;
 
 import com.myvnc.ui.VNCDisplayPanel;
 
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 public class RFBClient {
+    private static final int NIO_BUFFER_SIZE = 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final long RECONNECT_INITIAL_MS = 250;
+    private static final long RECONNECT_MAX_MS = 30_000;
+    private static final byte SECURITY_NONE = 1;
+    private static final byte SECURITY_VNC_AUTH = 2;
+
+    // 서버에 요청할 픽셀 포맷 (대역폭과 색 품질의 절충)
+    public enum ColorMode {
+        SERVER, // ServerInit의 포맷 그대로 (보통 32bpp)
+        RGB565, // 16bpp
+        BGR233 // 8bpp
+    }
+
     private String host;
     private int port;
     private Socket socket;
     private DataInputStream in;
     private DataOutputStream out;
-    private RFBProtocolHandler protocolHandler;
-    private VNCDisplayPanel displayPanel;
+    private volatile RFBProtocolHandler protocolHandler; // 재연결하면 바뀜
+    private volatile VNCDisplayPanel displayPanel; // null이면 헤드리스 (모니터 월 타일은 확대할 때만 붙임)
     private BufferedImage remoteFramebuffer;
-    private RFBPixelFormat serverPixelFormat;
+    private RFBPixelFormat serverPixelFormat; // 현재 디코딩에 쓰는 포맷 (SetPixelFormat으로 요청한 포맷)
+    private RFBPixelFormat nativePixelFormat; // ServerInit에서 받은 서버 포맷
+    private volatile ColorMode colorMode = ColorMode.SERVER;
     private Map<Integer, RFBEncoding> supportedEncodings;
+    private final DamageRegion frameDamage = new DamageRegion(); // 업데이트 하나 동안 누적된 변경 영역
+    private final SharedFramebuffer sharedFramebuffer = new SharedFramebuffer(); // 읽기 전용 구독자용
+    private int jpegQuality = 8; // Tight JPEG 품질 (0~9, -1이면 JPEG 사용 안 함)
+    private int compressionLevel = 2; // Tight/ZRLE 압축 수준 (0~9, -1이면 서버 기본값)
+
+    private volatile boolean running; // connect()부터 disconnect()까지 (재연결 중 포함)
+    private volatile boolean connected; // 핸드셰이크를 마친 세션이 있음 (입력 전송 가능)
+    private volatile boolean stale; // 끊긴 뒤 아직 새 업데이트를 받지 못한 화면
+    private boolean autoReconnect = true;
+    private volatile String password; // VNC Authentication용 (null이면 보안 없음 서버에만 접속)
+    private volatile ConnectionListener connectionListener;
+    private final AtomicBoolean reconnecting = new AtomicBoolean();
+    private final Object reconnectLock = new Object();
+    private final Object encodingsLock = new Object(); // 선호 인코딩/품질/압축 수준과 그 SetEncodings 전송
+    // Cursor/PointerPos 디코더는 항상 두고, 그때 붙어 있는 패널로 넘깁니다. (모니터 월 타일은 확대할 때 패널이 생김)
+    private final CursorListener cursorRouter = new CursorListener() {
+        @Override
+        public void cursorShapeChanged(BufferedImage shape, int hotX, int hotY) {
+            VNCDisplayPanel panel = displayPanel;
+            if (panel != null) {
+                panel.cursorShapeChanged(shape, hotX, hotY);
+            }
+        }
 
-    private ScheduledExecutorService updateScheduler; // 주기적인 화면 업데이트 요청 스케줄러
+        @Override
+        public void cursorMoved(int x, int y) {
+            VNCDisplayPanel panel = displayPanel;
+            if (panel != null) {
+                panel.cursorMoved(x, y);
+            }
+        }
+    };
+    private long lostNanos; // 연결이 끊긴 시각 (재연결 후 첫 화면까지의 시간)
+    private int negotiatedMinor; // 마지막으로 성공한 핸드셰이크 (0이면 없음, 재연결 파이프라이닝에 사용)
+    private byte negotiatedSecurity;
+    private int preferredEncoding = 7; // 마지막으로 보낸 SetEncodings의 선호 인코딩
+    private AdaptiveEncodingController.LinkClass linkClass = AdaptiveEncodingController.LinkClass.BROADBAND;
+
+    private volatile UpdatePacer updatePacer; // 화면 업데이트 요청 페이싱
+    private int maxRequestsInFlight = 1; // 동시에 대기시킬 FramebufferUpdateRequest 수
+    private int maxFps; // 0이면 제한 없음
+    private volatile boolean serverSupportsFence;
+    private boolean useNio = true; // false면 기존 Socket 스트림 경로
+    // 사각형 디코딩 작업 스레드 수 (0이면 수신 스레드에서 순서대로 디코딩)
+    private int decodeThreads = Math.min(4, Runtime.getRuntime().availableProcessors() - 1);
+    private ParallelRectDecoder parallelDecoder;
+    private boolean adaptiveEncoding = true; // 링크 상태에 따라 인코딩/품질 자동 조정
+    private AdaptiveEncodingController adaptiveController;
+    private LongSupplier bytesRead; // 소켓에서 읽은 누적 바이트 (처리량 측정)
+    private LongSupplier readNanos; // 소켓 읽기에서 기다린 누적 시간 (처리량 측정)
+    private long tileCacheBudget = 32L << 20; // 디코딩 결과 캐시 메모리 (0이면 끔)
+    private TileCache tileCache;
+    private Path recordingFile; // null이면 녹화하지 않음
+    private SessionRecorder recorder;
+    private int recordingSegment; // 재연결마다 하나씩 늘어나는 녹화 파일 번호
+    private FramebufferExport framebufferExport; // null이면 내보내지 않음
+    private IntSupplier bufferedBytes; // 받았지만 아직 처리하지 않은 바이트 (녹화 스트림 위치 계산)
+    private RFBChannelReader channelReader; // NIO 경로
+    private RecordingInputStream recordingStream; // 스트림 경로
+    private final SessionMetrics metrics; // 메시지/디코딩/지연 시간 통계 (JMX)
+    private LongSupplier bytesConsumed; // 처리가 끝난 수신 바이트 (메시지별 통계)
+    private int metricsDumpSeconds; // 0이면 주기적 덤프 없음
+    private ExecutorService sessionThreads; // null이면 세션마다 전용 스레드
+    private ScheduledExecutorService sharedScheduler; // null이면 페이서가 자기 타이머 스레드를 만듦
+
+    // 헤드리스 모드: 화면 없이 연결 하나를 유지하고 getSharedFramebuffer()의 구독자들에게 나눠 줍니다.
+    // 패널이 없는 동안에는 커서를 서버가 프레임버퍼에 그리도록 Cursor 의사 인코딩을 요청하지 않습니다.
+    public RFBClient(String host, int port) {
+        this(host, port, null);
+    }
 
     public RFBClient(String host, int port, VNCDisplayPanel displayPanel) {
         this.host = host;
         this.port = port;
         this.displayPanel = displayPanel;
-        this.supportedEncodings = new HashMap<>();
-        // 지원할 인코딩 추가
-        supportedEncodings.put(0, new RawEncoding()); // Raw
-        // TODO: CopyRect, RRE, Hextile, ZRLE, Tight 등 다른 인코딩 구현 및 추가
+        this.supportedEncodings = createEncodings(cursorRouter);
+        this.metrics = new SessionMetrics(host + ":" + port);
+        if (displayPanel != null) {
+            displayPanel.setMetrics(metrics);
+        }
+    }
+
+    // 세션 재생(SessionPlayer)도 같은 디코더 구성을 씁니다.
+    static Map<Integer, RFBEncoding> createEncodings(CursorListener cursorListener) {
+        // 서버는 SetEncodings 목록에서 앞쪽 인코딩을 우선하므로 삽입 순서를 유지합니다.
+        Map<Integer, RFBEncoding> encodings = new LinkedHashMap<>();
+        // 지원할 인코딩 추가 (선호 순서)
+        // CopyRect는 서버가 복사 가능한 영역에만 쓰므로 맨 앞에 두어도 선호 인코딩에 영향을 주지 않습니다.
+        encodings.put(1, new CopyRectEncoding()); // CopyRect
+        encodings.put(7, new TightEncoding()); // Tight
+        encodings.put(16, new ZRLEEncoding()); // ZRLE
+        encodings.put(5, new HextileEncoding()); // Hextile
+        encodings.put(2, new RREEncoding()); // RRE
+        encodings.put(0, new RawEncoding()); // Raw
+        // 커서를 로컬 오버레이로 그려 포인터 이동이 서버 왕복을 기다리지 않게 합니다.
+        if (cursorListener != null) {
+            encodings.put(RFBProtocolHandler.PSEUDO_CURSOR, new CursorEncoding(cursorListener));
+            encodings.put(RFBProtocolHandler.PSEUDO_POINTER_POS, new PointerPosEncoding(cursorListener));
+        }
+        return encodings;
     }
 
+    // 첫 연결. 실패하면 예외를 던지고, 자동 재연결이 켜져 있어도 reconnect()를 부르기 전에는 다시 시도하지 않습니다.
     public void connect() throws IOException {
-        System.out.println(host + ":" + port + " 에 연결 중...");
-        socket = new Socket(host, port);
-        in = new DataInputStream(socket.getInputStream());
-        out = new DataOutputStream(socket.getOutputStream());
-        protocolHandler = new RFBProtocolHandler(in, out);
+        running = true;
+        openSession();
+    }
 
-        // 1. 핸드셰이크
-        String serverVersion = protocolHandler.readProtocolVersion();
-        System.out.println("서버 RFB 버전: " + serverVersion.trim());
-        protocolHandler.writeProtocolVersion("RFB 003.008\n"); // 클라이언트 버전 전송 (3.8 버전을 선호)
-
-        byte[] securityTypes = protocolHandler.readSecurityTypes();
-        System.out.println("지원되는 보안 타입: " + Arrays.toString(securityTypes));
-        // Simple VNC Authentication (Type 2) 또는 None (Type 1) 선택
-        if (securityTypes.length == 0) {
-            throw new IOException("서버가 지원하는 보안 타입이 없습니다.");
-        }
-        if (contains(securityTypes, (byte) 2)) { // VNC Authentication
-            protocolHandler.writeSecurityType((byte) 2);
-            // TODO: 비밀번호 입력 및 인증 처리
-            System.out.println("VNC Authentication 필요. 비밀번호를 입력해주세요.");
-            // 실제 구현에서는 비밀번호 입력 UI를 띄워야 합니다.
-            // 예시: 간단히 "password"라고 가정
-            // protocolHandler.sendVncAuthResponse("password");
-            // int authResult = protocolHandler.readVncAuthResult();
-            // if (authResult != 0) { throw new IOException("인증 실패!"); }
-        } else if (contains(securityTypes, (byte) 1)) { // None
-            protocolHandler.writeSecurityType((byte) 1);
-            System.out.println("보안 인증 없음.");
+    // 연결(재연결) 하나를 엽니다. 디코딩 풀, 타일 캐시, 통계, 녹화, 내보내기는 세션이 바뀌어도 유지합니다.
+    private void openSession() throws IOException {
+        boolean resuming = remoteFramebuffer != null; // 이전 화면을 오래된 상태로 보여 주는 중
+        System.out.println(host + ":" + port + (resuming ? " 에 다시 연결 중..." : " 에 연결 중..."));
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (useNio) {
+            // SocketChannel + 재사용 수신 버퍼: 디코더가 버퍼에서 직접 읽습니다.
+            SocketChannel channel = SocketChannel.open();
+            socket = channel.socket();
+            socket.connect(address, CONNECT_TIMEOUT_MS);
+            RFBChannelReader reader = new RFBChannelReader(channel, NIO_BUFFER_SIZE);
+            channelReader = reader;
+            in = reader.asDataInputStream();
+            bytesRead = reader::getBytesRead;
+            bufferedBytes = reader::getBuffered;
+            bytesConsumed = () -> reader.getBytesRead() - reader.getBuffered();
+            readNanos = reader::getReadNanos;
+            metrics.setReadWait(readNanos);
+            out = new DataOutputStream(Channels.newOutputStream(channel));
+            protocolHandler = new RFBProtocolHandler(reader, out, sessionThreads);
         } else {
-            throw new IOException("지원되는 보안 타입이 없습니다.");
+            socket = new Socket();
+            socket.connect(address, CONNECT_TIMEOUT_MS);
+            // 디코더가 작은 단위로 읽어도 매번 시스템 콜이 일어나지 않도록 버퍼링
+            CountingInputStream counting = new CountingInputStream(socket.getInputStream());
+            // 녹화는 버퍼 위에서 소비된 바이트만 기록하므로 미리 읽은 바이트를 따로 셀 필요가 없습니다.
+            recordingStream = new RecordingInputStream(new BufferedInputStream(counting, 64 * 1024));
+            in = new DataInputStream(recordingStream);
+            bytesRead = counting::getCount;
+            bufferedBytes = () -> 0;
+            bytesConsumed = recordingStream::getConsumed;
+            readNanos = counting::getReadNanos;
+            metrics.setReadWait(readNanos);
+            out = new DataOutputStream(socket.getOutputStream());
+            protocolHandler = new RFBProtocolHandler(in, out, sessionThreads);
+        }
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true); // 조용히 끊긴 연결도 결국 읽기 오류로 드러나도록
+            startSession(resuming);
+        } catch (IOException e) {
+            closeSession();
+            throw e;
         }
+    }
+
+    private void startSession(boolean resuming) throws IOException {
+        // 1. 핸드셰이크
+        handshake();
 
         // 2. 초기화
-        serverPixelFormat = protocolHandler.readServerInit(); // 서버 픽셀 포맷 및 화면 크기 수신
+        // 핸드셰이크 바이트는 메시지 타입이 없으므로 여기부터 셉니다.
+        protocolHandler.setMetrics(metrics);
+        metrics.register();
+        if (!resuming) {
+            metrics.startDump(metricsDumpSeconds, System.out);
+        }
+        serverSupportsFence = false;
 
-        // 클라이언트 픽셀 포맷 설정 (서버와 동일하게)
+        // 클라이언트 픽셀 포맷 설정 (ColorMode에 따라 서버 포맷 또는 저대역폭 포맷)
+        serverPixelFormat = formatFor(colorMode);
         protocolHandler.writeClientSetPixelFormat(serverPixelFormat);
 
-        // 클라이언트 인코딩 설정 (지원하는 인코딩 목록 전송)
-        int[] clientEncodings = supportedEncodings.keySet().stream().mapToInt(Integer::intValue).toArray();
-        protocolHandler.writeClientSetEncodings(clientEncodings);
+        // 클라이언트 인코딩 설정 (지원하는 인코딩 목록 전송). 재연결하면 마지막으로 보낸 설정을 그대로 씁니다.
+        // 의사 인코딩: 서버가 지원하면 ContinuousUpdates는 EndOfContinuousUpdates로, Fence는 Fence 요청으로 응답합니다.
+        writeEncodings(); // Tight 우선
+
+        // 새 연결의 서버는 zlib 스트림을 처음부터 다시 시작합니다.
+        for (ZlibInStream stream : SessionRecorder.sessionStreams(supportedEncodings)) {
+            stream.reset();
+        }
 
         // 화면 초기화
-        remoteFramebuffer = new BufferedImage(
-                displayPanel.getPreferredSize().width, // 초기화 메시지에서 받은 서버 너비/높이 사용
-                displayPanel.getPreferredSize().height, // 하지만 이 예시에서는 displayPanel의 초기 크기 사용
-                BufferedImage.TYPE_INT_RGB
-        );
-        displayPanel.setImage(remoteFramebuffer);
+        // 디코더가 int[] 래스터에 직접 쓰므로 반드시 서버 프레임버퍼 크기의 TYPE_INT_RGB여야 합니다.
+        int width = protocolHandler.getFramebufferWidth(); // 초기화 메시지에서 받은 서버 너비/높이 사용
+        int height = protocolHandler.getFramebufferHeight();
+        if (remoteFramebuffer == null || remoteFramebuffer.getWidth() != width || remoteFramebuffer.getHeight() != height) {
+            resuming = false; // 크기가 바뀌었으면 이전 화면은 쓸 수 없음
+            remoteFramebuffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            sharedFramebuffer.setFramebuffer(remoteFramebuffer);
+            if (framebufferExport != null) {
+                framebufferExport.setFramebuffer(remoteFramebuffer);
+            }
+            VNCDisplayPanel panel = displayPanel;
+            if (panel != null) {
+                panel.setImage(remoteFramebuffer);
+            }
+        }
+
+        if (decodeThreads > 0 && parallelDecoder == null) {
+            // 작업 스레드가 각자 만들어 쓸 독립 디코더 (zlib 스트림을 쓰는 ZRLE/Tight basic은 원래 인스턴스에서 순서대로)
+            // Raw는 수신 스레드에서 스캔라인 단위로 바로 변환하므로 넣지 않습니다.
+            Map<Integer, Supplier<RFBEncoding>> factories = new LinkedHashMap<>();
+            factories.put(7, TightEncoding::new);
+            factories.put(5, HextileEncoding::new);
+            factories.put(2, RREEncoding::new);
+            parallelDecoder = new ParallelRectDecoder(decodeThreads, factories);
+            parallelDecoder.setMetrics(metrics);
+            parallelDecoder.setFramebufferLock(sharedFramebuffer.decoderLock());
+        }
+        protocolHandler.setFramebufferLock(sharedFramebuffer.decoderLock());
+        if (parallelDecoder != null) {
+            protocolHandler.setParallelDecoder(parallelDecoder);
+        }
+        if (tileCacheBudget > 0) {
+            // 화면 내용으로 찾는 캐시이므로 재연결 후에도 그대로 적중합니다.
+            if (tileCache == null) {
+                tileCache = new TileCache(tileCacheBudget);
+                if (parallelDecoder != null) {
+                    parallelDecoder.setTileCache(tileCache);
+                }
+            }
+            protocolHandler.setTileCache(tileCache);
+        }
+
+        if (recordingFile != null) {
+            startRecording(); // 재연결하면 다음 번호 파일로 이어서 녹화
+        }
 
         // 3. 일반 동작: 화면 업데이트 요청 및 이벤트 처리 스레드 시작
+        updatePacer = new UpdatePacer(protocolHandler, maxRequestsInFlight, maxFps, sharedScheduler);
+        if (adaptiveEncoding) {
+            // 처음 설정(Tight, 품질 8, 압축 2)은 BROADBAND 단계와 같고, 재연결하면 마지막 단계에서 이어 갑니다.
+            adaptiveController = new AdaptiveEncodingController(protocolHandler, bytesRead, readNanos, updatePacer,
+                    linkClass, this::applyLinkClass);
+        }
+        if (!running) {
+            throw new IOException("연결이 종료되었습니다."); // 재연결 도중 disconnect()
+        }
+        connected = true;
         startReceiveThread();
-        startUpdateScheduler();
+        updatePacer.start(width, height, resuming ? visibleRegion() : null);
+        if (framebufferExport != null && !stale) {
+            framebufferExport.setState(FramebufferExport.STATE_CONNECTED);
+        }
+        ConnectionListener listener = connectionListener;
+        if (listener != null) {
+            listener.connected();
+        }
+    }
+
+    // 버전, 보안 타입, ClientInit 교환 후 ServerInit까지 읽습니다.
+    // 재연결할 때 이전 세션이 3.7 이상 + 보안 없음이었으면 세 메시지를 서버 응답을 기다리지 않고 한 번에 보내
+    // 왕복 두 번을 줄입니다. 서버 응답이 예상과 다르면 실패로 처리하고 다음 시도는 순서대로 진행합니다.
+    // (연결이 중간에 끊긴 실패는 서버가 바뀐 것이 아니므로 다음 시도도 파이프라이닝)
+    private void handshake() throws IOException {
+        boolean pipelined = negotiatedMinor >= 7 && negotiatedSecurity == SECURITY_NONE;
+        if (pipelined) {
+            protocolHandler.writeProtocolVersion(versionString(negotiatedMinor));
+            protocolHandler.writeSecurityType(SECURITY_NONE);
+            protocolHandler.writeClientInit(true);
+        }
+
+        String serverVersion = protocolHandler.readProtocolVersion();
+        System.out.println("서버 RFB 버전: " + serverVersion.trim());
+        int serverMinor = RFBProtocolHandler.parseMinorVersion(serverVersion);
+        if (serverMinor < 3) {
+            throw new IOException("RFB 서버가 아닙니다: " + serverVersion.trim());
+        }
+        int minor = serverMinor >= 8 ? 8 : serverMinor == 7 ? 7 : 3; // 3.8 버전을 선호
+        if (pipelined && minor != negotiatedMinor) {
+            negotiatedMinor = 0; // 서버가 바뀜: 다음 시도는 순서대로
+            throw new IOException("서버 버전이 바뀌었습니다: " + serverVersion.trim());
+        }
+        if (!pipelined) {
+            protocolHandler.writeProtocolVersion(versionString(minor)); // 클라이언트 버전 전송
+        }
+
+        byte security;
+        if (minor == 3) {
+            security = (byte) protocolHandler.readSecurityType33(); // 3.3은 서버가 정함
+        } else {
+            byte[] securityTypes = protocolHandler.readSecurityTypes();
+            System.out.println("지원되는 보안 타입: " + Arrays.toString(securityTypes));
+            if (securityTypes.length == 0) {
+                throw new IOException("서버가 연결을 거부했습니다: " + protocolHandler.readFailureReason());
+            }
+            // None (Type 1)을 우선하고, 없으면 Simple VNC Authentication (Type 2)
+            if (contains(securityTypes, SECURITY_NONE)) {
+                security = SECURITY_NONE;
+            } else if (contains(securityTypes, SECURITY_VNC_AUTH)) {
+                security = SECURITY_VNC_AUTH;
+            } else {
+                throw new IOException("지원되는 보안 타입이 없습니다.");
+            }
+            if (pipelined && security != SECURITY_NONE) {
+                negotiatedSecurity = 0;
+                throw new IOException("서버 보안 타입이 바뀌었습니다: " + Arrays.toString(securityTypes));
+            }
+            if (!pipelined) {
+                protocolHandler.writeSecurityType(security);
+            }
+        }
+        if (security == SECURITY_VNC_AUTH) {
+            String secret = password;
+            if (secret == null) {
+                throw new IOException("VNC Authentication 필요: 비밀번호가 설정되지 않았습니다.");
+            }
+            protocolHandler.writeVncAuthResponse(secret);
+            System.out.println("VNC 인증 응답 전송.");
+        } else if (security == SECURITY_NONE) {
+            System.out.println("보안 인증 없음.");
+        } else {
+            throw new IOException("지원되지 않는 보안 타입: " + security);
+        }
+        if (minor >= 8 || security == SECURITY_VNC_AUTH) {
+            try {
+                // 3.7 이하는 None이면 SecurityResult가 없고, 실패 이유 문자열은 3.8부터
+                protocolHandler.readSecurityResult(minor >= 8);
+            } catch (IOException e) {
+                negotiatedSecurity = 0; // 인증 거부면 다음 시도는 순서대로
+                throw e;
+            }
+        }
+        if (!pipelined) {
+            protocolHandler.writeClientInit(true); // 공유 연결: 끊기기 전 세션이 서버에 남아 있어도 밀어내지 않음
+        }
+        nativePixelFormat = protocolHandler.readServerInit(); // 서버 픽셀 포맷 및 화면 크기 수신
+        negotiatedMinor = minor;
+        negotiatedSecurity = security;
+    }
+
+    private static String versionString(int minor) {
+        return String.format("RFB 003.%03d\n", minor);
+    }
+
+    // 화면에 실제로 보이는 프레임버퍼 영역 (재연결 후 먼저 받을 영역, 헤드리스면 전체)
+    private Rectangle visibleRegion() {
+        VNCDisplayPanel panel = displayPanel;
+        return panel != null ? panel.getVisibleFramebufferRect() : null;
+    }
+
+    // 자동 재연결 (기본 켜짐). 끄면 연결이 끊겼을 때 disconnect()와 같이 모두 정리합니다.
+    public void setAutoReconnect(boolean autoReconnect) {
+        this.autoReconnect = autoReconnect;
+    }
+
+    // 연결 전에 호출. 서버가 VNC Authentication을 요구할 때 쓸 비밀번호 (프로토콜상 앞 8자만 쓰임)
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public void setConnectionListener(ConnectionListener connectionListener) {
+        this.connectionListener = connectionListener;
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    // 연결되어 있지 않으면 백그라운드에서 지수 백오프로 다시 연결을 시도합니다. (첫 연결 실패 후 등)
+    public void reconnect() {
+        if (connected || !running || !reconnecting.compareAndSet(false, true)) {
+            return;
+        }
+        if (sessionThreads != null) {
+            sessionThreads.execute(this::reconnectLoop);
+            return;
+        }
+        Thread reconnectThread = new Thread(this::reconnectLoop, "rfb-reconnect");
+        reconnectThread.setDaemon(true);
+        reconnectThread.start();
+    }
+
+    private void reconnectLoop() {
+        try {
+            long delay = RECONNECT_INITIAL_MS;
+            for (int attempt = 1; running; attempt++) {
+                try {
+                    openSession();
+                    System.out.println("재연결 성공 (" + attempt + "번째 시도)");
+                    return;
+                } catch (IOException e) {
+                    System.err.println("재연결 실패 (" + attempt + "번째 시도, " + delay + "ms 후 다시 시도): " + e.getMessage());
+                    ConnectionListener listener = connectionListener;
+                    if (listener != null) {
+                        listener.disconnected(e.getMessage(), true);
+                    }
+                }
+                synchronized (reconnectLock) {
+                    if (!running) {
+                        return;
+                    }
+                    reconnectLock.wait(delay); // disconnect()가 깨움
+                }
+                delay = Math.min(delay * 2, RECONNECT_MAX_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            reconnecting.set(false);
+        }
+    }
+
+    // 수신 스레드: 연결이 끊김. 화면은 그대로 두고 오래된 상태로 표시한 뒤 다시 연결합니다.
+    private void connectionLost(IOException cause) {
+        closeSession();
+        if (!autoReconnect) {
+            disconnect();
+            ConnectionListener listener = connectionListener;
+            if (listener != null) {
+                listener.disconnected(cause.getMessage(), false);
+            }
+            return;
+        }
+        lostNanos = System.nanoTime();
+        setStale(true);
+        if (recorder != null) {
+            recorder.close();
+            recorder = null;
+            recordingSegment++;
+        }
+        ConnectionListener listener = connectionListener;
+        if (listener != null) {
+            listener.disconnected(cause.getMessage(), true);
+        }
+        reconnect();
+    }
+
+    private void setStale(boolean stale) {
+        this.stale = stale;
+        VNCDisplayPanel panel = displayPanel;
+        if (panel != null) {
+            panel.setStale(stale);
+        }
+        if (framebufferExport != null) {
+            framebufferExport.setState(stale ? FramebufferExport.STATE_STALE : FramebufferExport.STATE_CONNECTED);
+        }
+    }
+
+    // 세션 하나의 송신 스레드, 페이서, 소켓만 닫습니다.
+    private void closeSession() {
+        connected = false;
+        if (updatePacer != null) {
+            updatePacer.stop();
+        }
+        if (protocolHandler != null) {
+            protocolHandler.close();
+        }
+        try {
+            if (socket != null && !socket.isClosed()) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            System.err.println("연결 종료 중 오류: " + e.getMessage());
+        }
+    }
+
+    // 연결 전에 호출해야 SetEncodings에 반영됩니다. (CPU와 대역폭 사이의 절충)
+    public void setJpegQuality(int jpegQuality) {
+        this.jpegQuality = jpegQuality;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    // 연결 전에 호출. 링크 지연이 크면 2 이상으로 두면 처리량이 늘어납니다. (서버가 Fence를 지원할 때만 겹쳐 보냄)
+    public void setMaxRequestsInFlight(int maxRequestsInFlight) {
+        this.maxRequestsInFlight = maxRequestsInFlight;
+    }
+
+    // 0이면 제한 없음. 연결 중에 호출하면 다음 요청부터 적용합니다.
+    public void setMaxFps(int maxFps) {
+        this.maxFps = maxFps;
+        UpdatePacer pacer = updatePacer;
+        if (pacer != null) {
+            try {
+                pacer.setMaxFps(maxFps);
+            } catch (IOException e) {
+                System.err.println("fps 상한 변경 오류: " + e.getMessage());
+            }
+        }
+    }
+
+    // 연결 전에 호출. 여러 세션을 한 JVM에서 돌릴 때 수신/송신 루프와 페이서 타이머를 공유 실행기에 올립니다.
+    // 두 실행기의 종료는 호출한 쪽이 관리합니다.
+    public void setSessionExecutors(ExecutorService sessionThreads, ScheduledExecutorService sharedScheduler) {
+        this.sessionThreads = sessionThreads;
+        this.sharedScheduler = sharedScheduler;
+    }
+
+    // 연결 중에도 화면을 붙이거나(null이면 뗌) 바꿀 수 있습니다. 다음 업데이트부터 그려지므로
+    // 바로 전체 화면이 필요하면 requestFullUpdate()를 함께 부릅니다.
+    // 패널이 생기거나 없어지면 SetEncodings를 다시 보내 Cursor/PointerPos 의사 인코딩을 켜거나 끕니다.
+    // (패널이 있으면 로컬 커서, 없으면 서버가 프레임버퍼에 그린 커서)
+    public void setDisplayPanel(VNCDisplayPanel panel) {
+        if (panel != null) {
+            panel.setMetrics(metrics);
+            if (remoteFramebuffer != null) {
+                panel.setImage(remoteFramebuffer);
+            }
+            panel.setStale(stale);
+        }
+        boolean cursorChanged = (panel == null) != (displayPanel == null);
+        this.displayPanel = panel;
+        if (cursorChanged && connected) {
+            try {
+                writeEncodings();
+            } catch (IOException e) {
+                System.err.println("인코딩 변경 오류: " + e.getMessage());
+            }
+        }
+    }
+
+    public void requestFullUpdate() {
+        UpdatePacer pacer = updatePacer;
+        if (pacer != null) {
+            try {
+                pacer.requestFullUpdate();
+            } catch (IOException e) {
+                System.err.println("전체 화면 요청 오류: " + e.getMessage());
+            }
+        }
+    }
+
+    // 연결 전에 호출. NIO 수신 경로에 문제가 있을 때 스트림 경로로 되돌리기 위한 옵션
+    public void setUseNio(boolean useNio) {
+        this.useNio = useNio;
+    }
+
+    // 연결 전에 호출. ServerInit 이후 서버가 보낸 바이트를 시각과 함께 기록합니다. (SessionPlayer로 재생)
+    public void setRecordingFile(Path recordingFile) {
+        this.recordingFile = recordingFile;
+    }
+
+    // 연결 전에 호출. 프레임버퍼를 이 파일에 메모리 맵으로 내보내 다른 로컬 프로세스가 읽게 합니다. (FramebufferExport)
+    public void setFramebufferExport(Path exportFile) {
+        this.framebufferExport = exportFile != null ? new FramebufferExport(exportFile) : null;
+    }
+
+    // 수신 스레드 시작 전: zlib 출력 기록을 켜고, 지금 상태(빈 화면, 새 zlib 스트림)를 첫 키프레임으로 남깁니다.
+    private void startRecording() throws IOException {
+        Path file = recordingFile;
+        if (recordingSegment > 0) {
+            // 끊긴 연결의 마지막 메시지는 중간에 잘렸으므로 같은 파일에 이어 쓰지 않습니다. (session.wvnc -> session-1.wvnc)
+            String name = recordingFile.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            name = dot > 0 ? name.substring(0, dot) + "-" + recordingSegment + name.substring(dot) : name + "-" + recordingSegment;
+            file = recordingFile.resolveSibling(name);
+        }
+        recorder = new SessionRecorder(file, remoteFramebuffer.getWidth(), remoteFramebuffer.getHeight(),
+                serverPixelFormat, protocolHandler.getServerName());
+        for (ZlibInStream stream : SessionRecorder.sessionStreams(supportedEncodings)) {
+            stream.setHistoryEnabled(true);
+        }
+        if (channelReader != null) {
+            channelReader.setRecorder(recorder);
+        } else {
+            recordingStream.setRecorder(recorder);
+        }
+        recorder.keyframe(recordedOffset(), serverPixelFormat, remoteFramebuffer, supportedEncodings);
+        System.out.println("세션 녹화: " + file);
+    }
+
+    // 녹화 스트림에서 처리가 끝난 위치
+    private long recordedOffset() {
+        return recorder.getDataBytes() - bufferedBytes.getAsInt();
+    }
+
+    // 연결 전에 호출. 반복되는 화면 내용의 디코딩 결과를 이 바이트 수까지 캐시합니다. (0이면 끔)
+    public void setTileCacheBudget(long tileCacheBudget) {
+        this.tileCacheBudget = tileCacheBudget;
+    }
+
+    // 적중률, 절약한 바이트, 제거 횟수 조회용 (연결 전이나 캐시를 끈 경우 null)
+    public TileCache getTileCache() {
+        return tileCache;
+    }
+
+    // 연결 전에 호출. 이 간격(초)마다 통계 요약을 표준 출력에 씁니다. (0이면 JMX로만 조회)
+    public void setMetricsDumpInterval(int seconds) {
+        this.metricsDumpSeconds = seconds;
+    }
+
+    // 메시지별 바이트, 인코딩별 디코딩 시간, 지연 시간 히스토그램 (연결 중 com.myvnc:type=Session으로 JMX에도 등록)
+    public SessionMetrics getMetrics() {
+        return metrics;
+    }
+
+    // 연결 전에 호출. false면 setJpegQuality/setCompressionLevel 값을 계속 사용합니다.
+    public void setAdaptiveEncoding(boolean adaptiveEncoding) {
+        this.adaptiveEncoding = adaptiveEncoding;
+    }
+
+    // SetEncodings 목록: CopyRect, 선호 인코딩, 나머지 (삽입 순서, 패널이 있을 때만 커서 의사 인코딩), 확장 의사 인코딩
+    // 의사 인코딩: 서버가 지원하면 ContinuousUpdates는 EndOfContinuousUpdates로, Fence는 Fence 요청으로 응답합니다.
+    private int[] encodingList(int preferredEncoding) {
+        IntStream.Builder list = IntStream.builder();
+        list.add(1); // CopyRect
+        if (preferredEncoding != 1) {
+            list.add(preferredEncoding);
+        }
+        for (int encoding : supportedEncodings.keySet()) {
+            if (encoding != 1 && encoding != preferredEncoding && (displayPanel != null || !isCursorEncoding(encoding))) {
+                list.add(encoding);
+            }
+        }
+        list.add(RFBProtocolHandler.PSEUDO_CONTINUOUS_UPDATES);
+        list.add(RFBProtocolHandler.PSEUDO_FENCE);
+        return list.build().toArray();
+    }
+
+    private static boolean isCursorEncoding(int encoding) {
+        return encoding == RFBProtocolHandler.PSEUDO_CURSOR || encoding == RFBProtocolHandler.PSEUDO_POINTER_POS;
+    }
+
+    // 마지막으로 정한 인코딩 설정을 보냅니다. (적응형 제어기의 수신 스레드와 패널을 붙이는 EDT가 함께 부름)
+    private void writeEncodings() throws IOException {
+        synchronized (encodingsLock) {
+            protocolHandler.writeClientSetEncodings(encodingList(preferredEncoding), jpegQuality, compressionLevel);
+        }
+    }
+
+    // 적응형 제어기가 링크 상태 변화를 판정했을 때 (수신 스레드)
+    private void applyLinkClass(AdaptiveEncodingController.LinkClass linkClass) {
+        // 재연결할 때 같은 설정으로 다시 보내도록 기억
+        this.linkClass = linkClass;
+        try {
+            synchronized (encodingsLock) {
+                preferredEncoding = linkClass.preferredEncoding;
+                jpegQuality = linkClass.jpegQuality;
+                compressionLevel = linkClass.compressionLevel;
+                writeEncodings();
+            }
+        } catch (IOException e) {
+            System.err.println("인코딩 변경 오류: " + e.getMessage());
+        }
+    }
+
+    // 연결 중에도 호출할 수 있습니다. 이미 요청한 업데이트를 받은 뒤 새 포맷으로 전체 화면을 다시 받습니다.
+    public void setColorMode(ColorMode colorMode) {
+        this.colorMode = colorMode;
+        UpdatePacer pacer = updatePacer;
+        if (pacer != null && nativePixelFormat != null) {
+            try {
+                pacer.changePixelFormat(formatFor(colorMode));
+            } catch (IOException e) {
+                System.err.println("픽셀 포맷 변경 오류: " + e.getMessage());
+            }
+        }
+    }
+
+    public ColorMode getColorMode() {
+        return colorMode;
+    }
+
+    private RFBPixelFormat formatFor(ColorMode mode) {
+        switch (mode) {
+            case RGB565:
+                return RFBPixelFormat.rgb565();
+            case BGR233:
+                return RFBPixelFormat.bgr233();
+            case SERVER:
+            default:
+                return nativePixelFormat;
+        }
+    }
+
+    // 연결 전에 호출. 0이면 병렬 디코딩을 끕니다.
+    public void setDecodeThreads(int decodeThreads) {
+        this.decodeThreads = decodeThreads;
+    }
+
+    public boolean isServerSupportsFence() {
+        return serverSupportsFence;
     }
 
     private boolean contains(byte[] array, byte value) {
@@ -105,63 +741,141 @@ public class RFBClient {
     }
 
     private void startReceiveThread() {
-        Thread receiveThread = new Thread(() -> {
+        Runnable receiveLoop = () -> {
             try {
                 while (!socket.isClosed()) {
+                    long messageStart = bytesConsumed.getAsLong();
                     int messageType = protocolHandler.readServerMessageHeader();
                     switch (messageType) {
                         case 0: // FramebufferUpdate
-                            protocolHandler.handleFramebufferUpdate(serverPixelFormat, supportedEncodings, remoteFramebuffer);
-                            displayPanel.repaint(); // 화면 업데이트 후 다시 그리기
+                            long requested = updatePacer.takeRequestNanos();
+                            if (requested != 0) {
+                                metrics.requestToUpdate(System.nanoTime() - requested);
+                            }
+                            if (adaptiveController != null) {
+                                adaptiveController.onUpdateStart(requested);
+                            }
+                            RFBPixelFormat switched = updatePacer.takeFormatForNextUpdate();
+                            if (switched != null) {
+                                serverPixelFormat = switched; // SetPixelFormat 이후 첫 업데이트
+                                if (recorder != null) {
+                                    recorder.pixelFormat(recordedOffset() - 1, switched); // 메시지 타입 바이트부터
+                                }
+                            }
+                            // 프레임버퍼 잠금은 디코더가 사각형마다 잡습니다. (소켓 I/O 중에는 구독자를 막지 않음)
+                            protocolHandler.handleFramebufferUpdate(serverPixelFormat, supportedEncodings, remoteFramebuffer, frameDamage);
+                            List<Rectangle> damage = frameDamage.drain();
+                            if (!damage.isEmpty()) {
+                                metrics.updateApplied();
+                            }
+                            sharedFramebuffer.publish(damage);
+                            if (stale) {
+                                // 재연결 후 첫 업데이트 (보이는 영역부터 요청함)
+                                setStale(false);
+                                System.out.printf("재연결: 연결이 끊긴 뒤 첫 화면까지 %d ms%n",
+                                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lostNanos));
+                            }
+                            if (framebufferExport != null) {
+                                framebufferExport.publish(remoteFramebuffer, damage);
+                            }
+                            VNCDisplayPanel panel = displayPanel;
+                            if (panel != null) {
+                                panel.framebufferUpdated(damage); // 변경된 영역만 다시 그리기
+                            }
+                            updatePacer.onUpdateReceived(); // 다음 요청 전송
+                            if (adaptiveController != null) {
+                                adaptiveController.onUpdateEnd();
+                            }
+                            if (recorder != null && recorder.isKeyframeDue()) {
+                                recorder.keyframe(recordedOffset(), serverPixelFormat, remoteFramebuffer, supportedEncodings);
+                            }
                             break;
-                        // TODO: 다른 서버 메시지 타입 처리 (Bell, ServerCutText 등)
-                        default:
-                            System.err.println("알 수 없는 서버 메시지 타입: " + messageType);
-                            // 알 수 없는 메시지의 데이터를 건너뛰는 로직 필요
+                        case 1: // SetColourMapEntries
+                            if (protocolHandler.handleSetColourMapEntries(serverPixelFormat) > 0) {
+                                if (tileCache != null) {
+                                    tileCache.clear(); // 캐시된 픽셀도 이전 색
+                                }
+                                updatePacer.requestFullUpdate(); // 이미 그려진 픽셀은 이전 색이므로 다시 받음
+                            }
+                            break;
+                        case 2: // Bell
+                            break;
+                        case 3: // ServerCutText
+                            protocolHandler.skipServerCutText();
                             break;
+                        case 150: // EndOfContinuousUpdates
+                            updatePacer.onEndOfContinuousUpdates();
+                            break;
+                        case 248: // Fence
+                            handleFence(protocolHandler.readFence());
+                            break;
+                        default:
+                            // 길이를 모르는 메시지는 건너뛸 수 없으므로 스트림이 어긋나기 전에 연결을 끊습니다.
+                            throw new IOException("알 수 없는 서버 메시지 타입: " + messageType);
+                    }
+                    metrics.messageIn(messageType, bytesConsumed.getAsLong() - messageStart);
+                    if (recorder != null) {
+                        recorder.flushData(); // 메시지 단위로 'D' 레코드를 묶음
                     }
                 }
             } catch (IOException e) {
+                if (!running) {
+                    return; // disconnect()가 소켓을 닫음
+                }
                 System.err.println("데이터 수신 오류: " + e.getMessage());
-                disconnect();
+                connectionLost(e);
             }
-        });
+        };
+        if (sessionThreads != null) {
+            sessionThreads.execute(receiveLoop);
+            return;
+        }
+        Thread receiveThread = new Thread(receiveLoop);
         receiveThread.setDaemon(true);
         receiveThread.start();
     }
 
-    private void startUpdateScheduler() {
-        updateScheduler = Executors.newSingleThreadScheduledExecutor();
-        // 100ms마다 전체 화면 업데이트 요청 (개념적 예시, 실제 VNC는 증분 업데이트 활용)
-        updateScheduler.scheduleAtFixedRate(() -> {
-            try {
-                // 현재 화면 크기만큼의 업데이트 요청
-                protocolHandler.writeFramebufferUpdateRequest(
-                        true, // 증분 업데이트 (서버가 변경된 부분만 보내도록)
-                        0, 0,
-                        remoteFramebuffer.getWidth(),
-                        remoteFramebuffer.getHeight()
-                );
-            } catch (IOException e) {
-                System.err.println("업데이트 요청 오류: " + e.getMessage());
-                updateScheduler.shutdownNow();
-            }
-        }, 0, 100, TimeUnit.MILLISECONDS); // 0.1초마다 요청
+    // 메시지는 순서대로 처리되므로 BlockBefore/BlockAfter 조건은 수신 즉시 응답해도 만족됩니다.
+    private void handleFence(RFBProtocolHandler.Fence fence) throws IOException {
+        serverSupportsFence = true;
+        updatePacer.setFenceSupported();
+        if (adaptiveController != null) {
+            adaptiveController.setFenceSupported(true);
+        }
+        if ((fence.flags & RFBProtocolHandler.FENCE_REQUEST) != 0) {
+            int flags = fence.flags & RFBProtocolHandler.FENCE_SUPPORTED_FLAGS & ~RFBProtocolHandler.FENCE_REQUEST;
+            protocolHandler.writeFence(flags, fence.payload);
+        } else if (!updatePacer.onFenceResponse(fence.payload) && adaptiveController != null) {
+            adaptiveController.onFenceResponse(fence.payload); // 왕복 시간 측정 응답
+        }
+    }
+
+    // 업스트림 프레임버퍼 구독 (헤드리스 모드의 팬아웃, GUI 모드에서도 사용 가능)
+    public SharedFramebuffer getSharedFramebuffer() {
+        return sharedFramebuffer;
     }
 
     public void sendMouseEvent(MouseEvent e, int type) {
+        VNCDisplayPanel displayPanel = this.displayPanel;
+        if (displayPanel == null || !connected) {
+            return; // 헤드리스 모드는 읽기 전용, 재연결 중인 입력은 버림
+        }
         try {
             int buttonMask = 0;
             if (e.getButton() == MouseEvent.BUTTON1) buttonMask |= 1; // Left button
             if (e.getButton() == MouseEvent.BUTTON2) buttonMask |= 2; // Middle button
             if (e.getButton() == MouseEvent.BUTTON3) buttonMask |= 4; // Right button
 
+            // 패널 배율/여백을 되돌려 프레임버퍼 좌표로 변환
+            Point p = displayPanel.toFramebuffer(e.getX(), e.getY());
+            metrics.inputSent();
+            displayPanel.cursorMoved(p.x, p.y); // 로컬 커서는 서버 응답 전에 바로 이동
             if (type == MouseEvent.MOUSE_PRESSED) {
-                protocolHandler.writePointerEvent(buttonMask, e.getX(), e.getY());
+                protocolHandler.writePointerEvent(buttonMask, p.x, p.y);
             } else if (type == MouseEvent.MOUSE_RELEASED) {
-                protocolHandler.writePointerEvent(0, e.getX(), e.getY()); // 버튼 떼면 마스크 0
+                protocolHandler.writePointerEvent(0, p.x, p.y); // 버튼 떼면 마스크 0
             } else if (type == MouseEvent.MOUSE_MOVED || type == MouseEvent.MOUSE_DRAGGED) {
-                protocolHandler.writePointerEvent(buttonMask, e.getX(), e.getY());
+                protocolHandler.writePointerEvent(buttonMask, p.x, p.y);
             }
 
         } catch (IOException ex) {
@@ -170,6 +884,9 @@ public class RFBClient {
     }
 
     public void sendKeyEvent(KeyEvent e, boolean down) {
+        if (displayPanel == null || !connected) {
+            return; // 헤드리스 모드는 읽기 전용, 재연결 중인 입력은 버림
+        }
         try {
             // Java KeyEvent의 keyCode를 RFB key symbol로 변환하는 매핑이 필요합니다.
             // RFB key symbols은 X11 key codes와 유사합니다.
@@ -179,6 +896,7 @@ public class RFBClient {
                 rfbKeySymbol = e.getKeyChar();
             }
 
+            metrics.inputSent();
             protocolHandler.writeKeyEvent(rfbKeySymbol, down);
         } catch (IOException ex) {
             System.err.println("키 이벤트 전송 오류: " + ex.getMessage());
@@ -186,18 +904,26 @@ public class RFBClient {
     }
 
 
+    // 연결을 끝냅니다. 진행 중인 재연결 시도도 멈추고, 세션이 바뀌어도 유지하던 자원을 모두 정리합니다.
     public void disconnect() {
-        this.running = false; // Add a running flag to gracefully stop threads
-        if (updateScheduler != null) {
-            updateScheduler.shutdownNow();
+        boolean wasConnected = connected;
+        running = false;
+        synchronized (reconnectLock) {
+            reconnectLock.notifyAll();
         }
-        try {
-            if (socket != null && !socket.isClosed()) {
-                socket.close();
-                System.out.println("VNC 연결이 종료되었습니다.");
-            }
-        } catch (IOException e) {
-            System.err.println("연결 종료 중 오류: " + e.getMessage());
+        closeSession();
+        if (parallelDecoder != null) {
+            parallelDecoder.shutdown();
+        }
+        if (recorder != null) {
+            recorder.close(); // 색인을 쓰고 닫음
+        }
+        if (framebufferExport != null) {
+            framebufferExport.close(); // 파일은 마지막 프레임과 함께 남김
+        }
+        metrics.close(); // JMX 해제, 덤프 중지
+        if (wasConnected) {
+            System.out.println("VNC 연결이 종료되었습니다.");
         }
     }
 }
\ No newline at end of file
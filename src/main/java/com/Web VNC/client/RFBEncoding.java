@@ -11,35 +11,28 @@ public interface RFBEncoding {
     // 화면 업데이트 데이터를 읽고 BufferedImage에 그리는 메서드
     void decode(DataInputStream in, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException;
 
-    // 실제 VNC 뷰어는 다양한 인코딩을 지원해야 합니다.
-    // Raw, CopyRect, RRE, Hextile, ZRLE, Tight 등
-}
+    // NIO 수신 경로: 수신 버퍼에서 직접 읽는 버전
+    // 구현하지 않은 인코딩은 같은 버퍼를 공유하는 스트림 어댑터로 기존 decode를 사용합니다.
+    default void decode(RFBChannelReader reader, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        decode(reader.asDataInputStream(), image, x, y, width, height, pixelFormat);
+    }
+
+    // readPayload()로 모은 사각형 데이터로 디코딩합니다. 구현하지 않은 인코딩은 payload.stream()으로 다시 읽습니다.
+    default void decode(RectPayload payload, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        decode(payload.stream(), image, x, y, width, height, pixelFormat);
+    }
 
-// 예시: Raw 인코딩
-class RawEncoding implements RFBEncoding {
-    @Override
-    public int getEncodingType() {
-        return 0; // Raw encoding type
+    // 병렬 디코딩의 파싱 단계: 사각형 데이터를 해석하지 않고 payload로 옮깁니다.
+    // 데이터 길이를 미리 알 수 없는 인코딩은 아무것도 읽지 않고 false를 반환합니다. (수신 스레드에서 바로 디코딩)
+    default boolean readPayload(DataInputStream in, RectPayload payload, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        return false;
     }
 
-    @Override
-    public void decode(DataInputStream in, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
-        // Raw 인코딩은 픽셀 데이터를 그대로 전송합니다.
-        // 여기서는 RGB 픽셀 데이터를 읽어 BufferedImage에 그리는 로직이 필요합니다.
-        // pixelFormat에 따라 데이터 해석 방식이 달라집니다.
-        // 예: 24비트 트루컬러 (RGBX)
-        for (int j = y; j < y + height; j++) {
-            for (int i = x; i < x + width; i++) {
-                int r = in.readUnsignedByte();
-                int g = in.readUnsignedByte();
-                int b = in.readUnsignedByte();
-                // 4번째 바이트는 보통 무시됨 (XRGB)
-                in.readUnsignedByte();
-                int rgb = (r << 16) | (g << 8) | b;
-                image.setRGB(i, j, rgb);
-            }
-        }
-        // 이 부분은 RFBPixelFormat에 따라 복잡해집니다.
-        // Endianness, TrueColor 여부, 각 색상 채널의 비트 수 및 시프트 값 등을 고려해야 합니다.
+    // 세션 상태(zlib 스트림 등) 없이 다른 인스턴스가 이 사각형을 디코딩할 수 있는지 여부
+    default boolean isIndependent(RectPayload payload) {
+        return false;
     }
-}
\ No newline at end of file
+
+    // 실제 VNC 뷰어는 다양한 인코딩을 지원해야 합니다.
+    // Raw, CopyRect, RRE, Hextile, ZRLE, Tight 등
+}
@@ -14,6 +14,41 @@ public class RFBPixelFormat {
     public int blueShift;
     public byte[] padding; // 3바이트 패딩
 
+    // PixelConverter.forFormat()의 결과 캐시. 디코더들이 같은 변환 테이블(과 컬러맵)을 공유합니다.
+    PixelConverter converter;
+
+    // 32bpp 트루컬러 (리틀 엔디언 0x00RRGGBB): 대부분의 서버 기본값
+    public static RFBPixelFormat rgb888() {
+        return trueColor(32, 24, 255, 255, 255, 16, 8, 0);
+    }
+
+    // 16bpp RGB565 (리틀 엔디언): 32bpp 대비 절반의 대역폭
+    public static RFBPixelFormat rgb565() {
+        return trueColor(16, 16, 31, 63, 31, 11, 5, 0);
+    }
+
+    // 8bpp BGR233: 32bpp 대비 1/4의 대역폭 (저속 회선용)
+    public static RFBPixelFormat bgr233() {
+        return trueColor(8, 8, 7, 7, 3, 0, 3, 6);
+    }
+
+    private static RFBPixelFormat trueColor(int bitsPerPixel, int depth, int redMax, int greenMax, int blueMax,
+                                            int redShift, int greenShift, int blueShift) {
+        RFBPixelFormat pf = new RFBPixelFormat();
+        pf.bitsPerPixel = bitsPerPixel;
+        pf.depth = depth;
+        pf.bigEndianFlag = false;
+        pf.trueColorFlag = true;
+        pf.redMax = redMax;
+        pf.greenMax = greenMax;
+        pf.blueMax = blueMax;
+        pf.redShift = redShift;
+        pf.greenShift = greenShift;
+        pf.blueShift = blueShift;
+        pf.padding = new byte[3];
+        return pf;
+    }
+
     // 생성자, getter/setter 등 필요
     // RFB 프로토콜의 ServerInit 메시지에서 이 정보를 파싱해야 합니다.
 }
\ No newline at end of file
@@ -1,35 +1,136 @@
 package com.myvnc.client;
 
+import java.awt.image.BufferedImage;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
 
 // RFB 프로토콜 메시지를 처리하는 유틸리티 클래스
 public class RFBProtocolHandler {
+    // Tight 품질/압축 수준 의사 인코딩 (레벨 0~9를 더해서 사용)
+    public static final int PSEUDO_JPEG_QUALITY_LEVEL_0 = -32;
+    public static final int PSEUDO_COMPRESS_LEVEL_0 = -256;
+    public static final int PSEUDO_CONTINUOUS_UPDATES = -313;
+    public static final int PSEUDO_FENCE = -312;
+    public static final int PSEUDO_CURSOR = -239;
+    public static final int PSEUDO_POINTER_POS = -232;
+
+    // Fence 플래그
+    public static final int FENCE_BLOCK_BEFORE = 1;
+    public static final int FENCE_BLOCK_AFTER = 1 << 1;
+    public static final int FENCE_SYNC_NEXT = 1 << 2;
+    public static final int FENCE_REQUEST = 1 << 31;
+    public static final int FENCE_SUPPORTED_FLAGS = FENCE_BLOCK_BEFORE | FENCE_BLOCK_AFTER | FENCE_SYNC_NEXT | FENCE_REQUEST;
+
+    // 서버에서 받은 Fence 메시지
+    public static class Fence {
+        public final int flags;
+        public final byte[] payload;
+
+        Fence(int flags, byte[] payload) {
+            this.flags = flags;
+            this.payload = payload;
+        }
+    }
 
     private DataInputStream in;
-    private DataOutputStream out;
+    private RFBChannelReader reader; // NIO 수신 경로 (null이면 스트림 경로)
+    private ClientMessageWriter out; // 버퍼링/배치 송신 파이프라인
+    private int framebufferWidth;
+    private int framebufferHeight;
+    private String serverName = "";
+    private ParallelRectDecoder parallelDecoder; // null이면 수신 스레드에서 순서대로 디코딩
+    private TileCache tileCache; // 순차 디코딩 경로용 (병렬 경로는 ParallelRectDecoder가 가짐)
+    private final RectPayload rectPayload = new RectPayload(); // 순차 경로에서 사각형마다 재사용
+    // 사각형 하나를 프레임버퍼에 쓰는 동안 잡는 잠금 (기본값은 아무도 막지 않는 공유 잠금)
+    private Lock framebufferLock = new ReentrantReadWriteLock().readLock();
+    private SessionMetrics metrics; // null이면 통계를 남기지 않음
 
     public RFBProtocolHandler(DataInputStream in, DataOutputStream out) {
+        this(in, out, null);
+    }
+
+    // writerThreads: 송신 파이프라인의 writer 루프를 돌릴 실행기 (null이면 전용 스레드)
+    public RFBProtocolHandler(DataInputStream in, DataOutputStream out, Executor writerThreads) {
         this.in = in;
-        this.out = out;
+        this.out = new ClientMessageWriter(out, writerThreads);
+    }
+
+    // NIO 수신 경로. 핸드셰이크 등 나머지 메시지는 같은 버퍼 위의 스트림 어댑터로 읽습니다.
+    public RFBProtocolHandler(RFBChannelReader reader, DataOutputStream out) {
+        this(reader, out, null);
+    }
+
+    public RFBProtocolHandler(RFBChannelReader reader, DataOutputStream out, Executor writerThreads) {
+        this(reader.asDataInputStream(), out, writerThreads);
+        this.reader = reader;
+    }
+
+    public void setParallelDecoder(ParallelRectDecoder parallelDecoder) {
+        this.parallelDecoder = parallelDecoder;
+    }
+
+    public void setTileCache(TileCache tileCache) {
+        this.tileCache = tileCache;
+    }
+
+    // SharedFramebuffer.decoderLock(): 순차 경로는 사각형 데이터를 모두 받은 뒤에만 잡습니다.
+    void setFramebufferLock(Lock framebufferLock) {
+        this.framebufferLock = framebufferLock;
+    }
+
+    // 핸드셰이크 이후에 설정: 송신 메시지와 순차 경로의 사각형 디코딩 시간을 기록합니다.
+    public void setMetrics(SessionMetrics metrics) {
+        this.metrics = metrics;
+        out.setMetrics(metrics);
     }
 
     // --- 핸드셰이크 단계 ---
     public String readProtocolVersion() throws IOException {
+        return readProtocolVersion(in);
+    }
+
+    // 핸들러(송신 스레드) 없이 핸드셰이크만 들여다볼 때 사용 (게이트웨이)
+    public static String readProtocolVersion(DataInputStream in) throws IOException {
         byte[] versionBytes = new byte[12];
         in.readFully(versionBytes);
         return new String(versionBytes, "US-ASCII");
     }
 
+    // "RFB 003.008\n" 형식이면 부 버전(8), 아니면 -1
+    public static int parseMinorVersion(String version) {
+        if (version.length() != 12 || !version.startsWith("RFB 003.") || version.charAt(11) != '\n') {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(version.substring(8, 11));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     public void writeProtocolVersion(String version) throws IOException {
+        out.begin();
         out.writeBytes(version);
-        out.flush();
+        out.end();
     }
 
     public byte[] readSecurityTypes() throws IOException {
+        return readSecurityTypes(in);
+    }
+
+    public static byte[] readSecurityTypes(DataInputStream in) throws IOException {
         int numSecurityTypes = in.readUnsignedByte();
         byte[] securityTypes = new byte[numSecurityTypes];
         in.readFully(securityTypes);
@@ -37,8 +138,76 @@ public class RFBProtocolHandler {
     }
 
     public void writeSecurityType(byte type) throws IOException {
+        out.begin();
         out.writeByte(type);
-        out.flush();
+        out.end();
+    }
+
+    // RFB 3.3: 서버가 보안 타입 하나를 정해서 보냅니다. (0이면 이유 문자열과 함께 거부)
+    public int readSecurityType33() throws IOException {
+        int type = in.readInt();
+        if (type == 0) {
+            throw new IOException("서버가 연결을 거부했습니다: " + readFailureReason());
+        }
+        return type;
+    }
+
+    // VNC Authentication (보안 타입 2): 서버가 보낸 16바이트 챌린지를 비밀번호로 암호화해 돌려줍니다.
+    public void writeVncAuthResponse(String password) throws IOException {
+        byte[] challenge = new byte[16];
+        in.readFully(challenge);
+        byte[] response = vncAuthResponse(challenge, password);
+        out.begin();
+        out.write(response);
+        out.end();
+    }
+
+    // DES/ECB, 키는 비밀번호 앞 8바이트(모자라면 0으로 채움)를 바이트마다 비트 순서를 뒤집은 것 (VNC 관례)
+    static byte[] vncAuthResponse(byte[] challenge, String password) throws IOException {
+        byte[] bytes = password.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] key = new byte[8];
+        for (int i = 0; i < key.length && i < bytes.length; i++) {
+            key[i] = (byte) (Integer.reverse(bytes[i] & 0xFF) >>> 24);
+        }
+        try {
+            Cipher des = Cipher.getInstance("DES/ECB/NoPadding");
+            des.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "DES"));
+            return des.doFinal(challenge);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("VNC 인증 응답을 만들 수 없습니다: " + e.getMessage(), e);
+        }
+    }
+
+    // SecurityResult: 0이 아니면 인증 실패 (3.8부터는 이유 문자열이 따라옴)
+    public void readSecurityResult(boolean withReason) throws IOException {
+        int result = in.readInt();
+        if (result != 0) {
+            throw new IOException("인증 실패" + (withReason ? ": " + readFailureReason() : ""));
+        }
+    }
+
+    // 보안 타입 목록이 비었거나 인증이 실패했을 때 서버가 보내는 이유 문자열
+    public String readFailureReason() throws IOException {
+        int length = in.readInt();
+        byte[] reason = new byte[length];
+        in.readFully(reason);
+        return new String(reason, "US-ASCII");
+    }
+
+    // shared가 true면 같은 서버의 다른 클라이언트 연결을 끊지 않습니다.
+    public void writeClientInit(boolean shared) throws IOException {
+        out.begin();
+        out.writeByte(shared ? 1 : 0);
+        out.end();
+    }
+
+    public ClientMessageWriter getMessageWriter() {
+        return out;
+    }
+
+    // writer 스레드 종료
+    public void close() {
+        out.close();
     }
 
     // --- 초기화 단계 ---
@@ -46,8 +215,8 @@ public class RFBProtocolHandler {
         // 서버 초기화 메시지를 파싱하여 RFBPixelFormat 객체를 반환합니다.
         // 프레임버퍼 너비, 높이, 픽셀 포맷 등이 포함됩니다.
         // 이 부분은 RFB 프로토콜 스펙을 정확히 따라야 합니다.
-        int framebufferWidth = in.readUnsignedShort();
-        int framebufferHeight = in.readUnsignedShort();
+        framebufferWidth = in.readUnsignedShort();
+        framebufferHeight = in.readUnsignedShort();
 
         RFBPixelFormat pixelFormat = new RFBPixelFormat();
         pixelFormat.bitsPerPixel = in.readUnsignedByte();
@@ -67,7 +236,7 @@ public class RFBProtocolHandler {
         int nameLength = in.readInt();
         byte[] nameBytes = new byte[nameLength];
         in.readFully(nameBytes);
-        String serverName = new String(nameBytes, "US-ASCII"); // 서버 화면 이름
+        serverName = new String(nameBytes, "US-ASCII"); // 서버 화면 이름
 
         System.out.println("서버 화면 크기: " + framebufferWidth + "x" + framebufferHeight);
         System.out.println("서버 이름: " + serverName);
@@ -75,8 +244,22 @@ public class RFBProtocolHandler {
         return pixelFormat;
     }
 
+    // ServerInit에서 받은 프레임버퍼 크기
+    public int getFramebufferWidth() {
+        return framebufferWidth;
+    }
+
+    public int getFramebufferHeight() {
+        return framebufferHeight;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
     public void writeClientSetPixelFormat(RFBPixelFormat pixelFormat) throws IOException {
         // 클라이언트 픽셀 포맷 설정 메시지 전송
+        out.begin();
         out.writeByte(0); // Message type: SetPixelFormat
         out.writeByte(0); // Padding
         out.writeByte(0); // Padding
@@ -93,11 +276,12 @@ public class RFBProtocolHandler {
         out.writeByte(pixelFormat.greenShift);
         out.writeByte(pixelFormat.blueShift);
         out.write(new byte[3]); // Padding
-        out.flush();
+        out.end();
     }
 
     public void writeClientSetEncodings(int[] encodings) throws IOException {
         // 클라이언트 인코딩 설정 메시지 전송
+        out.begin();
         out.writeByte(2); // Message type: SetEncodings
         out.writeByte(0); // Padding
         out.writeShort(encodings.length); // Number of encodings
@@ -105,34 +289,127 @@ public class RFBProtocolHandler {
         for (int encoding : encodings) {
             out.writeInt(encoding);
         }
-        out.flush();
+        out.end();
+    }
+
+    // JPEG 품질(0~9)과 압축 수준(0~9) 의사 인코딩을 목록 뒤에 붙여 전송합니다. 음수 레벨은 생략합니다.
+    public void writeClientSetEncodings(int[] encodings, int jpegQuality, int compressionLevel) throws IOException {
+        int count = encodings.length + (jpegQuality >= 0 ? 1 : 0) + (compressionLevel >= 0 ? 1 : 0);
+        int[] all = Arrays.copyOf(encodings, count);
+        int i = encodings.length;
+        if (jpegQuality >= 0) {
+            all[i++] = PSEUDO_JPEG_QUALITY_LEVEL_0 + Math.min(jpegQuality, 9);
+        }
+        if (compressionLevel >= 0) {
+            all[i] = PSEUDO_COMPRESS_LEVEL_0 + Math.min(compressionLevel, 9);
+        }
+        writeClientSetEncodings(all);
     }
 
     // --- 일반 동작 단계 ---
     public void writeFramebufferUpdateRequest(boolean incremental, int x, int y, int width, int height) throws IOException {
+        out.begin();
         out.writeByte(3); // Message type: FramebufferUpdateRequest
         out.writeByte(incremental ? 1 : 0); // Incremental flag
         out.writeShort(x);
         out.writeShort(y);
         out.writeShort(width);
         out.writeShort(height);
-        out.flush();
+        out.end();
     }
 
     public void writeKeyEvent(int key, boolean down) throws IOException {
+        out.begin();
         out.writeByte(4); // Message type: KeyEvent
         out.writeByte(down ? 1 : 0); // Down flag
         out.writeShort(0); // Padding
         out.writeInt(key); // Key symbol
-        out.flush();
+        out.end();
     }
 
+    // 같은 버튼 마스크의 연속된 이동은 송신 전에 마지막 위치로 합쳐집니다.
     public void writePointerEvent(int buttonMask, int x, int y) throws IOException {
-        out.writeByte(5); // Message type: PointerEvent
-        out.writeByte(buttonMask); // Button mask
+        out.writePointerEvent(buttonMask, x, y);
+    }
+
+    // ContinuousUpdates 확장: 켜면 서버가 요청 없이 변경 사항을 계속 보냅니다.
+    public void writeEnableContinuousUpdates(boolean enable, int x, int y, int width, int height) throws IOException {
+        out.begin();
+        out.writeByte(150); // Message type: EnableContinuousUpdates
+        out.writeByte(enable ? 1 : 0);
         out.writeShort(x);
         out.writeShort(y);
-        out.flush();
+        out.writeShort(width);
+        out.writeShort(height);
+        out.end();
+    }
+
+    public void writeFence(int flags, byte[] payload) throws IOException {
+        out.begin();
+        out.writeByte(248); // Message type: Fence
+        out.writeByte(0); // Padding
+        out.writeShort(0); // Padding
+        out.writeInt(flags);
+        out.writeByte(payload.length);
+        out.write(payload);
+        out.end();
+    }
+
+    // Fence 바로 뒤에 SetPixelFormat을 보냅니다. (SyncNext가 가리키는 '다음 메시지'에 다른 메시지가 끼어들지 않음)
+    public void writeFenceAndPixelFormat(int flags, byte[] payload, RFBPixelFormat pixelFormat) throws IOException {
+        out.beginSequence();
+        try {
+            writeFence(flags, payload);
+            writeClientSetPixelFormat(pixelFormat);
+        } finally {
+            out.endSequence();
+        }
+    }
+
+    // 메시지 타입(248) 이후의 Fence 본문을 읽습니다.
+    public Fence readFence() throws IOException {
+        in.readUnsignedByte(); // Padding
+        in.readUnsignedShort(); // Padding
+        int flags = in.readInt();
+        int length = in.readUnsignedByte();
+        if (length > 64) {
+            throw new IOException("잘못된 Fence 길이: " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Fence(flags, payload);
+    }
+
+    // ServerCutText (서버 메시지 3): 클립보드는 동기화하지 않으므로 텍스트를 읽어 버립니다.
+    // (건너뛰지 않고 읽어야 녹화 스트림에도 그대로 남습니다)
+    public void skipServerCutText() throws IOException {
+        in.readUnsignedByte(); // Padding
+        in.readUnsignedShort(); // Padding
+        long remaining = in.readInt() & 0xFFFFFFFFL;
+        byte[] scratch = new byte[(int) Math.min(remaining, 8192)];
+        while (remaining > 0) {
+            int n = (int) Math.min(remaining, scratch.length);
+            in.readFully(scratch, 0, n);
+            remaining -= n;
+        }
+    }
+
+    // SetColourMapEntries (서버 메시지 1): 컬러맵 모드 포맷의 변환 테이블을 갱신하고 바뀐 항목 수를 반환합니다.
+    public int handleSetColourMapEntries(RFBPixelFormat pixelFormat) throws IOException {
+        in.readUnsignedByte(); // Padding
+        int firstColour = in.readUnsignedShort();
+        int numColours = in.readUnsignedShort();
+        int applied = 0;
+        for (int i = 0; i < numColours; i++) {
+            // 채널 값은 16비트이므로 상위 8비트만 사용
+            int r = in.readUnsignedShort() >> 8;
+            int g = in.readUnsignedShort() >> 8;
+            int b = in.readUnsignedShort() >> 8;
+            if (PixelConverter.setColourMapEntry(pixelFormat, firstColour + i, (r << 16) | (g << 8) | b)) {
+                applied++;
+            }
+        }
+        return applied;
     }
 
     // 서버로부터 수신되는 메시지 처리 (FrameBufferUpdate 등)
@@ -143,6 +420,23 @@ public class RFBProtocolHandler {
     // FramebufferUpdate 메시지 파싱
     // 이 메서드는 상당히 복잡해질 것입니다.
     public void handleFramebufferUpdate(RFBPixelFormat pixelFormat, Map<Integer, RFBEncoding> encodingMap, BufferedImage displayImage) throws IOException {
+        handleFramebufferUpdate(pixelFormat, encodingMap, displayImage, null);
+    }
+
+    // damage가 주어지면 디코딩한 사각형 영역을 누적합니다. (부분 다시 그리기용)
+    public void handleFramebufferUpdate(RFBPixelFormat pixelFormat, Map<Integer, RFBEncoding> encodingMap, BufferedImage displayImage, DamageRegion damage) throws IOException {
+        if (parallelDecoder != null) {
+            if (reader != null) {
+                parallelDecoder.decodeUpdate(reader, pixelFormat, encodingMap, displayImage, damage);
+            } else {
+                parallelDecoder.decodeUpdate(in, pixelFormat, encodingMap, displayImage, damage);
+            }
+            return;
+        }
+        if (reader != null) {
+            handleFramebufferUpdate(reader, pixelFormat, encodingMap, displayImage, damage);
+            return;
+        }
         in.readUnsignedByte(); // Padding
         int numRectangles = in.readUnsignedShort();
 
@@ -161,7 +455,96 @@ public class RFBProtocolHandler {
                 // 여기서는 간단히 오류 처리
                 throw new IOException("Unsupported encoding: " + encodingType);
             }
-            encoding.decode(in, displayImage, x, y, width, height, pixelFormat);
+            long start = metrics != null ? metrics.decodeClock() : 0;
+            if (encodingType < 0) {
+                encoding.decode(in, displayImage, x, y, width, height, pixelFormat); // 프레임버퍼를 건드리지 않음
+            } else if (encoding instanceof RawEncoding) {
+                ((RawEncoding) encoding).decode(in, displayImage, x, y, width, height, pixelFormat, framebufferLock);
+            } else {
+                // 사각형 데이터를 소켓에서 다 받은 뒤에 잠금을 잡고 디코딩합니다. (캐시 조회에도 원본 바이트가 필요)
+                rectPayload.reset();
+                boolean buffered = encoding.readPayload(in, rectPayload, width, height, pixelFormat);
+                framebufferLock.lock();
+                try {
+                    if (!buffered) {
+                        // 길이를 모르는 인코딩은 스트림에서 바로 디코딩할 수밖에 없음
+                        encoding.decode(in, displayImage, x, y, width, height, pixelFormat);
+                    } else if (tileCache != null && encoding.isIndependent(rectPayload)) {
+                        tileCache.decode(encoding, encodingType, rectPayload, displayImage, x, y, width, height, pixelFormat);
+                    } else {
+                        encoding.decode(rectPayload, displayImage, x, y, width, height, pixelFormat);
+                    }
+                } finally {
+                    framebufferLock.unlock();
+                }
+            }
+            if (metrics != null) {
+                metrics.rectDecoded(encodingType, width, height, metrics.decodeClock() - start);
+            }
+            if (damage != null && encodingType >= 0) { // 의사 인코딩은 프레임버퍼를 바꾸지 않음
+                damage.add(x, y, width, height);
+            }
+        }
+    }
+
+    // NIO 경로: 사각형 헤더를 수신 버퍼에서 바로 파싱하고 디코더에 버퍼를 넘깁니다.
+    private void handleFramebufferUpdate(RFBChannelReader reader, RFBPixelFormat pixelFormat, Map<Integer, RFBEncoding> encodingMap, BufferedImage displayImage, DamageRegion damage) throws IOException {
+        ByteBuffer header = reader.require(3);
+        header.get(); // Padding
+        int numRectangles = header.getShort() & 0xFFFF;
+
+        for (int i = 0; i < numRectangles; i++) {
+            header = reader.require(12);
+            int x = header.getShort() & 0xFFFF;
+            int y = header.getShort() & 0xFFFF;
+            int width = header.getShort() & 0xFFFF;
+            int height = header.getShort() & 0xFFFF;
+            int encodingType = header.getInt();
+
+            RFBEncoding encoding = encodingMap.get(encodingType);
+            if (encoding == null) {
+                System.err.println("지원되지 않는 인코딩: " + encodingType);
+                throw new IOException("Unsupported encoding: " + encodingType);
+            }
+            long start = metrics != null ? metrics.decodeClock() : 0;
+            if (encodingType < 0) {
+                encoding.decode(reader, displayImage, x, y, width, height, pixelFormat);
+            } else if (encoding instanceof RawEncoding) {
+                ((RawEncoding) encoding).decode(reader, displayImage, x, y, width, height, pixelFormat, framebufferLock);
+            } else {
+                decodeBuffered(reader, encoding, encodingType, pixelFormat, displayImage, x, y, width, height);
+            }
+            if (metrics != null) {
+                metrics.rectDecoded(encodingType, width, height, metrics.decodeClock() - start);
+            }
+            if (damage != null && encodingType >= 0) { // 의사 인코딩은 프레임버퍼를 바꾸지 않음
+                damage.add(x, y, width, height);
+            }
+        }
+    }
+
+    // 사각형 데이터가 모두 수신 버퍼에 들어올 때까지 받아 둔 뒤(소비하지 않음) 잠금을 잡고 버퍼에서 디코딩합니다.
+    private void decodeBuffered(RFBChannelReader reader, RFBEncoding encoding, int encodingType, RFBPixelFormat pixelFormat,
+                                BufferedImage displayImage, int x, int y, int width, int height) throws IOException {
+        rectPayload.peek(reader);
+        boolean buffered = encoding.readPayload(in, rectPayload, width, height, pixelFormat);
+        int before = reader.getBuffered();
+        boolean cached = buffered && tileCache != null && encoding.isIndependent(rectPayload);
+        framebufferLock.lock();
+        try {
+            if (cached) {
+                tileCache.decode(encoding, encodingType, rectPayload, displayImage, x, y, width, height, pixelFormat);
+            } else {
+                encoding.decode(reader, displayImage, x, y, width, height, pixelFormat);
+            }
+        } finally {
+            framebufferLock.unlock();
+        }
+        if (cached) {
+            reader.take(rectPayload.length);
+        } else if (buffered && before - reader.getBuffered() != rectPayload.length) {
+            // 디코더가 readPayload()와 다른 길이를 읽었으면 잠금 중에 소켓을 기다렸거나 스트림이 어긋난 것
+            throw new IOException("사각형 길이 불일치: 인코딩 " + encodingType);
         }
     }
-}
\ No newline at end of file
+}
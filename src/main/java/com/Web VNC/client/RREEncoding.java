@@ -0,0 +1,107 @@
+package com.myvnc.client;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+// RRE 인코딩 (type 2)
+// 배경색 하나와 단색 하위 사각형 목록. 모든 사각형을 래스터 행 단위 채우기로 그립니다.
+class RREEncoding implements RFBEncoding {
+    private final byte[] buffer = new byte[64];
+    private RFBPixelFormat cachedFormat;
+    private PixelConverter converter;
+    // decode 동안의 입력 (스트림 또는 수신 버퍼) - fetch() 참고
+    private DataInputStream in;
+    private RFBChannelReader reader;
+    private byte[] src;
+
+    @Override
+    public int getEncodingType() {
+        return 2; // RRE encoding type
+    }
+
+    @Override
+    public void decode(DataInputStream in, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        this.in = in;
+        this.reader = null;
+        decodeRect(image, x, y, width, height, pixelFormat);
+    }
+
+    @Override
+    public void decode(RFBChannelReader reader, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        this.in = null;
+        this.reader = reader;
+        decodeRect(image, x, y, width, height, pixelFormat);
+    }
+
+    private void decodeRect(BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        if (pixelFormat != cachedFormat) {
+            converter = PixelConverter.forFormat(pixelFormat);
+            cachedFormat = pixelFormat;
+        }
+        int bpp = converter.bytesPerPixel;
+        int p = fetch(4);
+        int numSubrects = subrectCount(readU16(src, p) << 16 | readU16(src, p + 2), width, height);
+        p = fetch(bpp);
+        int background = converter.toRGB(src, p);
+
+        int[] pixels = RasterAccess.pixels(image);
+        int stride = RasterAccess.stride(image);
+        RasterAccess.fill(image, pixels, stride, x, y, width, height, background);
+
+        // 하위 사각형: pixel + x, y, w, h (각 u16)
+        int entrySize = bpp + 8;
+        for (int i = 0; i < numSubrects; i++) {
+            p = fetch(entrySize);
+            int color = converter.toRGB(src, p);
+            int sx = readU16(src, p + bpp);
+            int sy = readU16(src, p + bpp + 2);
+            int sw = readU16(src, p + bpp + 4);
+            int sh = readU16(src, p + bpp + 6);
+            RasterAccess.fill(image, pixels, stride, x + sx, y + sy,
+                    Math.min(sw, width - sx), Math.min(sh, height - sy), color);
+        }
+    }
+
+    @Override
+    public boolean readPayload(DataInputStream in, RectPayload payload, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        int bpp = pixelFormat.bitsPerPixel / 8;
+        int numSubrects = subrectCount(payload.readS32(in), width, height);
+        try {
+            payload.read(in, Math.addExact(bpp, Math.multiplyExact(numSubrects, bpp + 8)));
+        } catch (ArithmeticException e) {
+            throw new IOException("RRE 사각형 데이터가 너무 큽니다: 하위 사각형 " + numSubrects + "개");
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isIndependent(RectPayload payload) {
+        return true;
+    }
+
+    // n바이트를 읽어 src 배열 안의 시작 위치를 반환 (수신 버퍼 경로는 복사 없음)
+    private int fetch(int n) throws IOException {
+        if (reader != null) {
+            int offset = reader.take(n);
+            src = reader.array();
+            return offset;
+        }
+        in.readFully(buffer, 0, n);
+        src = buffer;
+        return 0;
+    }
+
+    // 하위 사각형 수는 부호 없는 32비트입니다. 픽셀 수보다 많으면 스트림이 어긋난 것으로 봅니다.
+    private static int subrectCount(int raw, int width, int height) throws IOException {
+        long count = raw & 0xFFFFFFFFL;
+        if (count > (long) width * height) {
+            throw new IOException("잘못된 RRE 하위 사각형 수: " + count + " (" + width + "x" + height + ")");
+        }
+        return (int) count;
+    }
+
+    private static int readU16(byte[] b, int off) {
+        return ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+    }
+}
@@ -0,0 +1,45 @@
+package com.myvnc.client;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+
+// 프레임버퍼(TYPE_INT_RGB)의 int[] 래스터에 직접 접근하기 위한 헬퍼
+// setRGB()는 픽셀마다 ColorModel 변환과 동기화를 거치므로 디코더는 이 배열에 바로 씁니다.
+final class RasterAccess {
+
+    private RasterAccess() {
+    }
+
+    static int[] pixels(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        if (!(buffer instanceof DataBufferInt)) {
+            throw new IllegalArgumentException("int 래스터 이미지가 아닙니다: type=" + image.getType());
+        }
+        return ((DataBufferInt) buffer).getData();
+    }
+
+    static int stride(BufferedImage image) {
+        return ((SinglePixelPackedSampleModel) image.getSampleModel()).getScanlineStride();
+    }
+
+    // 사각형이 이미지 범위 안에 완전히 들어가는지 확인
+    static boolean contains(BufferedImage image, int x, int y, int width, int height) {
+        return x >= 0 && y >= 0 && x + width <= image.getWidth() && y + height <= image.getHeight();
+    }
+
+    // 단색 사각형 채우기 (경계 밖은 잘라냄). 행마다 Arrays.fill 한 번
+    static void fill(BufferedImage image, int[] pixels, int stride, int x, int y, int width, int height, int color) {
+        int x0 = Math.max(x, 0);
+        int x1 = Math.min(x + width, image.getWidth());
+        int y1 = Math.min(y + height, image.getHeight());
+        if (x1 <= x0) {
+            return;
+        }
+        for (int row = Math.max(y, 0); row < y1; row++) {
+            Arrays.fill(pixels, row * stride + x0, row * stride + x1, color);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.myvnc.client;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.concurrent.locks.Lock;
+
+// Raw 인코딩: 픽셀 데이터를 그대로 전송합니다.
+// 스캔라인 단위로 재사용 버퍼에 읽은 뒤 포맷에 특화된 변환기로 래스터에 바로 씁니다.
+class RawEncoding implements RFBEncoding {
+    private byte[] rowBuffer = new byte[0];
+    private RFBPixelFormat cachedFormat;
+    private PixelConverter converter;
+
+    @Override
+    public int getEncodingType() {
+        return 0; // Raw encoding type
+    }
+
+    @Override
+    public void decode(DataInputStream in, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        int rowBytes = width * converterFor(pixelFormat).bytesPerPixel;
+        if (rowBuffer.length < rowBytes) {
+            rowBuffer = new byte[rowBytes];
+        }
+        for (int j = y; j < y + height; j++) {
+            in.readFully(rowBuffer, 0, rowBytes);
+            putRow(rowBuffer, 0, image, x, j, width);
+        }
+    }
+
+    // 수신 버퍼의 스캔라인을 복사 없이 바로 변환합니다.
+    @Override
+    public void decode(RFBChannelReader reader, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        int rowBytes = width * converterFor(pixelFormat).bytesPerPixel;
+        for (int j = y; j < y + height; j++) {
+            int src = reader.take(rowBytes);
+            putRow(reader.array(), src, image, x, j, width);
+        }
+    }
+
+    // 모아 둔 데이터의 스캔라인을 복사 없이 바로 변환합니다.
+    @Override
+    public void decode(RectPayload payload, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        int rowBytes = width * converterFor(pixelFormat).bytesPerPixel;
+        if (payload.length < rowBytes * height) {
+            throw new IOException("Raw 사각형 데이터가 부족합니다: " + payload.length);
+        }
+        for (int j = 0; j < height; j++) {
+            putRow(payload.data, payload.offset + j * rowBytes, image, x, y + j, width);
+        }
+    }
+
+    // 공유 프레임버퍼용: 스캔라인 하나를 받은 뒤에만 rowLock을 잡고 씁니다.
+    // (사각형 전체를 모아 두지 않으면서도 소켓에서 기다리는 동안 잠금을 쥐고 있지 않음)
+    void decode(DataInputStream in, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat,
+                Lock rowLock) throws IOException {
+        int rowBytes = width * converterFor(pixelFormat).bytesPerPixel;
+        if (rowBuffer.length < rowBytes) {
+            rowBuffer = new byte[rowBytes];
+        }
+        for (int j = y; j < y + height; j++) {
+            in.readFully(rowBuffer, 0, rowBytes);
+            rowLock.lock();
+            try {
+                putRow(rowBuffer, 0, image, x, j, width);
+            } finally {
+                rowLock.unlock();
+            }
+        }
+    }
+
+    void decode(RFBChannelReader reader, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat,
+                Lock rowLock) throws IOException {
+        int rowBytes = width * converterFor(pixelFormat).bytesPerPixel;
+        for (int j = y; j < y + height; j++) {
+            int src = reader.take(rowBytes);
+            rowLock.lock();
+            try {
+                putRow(reader.array(), src, image, x, j, width);
+            } finally {
+                rowLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean readPayload(DataInputStream in, RectPayload payload, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        payload.read(in, width * height * (pixelFormat.bitsPerPixel / 8));
+        return true;
+    }
+
+    @Override
+    public boolean isIndependent(RectPayload payload) {
+        return true;
+    }
+
+    private PixelConverter converterFor(RFBPixelFormat pixelFormat) {
+        if (pixelFormat != cachedFormat) {
+            // 포맷이 바뀔 때만 변환기를 다시 고릅니다 (픽셀마다 분기하지 않음)
+            converter = PixelConverter.forFormat(pixelFormat);
+            cachedFormat = pixelFormat;
+        }
+        return converter;
+    }
+
+    // 프레임버퍼 밖으로 나가는 부분은 버립니다.
+    private void putRow(byte[] src, int srcOff, BufferedImage image, int x, int row, int width) {
+        if (row < 0 || row >= image.getHeight()) {
+            return;
+        }
+        int x0 = Math.max(x, 0);
+        int x1 = Math.min(x + width, image.getWidth());
+        if (x1 > x0) {
+            converter.convertRow(src, srcOff + (x0 - x) * converter.bytesPerPixel,
+                    RasterAccess.pixels(image), row * RasterAccess.stride(image) + x0, x1 - x0);
+        }
+    }
+}
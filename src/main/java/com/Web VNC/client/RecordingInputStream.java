@@ -0,0 +1,68 @@
+package com.myvnc.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// 스트림 수신 경로의 세션 녹화: 프로토콜 처리기가 소비한 바이트를 그대로 녹화기에 넘깁니다.
+// 버퍼 위에 두므로 녹화된 바이트 수가 곧 소비한 위치입니다. 녹화하지 않을 때도 소비한 바이트 수를 셉니다. (메시지별 통계)
+final class RecordingInputStream extends FilterInputStream {
+    private volatile SessionRecorder recorder;
+    private long consumed;
+
+    RecordingInputStream(InputStream in) {
+        super(in);
+    }
+
+    void setRecorder(SessionRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    // 수신 스레드에서만 호출
+    long getConsumed() {
+        return consumed;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b < 0) {
+            return b;
+        }
+        consumed++;
+        SessionRecorder r = recorder;
+        if (r != null) {
+            r.data(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n <= 0) {
+            return n;
+        }
+        consumed += n;
+        SessionRecorder r = recorder;
+        if (r != null) {
+            r.data(b, off, n);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // 건너뛴 바이트도 기록되어야 하므로 읽어서 버립니다.
+        byte[] scratch = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(scratch, 0, (int) Math.min(scratch.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+}
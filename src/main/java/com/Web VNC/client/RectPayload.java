@@ -0,0 +1,121 @@
+package com.myvnc.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// 사각형 하나의 데이터를 수신 스트림과 분리해 보관하는 버퍼
+// 파싱 단계가 RFBEncoding.readPayload()로 채우고, 디코딩 단계가 RFBEncoding.decode(RectPayload, ...)로 다시 읽습니다.
+// peek() 모드에서는 복사하지 않고 NIO 수신 버퍼에 받아 두기만 하며, data/offset이 그 버퍼를 가리킵니다.
+// (소켓 I/O를 모두 끝낸 뒤에 프레임버퍼 잠금을 잡고 디코딩하기 위해 씀)
+public final class RectPayload {
+    private byte[] own = new byte[256];
+    private RFBChannelReader source; // null이면 스트림에서 복사해 보관
+    private final PayloadStream input = new PayloadStream();
+    private final DataInputStream stream = new DataInputStream(input);
+    byte[] data = own;
+    int offset;
+    int length;
+
+    // 복사 모드로 비웁니다.
+    void reset() {
+        source = null;
+        data = own;
+        offset = 0;
+        length = 0;
+    }
+
+    // 수신 버퍼를 가리키는 모드로 비웁니다. read()는 버퍼에 받아 두기만 하고 소비하지 않으므로
+    // 호출하는 쪽이 디코딩 뒤에 length만큼 소비해야 하며, data는 reader를 다시 쓰기 전까지만 유효합니다.
+    void peek(RFBChannelReader reader) {
+        reset();
+        source = reader;
+    }
+
+    // src의 바이트를 복사해 보관합니다. (peek 모드로 읽은 사각형을 다른 스레드에 넘길 때)
+    void copyFrom(RectPayload src) {
+        reset();
+        if (own.length < src.length) {
+            own = new byte[Math.max(own.length * 2, src.length)];
+            data = own;
+        }
+        System.arraycopy(src.data, src.offset, own, 0, src.length);
+        length = src.length;
+    }
+
+    // 스트림에서 n바이트를 그대로 읽어 붙입니다. (peek 모드에서는 in을 쓰지 않음)
+    public void read(DataInputStream in, int n) throws IOException {
+        if (source != null) {
+            // 버퍼가 압축/확장되면 배열과 위치가 바뀌므로 매번 다시 가져옵니다.
+            ByteBuffer buffer = source.require(length + n);
+            data = buffer.array();
+            offset = buffer.arrayOffset() + buffer.position();
+            length += n;
+            return;
+        }
+        if (length + n > own.length) {
+            byte[] grown = new byte[Math.max(own.length * 2, length + n)];
+            System.arraycopy(own, 0, grown, 0, length);
+            own = grown;
+            data = own;
+        }
+        in.readFully(own, length, n);
+        length += n;
+    }
+
+    public int readU8(DataInputStream in) throws IOException {
+        read(in, 1);
+        return data[offset + length - 1] & 0xFF;
+    }
+
+    public int readU16(DataInputStream in) throws IOException {
+        read(in, 2);
+        int end = offset + length;
+        return ((data[end - 2] & 0xFF) << 8) | (data[end - 1] & 0xFF);
+    }
+
+    public int readS32(DataInputStream in) throws IOException {
+        read(in, 4);
+        int end = offset + length;
+        return ((data[end - 4] & 0xFF) << 24) | ((data[end - 3] & 0xFF) << 16)
+                | ((data[end - 2] & 0xFF) << 8) | (data[end - 1] & 0xFF);
+    }
+
+    // 보관된 바이트 (pos 위치의 부호 없는 값)
+    public int getU8(int pos) {
+        return data[offset + pos] & 0xFF;
+    }
+
+    public int getU16(int pos) {
+        return ((data[offset + pos] & 0xFF) << 8) | (data[offset + pos + 1] & 0xFF);
+    }
+
+    public int getS32(int pos) {
+        int i = offset + pos;
+        return ((data[i] & 0xFF) << 24) | ((data[i + 1] & 0xFF) << 16) | ((data[i + 2] & 0xFF) << 8) | (data[i + 3] & 0xFF);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // 기존 스트림 기반 decode에 넘길 입력 (같은 스트림 객체를 다시 가리키게 해서 재사용하므로 한 번에 하나만 유효)
+    public DataInputStream stream() {
+        input.reset(data, offset, length);
+        return stream;
+    }
+
+    private static final class PayloadStream extends ByteArrayInputStream {
+        PayloadStream() {
+            super(new byte[0]);
+        }
+
+        void reset(byte[] data, int offset, int length) {
+            buf = data;
+            pos = offset;
+            count = offset + length;
+            mark = offset;
+        }
+    }
+}
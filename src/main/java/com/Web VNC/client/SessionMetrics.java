@@ -0,0 +1,396 @@
+package com.myvnc.client;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// 세션 하나의 실행 통계: 네트워크(메시지별 바이트), 디코딩(인코딩별 시간), 그리기(패널) 중 어디가 느린지 구분하기 위한 것
+// 기록은 모두 원자적 증가나 고정 크기 히스토그램이라 수신/송신/EDT 스레드가 잠금 없이 씁니다.
+//   수신: 메시지 타입별 바이트/개수 (RFBClient 수신 루프)
+//   송신: 메시지 타입별 바이트/개수 (ClientMessageWriter, 합쳐진 PointerEvent는 세지 않음)
+//   인코딩별 사각형/픽셀 수와 디코딩 시간 (RFBProtocolHandler, ParallelRectDecoder)
+//     수신 스레드에서 소켓을 읽으며 디코딩하는 경로는 소켓 읽기에서 기다린 시간을 뺍니다.
+//   요청 -> 업데이트: FramebufferUpdateRequest 전송부터 해당 업데이트 메시지 도착까지 (ContinuousUpdates 중에는 없음)
+//   입력 -> 화면: 키/포인터 이벤트 전송부터 그 뒤 처음 바뀐 화면이 그려질 때까지 (입력과 무관한 변경도 포함하는 근사값)
+//   그리기: 패널의 paintComponent 시간
+public class SessionMetrics implements SessionMetricsMXBean {
+    private static final String DOMAIN = "com.myvnc";
+
+    private final String name;
+    private final AtomicLongArray bytesIn = new AtomicLongArray(256);
+    private final AtomicLongArray messagesIn = new AtomicLongArray(256);
+    private final AtomicLongArray bytesOut = new AtomicLongArray(256);
+    private final AtomicLongArray messagesOut = new AtomicLongArray(256);
+    private final Map<Integer, EncodingMetrics> encodings = new ConcurrentHashMap<>();
+    private final LatencyHistogram requestToUpdate = new LatencyHistogram();
+    private final LatencyHistogram inputToVisible = new LatencyHistogram();
+    private final LatencyHistogram paint = new LatencyHistogram();
+
+    // 입력 -> 화면: 아직 업데이트를 받지 못한 첫 입력 시각, 업데이트는 받았고 그려지기를 기다리는 입력 시각 (0이면 없음)
+    private final AtomicLong inputPending = new AtomicLong();
+    private final AtomicLong inputAwaitingPaint = new AtomicLong();
+
+    private volatile LongSupplier readWaitNanos = () -> 0; // 수신 스레드가 소켓 읽기에서 기다린 누적 시간
+    private volatile ObjectName objectName; // null이면 JMX에 등록되지 않음
+    private ScheduledExecutorService dumper;
+
+    // 인코딩 하나의 사각형/픽셀 수와 디코딩 시간
+    static final class EncodingMetrics extends LatencyHistogram implements EncodingMetricsMXBean {
+        final LongAdder pixels = new LongAdder();
+
+        @Override
+        public long getPixels() {
+            return pixels.sum();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            pixels.reset();
+        }
+    }
+
+    public SessionMetrics(String name) {
+        this.name = name;
+    }
+
+    // --- 기록 ---
+
+    void setReadWait(LongSupplier readWaitNanos) {
+        this.readWaitNanos = readWaitNanos;
+    }
+
+    // 소켓 대기 시간을 뺀 시각 (수신 스레드). 두 값의 차이가 순수 처리 시간입니다.
+    long decodeClock() {
+        return System.nanoTime() - readWaitNanos.getAsLong();
+    }
+
+    void messageIn(int type, long bytes) {
+        bytesIn.addAndGet(type & 0xFF, bytes);
+        messagesIn.incrementAndGet(type & 0xFF);
+    }
+
+    void messageOut(int type, int bytes) {
+        bytesOut.addAndGet(type & 0xFF, bytes);
+        messagesOut.incrementAndGet(type & 0xFF);
+    }
+
+    // 사각형 하나를 디코딩한 뒤
+    void rectDecoded(int encodingType, int width, int height, long nanos) {
+        EncodingMetrics metrics = encoding(encodingType);
+        metrics.record(nanos);
+        metrics.pixels.add((long) width * height);
+    }
+
+    void requestToUpdate(long nanos) {
+        requestToUpdate.record(nanos);
+    }
+
+    // 키/포인터 이벤트 전송
+    void inputSent() {
+        inputPending.compareAndSet(0, System.nanoTime());
+    }
+
+    // 프레임버퍼가 바뀐 업데이트를 적용한 뒤
+    void updateApplied() {
+        long sent = inputPending.getAndSet(0);
+        if (sent != 0) {
+            inputAwaitingPaint.compareAndSet(0, sent);
+        }
+    }
+
+    // 패널이 그리기를 마쳤을 때 (EDT)
+    public void painted(long paintNanos) {
+        paint.record(paintNanos);
+        long sent = inputAwaitingPaint.getAndSet(0);
+        if (sent != 0) {
+            inputToVisible.record(System.nanoTime() - sent);
+        }
+    }
+
+    private EncodingMetrics encoding(int encodingType) {
+        EncodingMetrics metrics = encodings.get(encodingType);
+        if (metrics == null) {
+            EncodingMetrics created = new EncodingMetrics();
+            metrics = encodings.putIfAbsent(encodingType, created);
+            if (metrics == null) {
+                metrics = created;
+                ObjectName base = objectName;
+                if (base != null) {
+                    register(created, EncodingMetricsMXBean.class, child(base, "encoding", encodingName(encodingType)));
+                }
+            }
+        }
+        return metrics;
+    }
+
+    // --- 조회 ---
+
+    public LatencyHistogram getRequestToUpdate() {
+        return requestToUpdate;
+    }
+
+    public LatencyHistogram getInputToVisible() {
+        return inputToVisible;
+    }
+
+    public LatencyHistogram getPaint() {
+        return paint;
+    }
+
+    // 인코딩 타입 -> 통계 (디코딩한 적이 있는 인코딩만)
+    public Map<Integer, ? extends EncodingMetricsMXBean> getEncodings() {
+        return encodings;
+    }
+
+    @Override
+    public Map<String, Long> getBytesInByMessage() {
+        return byMessage(bytesIn, messagesIn, true);
+    }
+
+    @Override
+    public Map<String, Long> getMessagesInByMessage() {
+        return byMessage(messagesIn, messagesIn, true);
+    }
+
+    @Override
+    public Map<String, Long> getBytesOutByMessage() {
+        return byMessage(bytesOut, messagesOut, false);
+    }
+
+    @Override
+    public Map<String, Long> getMessagesOutByMessage() {
+        return byMessage(messagesOut, messagesOut, false);
+    }
+
+    @Override
+    public long getBytesIn() {
+        return total(bytesIn);
+    }
+
+    @Override
+    public long getBytesOut() {
+        return total(bytesOut);
+    }
+
+    @Override
+    public long getReadWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(readWaitNanos.getAsLong());
+    }
+
+    private static Map<String, Long> byMessage(AtomicLongArray values, AtomicLongArray messages, boolean server) {
+        Map<String, Long> result = new TreeMap<>();
+        for (int type = 0; type < 256; type++) {
+            if (messages.get(type) > 0) {
+                result.put(messageName(type, server), values.get(type));
+            }
+        }
+        return result;
+    }
+
+    private static long total(AtomicLongArray values) {
+        long sum = 0;
+        for (int i = 0; i < values.length(); i++) {
+            sum += values.get(i);
+        }
+        return sum;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < 256; i++) {
+            bytesIn.set(i, 0);
+            messagesIn.set(i, 0);
+            bytesOut.set(i, 0);
+            messagesOut.set(i, 0);
+        }
+        for (EncodingMetrics metrics : encodings.values()) {
+            metrics.reset();
+        }
+        requestToUpdate.reset();
+        inputToVisible.reset();
+        paint.reset();
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[세션 통계 ").append(name).append("] 수신 대기 ").append(getReadWaitMillis()).append("ms\n");
+        for (int type = 0; type < 256; type++) {
+            if (messagesIn.get(type) > 0) {
+                sb.append(String.format("  수신 %-24s %8d개 %12d바이트%n", messageName(type, true), messagesIn.get(type), bytesIn.get(type)));
+            }
+        }
+        for (int type = 0; type < 256; type++) {
+            if (messagesOut.get(type) > 0) {
+                sb.append(String.format("  송신 %-24s %8d개 %12d바이트%n", messageName(type, false), messagesOut.get(type), bytesOut.get(type)));
+            }
+        }
+        for (Map.Entry<Integer, EncodingMetrics> e : new TreeMap<>(encodings).entrySet()) {
+            sb.append(String.format("  디코딩 %-10s 픽셀=%d %s%n", encodingName(e.getKey()), e.getValue().getPixels(), e.getValue()));
+        }
+        sb.append("  요청->업데이트 ").append(requestToUpdate).append('\n');
+        sb.append("  입력->화면 ").append(inputToVisible).append('\n');
+        sb.append("  그리기 ").append(paint);
+        return sb.toString();
+    }
+
+    // --- JMX / 주기적 덤프 ---
+
+    // 플랫폼 MBean 서버에 등록합니다. 같은 이름의 세션이 이미 있으면 번호를 붙입니다.
+    public synchronized void register() {
+        if (objectName != null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (int n = 1; objectName == null; n++) {
+            try {
+                ObjectName candidate = new ObjectName(DOMAIN + ":type=Session,name=" + ObjectName.quote(n == 1 ? name : name + " #" + n));
+                if (server.isRegistered(candidate)) {
+                    continue;
+                }
+                server.registerMBean(new StandardMBean(this, SessionMetricsMXBean.class, true), candidate);
+                objectName = candidate;
+            } catch (JMException e) {
+                System.err.println("JMX 등록 오류: " + e.getMessage());
+                return;
+            }
+        }
+        register(requestToUpdate, LatencyHistogramMXBean.class, child(objectName, "latency", "requestToUpdate"));
+        register(inputToVisible, LatencyHistogramMXBean.class, child(objectName, "latency", "inputToVisible"));
+        register(paint, LatencyHistogramMXBean.class, child(objectName, "latency", "paint"));
+        for (Map.Entry<Integer, EncodingMetrics> e : encodings.entrySet()) {
+            register(e.getValue(), EncodingMetricsMXBean.class, child(objectName, "encoding", encodingName(e.getKey())));
+        }
+    }
+
+    // intervalSeconds마다 dump()를 out에 씁니다. 0 이하면 멈춥니다.
+    public synchronized void startDump(long intervalSeconds, PrintStream out) {
+        stopDump();
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rfb-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> out.println(dump()), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    // 덤프를 멈추고 이 세션의 MBean을 모두 해제합니다.
+    public synchronized void close() {
+        stopDump();
+        ObjectName base = objectName;
+        if (base == null) {
+            return;
+        }
+        objectName = null;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        List<ObjectName> names = new ArrayList<>();
+        try {
+            names.addAll(server.queryNames(new ObjectName(base + ",*"), null));
+        } catch (JMException e) {
+            System.err.println("JMX 해제 오류: " + e.getMessage());
+        }
+        names.add(base);
+        for (ObjectName n : names) {
+            try {
+                if (server.isRegistered(n)) {
+                    server.unregisterMBean(n);
+                }
+            } catch (JMException e) {
+                System.err.println("JMX 해제 오류: " + e.getMessage());
+            }
+        }
+    }
+
+    private static <T> void register(T bean, Class<T> type, ObjectName objectName) {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(bean, type, true), objectName);
+        } catch (JMException e) {
+            System.err.println("JMX 등록 오류: " + e.getMessage());
+        }
+    }
+
+    private static ObjectName child(ObjectName base, String key, String value) {
+        try {
+            return new ObjectName(base + "," + key + "=" + value);
+        } catch (JMException e) {
+            return null;
+        }
+    }
+
+    static String messageName(int type, boolean server) {
+        switch (type) {
+            case 0:
+                return server ? "FramebufferUpdate" : "SetPixelFormat";
+            case 1:
+                return server ? "SetColourMapEntries" : "type-1";
+            case 2:
+                return server ? "Bell" : "SetEncodings";
+            case 3:
+                return server ? "ServerCutText" : "FramebufferUpdateRequest";
+            case 4:
+                return server ? "type-4" : "KeyEvent";
+            case 5:
+                return server ? "type-5" : "PointerEvent";
+            case 6:
+                return server ? "type-6" : "ClientCutText";
+            case 150:
+                return server ? "EndOfContinuousUpdates" : "EnableContinuousUpdates";
+            case 248:
+                return "Fence";
+            default:
+                return "type-" + type;
+        }
+    }
+
+    static String encodingName(int type) {
+        switch (type) {
+            case 0:
+                return "Raw";
+            case 1:
+                return "CopyRect";
+            case 2:
+                return "RRE";
+            case 5:
+                return "Hextile";
+            case 7:
+                return "Tight";
+            case 16:
+                return "ZRLE";
+            case RFBProtocolHandler.PSEUDO_CURSOR:
+                return "Cursor";
+            case RFBProtocolHandler.PSEUDO_POINTER_POS:
+                return "PointerPos";
+            default:
+                return "type" + type;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.myvnc.client;
+
+import java.util.Map;
+
+// JMX로 공개하는 세션 통계 (com.myvnc:type=Session,name="host:port")
+// 인코딩별 디코딩 시간과 지연 시간 히스토그램은 같은 이름 아래 encoding=, latency= 키로 따로 등록됩니다.
+public interface SessionMetricsMXBean {
+    // 메시지 이름 -> 값 (받거나 보낸 적이 있는 메시지만)
+    Map<String, Long> getBytesInByMessage();
+
+    Map<String, Long> getMessagesInByMessage();
+
+    Map<String, Long> getBytesOutByMessage();
+
+    Map<String, Long> getMessagesOutByMessage();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    // 수신 스레드가 소켓 읽기에서 기다린 누적 시간 (나머지가 파싱/디코딩 시간)
+    long getReadWaitMillis();
+
+    // 사람이 읽는 요약 (주기적 덤프와 같은 내용)
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,583 @@
+package com.myvnc.client;
+
+import com.myvnc.ui.VNCDisplayPanel;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// SessionRecorder 파일 재생기
+// 파일을 메모리 매핑하고 기록된 바이트를 실시간 클라이언트와 같은 디코더로 다시 디코딩해 VNCDisplayPanel에 그립니다.
+// seek()은 목표 시각 이전의 가장 가까운 키프레임에서 프레임버퍼와 zlib 상태를 복원한 뒤
+// 목표 시각까지는 화면 갱신 없이 최대 속도로 디코딩합니다.
+// 재생은 전용 스레드 하나가 하고, play/pause/seek/setSpeed는 어느 스레드에서나 호출할 수 있습니다.
+public class SessionPlayer implements Closeable {
+    private static final long CHUNK_SIZE = 1L << 30; // 매핑 단위 (2GB 넘는 파일도 재생)
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    private final VNCDisplayPanel panel;
+    private final Map<Integer, RFBEncoding> encodings;
+    private final BufferedImage framebuffer;
+    private final long startMillis;
+    private final String serverName;
+    private final long recordsStart;
+    private long recordsEnd;
+
+    // 색인
+    private final List<long[]> keyframes = new ArrayList<>(); // (시각, 스트림 위치, 파일 위치)
+    private final TreeMap<Long, RFBPixelFormat> formats = new TreeMap<>();
+    private long durationNanos;
+
+    // 재생 상태 (this로 보호)
+    private boolean playing;
+    private double speed = 1.0;
+    private long seekTarget = 0; // 처리할 seek 요청 (-1이면 없음). 처음에는 0으로 첫 화면을 그립니다.
+    private boolean closed;
+    private boolean catchingUp; // seek 목표 시각까지 화면 갱신 없이 디코딩 중
+    private long catchUpTarget;
+    private long baseWallNanos; // 페이싱 기준: 이 벽시계 시각에 baseMediaNanos를 재생
+    private long baseMediaNanos;
+    private boolean rebase = true;
+    private volatile long positionNanos;
+
+    private final Thread thread;
+
+    // 재생 스레드를 seek/종료 요청으로 빠져나오게 할 때 씀
+    private static final class Interrupted extends IOException {
+        Interrupted() {
+            super("재생 중단", null);
+        }
+    }
+
+    public SessionPlayer(Path path, VNCDisplayPanel panel) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        for (int i = 0; i < chunks.length; i++) {
+            long offset = i * CHUNK_SIZE;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHUNK_SIZE, size - offset));
+        }
+        this.panel = panel;
+
+        DataInputStream header = new DataInputStream(range(0, size));
+        byte[] magic = new byte[SessionRecorder.MAGIC.length];
+        header.readFully(magic);
+        if (!Arrays.equals(magic, SessionRecorder.MAGIC)) {
+            throw new IOException("세션 녹화 파일이 아닙니다: " + path);
+        }
+        int version = header.readUnsignedShort();
+        if (version != SessionRecorder.VERSION) {
+            throw new IOException("지원되지 않는 녹화 파일 버전: " + version);
+        }
+        startMillis = header.readLong();
+        int width = header.readUnsignedShort();
+        int height = header.readUnsignedShort();
+        SessionRecorder.readPixelFormat(header); // 첫 키프레임에도 같은 포맷이 있음
+        byte[] name = new byte[header.readInt()];
+        header.readFully(name);
+        serverName = new String(name, StandardCharsets.UTF_8);
+        recordsStart = SessionRecorder.MAGIC.length + 2 + 8 + 2 + 2 + 16 + 4 + name.length;
+
+        if (!readIndex()) {
+            scanRecords();
+        }
+        if (keyframes.isEmpty()) {
+            throw new IOException("키프레임이 없는 녹화 파일입니다: " + path);
+        }
+
+        framebuffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        encodings = RFBClient.createEncodings(panel);
+        panel.setImage(framebuffer);
+
+        thread = new Thread(this::run, "rfb-player");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // 꼬리의 색인을 읽습니다. 없으면 (녹화가 비정상 종료됨) false
+    private boolean readIndex() throws IOException {
+        int trailer = 8 + SessionRecorder.INDEX_MAGIC.length;
+        if (size < recordsStart + trailer) {
+            return false;
+        }
+        byte[] magic = new byte[SessionRecorder.INDEX_MAGIC.length];
+        get(size - magic.length, magic, 0, magic.length);
+        if (!Arrays.equals(magic, SessionRecorder.INDEX_MAGIC)) {
+            return false;
+        }
+        long indexPosition = getLong(size - trailer);
+        if (get(indexPosition) != SessionRecorder.INDEX) {
+            return false;
+        }
+        recordsEnd = indexPosition;
+        DataInputStream index = new DataInputStream(range(indexPosition + SessionRecorder.RECORD_HEADER,
+                getInt(indexPosition + 9)));
+        durationNanos = index.readLong();
+        index.readLong(); // 전체 수신 바이트
+        int keyframeCount = index.readInt();
+        for (int i = 0; i < keyframeCount; i++) {
+            keyframes.add(new long[]{index.readLong(), index.readLong(), index.readLong()});
+        }
+        int formatCount = index.readInt();
+        for (int i = 0; i < formatCount; i++) {
+            formats.put(index.readLong(), SessionRecorder.readPixelFormat(index));
+        }
+        return true;
+    }
+
+    // 레코드 헤더를 차례로 따라가며 색인을 만듭니다. 마지막 레코드가 잘려 있으면 그 앞에서 끝냅니다.
+    private void scanRecords() throws IOException {
+        long position = recordsStart;
+        while (position + SessionRecorder.RECORD_HEADER <= size) {
+            int type = get(position);
+            long timestamp = getLong(position + 1);
+            int length = getInt(position + 9);
+            long content = position + SessionRecorder.RECORD_HEADER;
+            if (length < 0 || content + length > size) {
+                break;
+            }
+            if (type == SessionRecorder.KEYFRAME) {
+                keyframes.add(new long[]{timestamp, getLong(content), position});
+            } else if (type == SessionRecorder.FORMAT) {
+                DataInputStream in = new DataInputStream(range(content, length));
+                formats.put(in.readLong(), SessionRecorder.readPixelFormat(in));
+            } else if (type == SessionRecorder.INDEX) {
+                break;
+            }
+            durationNanos = Math.max(durationNanos, timestamp);
+            position = content + length;
+        }
+        recordsEnd = position;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public long getPositionNanos() {
+        return positionNanos;
+    }
+
+    // 녹화 시작 시각 (epoch ms)
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public synchronized boolean isPlaying() {
+        return playing;
+    }
+
+    public synchronized void play() {
+        if (positionNanos >= durationNanos) {
+            seekTarget = 0; // 끝에서 다시 재생하면 처음부터
+        }
+        playing = true;
+        rebase = true;
+        notifyAll();
+    }
+
+    public synchronized void pause() {
+        playing = false;
+        notifyAll();
+    }
+
+    // 1.0이면 실시간, 2.0이면 2배속, 0 이하이면 최대 속도
+    public synchronized void setSpeed(double speed) {
+        this.speed = speed;
+        rebase = true;
+        notifyAll();
+    }
+
+    public synchronized double getSpeed() {
+        return speed;
+    }
+
+    // 녹화 시작 후 nanos 시점으로 이동합니다. (재생 중이면 그 위치부터 계속 재생)
+    public synchronized void seek(long nanos) {
+        seekTarget = Math.max(0, Math.min(nanos, durationNanos));
+        notifyAll();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("녹화 파일 닫기 실패: " + e.getMessage());
+        }
+    }
+
+    private void run() {
+        while (true) {
+            long target;
+            synchronized (this) {
+                while (!closed && seekTarget < 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                target = seekTarget;
+                seekTarget = -1;
+                catchingUp = true;
+                catchUpTarget = target;
+            }
+            try {
+                playFrom(target);
+                // 끝까지 재생함
+                synchronized (this) {
+                    playing = false;
+                    if (catchingUp) {
+                        catchingUp = false;
+                        showFrame();
+                    }
+                }
+                positionNanos = durationNanos;
+            } catch (Interrupted e) {
+                // 새 seek 요청 또는 종료
+            } catch (IOException | RuntimeException e) {
+                System.err.println("세션 재생 오류: " + e.getMessage());
+                synchronized (this) {
+                    playing = false;
+                }
+            }
+        }
+    }
+
+    // target 이전의 가장 가까운 (이어 풀 수 있는) 키프레임에서 시작해 녹화 끝까지 디코딩합니다.
+    private void playFrom(long target) throws IOException {
+        int k = keyframes.size() - 1;
+        while (k > 0 && keyframes.get(k)[0] > target) {
+            k--;
+        }
+        Keyframe keyframe;
+        while ((keyframe = restore(keyframes.get(k)[2])) == null) {
+            if (k == 0) {
+                throw new IOException("이어 풀 수 있는 키프레임이 없습니다.");
+            }
+            k--;
+        }
+        panel.cursorShapeChanged(null, 0, 0); // 키프레임에는 커서 모양이 없음 (다음 Cursor 사각형까지 시스템 커서)
+
+        DataStream data = new DataStream(keyframe);
+        RFBProtocolHandler handler = new RFBProtocolHandler(new DataInputStream(data),
+                new DataOutputStream(OutputStream.nullOutputStream()));
+        DamageRegion damage = new DamageRegion();
+        try {
+            while (true) {
+                long messageStart = data.streamOffset;
+                int messageType = data.read();
+                if (messageType < 0) {
+                    return;
+                }
+                // 이 메시지에 적용되는 픽셀 포맷: 키프레임 이후의 마지막 변경, 없으면 키프레임의 포맷
+                Map.Entry<Long, RFBPixelFormat> change = formats.floorEntry(messageStart);
+                RFBPixelFormat pixelFormat = change != null && change.getKey() >= keyframe.streamOffset
+                        ? change.getValue() : keyframe.pixelFormat;
+                switch (messageType) {
+                    case 0: // FramebufferUpdate
+                        handler.handleFramebufferUpdate(pixelFormat, encodings, framebuffer, damage);
+                        List<Rectangle> rects = damage.drain();
+                        if (!isCatchingUp()) {
+                            panel.framebufferUpdated(rects);
+                        }
+                        break;
+                    case 1: // SetColourMapEntries
+                        handler.handleSetColourMapEntries(pixelFormat);
+                        break;
+                    case 2: // Bell
+                        break;
+                    case 3: // ServerCutText
+                        handler.skipServerCutText();
+                        break;
+                    case 150: // EndOfContinuousUpdates
+                        break;
+                    case 248: // Fence
+                        handler.readFence();
+                        break;
+                    default:
+                        throw new IOException("알 수 없는 서버 메시지 타입: " + messageType);
+                }
+            }
+        } finally {
+            handler.close();
+        }
+    }
+
+    private synchronized boolean isCatchingUp() {
+        return catchingUp;
+    }
+
+    private static final class Keyframe {
+        long streamOffset;
+        long dataRecordPosition;
+        long dataRecordStart;
+        long afterRecord; // 'D' 레코드가 없을 때 읽기 시작할 위치
+        RFBPixelFormat pixelFormat;
+    }
+
+    // 키프레임을 읽어 프레임버퍼와 zlib 상태를 복원합니다. zlib 스트림을 이어 풀 수 없으면 null
+    private Keyframe restore(long position) throws IOException {
+        int length = getInt(position + 9);
+        DataInputStream in = new DataInputStream(range(position + SessionRecorder.RECORD_HEADER, length));
+        Keyframe keyframe = new Keyframe();
+        keyframe.streamOffset = in.readLong();
+        keyframe.dataRecordPosition = in.readLong();
+        keyframe.dataRecordStart = in.readLong();
+        keyframe.afterRecord = position + SessionRecorder.RECORD_HEADER + length;
+        int width = in.readUnsignedShort();
+        int height = in.readUnsignedShort();
+        if (width != framebuffer.getWidth() || height != framebuffer.getHeight()) {
+            throw new IOException("키프레임 크기가 다릅니다: " + width + "x" + height);
+        }
+        keyframe.pixelFormat = SessionRecorder.readPixelFormat(in);
+        boolean resumable = true;
+        for (ZlibInStream stream : SessionRecorder.sessionStreams(encodings)) {
+            resumable &= stream.readState(in);
+        }
+        if (!resumable) {
+            return null;
+        }
+        inflatePixels(in);
+        return keyframe;
+    }
+
+    private void inflatePixels(DataInputStream in) throws IOException {
+        byte[] compressed = new byte[in.readInt()];
+        in.readFully(compressed);
+        int[] pixels = RasterAccess.pixels(framebuffer);
+        int stride = RasterAccess.stride(framebuffer);
+        int width = framebuffer.getWidth();
+        byte[] row = new byte[width * 3];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            for (int y = 0; y < framebuffer.getHeight(); y++) {
+                int filled = 0;
+                while (filled < row.length) {
+                    int n = inflater.inflate(row, filled, row.length - filled);
+                    if (n == 0 && (inflater.needsInput() || inflater.finished())) {
+                        throw new IOException("키프레임 데이터가 잘렸습니다.");
+                    }
+                    filled += n;
+                }
+                for (int x = 0; x < width; x++) {
+                    pixels[y * stride + x] = ((row[x * 3] & 0xFF) << 16) | ((row[x * 3 + 1] & 0xFF) << 8) | (row[x * 3 + 2] & 0xFF);
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("키프레임 데이터 오류: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // 새 'D' 레코드에 들어갈 때 호출: 기록된 시각에 맞춰 기다립니다. (일시 정지, seek, 종료도 여기서 처리)
+    private synchronized void pace(long timestamp) throws IOException {
+        while (true) {
+            if (closed || seekTarget >= 0) {
+                throw new Interrupted();
+            }
+            if (catchingUp) {
+                if (timestamp <= catchUpTarget) {
+                    return; // 목표 시각 전: 바로 디코딩
+                }
+                // 목표 시각 도달
+                catchingUp = false;
+                positionNanos = catchUpTarget;
+                showFrame();
+                rebase = true;
+            }
+            if (!playing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new Interrupted();
+                }
+                continue;
+            }
+            if (rebase) {
+                baseWallNanos = System.nanoTime();
+                baseMediaNanos = positionNanos;
+                rebase = false;
+            }
+            if (speed <= 0) {
+                break;
+            }
+            long due = baseWallNanos + (long) ((timestamp - baseMediaNanos) / speed);
+            long wait = due - System.nanoTime();
+            if (wait <= 0) {
+                break;
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, wait);
+            } catch (InterruptedException e) {
+                throw new Interrupted();
+            }
+        }
+        positionNanos = timestamp;
+    }
+
+    // 복원/따라잡기로 바뀐 화면 전체를 그림
+    private void showFrame() {
+        panel.framebufferUpdated(List.of(new Rectangle(0, 0, framebuffer.getWidth(), framebuffer.getHeight())));
+    }
+
+    // 키프레임 위치부터 'D' 레코드들의 내용을 이어 붙인 스트림
+    private final class DataStream extends InputStream {
+        long streamOffset; // 다음에 읽을 바이트의 스트림 위치
+        private long recordEnd; // 현재 레코드 내용의 끝 (파일 위치)
+        private long cursor; // 다음에 읽을 파일 위치
+        private long nextRecord;
+
+        DataStream(Keyframe keyframe) throws IOException {
+            streamOffset = keyframe.streamOffset;
+            if (keyframe.dataRecordPosition < 0) {
+                nextRecord = keyframe.afterRecord;
+                cursor = recordEnd = 0;
+            } else {
+                enter(keyframe.dataRecordPosition);
+                cursor += keyframe.streamOffset - keyframe.dataRecordStart;
+            }
+        }
+
+        // position의 'D' 레코드로 들어갑니다.
+        private void enter(long position) throws IOException {
+            long timestamp = getLong(position + 1);
+            int length = getInt(position + 9);
+            cursor = position + SessionRecorder.RECORD_HEADER;
+            recordEnd = cursor + length;
+            nextRecord = recordEnd;
+            pace(timestamp);
+        }
+
+        // 다음 'D' 레코드로 넘어갑니다. 녹화 끝이면 false
+        private boolean advance() throws IOException {
+            while (cursor >= recordEnd) {
+                if (nextRecord + SessionRecorder.RECORD_HEADER > recordsEnd) {
+                    return false;
+                }
+                int type = get(nextRecord);
+                if (type == SessionRecorder.DATA) {
+                    enter(nextRecord);
+                } else {
+                    nextRecord += SessionRecorder.RECORD_HEADER + getInt(nextRecord + 9);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (cursor >= recordEnd && !advance()) {
+                return -1;
+            }
+            streamOffset++;
+            return get(cursor++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (cursor >= recordEnd && !advance()) {
+                return -1;
+            }
+            int n = (int) Math.min(len, recordEnd - cursor);
+            get(cursor, b, off, n);
+            cursor += n;
+            streamOffset += n;
+            return n;
+        }
+    }
+
+    // --- 매핑된 파일 접근 (청크 경계를 넘는 읽기 처리) ---
+
+    private int get(long position) {
+        return chunks[(int) (position / CHUNK_SIZE)].get((int) (position % CHUNK_SIZE));
+    }
+
+    private void get(long position, byte[] dst, int offset, int length) {
+        while (length > 0) {
+            MappedByteBuffer chunk = chunks[(int) (position / CHUNK_SIZE)];
+            int start = (int) (position % CHUNK_SIZE);
+            int n = Math.min(length, chunk.capacity() - start);
+            chunk.get(start, dst, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    private int getInt(long position) {
+        return ((get(position) & 0xFF) << 24) | ((get(position + 1) & 0xFF) << 16)
+                | ((get(position + 2) & 0xFF) << 8) | (get(position + 3) & 0xFF);
+    }
+
+    private long getLong(long position) {
+        return ((long) getInt(position) << 32) | (getInt(position + 4) & 0xFFFFFFFFL);
+    }
+
+    // 파일의 [position, position + length) 구간을 읽는 스트림
+    private InputStream range(long position, long length) {
+        return new InputStream() {
+            private long cursor = position;
+            private final long end = Math.min(size, position + length);
+
+            @Override
+            public int read() {
+                return cursor < end ? get(cursor++) & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (cursor >= end) {
+                    return -1;
+                }
+                int n = (int) Math.min(len, end - cursor);
+                get(cursor, b, off, n);
+                cursor += n;
+                return n;
+            }
+        };
+    }
+}
@@ -0,0 +1,386 @@
+package com.myvnc.client;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+// 세션 녹화: 서버 -> 클라이언트 바이트(ServerInit 이후)를 시각과 함께 추가 전용 파일에 그대로 기록합니다.
+// 파일 형식 (빅 엔디언)
+//   헤더: "WVNCREC1", 버전(u16), 시작 시각(epoch ms, s64), 너비/높이(u16), 픽셀 포맷(16), 서버 이름(u32 + 바이트)
+//   레코드: 종류(u8), 녹화 시작 후 경과 시간(ns, s64), 길이(u32), 내용
+//     'D' 수신 바이트 그대로
+//     'F' 스트림 위치(s64) + 픽셀 포맷: 이 위치의 메시지부터 적용 (SetPixelFormat은 클라이언트가 보내므로 따로 기록)
+//     'K' 키프레임: 스트림 위치, 그 위치를 담은 'D' 레코드의 파일 위치와 스트림 시작 위치, 크기, 픽셀 포맷,
+//         zlib 스트림 상태(ZRLE 1개 + Tight 4개), deflate로 압축한 프레임버퍼(RGB 3바이트)
+//     'I' 색인 (close 시): 키프레임 목록, 포맷 변경 목록, 끝 시각
+//   꼬리: 'I' 레코드의 파일 위치(s64) + "WVNCIDX1" (비정상 종료로 없으면 재생기가 레코드를 훑어 색인을 만듭니다)
+// 스트림 위치는 녹화 이후 수신 바이트 기준입니다. 수신 버퍼가 미리 읽은 바이트가 있으므로 호출하는 쪽이 계산해서 넘깁니다.
+// 파일 쓰기와 키프레임 압축은 전용 스레드에서 하므로 수신 스레드는 복사만 합니다. 수신 바이트는 메시지 경계(flushData)나
+// 묶음이 찰 때까지 모았다가 'D' 레코드 하나로 넘기고, 쓰기 스레드가 밀려 대기 작업이 넘치면 녹화를 멈춥니다.
+public class SessionRecorder implements Closeable {
+    static final byte[] MAGIC = "WVNCREC1".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] INDEX_MAGIC = "WVNCIDX1".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int DATA = 'D';
+    static final int FORMAT = 'F';
+    static final int KEYFRAME = 'K';
+    static final int INDEX = 'I';
+    static final int RECORD_HEADER = 1 + 8 + 4;
+
+    // 키프레임 간격: 시간 또는 수신 바이트 중 먼저 도달하는 쪽
+    private static final long KEYFRAME_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long KEYFRAME_INTERVAL_BYTES = 16L << 20;
+    // 'D' 레코드 하나로 묶을 최대 크기와 쓰기 스레드에 쌓아 둘 최대 작업 수 (디스크가 느려도 메모리가 묶이도록)
+    private static final int DATA_BATCH_BYTES = 64 * 1024;
+    private static final int MAX_PENDING_WRITES = 256;
+
+    private final DataOutputStream file;
+    private final ExecutorService writer;
+    private final long startNanos = System.nanoTime();
+    private volatile IOException failure;
+
+    // 수신 스레드만 접근 (묶음은 close와 겹칠 수 있어 this로 보호)
+    private long dataBytes;
+    private final byte[] batch = new byte[DATA_BATCH_BYTES];
+    private int batchLength;
+    private long lastKeyframeNanos;
+    private long lastKeyframeBytes;
+
+    // 쓰기 스레드만 접근
+    private long filePosition;
+    private long lastTimestamp;
+    // 'D' 레코드의 (스트림 시작 위치, 파일 위치). 키프레임이 가리킬 레코드를 찾는 데 씁니다.
+    private final List<long[]> dataRecords = new ArrayList<>();
+    private final ByteArrayOutputStream indexEntries = new ByteArrayOutputStream();
+    private final DataOutputStream keyframeIndex = new DataOutputStream(indexEntries);
+    private int keyframeCount;
+    private final ByteArrayOutputStream formatEntries = new ByteArrayOutputStream();
+    private final DataOutputStream formatIndex = new DataOutputStream(formatEntries);
+    private int formatCount;
+
+    public SessionRecorder(Path path, int width, int height, RFBPixelFormat pixelFormat, String serverName) throws IOException {
+        this.file = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path.toFile()), 256 * 1024));
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_PENDING_WRITES), r -> {
+            Thread t = new Thread(r, "rfb-recorder");
+            t.setDaemon(true);
+            return t;
+        });
+        byte[] name = serverName.getBytes(StandardCharsets.UTF_8);
+        file.write(MAGIC);
+        file.writeShort(VERSION);
+        file.writeLong(System.currentTimeMillis());
+        file.writeShort(width);
+        file.writeShort(height);
+        writePixelFormat(file, pixelFormat);
+        file.writeInt(name.length);
+        file.write(name);
+        filePosition = file.size();
+    }
+
+    // 수신 스레드: 소켓에서 받은 바이트 (묶음에 복사해 두고 메시지 경계에서 넘김)
+    synchronized void data(byte[] b, int offset, int length) {
+        if (length <= 0 || failure != null) {
+            return;
+        }
+        if (batchLength == 0 && length >= DATA_BATCH_BYTES) {
+            // 큰 읽기는 묶음을 거치지 않고 바로 레코드로
+            dataBytes += length;
+            submitData(Arrays.copyOfRange(b, offset, offset + length));
+            return;
+        }
+        while (length > 0) {
+            int n = Math.min(length, DATA_BATCH_BYTES - batchLength);
+            System.arraycopy(b, offset, batch, batchLength, n);
+            batchLength += n;
+            dataBytes += n;
+            offset += n;
+            length -= n;
+            if (batchLength == DATA_BATCH_BYTES) {
+                flushData();
+            }
+        }
+    }
+
+    // 수신 스레드: 한 바이트 (스트림 경로의 read())
+    synchronized void data(int b) {
+        if (failure != null) {
+            return;
+        }
+        batch[batchLength++] = (byte) b;
+        dataBytes++;
+        if (batchLength == DATA_BATCH_BYTES) {
+            flushData();
+        }
+    }
+
+    // 수신 스레드: 메시지 하나를 처리한 뒤 모아 둔 바이트를 'D' 레코드로 넘깁니다.
+    // 레코드 시각은 넘기는 시점이므로 재생 시 메시지가 다 도착한 시각에 맞춰 나타납니다.
+    synchronized void flushData() {
+        if (batchLength == 0 || failure != null) {
+            batchLength = 0;
+            return;
+        }
+        submitData(Arrays.copyOf(batch, batchLength));
+        batchLength = 0;
+    }
+
+    private void submitData(byte[] content) {
+        long timestamp = System.nanoTime() - startNanos;
+        long streamOffset = dataBytes - content.length;
+        submit(() -> {
+            dataRecords.add(new long[]{streamOffset, filePosition});
+            writeRecord(DATA, timestamp, content, content.length);
+        });
+    }
+
+    // 지금까지 기록한 수신 바이트 수
+    long getDataBytes() {
+        return dataBytes;
+    }
+
+    // streamOffset에서 시작하는 메시지부터 pixelFormat으로 디코딩해야 함
+    void pixelFormat(long streamOffset, RFBPixelFormat pixelFormat) {
+        long timestamp = System.nanoTime() - startNanos;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(8 + 16);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeLong(streamOffset);
+            writePixelFormat(out, pixelFormat);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // 메모리 스트림
+        }
+        byte[] content = buffer.toByteArray();
+        submit(() -> {
+            writeRecord(FORMAT, timestamp, content, content.length);
+            formatIndex.write(content);
+            formatCount++;
+        });
+    }
+
+    // 수신 스레드: 업데이트 하나를 적용한 뒤 호출해서 키프레임을 남길 때인지 확인
+    boolean isKeyframeDue() {
+        return failure == null && (System.nanoTime() - lastKeyframeNanos >= KEYFRAME_INTERVAL_NANOS
+                || dataBytes - lastKeyframeBytes >= KEYFRAME_INTERVAL_BYTES);
+    }
+
+    // 수신 스레드: 메시지 경계(streamOffset)에서 프레임버퍼와 디코더 상태를 남깁니다.
+    // zlib 상태와 픽셀 복사만 여기서 하고 압축/쓰기는 쓰기 스레드가 합니다.
+    void keyframe(long streamOffset, RFBPixelFormat pixelFormat, BufferedImage framebuffer,
+                  Map<Integer, RFBEncoding> encodings) throws IOException {
+        flushData(); // 키프레임이 가리킬 'D' 레코드가 먼저 있어야 함
+        long timestamp = System.nanoTime() - startNanos;
+        lastKeyframeNanos = System.nanoTime();
+        lastKeyframeBytes = dataBytes;
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(state);
+        writePixelFormat(out, pixelFormat);
+        for (ZlibInStream stream : sessionStreams(encodings)) {
+            stream.writeState(out);
+        }
+        int width = framebuffer.getWidth();
+        int height = framebuffer.getHeight();
+        int[] pixels = new int[width * height];
+        int[] src = RasterAccess.pixels(framebuffer);
+        int stride = RasterAccess.stride(framebuffer);
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(src, row * stride, pixels, row * width, width);
+        }
+        byte[] decoderState = state.toByteArray();
+        submit(() -> {
+            ByteArrayOutputStream content = new ByteArrayOutputStream(decoderState.length + width * height);
+            DataOutputStream record = new DataOutputStream(content);
+            long[] dataRecord = dataRecordFor(streamOffset);
+            record.writeLong(streamOffset);
+            record.writeLong(dataRecord[1]);
+            record.writeLong(dataRecord[0]);
+            record.writeShort(width);
+            record.writeShort(height);
+            record.write(decoderState);
+            deflatePixels(record, pixels);
+            keyframeIndex.writeLong(timestamp);
+            keyframeIndex.writeLong(streamOffset);
+            keyframeIndex.writeLong(filePosition);
+            keyframeCount++;
+            writeRecord(KEYFRAME, timestamp, content.toByteArray(), content.size());
+        });
+    }
+
+    // 녹화 중인 세션의 zlib 스트림 (키프레임 순서와 같아야 함)
+    static List<ZlibInStream> sessionStreams(Map<Integer, RFBEncoding> encodings) {
+        List<ZlibInStream> streams = new ArrayList<>();
+        if (encodings.get(16) instanceof ZRLEEncoding) {
+            streams.addAll(List.of(((ZRLEEncoding) encodings.get(16)).zlibStreams()));
+        }
+        if (encodings.get(7) instanceof TightEncoding) {
+            streams.addAll(List.of(((TightEncoding) encodings.get(7)).zlibStreams()));
+        }
+        return streams;
+    }
+
+    // (스트림 시작 위치, 파일 위치). 아직 'D' 레코드가 없으면 파일 위치는 -1 (키프레임 뒤에서 시작)
+    private long[] dataRecordFor(long streamOffset) {
+        long[] found = {streamOffset, -1};
+        for (int i = dataRecords.size() - 1; i >= 0; i--) {
+            long[] record = dataRecords.get(i);
+            if (record[0] <= streamOffset) {
+                found = record;
+                break;
+            }
+        }
+        // 앞쪽 레코드는 다시 찾을 일이 없으므로 버립니다.
+        while (dataRecords.size() > 1 && dataRecords.get(1)[0] <= streamOffset) {
+            dataRecords.remove(0);
+        }
+        return found;
+    }
+
+    private static void deflatePixels(DataOutputStream out, int[] pixels) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            byte[] row = new byte[8192 * 3];
+            byte[] compressed = new byte[64 * 1024];
+            ByteArrayOutputStream data = new ByteArrayOutputStream(pixels.length / 4);
+            for (int i = 0; i < pixels.length; i += 8192) {
+                int n = Math.min(8192, pixels.length - i);
+                for (int j = 0; j < n; j++) {
+                    int p = pixels[i + j];
+                    row[j * 3] = (byte) (p >> 16);
+                    row[j * 3 + 1] = (byte) (p >> 8);
+                    row[j * 3 + 2] = (byte) p;
+                }
+                deflater.setInput(row, 0, n * 3);
+                while (!deflater.needsInput()) {
+                    data.write(compressed, 0, deflater.deflate(compressed));
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                data.write(compressed, 0, deflater.deflate(compressed));
+            }
+            out.writeInt(data.size());
+            data.writeTo(out);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private interface WriteTask {
+        void run() throws IOException;
+    }
+
+    private void submit(WriteTask task) {
+        try {
+            writer.execute(() -> {
+                if (failure != null) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (IOException e) {
+                    // 녹화 실패가 세션을 끊지는 않습니다.
+                    failure = e;
+                    System.err.println("세션 녹화 중단: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (writer.isShutdown()) {
+                return; // close()와 경쟁: 닫힌 뒤 수신 스레드가 넘긴 바이트는 버림
+            }
+            // 중간이 빠진 녹화는 재생할 수 없으므로 더 쌓지 않고 멈춥니다.
+            failure = new IOException("쓰기가 밀려 대기 작업이 " + MAX_PENDING_WRITES + "개를 넘었습니다.");
+            System.err.println("세션 녹화 중단: " + failure.getMessage());
+        }
+    }
+
+    private void writeRecord(int type, long timestamp, byte[] content, int length) throws IOException {
+        file.writeByte(type);
+        file.writeLong(timestamp);
+        file.writeInt(length);
+        file.write(content, 0, length);
+        filePosition += RECORD_HEADER + length;
+        lastTimestamp = Math.max(lastTimestamp, timestamp);
+    }
+
+    // 색인과 꼬리를 쓰고 닫습니다.
+    @Override
+    public synchronized void close() {
+        if (writer.isShutdown()) {
+            return;
+        }
+        flushData();
+        long totalBytes = dataBytes;
+        submit(() -> {
+            long indexPosition = filePosition;
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            DataOutputStream index = new DataOutputStream(content);
+            index.writeLong(lastTimestamp);
+            index.writeLong(totalBytes);
+            index.writeInt(keyframeCount);
+            indexEntries.writeTo(index);
+            index.writeInt(formatCount);
+            formatEntries.writeTo(index);
+            writeRecord(INDEX, lastTimestamp, content.toByteArray(), content.size());
+            file.writeLong(indexPosition);
+            file.write(INDEX_MAGIC);
+        });
+        writer.shutdown();
+        try {
+            writer.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            System.err.println("녹화 파일 닫기 실패: " + e.getMessage());
+        }
+    }
+
+    // RFB ServerInit/SetPixelFormat과 같은 16바이트 배치
+    static void writePixelFormat(DataOutputStream out, RFBPixelFormat pf) throws IOException {
+        out.writeByte(pf.bitsPerPixel);
+        out.writeByte(pf.depth);
+        out.writeByte(pf.bigEndianFlag ? 1 : 0);
+        out.writeByte(pf.trueColorFlag ? 1 : 0);
+        out.writeShort(pf.redMax);
+        out.writeShort(pf.greenMax);
+        out.writeShort(pf.blueMax);
+        out.writeByte(pf.redShift);
+        out.writeByte(pf.greenShift);
+        out.writeByte(pf.blueShift);
+        out.write(new byte[3]);
+    }
+
+    static RFBPixelFormat readPixelFormat(DataInputStream in) throws IOException {
+        RFBPixelFormat pf = new RFBPixelFormat();
+        pf.bitsPerPixel = in.readUnsignedByte();
+        pf.depth = in.readUnsignedByte();
+        pf.bigEndianFlag = in.readUnsignedByte() == 1;
+        pf.trueColorFlag = in.readUnsignedByte() == 1;
+        pf.redMax = in.readUnsignedShort();
+        pf.greenMax = in.readUnsignedShort();
+        pf.blueMax = in.readUnsignedShort();
+        pf.redShift = in.readUnsignedByte();
+        pf.greenShift = in.readUnsignedByte();
+        pf.blueShift = in.readUnsignedByte();
+        pf.padding = new byte[3];
+        in.readFully(pf.padding);
+        return pf;
+    }
+}
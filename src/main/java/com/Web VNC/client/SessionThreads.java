@@ -0,0 +1,37 @@
+package com.myvnc.client;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 세션 스레드 실행기 (게이트웨이 세션, 모니터 월의 RFBClient 수신/송신 루프)
+// JDK 21 이상이면 작업마다 가상 스레드를 씁니다. (블로킹 I/O 중에는 캐리어 스레드를 점유하지 않음)
+// 빌드 기준인 JDK 17에는 가상 스레드 API가 없으므로 리플렉션으로 찾고, 없으면 작은 스택의 플랫폼 스레드로 대체합니다.
+public final class SessionThreads {
+    private static final long PLATFORM_STACK_SIZE = 256 * 1024; // 펌프 루프는 얕아서 기본 1MB가 필요 없음
+
+    private SessionThreads() {
+    }
+
+    public static ExecutorService create(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            System.out.println("세션 스레드: 가상 스레드");
+            return (ExecutorService) perTask.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("세션 스레드: 플랫폼 스레드 (가상 스레드 미지원 JDK)");
+            AtomicLong count = new AtomicLong();
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(null, r, prefix + count.getAndIncrement(), PLATFORM_STACK_SIZE);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
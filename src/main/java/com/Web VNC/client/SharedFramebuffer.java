@@ -0,0 +1,159 @@
+package com.myvnc.client;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// 업스트림 연결 하나의 프레임버퍼를 여러 구독자(읽기 전용 뷰어)에게 나눠 줍니다.
+// 구독자마다 DamageRegion을 따로 두고 새 변경 영역을 합쳐 넣기만 하므로, 느린 구독자는 쌓인 업데이트 대신
+// 합쳐진 영역 하나를 받습니다. (구독자 수와 속도가 업스트림 수신을 막지 않음)
+// 새 구독자는 전체 화면을 변경 영역으로 갖고 시작하므로 첫 takeDamage()가 전체 스냅숏입니다.
+// 디코더는 사각형 하나를 쓰는 동안 공유(읽기) 잠금을, 구독자는 픽셀을 복사하는 동안 배타(쓰기) 잠금을 잡습니다.
+// 병렬 디코더의 작업 스레드들은 서로 겹치지 않는 사각형을 쓰므로 함께 잡을 수 있고, 소켓 I/O 중에는 잡지 않습니다.
+// 구독자는 업데이트 도중의 화면을 복사할 수 있지만, 남은 사각형의 변경 영역이 뒤이어 publish()되므로 다시 복사하게 됩니다.
+public class SharedFramebuffer {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile BufferedImage framebuffer;
+
+    // 구독자 하나의 상태
+    public final class Subscription implements AutoCloseable {
+        private final DamageRegion pending = new DamageRegion();
+        private final Runnable onDamage;
+        private final Lock signalLock = new ReentrantLock();
+        private final Condition damaged = signalLock.newCondition();
+
+        private Subscription(Runnable onDamage) {
+            this.onDamage = onDamage;
+        }
+
+        // 마지막 호출 이후 합쳐진 변경 영역 (비어 있을 수 있음)
+        // add()와 같은 잠금 안에서 비우므로, 비우는 사이에 들어온 영역은 여기서 함께 가져가거나 onDamage로 다시 알립니다.
+        public List<Rectangle> takeDamage() {
+            signalLock.lock();
+            try {
+                return pending.drain();
+            } finally {
+                signalLock.unlock();
+            }
+        }
+
+        // 변경 영역이 생길 때까지 기다립니다. 시간이 지나면 false
+        public boolean awaitDamage(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            signalLock.lock();
+            try {
+                while (pending.isEmpty()) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = damaged.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                signalLock.unlock();
+            }
+        }
+
+        // 프레임버퍼의 region을 dst에 0x00RRGGBB로 복사합니다. (디코딩 중인 사각형과 섞이지 않음)
+        public void copyRegion(Rectangle region, int[] dst, int dstOffset, int dstStride) {
+            lock.writeLock().lock();
+            try {
+                BufferedImage fb = framebuffer;
+                Rectangle r = region.intersection(new Rectangle(0, 0, fb.getWidth(), fb.getHeight()));
+                if (r.isEmpty()) {
+                    return;
+                }
+                int[] pixels = RasterAccess.pixels(fb);
+                int stride = RasterAccess.stride(fb);
+                for (int row = 0; row < r.height; row++) {
+                    System.arraycopy(pixels, (r.y + row) * stride + r.x, dst, dstOffset + row * dstStride, r.width);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // 연결 전이면 0
+        public int getWidth() {
+            BufferedImage fb = framebuffer;
+            return fb == null ? 0 : fb.getWidth();
+        }
+
+        public int getHeight() {
+            BufferedImage fb = framebuffer;
+            return fb == null ? 0 : fb.getHeight();
+        }
+
+        @Override
+        public void close() {
+            subscriptions.remove(this);
+        }
+
+        private void add(List<Rectangle> rects) {
+            if (rects.isEmpty()) {
+                return;
+            }
+            boolean wasEmpty;
+            // 비어 있는지 확인하고 합쳐 넣는 것을 takeDamage()와 같은 잠금 안에서 해야 알림을 잃지 않습니다.
+            signalLock.lock();
+            try {
+                wasEmpty = pending.isEmpty();
+                for (Rectangle r : rects) {
+                    pending.add(r);
+                }
+                damaged.signalAll();
+            } finally {
+                signalLock.unlock();
+            }
+            // 이미 쌓인 영역이 있으면 구독자가 아직 가져가지 않은 것이므로 다시 알리지 않습니다.
+            if (wasEmpty && onDamage != null) {
+                onDamage.run();
+            }
+        }
+    }
+
+    // onDamage는 변경 영역이 비어 있다가 생길 때 수신 스레드에서 호출됩니다. (짧게 끝나야 함, null 가능)
+    public Subscription subscribe(Runnable onDamage) {
+        Subscription subscription = new Subscription(onDamage);
+        BufferedImage fb = framebuffer;
+        if (fb != null) {
+            subscription.pending.add(0, 0, fb.getWidth(), fb.getHeight()); // 전체 스냅숏
+        }
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    // 연결(또는 크기 변경) 시. 모든 구독자가 전체 화면을 다시 받습니다.
+    void setFramebuffer(BufferedImage framebuffer) {
+        lock.writeLock().lock();
+        try {
+            this.framebuffer = framebuffer;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        publish(List.of(new Rectangle(0, 0, framebuffer.getWidth(), framebuffer.getHeight())));
+    }
+
+    // 디코더가 사각형 하나를 프레임버퍼에 쓰는 동안 잡는 잠금 (디코더끼리는 공유, 구독자의 복사와는 배타)
+    Lock decoderLock() {
+        return lock.readLock();
+    }
+
+    // 적용이 끝난 업데이트의 변경 영역을 모든 구독자에게 합쳐 넣습니다.
+    void publish(List<Rectangle> damage) {
+        for (Subscription subscription : subscriptions) {
+            subscription.add(damage);
+        }
+    }
+}
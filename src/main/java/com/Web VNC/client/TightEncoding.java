@@ -0,0 +1,345 @@
+package com.myvnc.client;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+// Tight 인코딩 (type 7)
+// 압축 제어 바이트의 하위 4비트는 zlib 스트림 0~3의 리셋, 상위 4비트는 압축 방식입니다.
+//   1000: fill, 1001: JPEG, 0xxx: basic (bit 4-5 = 스트림 번호, bit 6 = 필터 ID 포함)
+// basic 압축의 필터는 copy(0), palette(1), gradient(2) 입니다.
+class TightEncoding implements RFBEncoding {
+    private static final int FILL = 0x08;
+    private static final int JPEG = 0x09;
+    private static final int FILTER_COPY = 0;
+    private static final int FILTER_PALETTE = 1;
+    private static final int FILTER_GRADIENT = 2;
+    // 필터 적용 후 데이터가 이보다 작으면 zlib 없이 그대로 전송됩니다.
+    private static final int MIN_TO_COMPRESS = 12;
+
+    private final ZlibInStream[] zlibStreams = {
+            new ZlibInStream(), new ZlibInStream(), new ZlibInStream(), new ZlibInStream()
+    };
+    private final int[] palette = new int[256];
+    private final byte[] pixelBytes = new byte[4];
+    private int[] rowPixels = new int[0];
+    private int[] prevComponents = new int[0];
+    private int[] thisComponents = new int[0];
+    private byte[] plain = new byte[MIN_TO_COMPRESS];
+    private int plainPos;
+    private ZlibInStream activeStream;
+    private byte[] jpegBuffer = new byte[0];
+    private ImageReader jpegReader;
+
+    private RFBPixelFormat cachedFormat;
+    private PixelConverter converter; // TPIXEL 변환기
+    private int[] redTable;
+    private int[] greenTable;
+    private int[] blueTable;
+
+    @Override
+    public int getEncodingType() {
+        return 7; // Tight encoding type
+    }
+
+    // 세션 녹화의 키프레임용
+    ZlibInStream[] zlibStreams() {
+        return zlibStreams;
+    }
+
+    @Override
+    public void decode(DataInputStream in, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        if (pixelFormat != cachedFormat) {
+            converter = PixelConverter.forTightFormat(pixelFormat);
+            redTable = PixelConverter.channelTable(pixelFormat.redMax);
+            greenTable = PixelConverter.channelTable(pixelFormat.greenMax);
+            blueTable = PixelConverter.channelTable(pixelFormat.blueMax);
+            cachedFormat = pixelFormat;
+        }
+        if (rowPixels.length < width) {
+            rowPixels = new int[width];
+        }
+
+        int control = in.readUnsignedByte();
+        for (int i = 0; i < 4; i++) {
+            if ((control & (1 << i)) != 0) {
+                zlibStreams[i].reset();
+            }
+        }
+        int type = control >> 4;
+
+        if (type == FILL) {
+            in.readFully(pixelBytes, 0, converter.bytesPerPixel);
+            RasterAccess.fill(image, RasterAccess.pixels(image), RasterAccess.stride(image),
+                    x, y, width, height, converter.toRGB(pixelBytes, 0));
+            return;
+        }
+        if (type == JPEG) {
+            decodeJpeg(in, image, x, y, width, height);
+            return;
+        }
+        if (type > JPEG) {
+            throw new IOException("지원되지 않는 Tight 압축 방식: " + type);
+        }
+
+        int filter = (type & 0x04) != 0 ? in.readUnsignedByte() : FILTER_COPY;
+        ZlibInStream stream = zlibStreams[type & 0x03];
+        switch (filter) {
+            case FILTER_COPY:
+                beginData(in, stream, width * height * converter.bytesPerPixel);
+                decodeCopy(image, x, y, width, height);
+                break;
+            case FILTER_PALETTE:
+                int paletteSize = in.readUnsignedByte() + 1;
+                for (int i = 0; i < paletteSize; i++) {
+                    in.readFully(pixelBytes, 0, converter.bytesPerPixel);
+                    palette[i] = converter.toRGB(pixelBytes, 0);
+                }
+                int rowBytes = paletteSize == 2 ? (width + 7) / 8 : width;
+                beginData(in, stream, rowBytes * height);
+                decodePalette(image, x, y, width, height, paletteSize == 2);
+                break;
+            case FILTER_GRADIENT:
+                beginData(in, stream, width * height * converter.bytesPerPixel);
+                decodeGradient(image, x, y, width, height);
+                break;
+            default:
+                throw new IOException("잘못된 Tight 필터: " + filter);
+        }
+    }
+
+    // decode()와 같은 순서로 헤더를 따라가며 사각형 데이터를 옮깁니다. (zlib 해제 없음)
+    @Override
+    public boolean readPayload(DataInputStream in, RectPayload payload, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        int bpp = PixelConverter.isTightRgb24(pixelFormat) ? 3 : pixelFormat.bitsPerPixel / 8;
+        int type = payload.readU8(in) >> 4;
+        if (type == FILL) {
+            payload.read(in, bpp);
+            return true;
+        }
+        if (type == JPEG) {
+            payload.read(in, copyCompactLength(in, payload));
+            return true;
+        }
+        if (type > JPEG) {
+            throw new IOException("지원되지 않는 Tight 압축 방식: " + type);
+        }
+        int filter = (type & 0x04) != 0 ? payload.readU8(in) : FILTER_COPY;
+        int dataSize;
+        if (filter == FILTER_PALETTE) {
+            int paletteSize = payload.readU8(in) + 1;
+            payload.read(in, paletteSize * bpp);
+            dataSize = (paletteSize == 2 ? (width + 7) / 8 : width) * height;
+        } else if (filter == FILTER_COPY || filter == FILTER_GRADIENT) {
+            dataSize = width * height * bpp;
+        } else {
+            throw new IOException("잘못된 Tight 필터: " + filter);
+        }
+        payload.read(in, dataSize < MIN_TO_COMPRESS ? dataSize : copyCompactLength(in, payload));
+        return true;
+    }
+
+    // fill과 JPEG는 zlib 스트림을 쓰지 않습니다. 단, 스트림 리셋 비트가 있으면 순서를 지켜야 합니다.
+    @Override
+    public boolean isIndependent(RectPayload payload) {
+        int control = payload.getU8(0);
+        int type = control >> 4;
+        return (type == FILL || type == JPEG) && (control & 0x0F) == 0;
+    }
+
+    // 필터 적용 후 데이터의 시작: 작으면 그대로, 아니면 compact length + zlib 데이터
+    private void beginData(DataInputStream in, ZlibInStream stream, int dataSize) throws IOException {
+        if (dataSize < MIN_TO_COMPRESS) {
+            in.readFully(plain, 0, dataSize);
+            plainPos = 0;
+            activeStream = null;
+        } else {
+            stream.setInput(in, readCompactLength(in));
+            activeStream = stream;
+        }
+    }
+
+    // n바이트를 소비하고 data() 안의 시작 위치를 반환합니다. (take 이후 data()를 다시 조회해야 합니다)
+    private int take(int n) throws IOException {
+        if (activeStream == null) {
+            int offset = plainPos;
+            plainPos += n;
+            return offset;
+        }
+        return activeStream.require(n);
+    }
+
+    private byte[] data() {
+        return activeStream == null ? plain : activeStream.buffer();
+    }
+
+    private void decodeCopy(BufferedImage image, int x, int y, int width, int height) throws IOException {
+        int[] pixels = RasterAccess.pixels(image);
+        int stride = RasterAccess.stride(image);
+        int rowBytes = width * converter.bytesPerPixel;
+        for (int row = 0; row < height; row++) {
+            int src = take(rowBytes);
+            converter.convertRow(data(), src, rowPixels, 0, width);
+            putRow(image, pixels, stride, x, y + row, width);
+        }
+    }
+
+    private void decodePalette(BufferedImage image, int x, int y, int width, int height, boolean monochrome) throws IOException {
+        int[] pixels = RasterAccess.pixels(image);
+        int stride = RasterAccess.stride(image);
+        for (int row = 0; row < height; row++) {
+            if (monochrome) {
+                // 2색 팔레트는 픽셀당 1비트, 각 행은 바이트 경계로 패딩
+                int src = take((width + 7) / 8);
+                byte[] bytes = data();
+                for (int col = 0; col < width; col++) {
+                    rowPixels[col] = palette[(bytes[src + (col >> 3)] >> (7 - (col & 7))) & 1];
+                }
+            } else {
+                int src = take(width);
+                byte[] bytes = data();
+                for (int col = 0; col < width; col++) {
+                    rowPixels[col] = palette[bytes[src + col] & 0xFF];
+                }
+            }
+            putRow(image, pixels, stride, x, y + row, width);
+        }
+    }
+
+    // gradient 필터: 각 채널을 (왼쪽 + 위 - 왼쪽 위)로 예측하고 전송된 값은 그 차이입니다.
+    private void decodeGradient(BufferedImage image, int x, int y, int width, int height) throws IOException {
+        RFBPixelFormat pf = cachedFormat;
+        boolean rgb24 = PixelConverter.isTightRgb24(pf);
+        int redMax = rgb24 ? 255 : pf.redMax;
+        int greenMax = rgb24 ? 255 : pf.greenMax;
+        int blueMax = rgb24 ? 255 : pf.blueMax;
+        int bpp = converter.bytesPerPixel;
+        if (prevComponents.length < width * 3) {
+            prevComponents = new int[width * 3];
+            thisComponents = new int[width * 3];
+        }
+        Arrays.fill(prevComponents, 0, width * 3, 0);
+
+        int[] pixels = RasterAccess.pixels(image);
+        int stride = RasterAccess.stride(image);
+        for (int row = 0; row < height; row++) {
+            int src = take(width * bpp);
+            byte[] bytes = data();
+            for (int col = 0; col < width; col++, src += bpp) {
+                int dr;
+                int dg;
+                int db;
+                if (rgb24) {
+                    dr = bytes[src] & 0xFF;
+                    dg = bytes[src + 1] & 0xFF;
+                    db = bytes[src + 2] & 0xFF;
+                } else {
+                    int p = bpp == 4 ? PixelConverter.read32(bytes, src, pf.bigEndianFlag)
+                            : bpp == 1 ? bytes[src] & 0xFF
+                            : pf.bigEndianFlag ? ((bytes[src] & 0xFF) << 8) | (bytes[src + 1] & 0xFF)
+                            : ((bytes[src + 1] & 0xFF) << 8) | (bytes[src] & 0xFF);
+                    dr = (p >>> pf.redShift) & redMax;
+                    dg = (p >>> pf.greenShift) & greenMax;
+                    db = (p >>> pf.blueShift) & blueMax;
+                }
+                int c = col * 3;
+                int r = (predict(thisComponents, prevComponents, c, col, redMax) + dr) & redMax;
+                int g = (predict(thisComponents, prevComponents, c + 1, col, greenMax) + dg) & greenMax;
+                int b = (predict(thisComponents, prevComponents, c + 2, col, blueMax) + db) & blueMax;
+                thisComponents[c] = r;
+                thisComponents[c + 1] = g;
+                thisComponents[c + 2] = b;
+                rowPixels[col] = rgb24 ? (r << 16) | (g << 8) | b
+                        : (redTable[r] << 16) | (greenTable[g] << 8) | blueTable[b];
+            }
+            putRow(image, pixels, stride, x, y + row, width);
+            int[] swap = prevComponents;
+            prevComponents = thisComponents;
+            thisComponents = swap;
+        }
+    }
+
+    private static int predict(int[] current, int[] above, int c, int col, int max) {
+        int left = col > 0 ? current[c - 3] : 0;
+        int upLeft = col > 0 ? above[c - 3] : 0;
+        int estimate = left + above[c] - upLeft;
+        return estimate < 0 ? 0 : estimate > max ? max : estimate;
+    }
+
+    private void decodeJpeg(DataInputStream in, BufferedImage image, int x, int y, int width, int height) throws IOException {
+        int length = readCompactLength(in);
+        if (jpegBuffer.length < length) {
+            jpegBuffer = new byte[length];
+        }
+        in.readFully(jpegBuffer, 0, length);
+
+        if (jpegReader == null) {
+            Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("jpeg");
+            if (!readers.hasNext()) {
+                throw new IOException("JPEG 디코더를 찾을 수 없습니다.");
+            }
+            jpegReader = readers.next();
+        }
+        BufferedImage decoded;
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(jpegBuffer, 0, length))) {
+            jpegReader.setInput(iis, true, true);
+            decoded = jpegReader.read(0);
+        } finally {
+            jpegReader.setInput(null);
+        }
+
+        int[] pixels = RasterAccess.pixels(image);
+        int stride = RasterAccess.stride(image);
+        int w = Math.min(width, decoded.getWidth());
+        for (int row = 0; row < Math.min(height, decoded.getHeight()); row++) {
+            decoded.getRGB(0, row, w, 1, rowPixels, 0, w);
+            putRow(image, pixels, stride, x, y + row, w);
+        }
+    }
+
+    // rowPixels[0..width)를 프레임버퍼의 (x, row) 위치에 복사 (경계 밖은 잘라냄)
+    private void putRow(BufferedImage image, int[] pixels, int stride, int x, int row, int width) {
+        if (row < 0 || row >= image.getHeight()) {
+            return;
+        }
+        int x0 = Math.max(x, 0);
+        int x1 = Math.min(x + width, image.getWidth());
+        if (x1 > x0) {
+            System.arraycopy(rowPixels, x0 - x, pixels, row * stride + x0, x1 - x0);
+        }
+    }
+
+    // compact length를 payload에 복사하면서 값을 반환합니다.
+    private static int copyCompactLength(DataInputStream in, RectPayload payload) throws IOException {
+        int b = payload.readU8(in);
+        int length = b & 0x7F;
+        if ((b & 0x80) != 0) {
+            b = payload.readU8(in);
+            length |= (b & 0x7F) << 7;
+            if ((b & 0x80) != 0) {
+                length |= payload.readU8(in) << 14;
+            }
+        }
+        return length;
+    }
+
+    // 1~3바이트 가변 길이 (각 바이트의 하위 7비트, 최상위 비트는 계속 여부)
+    static int readCompactLength(DataInputStream in) throws IOException {
+        int b = in.readUnsignedByte();
+        int length = b & 0x7F;
+        if ((b & 0x80) != 0) {
+            b = in.readUnsignedByte();
+            length |= (b & 0x7F) << 7;
+            if ((b & 0x80) != 0) {
+                length |= in.readUnsignedByte() << 14;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,183 @@
+package com.myvnc.client;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// 디코딩 결과를 사각형 데이터의 해시로 캐시합니다. (같은 창을 오가며 같은 내용이 반복해서 올 때)
+// 키는 인코딩 타입, 크기, 원본 바이트의 두 해시(FNV-1a 64비트 + 별도 곱셈 해시)이고,
+// 값은 디코딩된 픽셀(0x00RRGGBB)입니다. 적중하면 디코딩 없이 프레임버퍼로 행 단위 복사만 합니다.
+// 세션 zlib 스트림을 쓰는 사각형(ZRLE, Tight basic)은 적중해도 스트림을 진행시켜야 하므로 대상이 아니며,
+// 호출하는 쪽이 RFBEncoding.isIndependent()인 사각형만 넘깁니다.
+// 메모리 예산을 넘으면 가장 오래 쓰지 않은 항목부터 버립니다. 작업 스레드들이 함께 쓰므로 맵은 동기화합니다.
+public class TileCache {
+    // 이보다 작은 사각형은 해시 비용이 디코딩 비용과 비슷하므로 캐시하지 않습니다.
+    private static final int MIN_PIXELS = 16 * 16;
+    // 데이터 1바이트가 이보다 많은 픽셀을 덮으면(Tight fill, 단색 Hextile/RRE 등) 디코딩이 채우기 수준이라
+    // 캐시해 봐야 w*h*4바이트를 쓰고 아끼는 것이 거의 없으므로 캐시하지 않습니다.
+    private static final int MAX_PIXELS_PER_BYTE = 64;
+    // 항목 하나의 고정 비용 (키, 맵 엔트리, 배열 헤더의 대략적인 크기)
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long budgetBytes;
+    private final LinkedHashMap<Key, int[]> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes;
+    private RFBPixelFormat cachedFormat;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Key {
+        final int encodingType;
+        final int width;
+        final int height;
+        final int length;
+        final long hash1;
+        final long hash2;
+
+        Key(int encodingType, int width, int height, RectPayload payload) {
+            this.encodingType = encodingType;
+            this.width = width;
+            this.height = height;
+            this.length = payload.length;
+            long h1 = 0xcbf29ce484222325L;
+            long h2 = 0x9e3779b97f4a7c15L;
+            byte[] data = payload.data;
+            int offset = payload.offset;
+            for (int i = 0; i < length; i++) {
+                int b = data[offset + i] & 0xFF;
+                h1 = (h1 ^ b) * 0x100000001b3L;
+                h2 = (h2 + b) * 0xc6a4a7935bd1e995L;
+                h2 ^= h2 >>> 47;
+            }
+            this.hash1 = h1;
+            this.hash2 = h2;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return hash1 == k.hash1 && hash2 == k.hash2 && length == k.length
+                    && width == k.width && height == k.height && encodingType == k.encodingType;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash1 ^ (hash1 >>> 32));
+        }
+    }
+
+    public TileCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    // 캐시에 있으면 복사하고, 없으면 decoder로 디코딩한 뒤 결과를 저장합니다.
+    void decode(RFBEncoding decoder, int encodingType, RectPayload payload, BufferedImage image,
+                int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        long bytes = (long) width * height * 4 + ENTRY_OVERHEAD;
+        // Raw는 디코딩이 곧 복사이므로 해시만 더 드는 셈이라 제외합니다.
+        if (encodingType == 0 || (long) width * height < MIN_PIXELS || bytes > budgetBytes
+                || (long) payload.length * MAX_PIXELS_PER_BYTE < (long) width * height
+                || !RasterAccess.contains(image, x, y, width, height)) {
+            decoder.decode(payload, image, x, y, width, height, pixelFormat);
+            return;
+        }
+        Key key = new Key(encodingType, width, height, payload);
+        int[] tile;
+        synchronized (this) {
+            if (pixelFormat != cachedFormat) {
+                // 같은 바이트라도 픽셀 포맷이 다르면 다른 색이므로 비웁니다.
+                clearLocked();
+                cachedFormat = pixelFormat;
+            }
+            tile = entries.get(key);
+        }
+        int[] pixels = RasterAccess.pixels(image);
+        int stride = RasterAccess.stride(image);
+        if (tile != null) {
+            for (int row = 0; row < height; row++) {
+                System.arraycopy(tile, row * width, pixels, (y + row) * stride + x, width);
+            }
+            hits.increment();
+            bytesSaved.add(payload.length);
+            return;
+        }
+        misses.increment();
+        decoder.decode(payload, image, x, y, width, height, pixelFormat);
+        // 이 사각형 영역은 디코더가 끝날 때까지 다른 작업이 쓰지 않으므로 바로 복사해 둡니다.
+        tile = new int[width * height];
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(pixels, (y + row) * stride + x, tile, row * width, width);
+        }
+        synchronized (this) {
+            if (pixelFormat != cachedFormat || entries.put(key, tile) != null) {
+                return; // 포맷이 바뀌었거나 다른 스레드가 같은 내용을 먼저 넣음
+            }
+            usedBytes += bytes;
+            Iterator<Map.Entry<Key, int[]>> it = entries.entrySet().iterator();
+            while (usedBytes > budgetBytes && it.hasNext()) {
+                usedBytes -= entrySize(it.next().getValue());
+                it.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    // 색상 맵이 바뀌면 저장된 픽셀이 이전 색이므로 호출합니다.
+    public synchronized void clear() {
+        clearLocked();
+    }
+
+    private void clearLocked() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    private static long entrySize(int[] tile) {
+        return (long) tile.length * 4 + ENTRY_OVERHEAD;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // 0.0 ~ 1.0 (조회가 없으면 0)
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    // 디코딩을 건너뛴 사각형 데이터의 바이트 수
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+}
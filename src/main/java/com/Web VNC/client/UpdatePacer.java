@@ -0,0 +1,353 @@
+package com.myvnc.client;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// FramebufferUpdateRequest 전송 시점을 결정합니다.
+// 고정 주기 타이머 대신 업데이트를 받을 때마다 다음 요청을 보내며(request-after-receive),
+// 동시에 대기 중인 요청 수를 maxInFlight로 제한합니다. 서버가 ContinuousUpdates를 지원하면
+// 요청 없이 서버가 밀어주는 방식으로 전환합니다. maxFps가 설정되면 요청 간격을 늦춥니다.
+// 요청을 여러 개 겹쳐 보내는 것은 서버가 Fence를 지원할 때만 합니다. 서버가 요청을 합쳐 응답했는지 알 수 없어
+// 대기 수가 실제보다 커질 수 있는데, 그러면 대기 수만으로는 픽셀 포맷 전환 시점을 보장할 수 없기 때문입니다.
+class UpdatePacer {
+    // 요청을 겹쳐 보내는 중에 이 시간 동안 업데이트가 없으면, 서버가 요청을 합쳐 응답해서
+    // 대기 수가 실제보다 커진 것으로 보고 한 자리를 비워 요청을 하나 더 보냅니다.
+    private static final long STALL_TIMEOUT_MS = 1000;
+    // 포맷 전환용 Fence의 내용 (응답을 AdaptiveEncodingController의 왕복 시간 측정과 구분)
+    private static final byte[] FORMAT_FENCE_PAYLOAD = {'P'};
+
+    private final RFBProtocolHandler protocolHandler;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler; // 공유 스케줄러면 stop()에서 종료하지 않고 자기 작업만 취소
+    private ScheduledFuture<?> stallCheck;
+    private volatile boolean stopped;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicBoolean delayedRequestScheduled = new AtomicBoolean();
+    private final int maxInFlight;
+    private volatile boolean fenceSupported;
+    private volatile long minIntervalNanos;
+    private volatile boolean continuous;
+    private volatile boolean continuousSupported;
+    private volatile long lastRequestNanos;
+    // 응답을 받지 못한 가장 오래된 요청의 전송 시각 (요청 -> 업데이트 지연 측정용, 0이면 없음)
+    private final AtomicLong oldestRequestNanos = new AtomicLong();
+    private volatile long lastUpdateNanos;
+    private volatile int width;
+    private volatile int height;
+    // 픽셀 포맷 전환: 서버가 Fence를 지원하면 SyncNext Fence 뒤에 SetPixelFormat을 보내고 응답 이후의 업데이트부터,
+    // 아니면 대기 중인 요청이 없을 때 보내야 다음 업데이트부터 새 포맷임이 확실합니다.
+    private RFBPixelFormat pendingFormat; // 아직 보내지 않은 포맷
+    private final Queue<RFBPixelFormat> fencedFormats = new ArrayDeque<>(); // Fence 응답을 기다리는 포맷 (보낸 순)
+    private RFBPixelFormat formatForNextUpdate; // 보냈고, 다음 업데이트부터 적용할 포맷
+    private boolean formatSwitched; // 수신 스레드: 지금 적용 중인 업데이트가 새 포맷의 첫 업데이트
+
+    UpdatePacer(RFBProtocolHandler protocolHandler, int maxInFlight, int maxFps) {
+        this(protocolHandler, maxInFlight, maxFps, null);
+    }
+
+    // sharedScheduler가 있으면 전용 스레드 대신 그것을 씁니다. (여러 세션이 타이머 스레드 하나를 공유)
+    UpdatePacer(RFBProtocolHandler protocolHandler, int maxInFlight, int maxFps, ScheduledExecutorService sharedScheduler) {
+        this.protocolHandler = protocolHandler;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.minIntervalNanos = intervalFor(maxFps);
+        this.ownsScheduler = sharedScheduler == null;
+        this.scheduler = sharedScheduler != null ? sharedScheduler : Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rfb-update-pacer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static long intervalFor(int maxFps) {
+        return maxFps > 0 ? TimeUnit.SECONDS.toNanos(1) / maxFps : 0;
+    }
+
+    // 첫 요청은 비증분(전체 화면), 이후는 증분 요청으로 파이프라인을 채웁니다.
+    void start(int width, int height) throws IOException {
+        start(width, height, null);
+    }
+
+    // 재연결: visibleFirst(화면에 보이는 영역)를 먼저 비증분으로 요청하고 나머지 띠를 이어서 요청합니다. (첫 픽셀까지의 시간 단축)
+    // 서버가 두 요청을 한 업데이트로 합쳐 응답할 수 있으므로 대기 수는 하나로 셉니다. (적게 세면 증분 요청이 조금 일찍 나갈 뿐)
+    void start(int width, int height, Rectangle visibleFirst) throws IOException {
+        this.width = width;
+        this.height = height;
+        lastUpdateNanos = System.nanoTime();
+        inFlight.incrementAndGet();
+        requestSent();
+        Rectangle screen = new Rectangle(0, 0, width, height);
+        Rectangle first = visibleFirst != null ? visibleFirst.intersection(screen) : screen;
+        if (first.isEmpty() || first.equals(screen)) {
+            protocolHandler.writeFramebufferUpdateRequest(false, 0, 0, width, height);
+        } else {
+            protocolHandler.writeFramebufferUpdateRequest(false, first.x, first.y, first.width, first.height);
+            int bottom = first.y + first.height;
+            int right = first.x + first.width;
+            Rectangle[] rest = {
+                    new Rectangle(0, 0, width, first.y),
+                    new Rectangle(0, bottom, width, height - bottom),
+                    new Rectangle(0, first.y, first.x, first.height),
+                    new Rectangle(right, first.y, width - right, first.height)
+            };
+            for (Rectangle r : rest) {
+                if (!r.isEmpty()) {
+                    protocolHandler.writeFramebufferUpdateRequest(false, r.x, r.y, r.width, r.height);
+                }
+            }
+        }
+        requestMore();
+        if (maxInFlight > 1) {
+            stallCheck = scheduler.scheduleWithFixedDelay(this::checkStalled, STALL_TIMEOUT_MS, STALL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // 수신 스레드: 서버가 Fence를 보냄. 이때부터 maxInFlight까지 요청을 겹쳐 보냅니다.
+    void setFenceSupported() {
+        if (fenceSupported) {
+            return;
+        }
+        fenceSupported = true;
+        requestMore();
+    }
+
+    // 수신 스레드에서 FramebufferUpdate 하나를 모두 적용한 뒤 호출
+    void onUpdateReceived() {
+        lastUpdateNanos = System.nanoTime();
+        if (continuous) {
+            return;
+        }
+        inFlight.updateAndGet(n -> n > 0 ? n - 1 : 0);
+        if (formatSwitched) {
+            // 포맷 전환 때문에 ContinuousUpdates를 껐으면 새 포맷의 첫 업데이트를 받은 뒤 다시 켭니다.
+            formatSwitched = false;
+            try {
+                if (enableContinuous()) {
+                    return;
+                }
+            } catch (IOException e) {
+                System.err.println("ContinuousUpdates 활성화 오류: " + e.getMessage());
+            }
+        }
+        requestMore();
+    }
+
+    // 서버의 EndOfContinuousUpdates 메시지
+    // 처음 받으면 서버가 지원한다는 뜻이고, 켜진 상태에서 받으면 서버가 중단한 것이므로 요청 방식으로 돌아갑니다.
+    void onEndOfContinuousUpdates() {
+        if (!continuousSupported) {
+            continuousSupported = true;
+            try {
+                enableContinuous();
+            } catch (IOException e) {
+                System.err.println("ContinuousUpdates 활성화 오류: " + e.getMessage());
+            }
+        } else if (continuous) {
+            continuous = false;
+            inFlight.set(0);
+            oldestRequestNanos.set(0);
+            requestMore();
+        }
+    }
+
+    // 세션 중 픽셀 포맷 변경. 서버가 Fence를 지원하면 바로 보내고 Fence 응답 이후의 업데이트부터 전환합니다.
+    // 아니면 요청 방식에서는 대기 중인 요청이 모두 응답된 뒤에, ContinuousUpdates 중이면 끄고
+    // EndOfContinuousUpdates를 받은 뒤에 전환하고, 새 포맷의 첫 업데이트 뒤에 다시 켭니다.
+    void changePixelFormat(RFBPixelFormat pixelFormat) throws IOException {
+        if (fenceSupported) {
+            synchronized (this) {
+                // SyncNext: 서버는 이 Fence에 응답한 뒤에 다음 메시지(SetPixelFormat)를 처리하므로
+                // 대기 중인 요청이나 ContinuousUpdates를 멈추지 않아도 경계가 정확합니다.
+                fencedFormats.add(pixelFormat);
+                protocolHandler.writeFenceAndPixelFormat(RFBProtocolHandler.FENCE_REQUEST | RFBProtocolHandler.FENCE_BLOCK_BEFORE
+                        | RFBProtocolHandler.FENCE_SYNC_NEXT, FORMAT_FENCE_PAYLOAD, pixelFormat);
+            }
+            requestFullUpdate();
+            return;
+        }
+        synchronized (this) {
+            pendingFormat = pixelFormat;
+        }
+        if (continuous) {
+            protocolHandler.writeEnableContinuousUpdates(false, 0, 0, width, height);
+            return;
+        }
+        requestMore();
+    }
+
+    // 수신 스레드에서 FramebufferUpdate를 디코딩하기 전에 호출. 이 업데이트부터 쓸 새 포맷 (없으면 null)
+    synchronized RFBPixelFormat takeFormatForNextUpdate() {
+        RFBPixelFormat pixelFormat = formatForNextUpdate;
+        formatForNextUpdate = null;
+        if (pixelFormat != null) {
+            formatSwitched = true;
+        }
+        return pixelFormat;
+    }
+
+    // 수신 스레드: Fence 응답. 포맷 전환용이면 true (이후 업데이트부터 그 포맷)
+    boolean onFenceResponse(byte[] payload) {
+        if (!Arrays.equals(payload, FORMAT_FENCE_PAYLOAD)) {
+            return false;
+        }
+        synchronized (this) {
+            RFBPixelFormat pixelFormat = fencedFormats.poll();
+            if (pixelFormat != null) {
+                formatForNextUpdate = pixelFormat;
+            }
+        }
+        return true;
+    }
+
+    // 화면 전체를 다시 받습니다. (컬러맵 변경 등)
+    // 이미 대기 중인 요청이 있으면 서버가 합쳐 한 번에 응답할 수 있으므로 새로 세지 않습니다. (많게 세면 멈춤)
+    void requestFullUpdate() throws IOException {
+        if (!continuous) {
+            inFlight.updateAndGet(n -> n > 0 ? n : 1);
+        }
+        requestSent();
+        protocolHandler.writeFramebufferUpdateRequest(false, 0, 0, width, height);
+    }
+
+    // 세션 중 fps 상한 변경 (0이면 제한 없음). 상한이 있으면 서버 푸시 속도를 제어할 수 없으므로 ContinuousUpdates를 끄고
+    // (EndOfContinuousUpdates를 받으면 요청 방식으로 돌아감), 상한을 없애면 서버가 지원할 때 다시 켭니다.
+    void setMaxFps(int maxFps) throws IOException {
+        minIntervalNanos = intervalFor(maxFps);
+        if (minIntervalNanos > 0 && continuous) {
+            protocolHandler.writeEnableContinuousUpdates(false, 0, 0, width, height);
+            return;
+        }
+        if (enableContinuous()) {
+            return;
+        }
+        requestMore(); // 간격이 줄었으면 미뤄 둔 요청을 바로 보냄
+    }
+
+    // 수신 스레드: 업데이트 메시지가 도착했을 때 가장 오래된 미응답 요청의 전송 시각 (없으면 0)
+    // 요청을 순서대로 하나씩 짝지으면 서버가 겹친 요청을 합쳐 응답할 때 남은 요청이 뒤 업데이트와 짝지어져
+    // 지연이 부풀려지므로, 업데이트 하나가 그때까지의 요청을 모두 응답한 것으로 보고 비웁니다.
+    long takeRequestNanos() {
+        return oldestRequestNanos.getAndSet(0);
+    }
+
+    boolean isContinuous() {
+        return continuous;
+    }
+
+    void stop() {
+        stopped = true;
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        } else if (stallCheck != null) {
+            stallCheck.cancel(false);
+        }
+    }
+
+    private void requestMore() {
+        if (continuous || stopped) {
+            return;
+        }
+        if (sendPendingFormat()) {
+            return;
+        }
+        int limit = pipelineLimit();
+        while (inFlight.get() < limit) {
+            long wait = lastRequestNanos + minIntervalNanos - System.nanoTime();
+            if (wait > 0) {
+                // fps 상한: 남은 시간만큼 뒤에 한 번만 다시 시도
+                if (delayedRequestScheduled.compareAndSet(false, true)) {
+                    scheduler.schedule(() -> {
+                        delayedRequestScheduled.set(false);
+                        requestMore();
+                    }, wait, TimeUnit.NANOSECONDS);
+                }
+                return;
+            }
+            // 포맷 확인, 자리 예약, 요청 전송을 한 잠금 안에서 합니다. 그 사이에 다른 스레드의 changePixelFormat()이
+            // 대기 수 0을 보고 SetPixelFormat을 보내면, 뒤따라 나간 이전 포맷의 요청에 대한 응답이 새 포맷으로 디코딩됩니다.
+            synchronized (this) {
+                if (sendPendingFormat() || inFlight.get() >= limit) {
+                    return;
+                }
+                inFlight.incrementAndGet();
+                requestSent();
+                try {
+                    protocolHandler.writeFramebufferUpdateRequest(true, 0, 0, width, height);
+                } catch (IOException e) {
+                    System.err.println("업데이트 요청 오류: " + e.getMessage());
+                    stop();
+                    return;
+                }
+            }
+        }
+    }
+
+    // 포맷 전환 대기 중이면 true. 대기 중인 요청이 없으면 SetPixelFormat과 전체 화면 요청을 보냅니다.
+    private synchronized boolean sendPendingFormat() {
+        if (pendingFormat == null) {
+            return false;
+        }
+        if (inFlight.get() > 0) {
+            return true; // 이전 포맷의 응답을 먼저 받음
+        }
+        try {
+            protocolHandler.writeClientSetPixelFormat(pendingFormat);
+            formatForNextUpdate = pendingFormat;
+            pendingFormat = null;
+            inFlight.incrementAndGet();
+            requestSent();
+            protocolHandler.writeFramebufferUpdateRequest(false, 0, 0, width, height);
+        } catch (IOException e) {
+            System.err.println("픽셀 포맷 변경 오류: " + e.getMessage());
+            stop();
+        }
+        return true;
+    }
+
+    // ContinuousUpdates 중에는 업데이트를 요청과 짝지을 수 없으므로 시각을 남기지 않습니다.
+    private void requestSent() {
+        long now = System.nanoTime();
+        lastRequestNanos = now;
+        if (!continuous) {
+            oldestRequestNanos.compareAndSet(0, now);
+        }
+    }
+
+    // fps 상한이 없고(서버 푸시 속도는 제어할 수 없음) 포맷 전환을 기다리지 않을 때 ContinuousUpdates를 켭니다. 켰으면 true
+    private synchronized boolean enableContinuous() throws IOException {
+        if (minIntervalNanos > 0 || !continuousSupported || continuous || pendingFormat != null || stopped) {
+            return false;
+        }
+        protocolHandler.writeEnableContinuousUpdates(true, 0, 0, width, height);
+        continuous = true;
+        oldestRequestNanos.set(0);
+        return true;
+    }
+
+    private int pipelineLimit() {
+        return fenceSupported ? maxInFlight : 1;
+    }
+
+    // 요청 하나만 보내는 동안에는 대기 수가 실제보다 커질 수 없으므로, 업데이트가 없는 것은 서버가 변경을 기다리며
+    // 요청을 쥐고 있는 것입니다. (다시 요청하지 않음)
+    // 겹쳐 보내는 중이면 대기 수를 0으로 돌리지 않고 한 자리만 비웁니다. 서버가 요청을 쥐고 있던 것이라면
+    // 새 요청은 그것과 합쳐질 뿐이므로, 한가한 서버에도 초당 요청 하나만 더 나갑니다.
+    private void checkStalled() {
+        int limit = pipelineLimit();
+        if (continuous || limit <= 1 || inFlight.get() < limit
+                || System.nanoTime() - lastUpdateNanos <= TimeUnit.MILLISECONDS.toNanos(STALL_TIMEOUT_MS)) {
+            return;
+        }
+        inFlight.set(limit - 1);
+        requestMore();
+    }
+}
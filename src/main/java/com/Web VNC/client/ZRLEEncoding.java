@@ -0,0 +1,196 @@
+package com.myvnc.client;
+
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// ZRLE 인코딩 (type 16)
+// 사각형 데이터는 세션 전체에 걸친 하나의 zlib 스트림이며, 압축을 풀면 64x64 타일이 행 우선 순서로 나옵니다.
+// 각 타일은 서브인코딩에 따라 raw / solid / packed palette / plain RLE / palette RLE 로 처리합니다.
+class ZRLEEncoding implements RFBEncoding {
+    private static final int TILE_SIZE = 64;
+
+    private final ZlibInStream zlib = new ZlibInStream();
+    private final int[] palette = new int[128];
+    // 프레임버퍼 경계에 걸친 사각형용 임시 타일
+    private final int[] tileBuffer = new int[TILE_SIZE * TILE_SIZE];
+    private RFBPixelFormat cachedFormat;
+    private PixelConverter converter; // CPIXEL 변환기
+
+    @Override
+    public int getEncodingType() {
+        return 16; // ZRLE encoding type
+    }
+
+    // 세션 녹화의 키프레임용
+    ZlibInStream[] zlibStreams() {
+        return new ZlibInStream[]{zlib};
+    }
+
+    @Override
+    public void decode(DataInputStream in, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        int length = in.readInt();
+        zlib.setInput(in, length);
+        decodeTiles(image, x, y, width, height, pixelFormat);
+    }
+
+    @Override
+    public void decode(RFBChannelReader reader, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        int length = reader.readS32();
+        int src = reader.take(length);
+        zlib.setInput(reader.array(), src, length);
+        decodeTiles(image, x, y, width, height, pixelFormat);
+    }
+
+    // 길이 필드 뒤의 압축 데이터를 복사 없이 zlib 입력으로 넘깁니다.
+    @Override
+    public void decode(RectPayload payload, BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        zlib.setInput(payload.data, payload.offset + 4, payload.getS32(0));
+        decodeTiles(image, x, y, width, height, pixelFormat);
+    }
+
+    // 세션 zlib 스트림을 이어 쓰므로 독립적이지 않습니다. (순서대로 이 인스턴스에서 디코딩)
+    @Override
+    public boolean readPayload(DataInputStream in, RectPayload payload, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        payload.read(in, payload.readS32(in));
+        return true;
+    }
+
+    private void decodeTiles(BufferedImage image, int x, int y, int width, int height, RFBPixelFormat pixelFormat) throws IOException {
+        if (pixelFormat != cachedFormat) {
+            converter = PixelConverter.forCompactFormat(pixelFormat);
+            cachedFormat = pixelFormat;
+        }
+
+        int[] pixels = RasterAccess.pixels(image);
+        int stride = RasterAccess.stride(image);
+        boolean inside = RasterAccess.contains(image, x, y, width, height);
+
+        for (int ty = y; ty < y + height; ty += TILE_SIZE) {
+            int th = Math.min(TILE_SIZE, y + height - ty);
+            for (int tx = x; tx < x + width; tx += TILE_SIZE) {
+                int tw = Math.min(TILE_SIZE, x + width - tx);
+                if (inside) {
+                    decodeTile(pixels, ty * stride + tx, stride, tw, th);
+                } else {
+                    decodeTile(tileBuffer, 0, tw, tw, th);
+                    blitClipped(image, pixels, stride, tx, ty, tw, th);
+                }
+            }
+        }
+    }
+
+    // dst[offset]을 좌상단으로 하는 tw x th 타일을 디코딩합니다.
+    private void decodeTile(int[] dst, int offset, int stride, int tw, int th) throws IOException {
+        int subencoding = zlib.readU8();
+
+        if (subencoding == 0) { // Raw
+            int rowBytes = tw * converter.bytesPerPixel;
+            for (int row = 0; row < th; row++) {
+                int src = zlib.require(rowBytes);
+                converter.convertRow(zlib.buffer(), src, dst, offset + row * stride, tw);
+            }
+        } else if (subencoding == 1) { // Solid
+            int color = readCPixel();
+            for (int row = 0; row < th; row++) {
+                int start = offset + row * stride;
+                Arrays.fill(dst, start, start + tw, color);
+            }
+        } else if (subencoding <= 16) { // Packed palette
+            readPalette(subencoding);
+            decodePackedPalette(dst, offset, stride, tw, th, subencoding);
+        } else if (subencoding == 128) { // Plain RLE
+            decodeRle(dst, offset, stride, tw, th, false);
+        } else if (subencoding >= 130) { // Palette RLE
+            readPalette(subencoding - 128);
+            decodeRle(dst, offset, stride, tw, th, true);
+        } else {
+            throw new IOException("잘못된 ZRLE 서브인코딩: " + subencoding);
+        }
+    }
+
+    private void decodePackedPalette(int[] dst, int offset, int stride, int tw, int th, int paletteSize) throws IOException {
+        int bits = paletteSize == 2 ? 1 : paletteSize <= 4 ? 2 : 4;
+        int mask = (1 << bits) - 1;
+        for (int row = 0; row < th; row++) {
+            int d = offset + row * stride;
+            int byteValue = 0;
+            int bitsLeft = 0;
+            // 각 행은 바이트 경계로 패딩됩니다.
+            for (int col = 0; col < tw; col++) {
+                if (bitsLeft == 0) {
+                    byteValue = zlib.readU8();
+                    bitsLeft = 8;
+                }
+                bitsLeft -= bits;
+                dst[d + col] = palette[(byteValue >> bitsLeft) & mask];
+            }
+        }
+    }
+
+    private void decodeRle(int[] dst, int offset, int stride, int tw, int th, boolean usePalette) throws IOException {
+        int row = 0;
+        int col = 0;
+        while (row < th) {
+            int color;
+            int runLength = 1;
+            if (usePalette) {
+                int index = zlib.readU8();
+                color = palette[index & 0x7F];
+                if ((index & 0x80) != 0) {
+                    runLength = readRunLength();
+                }
+            } else {
+                color = readCPixel();
+                runLength = readRunLength();
+            }
+            // 런이 여러 행에 걸칠 수 있으므로 행 단위로 나눠 채웁니다.
+            while (runLength > 0) {
+                if (row >= th) {
+                    throw new IOException("ZRLE 런 길이가 타일을 벗어났습니다.");
+                }
+                int n = Math.min(runLength, tw - col);
+                int start = offset + row * stride + col;
+                Arrays.fill(dst, start, start + n, color);
+                runLength -= n;
+                col += n;
+                if (col == tw) {
+                    col = 0;
+                    row++;
+                }
+            }
+        }
+    }
+
+    private int readRunLength() throws IOException {
+        int length = 1;
+        int b;
+        do {
+            b = zlib.readU8();
+            length += b;
+        } while (b == 255);
+        return length;
+    }
+
+    private int readCPixel() throws IOException {
+        int src = zlib.require(converter.bytesPerPixel);
+        return converter.toRGB(zlib.buffer(), src);
+    }
+
+    private void readPalette(int size) throws IOException {
+        for (int i = 0; i < size; i++) {
+            palette[i] = readCPixel();
+        }
+    }
+
+    private void blitClipped(BufferedImage image, int[] pixels, int stride, int tx, int ty, int tw, int th) {
+        int x0 = Math.max(tx, 0);
+        int x1 = Math.min(tx + tw, image.getWidth());
+        int y0 = Math.max(ty, 0);
+        int y1 = Math.min(ty + th, image.getHeight());
+        for (int row = y0; row < y1 && x1 > x0; row++) {
+            System.arraycopy(tileBuffer, (row - ty) * tw + (x0 - tx), pixels, row * stride + x0, x1 - x0);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.myvnc.client;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+// 세션 동안 유지되는 zlib 스트림 (ZRLE, Tight)
+// RFB의 zlib 데이터는 사각형마다 끊기지 않는 하나의 스트림이므로 Inflater를 재생성하면 안 됩니다.
+// 압축 해제된 바이트는 재사용 버퍼에 쌓이고 디코더는 require()로 버퍼를 직접 읽습니다.
+final class ZlibInStream {
+    // deflate가 참조할 수 있는 최대 거리 (세션 녹화의 키프레임에 이만큼의 출력 기록을 저장)
+    private static final int WINDOW_SIZE = 32 * 1024;
+
+    private Inflater inflater = new Inflater();
+    private boolean raw; // 키프레임에서 복원되어 zlib 헤더 없이 이어 푸는 중
+    private byte[] input = new byte[0];
+    private int inputLength;
+    private byte[] buffer = new byte[64 * 1024];
+    private int pos;
+    private int end;
+    // 최근 출력 WINDOW_SIZE 바이트 (녹화 중일 때만, 링 버퍼)
+    private byte[] history;
+    private long historyTotal;
+
+    // 사각형 하나 분량의 압축 데이터를 읽어 인플레이터에 넘깁니다.
+    // 이전 사각형에서 소비되지 않은 입력(sync flush 꼬리 등)은 앞에 이어 붙입니다.
+    void setInput(DataInputStream in, int length) throws IOException {
+        int remaining = prepareInput(length);
+        in.readFully(input, remaining, length);
+        startInput(remaining + length);
+    }
+
+    // NIO 수신 경로: 수신 버퍼의 압축 데이터를 받습니다.
+    // 수신 버퍼는 곧 재사용되므로 인플레이터가 참조하지 않도록 내부 입력 버퍼로 복사합니다.
+    void setInput(byte[] src, int offset, int length) {
+        int remaining = prepareInput(length);
+        System.arraycopy(src, offset, input, remaining, length);
+        startInput(remaining + length);
+    }
+
+    // 남은 입력을 앞으로 옮기고 그 길이를 반환합니다.
+    private int prepareInput(int length) {
+        int remaining = inflater.getRemaining();
+        int total = remaining + length;
+        if (input.length < total) {
+            byte[] grown = new byte[Math.max(total, input.length * 2)];
+            System.arraycopy(input, inputLength - remaining, grown, 0, remaining);
+            input = grown;
+        } else if (remaining > 0) {
+            System.arraycopy(input, inputLength - remaining, input, 0, remaining);
+        }
+        return remaining;
+    }
+
+    private void startInput(int total) {
+        inputLength = total;
+        inflater.setInput(input, 0, total);
+        pos = 0;
+        end = 0;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    // n바이트가 buffer()에 연속으로 있도록 보장하고 그 시작 위치를 반환한 뒤 소비합니다.
+    int require(int n) throws IOException {
+        if (end - pos < n) {
+            fill(n);
+        }
+        int offset = pos;
+        pos += n;
+        return offset;
+    }
+
+    int readU8() throws IOException {
+        if (pos == end) {
+            fill(1);
+        }
+        return buffer[pos++] & 0xFF;
+    }
+
+    void readFully(byte[] dst, int off, int len) throws IOException {
+        while (len > 0) {
+            if (pos == end) {
+                fill(1);
+            }
+            int n = Math.min(len, end - pos);
+            System.arraycopy(buffer, pos, dst, off, n);
+            pos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    // 스트림 상태 초기화 (Tight의 리셋 플래그, 재연결)
+    void reset() {
+        if (raw) {
+            // 리셋 후 서버는 zlib 헤더부터 새로 보냅니다.
+            inflater.end();
+            inflater = new Inflater();
+            raw = false;
+        } else {
+            inflater.reset();
+        }
+        inputLength = 0;
+        pos = 0;
+        end = 0;
+        historyTotal = 0;
+    }
+
+    // 세션 녹화: 키프레임에서 이어 풀 수 있도록 최근 출력을 보관합니다. (스트림 시작 전에 켜야 함)
+    void setHistoryEnabled(boolean enabled) {
+        history = enabled ? new byte[WINDOW_SIZE] : null;
+        historyTotal = 0;
+    }
+
+    // 메시지 경계에서의 상태를 기록합니다. 서버는 사각형마다 sync flush하므로 입력을 모두 소비한 시점은
+    // 바이트 경계이고, 이후의 deflate 블록은 최근 32KB 출력만 참조합니다.
+    // 남은 입력이 있으면 그 위치에서 이어 풀 수 없으므로 resumable=false로 기록합니다.
+    void writeState(DataOutputStream out) throws IOException {
+        if (history == null) {
+            throw new IllegalStateException("zlib 출력 기록이 꺼져 있습니다.");
+        }
+        if (inflater.getRemaining() > 0 && !inflater.finished()) {
+            // 출력 없는 sync flush 표시가 남아 있을 수 있으므로 먼저 소비시킵니다.
+            fill(end - pos, false);
+        }
+        boolean started = raw || inflater.getBytesRead() > 0;
+        out.writeBoolean(started);
+        out.writeBoolean(inflater.getRemaining() == 0 && !inflater.finished());
+        int windowLength = (int) Math.min(historyTotal, WINDOW_SIZE);
+        out.writeShort(windowLength);
+        int start = (int) ((historyTotal - windowLength) % WINDOW_SIZE);
+        int first = Math.min(windowLength, WINDOW_SIZE - start);
+        out.write(history, start, first);
+        out.write(history, 0, windowLength - first);
+        out.writeInt(end - pos); // 디코더가 아직 읽지 않은 출력
+        out.write(buffer, pos, end - pos);
+    }
+
+    // writeState()가 기록한 상태에서 이어 풀도록 초기화합니다. 이어 풀 수 없는 상태면 false
+    boolean readState(DataInputStream in) throws IOException {
+        reset();
+        boolean started = in.readBoolean();
+        boolean resumable = in.readBoolean();
+        byte[] window = new byte[in.readUnsignedShort()];
+        in.readFully(window);
+        int pending = in.readInt();
+        if (buffer.length < pending) {
+            buffer = new byte[pending];
+        }
+        in.readFully(buffer, 0, pending);
+        end = pending;
+        if (started) {
+            // zlib 헤더는 이미 지나갔으므로 raw deflate로, 최근 출력을 사전으로 이어 풉니다.
+            inflater.end();
+            inflater = new Inflater(true);
+            raw = true;
+            if (window.length > 0) {
+                inflater.setDictionary(window);
+            }
+        }
+        if (history != null) {
+            record(window, 0, window.length);
+        }
+        return resumable;
+    }
+
+    private void record(byte[] src, int offset, int length) {
+        int skip = Math.max(0, length - WINDOW_SIZE);
+        offset += skip;
+        length -= skip;
+        int start = (int) (historyTotal % WINDOW_SIZE);
+        int first = Math.min(length, WINDOW_SIZE - start);
+        System.arraycopy(src, offset, history, start, first);
+        System.arraycopy(src, offset + first, history, 0, length - first);
+        historyTotal += length + skip;
+    }
+
+    void end() {
+        inflater.end();
+    }
+
+    private void fill(int n) throws IOException {
+        fill(n, true);
+    }
+
+    // strict가 false면 입력이 부족해도 오류 없이 반환합니다.
+    private void fill(int n, boolean strict) throws IOException {
+        int available = end - pos;
+        if (buffer.length < n) {
+            byte[] grown = new byte[n];
+            System.arraycopy(buffer, pos, grown, 0, available);
+            buffer = grown;
+        } else if (available > 0 && pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, available);
+        }
+        pos = 0;
+        end = available;
+        try {
+            do {
+                int inflated = inflater.inflate(buffer, end, buffer.length - end);
+                if (inflated == 0) {
+                    if (!strict) {
+                        return;
+                    }
+                    if (inflater.needsInput() || inflater.finished()) {
+                        throw new EOFException("zlib 데이터가 부족합니다.");
+                    }
+                    if (inflater.needsDictionary()) {
+                        throw new IOException("zlib 사전이 필요한 스트림은 지원되지 않습니다.");
+                    }
+                }
+                if (history != null) {
+                    record(buffer, end, inflated);
+                }
+                end += inflated;
+            } while (end < n);
+        } catch (DataFormatException e) {
+            throw new IOException("zlib 데이터 오류: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.myvnc.gateway;
+
+import com.myvnc.client.RFBProtocolHandler;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// 브라우저 WebSocket 연결 하나와 VNC 서버 TCP 연결 하나를 잇는 세션
+// 핸드셰이크(버전, 보안 타입 목록)는 RFBProtocolHandler로 해석해 검증/기록한 뒤 그대로 넘기고,
+// 이후에는 양방향으로 바이트를 복사만 합니다. 방향마다 고정 크기 버퍼 하나만 쓰고 쓰기가 막히면 읽기도 멈추므로
+// 느린 쪽의 TCP 흐름 제어가 반대편까지 전달됩니다. (세션당 메모리 상한, 무제한 큐 없음)
+// 브라우저 쪽 입력에는 업그레이드 요청과 프레임 헤더를 바이트마다 시스템 콜로 읽지 않도록 작은 읽기 버퍼를 두고,
+// 그 크기는 브라우저 -> 서버 방향 버퍼에서 뺍니다.
+final class GatewaySession implements Runnable {
+    private static final int HANDSHAKE_TIMEOUT_MS = 10_000;
+    private static final int CONNECT_TIMEOUT_MS = 5_000;
+    private static final int MAX_READ_AHEAD = 2 * 1024;
+
+    private final WebSocketGateway gateway;
+    private final Socket browser;
+    private final int bufferSize;
+    private final int readAhead;
+
+    GatewaySession(WebSocketGateway gateway, Socket browser, int bufferSize) {
+        this.gateway = gateway;
+        this.browser = browser;
+        this.bufferSize = bufferSize;
+        this.readAhead = Math.max(1, Math.min(MAX_READ_AHEAD, bufferSize / 4));
+    }
+
+    @Override
+    public void run() {
+        String peer = String.valueOf(browser.getRemoteSocketAddress());
+        try (Socket ws = browser; Socket vnc = new Socket()) {
+            ws.setTcpNoDelay(true);
+            ws.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            InputStream browserIn = new BufferedInputStream(ws.getInputStream(), readAhead);
+            WebSocketConnection.Request request;
+            try {
+                request = WebSocketConnection.readUpgradeRequest(browserIn);
+            } catch (IOException e) {
+                WebSocketConnection.reject(ws, 400, "Bad Request");
+                throw e;
+            }
+            if (!gateway.isOriginAllowed(request.headers.get("origin"))) {
+                WebSocketConnection.reject(ws, 403, "Forbidden");
+                System.err.println("허용하지 않은 Origin 거절: " + request.headers.get("origin") + " (" + peer + ")");
+                return;
+            }
+            InetSocketAddress target = gateway.resolveTarget(request.path);
+            if (target == null) {
+                WebSocketConnection.reject(ws, 404, "Unknown VNC target");
+                return;
+            }
+            try {
+                // 대상은 이름으로 보관하고 접속할 때마다 해석합니다. (DNS 변경 반영)
+                vnc.connect(new InetSocketAddress(target.getHostString(), target.getPort()), CONNECT_TIMEOUT_MS);
+            } catch (IOException e) {
+                WebSocketConnection.reject(ws, 502, "VNC server unreachable");
+                throw e;
+            }
+            vnc.setTcpNoDelay(true);
+            vnc.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+            WebSocketConnection conn = WebSocketConnection.accept(ws, browserIn, request, bufferSize);
+            InputStream fromBrowser = conn.getInputStream();
+            DataInputStream fromServer = new DataInputStream(vnc.getInputStream());
+            OutputStream toServer = vnc.getOutputStream();
+
+            if (!inspectHandshake(conn, fromBrowser, fromServer, toServer, peer, target)) {
+                return;
+            }
+
+            // 핸드셰이크 이후에는 유휴 세션이 오래 머물 수 있으므로 시간 제한 없음
+            ws.setSoTimeout(0);
+            vnc.setSoTimeout(0);
+            gateway.execute(() -> pumpToServer(fromBrowser, toServer, ws, vnc));
+            pumpToBrowser(fromServer, conn);
+            conn.close(WebSocketConnection.CLOSE_NORMAL, "VNC server closed");
+        } catch (IOException e) {
+            if (!browser.isClosed()) { // 반대 방향 펌프가 닫은 경우는 정상 종료
+                System.err.println("게이트웨이 세션 오류 (" + peer + "): " + e.getMessage());
+            }
+        } finally {
+            gateway.sessionEnded();
+        }
+    }
+
+    // 서버 버전 -> 브라우저, 브라우저 버전 -> 서버, (3.7 이상) 서버 보안 타입 목록 -> 브라우저
+    private boolean inspectHandshake(WebSocketConnection conn, InputStream fromBrowser, DataInputStream fromServer,
+                                     OutputStream toServer, String peer, InetSocketAddress target) throws IOException {
+        String serverVersion = RFBProtocolHandler.readProtocolVersion(fromServer);
+        if (RFBProtocolHandler.parseMinorVersion(serverVersion) < 0) {
+            conn.close(WebSocketConnection.CLOSE_INTERNAL_ERROR, "target is not an RFB server");
+            return false;
+        }
+        byte[] version = serverVersion.getBytes(StandardCharsets.US_ASCII);
+        conn.sendBinary(version, 0, version.length);
+
+        String clientVersion = RFBProtocolHandler.readProtocolVersion(new DataInputStream(fromBrowser));
+        int minor = RFBProtocolHandler.parseMinorVersion(clientVersion);
+        if (minor < 0) {
+            conn.close(WebSocketConnection.CLOSE_PROTOCOL_ERROR, "invalid RFB version");
+            return false;
+        }
+        toServer.write(clientVersion.getBytes(StandardCharsets.US_ASCII));
+        toServer.flush();
+
+        if (minor >= 7) {
+            byte[] types = RFBProtocolHandler.readSecurityTypes(fromServer);
+            byte[] message = new byte[types.length + 1];
+            message[0] = (byte) types.length;
+            System.arraycopy(types, 0, message, 1, types.length);
+            conn.sendBinary(message, 0, message.length);
+            System.out.println("게이트웨이 세션: " + peer + " -> " + target + " (" + clientVersion.trim()
+                    + ", 보안 타입 " + types.length + "개)");
+        } else {
+            System.out.println("게이트웨이 세션: " + peer + " -> " + target + " (" + clientVersion.trim() + ")");
+        }
+        return true;
+    }
+
+    // VNC 서버 -> 브라우저: 읽은 만큼 바이너리 프레임 하나로 보냅니다.
+    private void pumpToBrowser(InputStream fromServer, WebSocketConnection conn) throws IOException {
+        byte[] buffer = new byte[conn.getMaxFramePayload()];
+        int n;
+        while ((n = fromServer.read(buffer)) > 0) {
+            conn.sendBinary(buffer, 0, n);
+            gateway.countToBrowser(n);
+        }
+    }
+
+    // 브라우저 -> VNC 서버. 끝나면 양쪽 소켓을 닫아 반대 방향 펌프도 끝냅니다.
+    private void pumpToServer(InputStream fromBrowser, OutputStream toServer, Socket ws, Socket vnc) {
+        byte[] buffer = new byte[Math.max(1, bufferSize - readAhead)];
+        try {
+            int n;
+            while ((n = fromBrowser.read(buffer)) > 0) {
+                toServer.write(buffer, 0, n);
+                gateway.countToServer(n);
+            }
+        } catch (IOException e) {
+            // 브라우저가 끊었거나 서버 쪽이 닫힘
+        } finally {
+            closeQuietly(vnc);
+            closeQuietly(ws);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // 이미 닫힘
+        }
+    }
+}
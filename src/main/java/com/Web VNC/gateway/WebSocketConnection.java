@@ -0,0 +1,345 @@
+package com.myvnc.gateway;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+// RFC 6455 서버 측 WebSocket (바이너리 메시지만 사용)
+// 받은 바이너리 프레임의 페이로드는 getInputStream()에서 끊김 없는 바이트 스트림으로 읽히고,
+// sendBinary()는 호출마다 프레임 하나를 보냅니다. 프레임 전체를 메모리에 모으지 않으므로 세션당 메모리가 고정됩니다.
+final class WebSocketConnection {
+    private static final String ACCEPT_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int MAX_REQUEST_BYTES = 8 * 1024;
+    // 데이터 프레임 페이로드 상한. 페이로드는 흘려보내므로 메모리와는 무관하지만, 이보다 크면 손상된 스트림으로 봅니다.
+    private static final long MAX_DATA_FRAME = 16L << 20;
+
+    private static final int OP_CONTINUATION = 0x0;
+    private static final int OP_TEXT = 0x1;
+    private static final int OP_BINARY = 0x2;
+    private static final int OP_CLOSE = 0x8;
+    private static final int OP_PING = 0x9;
+    private static final int OP_PONG = 0xA;
+
+    static final int CLOSE_NORMAL = 1000;
+    static final int CLOSE_PROTOCOL_ERROR = 1002;
+    static final int CLOSE_UNSUPPORTED_DATA = 1003;
+    static final int CLOSE_INTERNAL_ERROR = 1011;
+
+    // 업그레이드 요청 (요청 줄의 경로와 헤더, 헤더 이름은 소문자)
+    static final class Request {
+        final String path;
+        final Map<String, String> headers;
+
+        Request(String path, Map<String, String> headers) {
+            this.path = path;
+            this.headers = headers;
+        }
+    }
+
+    private final InputStream in;
+    private final OutputStream out;
+    // 가상 스레드가 synchronized 안에서 소켓 쓰기에 막히면 캐리어 스레드까지 붙잡으므로 ReentrantLock을 씁니다.
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final byte[] frameBuffer; // 헤더 + 페이로드를 한 번에 쓰기 위한 버퍼
+    private final PayloadInputStream payloadIn = new PayloadInputStream();
+    private boolean closeSent;
+
+    private WebSocketConnection(Socket socket, InputStream in, int maxFramePayload) throws IOException {
+        this.in = in;
+        this.out = socket.getOutputStream();
+        this.frameBuffer = new byte[maxFramePayload + 10];
+    }
+
+    // HTTP 업그레이드 요청을 읽습니다. WebSocket 요청이 아니면 IOException
+    // 한 바이트씩 읽으므로 in은 버퍼링된 스트림이어야 하고, 같은 스트림을 accept()에 넘겨야 합니다. (미리 읽은 프레임 보존)
+    static Request readUpgradeRequest(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        String requestLine = null;
+        Map<String, String> headers = new HashMap<>();
+        int total = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            if (++total > MAX_REQUEST_BYTES) {
+                throw new IOException("HTTP 요청이 너무 깁니다.");
+            }
+            if (b != '\n') {
+                line.write(b);
+                continue;
+            }
+            String text = line.toString(StandardCharsets.ISO_8859_1.name()).trim();
+            line.reset();
+            if (text.isEmpty()) {
+                break; // 헤더 끝
+            }
+            if (requestLine == null) {
+                requestLine = text;
+            } else {
+                int colon = text.indexOf(':');
+                if (colon > 0) {
+                    headers.put(text.substring(0, colon).trim().toLowerCase(Locale.ROOT), text.substring(colon + 1).trim());
+                }
+            }
+        }
+        if (requestLine == null || b < 0) {
+            throw new EOFException("HTTP 요청이 끝나기 전에 연결이 닫혔습니다.");
+        }
+        String[] parts = requestLine.split(" ");
+        if (parts.length < 3 || !parts[0].equals("GET")) {
+            throw new IOException("잘못된 요청: " + requestLine);
+        }
+        if (!"websocket".equalsIgnoreCase(headers.get("upgrade")) || headers.get("sec-websocket-key") == null) {
+            throw new IOException("WebSocket 업그레이드 요청이 아닙니다.");
+        }
+        return new Request(parts[1], headers);
+    }
+
+    // 101 Switching Protocols 응답. noVNC가 요청하는 "binary" 하위 프로토콜이 있으면 선택합니다.
+    // in은 업그레이드 요청을 읽은 소켓 입력 스트림입니다.
+    static WebSocketConnection accept(Socket socket, InputStream in, Request request, int maxFramePayload) throws IOException {
+        StringBuilder response = new StringBuilder()
+                .append("HTTP/1.1 101 Switching Protocols\r\n")
+                .append("Upgrade: websocket\r\n")
+                .append("Connection: Upgrade\r\n")
+                .append("Sec-WebSocket-Accept: ").append(acceptKey(request.headers.get("sec-websocket-key"))).append("\r\n");
+        String protocols = request.headers.get("sec-websocket-protocol");
+        if (protocols != null) {
+            for (String protocol : protocols.split(",")) {
+                if (protocol.trim().equals("binary")) {
+                    response.append("Sec-WebSocket-Protocol: binary\r\n");
+                    break;
+                }
+            }
+        }
+        response.append("\r\n");
+        OutputStream out = socket.getOutputStream();
+        out.write(response.toString().getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        return new WebSocketConnection(socket, in, maxFramePayload);
+    }
+
+    // 업그레이드 전 거절 (대상 없음, 세션 수 초과 등)
+    static void reject(Socket socket, int status, String reason) {
+        try {
+            OutputStream out = socket.getOutputStream();
+            byte[] body = reason.getBytes(StandardCharsets.UTF_8);
+            out.write(("HTTP/1.1 " + status + " " + reason + "\r\nContent-Length: " + body.length
+                    + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.write(body);
+            out.flush();
+        } catch (IOException ignored) {
+            // 곧 닫을 연결
+        }
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return Base64.getEncoder().encodeToString(sha1.digest((key + ACCEPT_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 받은 바이너리 메시지들의 페이로드 스트림. 닫기 프레임을 받으면 EOF
+    InputStream getInputStream() {
+        return payloadIn;
+    }
+
+    int getMaxFramePayload() {
+        return frameBuffer.length - 10;
+    }
+
+    // 바이너리 프레임 하나 전송 (len <= getMaxFramePayload()). 소켓 쓰기가 막히면 호출자도 막힙니다. (배압)
+    void sendBinary(byte[] data, int off, int len) throws IOException {
+        sendFrame(OP_BINARY, data, off, len);
+    }
+
+    void close(int code, String reason) {
+        byte[] text = reason.getBytes(StandardCharsets.UTF_8);
+        int len = Math.min(text.length, 123);
+        byte[] payload = new byte[2 + len];
+        payload[0] = (byte) (code >> 8);
+        payload[1] = (byte) code;
+        System.arraycopy(text, 0, payload, 2, len);
+        writeLock.lock();
+        try {
+            if (closeSent) {
+                return;
+            }
+            sendFrame(OP_CLOSE, payload, 0, payload.length);
+            closeSent = true;
+        } catch (IOException ignored) {
+            // 상대가 이미 끊음
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void sendFrame(int opcode, byte[] data, int off, int len) throws IOException {
+        writeLock.lock();
+        try {
+            if (closeSent) {
+                throw new IOException("WebSocket이 이미 닫혔습니다.");
+            }
+            if (len > frameBuffer.length - 10) {
+                throw new IOException("프레임이 너무 큽니다: " + len);
+            }
+            int p = 0;
+            frameBuffer[p++] = (byte) (0x80 | opcode); // FIN
+            if (len < 126) {
+                frameBuffer[p++] = (byte) len;
+            } else if (len <= 0xFFFF) {
+                frameBuffer[p++] = 126;
+                frameBuffer[p++] = (byte) (len >> 8);
+                frameBuffer[p++] = (byte) len;
+            } else {
+                frameBuffer[p++] = 127;
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    frameBuffer[p++] = (byte) ((long) len >> shift);
+                }
+            }
+            System.arraycopy(data, off, frameBuffer, p, len);
+            out.write(frameBuffer, 0, p + len);
+            out.flush();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // 프레임 헤더를 해석하고 마스크를 풀며 데이터 프레임 페이로드만 흘려보냅니다.
+    // 제어 프레임(ping/close)은 여기서 처리하므로 데이터를 읽는 스레드가 곧 제어 프레임 처리 스레드입니다.
+    private final class PayloadInputStream extends InputStream {
+        private final byte[] mask = new byte[4];
+        private final byte[] control = new byte[125];
+        private long remaining; // 현재 데이터 프레임의 남은 페이로드
+        private long position; // 마스크 인덱스 계산용
+        private boolean eof;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (remaining == 0) {
+                if (eof || !nextDataFrame()) {
+                    eof = true;
+                    return -1;
+                }
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n < 0) {
+                throw new EOFException("WebSocket 프레임 도중 연결이 끊겼습니다.");
+            }
+            for (int i = 0; i < n; i++) {
+                b[off + i] ^= mask[(int) ((position + i) & 3)];
+            }
+            position += n;
+            remaining -= n;
+            return n;
+        }
+
+        // 다음 데이터 프레임의 헤더까지 읽습니다. 닫기 프레임이면 false
+        private boolean nextDataFrame() throws IOException {
+            while (true) {
+                int b0 = readByte();
+                int b1 = readByte();
+                int opcode = b0 & 0x0F;
+                if ((b0 & 0x70) != 0) {
+                    throw protocolError("reserved bits set", "RSV 비트가 설정된 프레임입니다.");
+                }
+                if ((b1 & 0x80) == 0) {
+                    throw protocolError("unmasked client frame", "클라이언트 프레임에 마스크가 없습니다.");
+                }
+                long length = b1 & 0x7F;
+                if (length == 126) {
+                    length = (readByte() << 8) | readByte();
+                } else if (length == 127) {
+                    length = 0;
+                    for (int i = 0; i < 8; i++) {
+                        length = (length << 8) | readByte();
+                    }
+                }
+                // 최상위 비트가 켜진 64비트 길이는 음수가 됩니다.
+                if (length < 0 || length > MAX_DATA_FRAME) {
+                    throw protocolError("frame too long", "프레임 길이가 잘못되었습니다: " + length);
+                }
+                readFully(mask, 4);
+                position = 0;
+
+                if (opcode == OP_BINARY || opcode == OP_CONTINUATION) {
+                    remaining = length;
+                    if (length > 0) {
+                        return true;
+                    }
+                    continue;
+                }
+                if (opcode == OP_TEXT) {
+                    WebSocketConnection.this.close(CLOSE_UNSUPPORTED_DATA, "binary frames only");
+                    throw new IOException("텍스트 프레임은 지원하지 않습니다.");
+                }
+                if (opcode != OP_CLOSE && opcode != OP_PING && opcode != OP_PONG) {
+                    throw protocolError("unknown opcode", "알 수 없는 opcode: " + opcode);
+                }
+                if ((b0 & 0x80) == 0) {
+                    throw protocolError("fragmented control frame", "제어 프레임은 나눌 수 없습니다.");
+                }
+                if (length > control.length) {
+                    throw protocolError("control frame too long", "제어 프레임이 너무 깁니다.");
+                }
+                readFully(control, (int) length);
+                for (int i = 0; i < length; i++) {
+                    control[i] ^= mask[i & 3];
+                }
+                if (opcode == OP_PING) {
+                    sendFrame(OP_PONG, control, 0, (int) length);
+                } else if (opcode == OP_CLOSE) {
+                    WebSocketConnection.this.close(CLOSE_NORMAL, "");
+                    return false;
+                }
+                // OP_PONG: 무시
+            }
+        }
+
+        // 닫기 프레임(1002)을 보내고 던질 예외를 돌려줍니다.
+        private IOException protocolError(String reason, String message) {
+            WebSocketConnection.this.close(CLOSE_PROTOCOL_ERROR, reason);
+            return new IOException(message);
+        }
+
+        private int readByte() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("WebSocket 연결이 끊겼습니다.");
+            }
+            return b;
+        }
+
+        private void readFully(byte[] dst, int len) throws IOException {
+            int off = 0;
+            while (off < len) {
+                int n = in.read(dst, off, len - off);
+                if (n < 0) {
+                    throw new EOFException("WebSocket 연결이 끊겼습니다.");
+                }
+                off += n;
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.myvnc.gateway;
+
+import com.myvnc.client.SessionThreads;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 브라우저(WebSocket, 바이너리)와 VNC 서버(TCP)를 잇는 게이트웨이
+// 세션마다 스레드 두 개(방향별)가 블로킹 I/O로 바이트를 옮깁니다. 가상 스레드를 쓸 수 있으면 유휴 세션 수천 개도
+// 스레드 비용이 거의 없습니다. 열린 프록시가 되지 않도록 접속 대상은 시작할 때 지정한 목록으로 제한합니다.
+//   경로 "/" 또는 "/websockify" -> 첫 번째 대상, "/<이름>" -> 이름이 같은 대상
+// 허용 Origin을 지정하면 다른 사이트의 페이지가 브라우저를 통해 접속하지 못하도록 그 밖의 Origin을 403으로 거절합니다.
+public class WebSocketGateway {
+    private static final int DEFAULT_BUFFER_SIZE = 16 * 1024; // 방향별 세션 버퍼
+    private static final int DEFAULT_MAX_SESSIONS = 10_000;
+
+    private final int port;
+    private final Map<String, InetSocketAddress> targets;
+    private final int bufferSize;
+    private final int maxSessions;
+    private final ExecutorService sessionThreads = SessionThreads.create("vnc-gateway-");
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicLong bytesToBrowser = new AtomicLong();
+    private final AtomicLong bytesToServer = new AtomicLong();
+    private volatile Set<String> allowedOrigins = Set.of(); // 비어 있으면 검사하지 않음
+    private volatile ServerSocket serverSocket;
+
+    public WebSocketGateway(int port, Map<String, InetSocketAddress> targets, int bufferSize, int maxSessions) {
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("VNC 대상이 하나 이상 필요합니다.");
+        }
+        this.port = port;
+        this.targets = new LinkedHashMap<>(targets);
+        this.bufferSize = bufferSize;
+        this.maxSessions = maxSessions;
+    }
+
+    // 호출한 스레드에서 연결을 받습니다. stop()이 호출될 때까지 반환하지 않습니다.
+    public void serve() throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 1024)) {
+            serverSocket = server;
+            System.out.println("WebSocket 게이트웨이 시작: 포트 " + port + ", 대상 " + targets);
+            while (!server.isClosed()) {
+                Socket browser;
+                try {
+                    browser = server.accept();
+                } catch (IOException e) {
+                    if (server.isClosed()) {
+                        break;
+                    }
+                    System.err.println("연결 수락 오류: " + e.getMessage());
+                    continue;
+                }
+                if (activeSessions.incrementAndGet() > maxSessions) {
+                    activeSessions.decrementAndGet();
+                    WebSocketConnection.reject(browser, 503, "Too many sessions");
+                    browser.close();
+                    continue;
+                }
+                sessionThreads.execute(new GatewaySession(this, browser, bufferSize));
+            }
+        } finally {
+            sessionThreads.shutdownNow();
+        }
+    }
+
+    public void stop() throws IOException {
+        ServerSocket server = serverSocket;
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    // 허용할 Origin 목록 (예: "https://vnc.example.com"). 비우면 모든 Origin을 받습니다.
+    public void setAllowedOrigins(Collection<String> origins) {
+        Set<String> normalized = new HashSet<>();
+        for (String origin : origins) {
+            normalized.add(normalizeOrigin(origin));
+        }
+        allowedOrigins = Set.copyOf(normalized);
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    public long getBytesToBrowser() {
+        return bytesToBrowser.get();
+    }
+
+    public long getBytesToServer() {
+        return bytesToServer.get();
+    }
+
+    InetSocketAddress resolveTarget(String path) {
+        int query = path.indexOf('?');
+        String name = (query >= 0 ? path.substring(0, query) : path).replaceAll("^/+|/+$", "");
+        if (name.isEmpty() || name.equals("websockify")) {
+            return targets.values().iterator().next();
+        }
+        return targets.get(name);
+    }
+
+    // Origin 헤더가 없으면 브라우저가 아닌 클라이언트이므로 받습니다. (브라우저는 WebSocket 요청에 항상 Origin을 붙임)
+    boolean isOriginAllowed(String origin) {
+        Set<String> allowed = allowedOrigins;
+        return allowed.isEmpty() || origin == null || allowed.contains(normalizeOrigin(origin));
+    }
+
+    private static String normalizeOrigin(String origin) {
+        String trimmed = origin.trim().toLowerCase(Locale.ROOT);
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    void execute(Runnable task) {
+        sessionThreads.execute(task);
+    }
+
+    void sessionEnded() {
+        activeSessions.decrementAndGet();
+    }
+
+    void countToBrowser(int n) {
+        bytesToBrowser.addAndGet(n);
+    }
+
+    void countToServer(int n) {
+        bytesToServer.addAndGet(n);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("사용법: java WebSocketGateway <listenPort> [--allowed-origins <origin,...>] <이름=host:port> [<이름=host:port> ...]");
+            System.out.println("예시: java WebSocketGateway 6080 --allowed-origins https://vnc.example.com desktop=localhost:5900");
+            return;
+        }
+        int listenPort = Integer.parseInt(args[0]);
+        Map<String, InetSocketAddress> targets = new LinkedHashMap<>();
+        Set<String> origins = new HashSet<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--allowed-origins") && i + 1 < args.length) {
+                origins.addAll(Set.of(args[++i].split(",")));
+                continue;
+            }
+            int eq = args[i].indexOf('=');
+            int colon = args[i].lastIndexOf(':');
+            if (eq <= 0 || colon < eq) {
+                System.out.println("잘못된 대상: " + args[i]);
+                return;
+            }
+            targets.put(args[i].substring(0, eq),
+                    InetSocketAddress.createUnresolved(args[i].substring(eq + 1, colon), Integer.parseInt(args[i].substring(colon + 1))));
+        }
+        WebSocketGateway gateway = new WebSocketGateway(listenPort, targets, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_SESSIONS);
+        gateway.setAllowedOrigins(origins);
+        gateway.serve();
+    }
+}
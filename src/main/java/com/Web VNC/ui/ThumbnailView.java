@@ -0,0 +1,179 @@
+package com.myvnc.ui;
+
+import com.myvnc.client.SharedFramebuffer;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 모니터 월 타일: SharedFramebuffer 구독자로 축소 이미지를 유지합니다.
+// 변경 영역이 생기면 공유 실행기에 갱신 작업 하나만 올리고(올라가 있거나 실행 중이면 그 작업이 이어서 처리), 그 작업이
+// 변경 영역에 걸친 썸네일 픽셀만 원본 박스 평균으로 다시 계산해 그 부분만 다시 그립니다. 수신 스레드는 알림만 하고 바로 돌아갑니다.
+public class ThumbnailView extends JComponent {
+    private final SharedFramebuffer.Subscription subscription;
+    private final Executor executor;
+    private final int thumbWidth;
+    // 처리하지 않은 알림 수. 0에서 늘린 쪽만 작업을 올리고, 작업은 자기가 본 수까지 처리한 뒤에만 0으로 돌립니다.
+    // 그래서 실행기가 여러 스레드여도 갱신 작업은 한 번에 하나만 돕니다.
+    private final AtomicInteger refreshRequests = new AtomicInteger();
+
+    // 아래는 갱신 작업(한 번에 하나)만 씁니다. 이미지 픽셀은 그리기와 겹치지 않도록 this로 잠급니다.
+    private BufferedImage thumbnail;
+    private int[] thumbPixels;
+    private int sourceWidth;
+    private int sourceHeight;
+    private int[] xStart; // 썸네일 열 i가 덮는 원본 열: xStart[i] ~ xStart[i + 1]
+    private int[] yStart;
+    private int[] rowBuffer = new int[0]; // 썸네일 한 줄이 덮는 원본 줄들
+
+    public ThumbnailView(SharedFramebuffer framebuffer, int thumbWidth, Executor executor) {
+        this.thumbWidth = thumbWidth;
+        this.executor = executor;
+        setPreferredSize(new Dimension(thumbWidth, thumbWidth * 3 / 4));
+        setOpaque(true);
+        setBackground(Color.BLACK);
+        this.subscription = framebuffer.subscribe(this::scheduleRefresh); // 첫 갱신은 전체 화면
+        scheduleRefresh(); // 이미 연결된 프레임버퍼면 알림 없이 영역이 쌓여 있음
+    }
+
+    // 수신 스레드
+    private void scheduleRefresh() {
+        if (refreshRequests.getAndIncrement() == 0) {
+            executor.execute(this::refresh);
+        }
+    }
+
+    // 갱신하는 동안 새 알림이 오면(수가 늘었으면) 작업을 새로 올리지 않고 여기서 한 번 더 돕니다.
+    private void refresh() {
+        int seen;
+        do {
+            seen = refreshRequests.get();
+            refreshOnce();
+        } while (!refreshRequests.compareAndSet(seen, 0));
+    }
+
+    private void refreshOnce() {
+        int width = subscription.getWidth();
+        int height = subscription.getHeight();
+        if (width == 0 || height == 0) {
+            return;
+        }
+        List<Rectangle> damage = subscription.takeDamage();
+        if (width != sourceWidth || height != sourceHeight) {
+            allocate(width, height);
+            damage = List.of(new Rectangle(0, 0, width, height));
+        }
+        for (Rectangle r : damage) {
+            Rectangle t = toThumbnail(r);
+            if (!t.isEmpty()) {
+                downscale(t);
+                repaintThumbnail(t);
+            }
+        }
+    }
+
+    private void allocate(int width, int height) {
+        int tw = Math.max(1, Math.min(thumbWidth, width));
+        int th = Math.max(1, (int) ((long) height * tw / width));
+        BufferedImage image = new BufferedImage(tw, th, BufferedImage.TYPE_INT_RGB);
+        xStart = boundaries(width, tw);
+        yStart = boundaries(height, th);
+        sourceWidth = width;
+        sourceHeight = height;
+        synchronized (this) {
+            thumbnail = image;
+            thumbPixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        SwingUtilities.invokeLater(this::repaint);
+    }
+
+    private static int[] boundaries(int source, int thumb) {
+        int[] start = new int[thumb + 1];
+        for (int i = 0; i <= thumb; i++) {
+            start[i] = (int) ((long) i * source / thumb);
+        }
+        return start;
+    }
+
+    // 원본 사각형에 걸친 썸네일 픽셀 범위
+    private Rectangle toThumbnail(Rectangle r) {
+        int tw = xStart.length - 1;
+        int th = yStart.length - 1;
+        int x0 = (int) ((long) Math.max(0, r.x) * tw / sourceWidth);
+        int y0 = (int) ((long) Math.max(0, r.y) * th / sourceHeight);
+        int x1 = (int) Math.min(tw, ((long) (r.x + r.width) * tw + sourceWidth - 1) / sourceWidth);
+        int y1 = (int) Math.min(th, ((long) (r.y + r.height) * th + sourceHeight - 1) / sourceHeight);
+        return new Rectangle(x0, y0, Math.max(0, x1 - x0), Math.max(0, y1 - y0));
+    }
+
+    // 썸네일 사각형 t의 각 픽셀을 덮는 원본 박스의 평균으로 채웁니다. 원본은 썸네일 한 줄 분량씩 복사합니다.
+    private void downscale(Rectangle t) {
+        int sx0 = xStart[t.x];
+        int sx1 = Math.min(sourceWidth, Math.max(xStart[t.x + t.width], sx0 + 1));
+        int sourceSpan = sx1 - sx0;
+        int tw = xStart.length - 1;
+        for (int ty = t.y; ty < t.y + t.height; ty++) {
+            int sy0 = yStart[ty];
+            int rows = Math.max(1, yStart[ty + 1] - sy0);
+            if (rowBuffer.length < sourceSpan * rows) {
+                rowBuffer = new int[sourceSpan * rows];
+            }
+            subscription.copyRegion(new Rectangle(sx0, sy0, sourceSpan, rows), rowBuffer, 0, sourceSpan);
+            synchronized (this) {
+                for (int tx = t.x; tx < t.x + t.width; tx++) {
+                    int bx0 = xStart[tx] - sx0;
+                    int bx1 = Math.max(xStart[tx + 1] - sx0, bx0 + 1);
+                    long r = 0, g = 0, b = 0;
+                    for (int row = 0; row < rows; row++) {
+                        int base = row * sourceSpan;
+                        for (int bx = bx0; bx < bx1; bx++) {
+                            int p = rowBuffer[base + bx];
+                            r += (p >> 16) & 0xFF;
+                            g += (p >> 8) & 0xFF;
+                            b += p & 0xFF;
+                        }
+                    }
+                    int n = rows * (bx1 - bx0);
+                    thumbPixels[ty * tw + tx] = (int) (r / n) << 16 | (int) (g / n) << 8 | (int) (b / n);
+                }
+            }
+        }
+    }
+
+    // 썸네일 좌표 -> 컴포넌트 좌표 (비율을 유지하며 가운데 배치)
+    private void repaintThumbnail(Rectangle t) {
+        BufferedImage img = thumbnail;
+        double scale = Math.min((double) getWidth() / img.getWidth(), (double) getHeight() / img.getHeight());
+        int offsetX = (int) ((getWidth() - img.getWidth() * scale) / 2);
+        int offsetY = (int) ((getHeight() - img.getHeight() * scale) / 2);
+        repaint(offsetX + (int) Math.floor(t.x * scale), offsetY + (int) Math.floor(t.y * scale),
+                (int) Math.ceil(t.width * scale) + 2, (int) Math.ceil(t.height * scale) + 2);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        synchronized (this) {
+            BufferedImage img = thumbnail;
+            if (img == null) {
+                return;
+            }
+            double scale = Math.min((double) getWidth() / img.getWidth(), (double) getHeight() / img.getHeight());
+            int w = (int) (img.getWidth() * scale);
+            int h = (int) (img.getHeight() * scale);
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(img, (getWidth() - w) / 2, (getHeight() - h) / 2, w, h, null);
+        }
+    }
+
+    // 구독 해제 (타일을 없앨 때)
+    public void close() {
+        subscription.close();
+    }
+}
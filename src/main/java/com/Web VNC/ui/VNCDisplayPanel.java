@@ -1,12 +1,65 @@
 package com.myvnc.ui;
 
+import com.myvnc.client.CursorListener;
+import com.myvnc.client.DamageRegion;
+import com.myvnc.client.SessionMetrics;
+
 import javax.swing.*;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class VNCDisplayPanel extends JPanel implements CursorListener {
+
+    // 화면 배율 모드
+    public enum ScaleMode {
+        FIT, // 비율을 유지하며 창에 맞춤
+        ONE_TO_ONE, // 원본 크기 (좌상단 정렬)
+        INTEGER // 창에 들어가는 가장 큰 정수 배율 (픽셀이 뭉개지지 않음)
+    }
+
+    // 이미지와 배율 모드는 수신 스레드에서도 바뀝니다. 바꾼 뒤 contentGeneration을 올리고, 그리기는 세대를 먼저 읽은 뒤
+    // 이미지를 읽으므로 세대가 같으면 캐시가 그 이미지로 그려졌음이 보장됩니다. (플래그는 EDT가 덮어써 잃을 수 있음)
+    private volatile BufferedImage image;
+    private volatile ScaleMode scaleMode = ScaleMode.FIT;
+    private final AtomicInteger contentGeneration = new AtomicInteger();
+
+    // 아직 scaledCache에 반영되지 않은 변경 영역 (프레임버퍼 좌표)
+    private final DamageRegion pendingDamage = new DamageRegion();
+    // 배율이 1이 아닐 때 쓰는 가속 이미지. 변경 영역만 다시 그립니다.
+    private VolatileImage scaledCache;
+    private int cachedGeneration = -1; // EDT: scaledCache 전체를 그린 세대
+    private boolean cacheDirty = true; // EDT: 캐시를 새로 만들었거나 내용을 잃음
+
+    // 로컬 커서 오버레이 (Cursor 의사 인코딩). 모양과 핫스팟은 함께 바뀌므로 한 객체로 교체합니다.
+    private static final class CursorState {
+        final BufferedImage shape;
+        final int hotX;
+        final int hotY;
+
+        CursorState(BufferedImage shape, int hotX, int hotY) {
+            this.shape = shape;
+            this.hotX = hotX;
+            this.hotY = hotY;
+        }
+    }
+
+    private volatile CursorState cursor;
+    private volatile int cursorX; // 프레임버퍼 좌표
+    private volatile int cursorY;
+    private Cursor blankCursor;
 
-public class VNCDisplayPanel extends JPanel {
+    // 현재 배치 (paintComponent/updateLayout에서 갱신)
+    private volatile double scale = 1.0;
+    private volatile int offsetX;
+    private volatile int offsetY;
 
-    private BufferedImage image;
+    private volatile SessionMetrics metrics; // 그리기 시간, 입력 -> 화면 지연 (null이면 기록 안 함)
+    private volatile boolean stale; // 연결이 끊겨 마지막 화면을 보여 주는 중
+    private static final Color STALE_SHADE = new Color(0, 0, 0, 96);
 
     public VNCDisplayPanel() {
         setPreferredSize(new Dimension(800, 600)); // 초기 패널 크기
@@ -15,15 +68,273 @@ public class VNCDisplayPanel extends JPanel {
 
     public void setImage(BufferedImage image) {
         this.image = image;
+        if (image != null) {
+            setPreferredSize(new Dimension(image.getWidth(), image.getHeight()));
+        }
+        contentGeneration.incrementAndGet();
+        revalidate();
+        repaint();
+    }
+
+    public void setScaleMode(ScaleMode scaleMode) {
+        this.scaleMode = scaleMode;
+        contentGeneration.incrementAndGet();
+        repaint();
+    }
+
+    public ScaleMode getScaleMode() {
+        return scaleMode;
+    }
+
+    public void setMetrics(SessionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // 연결이 끊기면 마지막 화면을 어둡게 덮고 안내 문구를 표시합니다. (재연결 후 첫 업데이트에서 해제)
+    public void setStale(boolean stale) {
+        this.stale = stale;
+        repaint();
+    }
+
+    // 현재 배율/창 크기에서 화면에 보이는 프레임버퍼 영역 (이미지가 없으면 null)
+    public Rectangle getVisibleFramebufferRect() {
+        BufferedImage img = image;
+        if (img == null) {
+            return null;
+        }
+        if (getWidth() <= 0 || getHeight() <= 0) {
+            return new Rectangle(0, 0, img.getWidth(), img.getHeight());
+        }
+        Point topLeft = toFramebuffer(0, 0);
+        Point bottomRight = toFramebuffer(getWidth() - 1, getHeight() - 1);
+        return new Rectangle(topLeft.x, topLeft.y, bottomRight.x - topLeft.x + 1, bottomRight.y - topLeft.y + 1);
+    }
+
+    // 수신 스레드에서 FramebufferUpdate 적용 후 호출. 변경된 영역(배율 적용)만 다시 그리도록 요청합니다.
+    public void framebufferUpdated(List<Rectangle> damage) {
+        for (Rectangle r : damage) {
+            pendingDamage.add(r);
+            Rectangle p = toPanel(r);
+            repaint(p.x, p.y, p.width, p.height);
+        }
+    }
+
+    // 서버가 보낸 커서 모양. 캐시에서 온 같은 이미지면 아무것도 하지 않습니다.
+    @Override
+    public void cursorShapeChanged(BufferedImage shape, int hotX, int hotY) {
+        CursorState old = cursor;
+        if (old != null && old.shape == shape && old.hotX == hotX && old.hotY == hotY) {
+            return;
+        }
+        repaintCursor(old, cursorX, cursorY);
+        CursorState updated = new CursorState(shape, hotX, hotY);
+        cursor = updated;
+        repaintCursor(updated, cursorX, cursorY);
+        // 로컬 오버레이가 있으면 시스템 커서는 숨깁니다.
+        SwingUtilities.invokeLater(() -> setCursor(shape != null ? blankCursor() : Cursor.getDefaultCursor()));
+    }
+
+    // 포인터 이동 (로컬 마우스 입력 또는 서버의 PointerPos). 이전/새 위치만 다시 그립니다.
+    @Override
+    public void cursorMoved(int x, int y) {
+        if (x == cursorX && y == cursorY) {
+            return;
+        }
+        CursorState c = cursor;
+        repaintCursor(c, cursorX, cursorY);
+        cursorX = x;
+        cursorY = y;
+        repaintCursor(c, x, y);
+    }
+
+    private void repaintCursor(CursorState c, int x, int y) {
+        if (c == null || c.shape == null) {
+            return;
+        }
+        Rectangle p = toPanel(new Rectangle(x - c.hotX, y - c.hotY, c.shape.getWidth(), c.shape.getHeight()));
+        repaint(p.x, p.y, p.width, p.height);
+    }
+
+    private Cursor blankCursor() {
+        if (blankCursor == null) {
+            try {
+                blankCursor = Toolkit.getDefaultToolkit().createCustomCursor(
+                        new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB), new Point(0, 0), "blank");
+            } catch (HeadlessException | IndexOutOfBoundsException e) {
+                blankCursor = Cursor.getDefaultCursor();
+            }
+        }
+        return blankCursor;
+    }
+
+    // 패널 좌표 -> 프레임버퍼 좌표 (마우스 이벤트용)
+    public Point toFramebuffer(int x, int y) {
+        BufferedImage img = image;
+        if (img == null) {
+            return new Point(x, y);
+        }
+        int fx = (int) ((x - offsetX) / scale);
+        int fy = (int) ((y - offsetY) / scale);
+        return new Point(Math.max(0, Math.min(fx, img.getWidth() - 1)), Math.max(0, Math.min(fy, img.getHeight() - 1)));
     }
 
     @Override
     protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
         super.paintComponent(g);
-        if (image != null) {
-            // 이미지를 패널 크기에 맞게 그립니다. (비율 유지 또는 늘려서)
-            // 여기서는 간단히 패널 크기에 맞춤
-            g.drawImage(image, 0, 0, getWidth(), getHeight(), this);
+        int generation = contentGeneration.get(); // 이미지보다 먼저 읽음
+        BufferedImage img = image;
+        if (img == null) {
+            return;
+        }
+        updateLayout(img);
+        paintFramebuffer(g, img, generation);
+        paintCursor(g);
+        if (stale) {
+            paintStale(g, img);
+        }
+        SessionMetrics m = metrics;
+        if (m != null) {
+            m.painted(System.nanoTime() - start);
+        }
+    }
+
+    private void paintFramebuffer(Graphics g, BufferedImage img, int generation) {
+        if (scale == 1.0) {
+            // 원본 크기: 캐시 없이 클립 영역만 복사됩니다.
+            pendingDamage.drain();
+            cacheDirty = true;
+            g.drawImage(img, offsetX, offsetY, this);
+            return;
+        }
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if (gc == null) {
+            paintScaled((Graphics2D) g, img, offsetX, offsetY, null);
+            return;
         }
+        int scaledWidth = (int) Math.ceil(img.getWidth() * scale);
+        int scaledHeight = (int) Math.ceil(img.getHeight() * scale);
+        List<Rectangle> damage = pendingDamage.drain();
+        do {
+            int status = scaledCache == null ? VolatileImage.IMAGE_INCOMPATIBLE : scaledCache.validate(gc);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE
+                    || scaledCache.getWidth() != scaledWidth || scaledCache.getHeight() != scaledHeight) {
+                if (scaledCache != null) {
+                    scaledCache.flush();
+                }
+                scaledCache = gc.createCompatibleVolatileImage(scaledWidth, scaledHeight);
+                cacheDirty = true;
+            } else if (status == VolatileImage.IMAGE_RESTORED) {
+                cacheDirty = true;
+            }
+            Graphics2D cg = scaledCache.createGraphics();
+            try {
+                if (cacheDirty || cachedGeneration != generation) {
+                    paintScaled(cg, img, 0, 0, null);
+                    cacheDirty = false;
+                    cachedGeneration = generation;
+                } else {
+                    for (Rectangle r : damage) {
+                        paintScaled(cg, img, 0, 0, r);
+                    }
+                }
+            } finally {
+                cg.dispose();
+            }
+            g.drawImage(scaledCache, offsetX, offsetY, this);
+            if (scaledCache.contentsLost()) {
+                cacheDirty = true;
+            }
+        } while (scaledCache.contentsLost());
+    }
+
+    // 재연결 중에는 마지막 화면 위에 어두운 막과 안내 문구를 그립니다.
+    private void paintStale(Graphics g, BufferedImage img) {
+        int w = (int) Math.ceil(img.getWidth() * scale);
+        int h = (int) Math.ceil(img.getHeight() * scale);
+        g.setColor(STALE_SHADE);
+        g.fillRect(offsetX, offsetY, w, h);
+        String text = "연결 끊김 - 다시 연결하는 중...";
+        FontMetrics fm = g.getFontMetrics();
+        int x = offsetX + (w - fm.stringWidth(text)) / 2;
+        int y = offsetY + (h - fm.getHeight()) / 2 + fm.getAscent();
+        g.setColor(Color.WHITE);
+        g.drawString(text, x, y);
+    }
+
+    // 커서는 캐시에 넣지 않고 매번 위에 그립니다. (프레임버퍼 내용과 독립적으로 움직임)
+    private void paintCursor(Graphics g) {
+        CursorState c = cursor;
+        if (c == null || c.shape == null) {
+            return;
+        }
+        double s = scale;
+        int x = offsetX + (int) Math.floor((cursorX - c.hotX) * s);
+        int y = offsetY + (int) Math.floor((cursorY - c.hotY) * s);
+        g.drawImage(c.shape, x, y, (int) Math.ceil(c.shape.getWidth() * s), (int) Math.ceil(c.shape.getHeight() * s), null);
+    }
+
+    // 프레임버퍼의 region(null이면 전체)을 배율을 적용해 (dx, dy) 기준으로 그립니다.
+    // 전체 이미지와 같은 변환을 쓰고 클립만 제한하므로 부분 갱신 경계에 이음새가 생기지 않습니다.
+    private void paintScaled(Graphics2D g, BufferedImage img, int dx, int dy, Rectangle region) {
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, scaleMode == ScaleMode.INTEGER
+                ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        Rectangle src = region == null
+                ? new Rectangle(0, 0, img.getWidth(), img.getHeight())
+                // 보간이 이웃 픽셀을 참조하므로 한 픽셀 넓혀서 그립니다.
+                : new Rectangle(region.x - 1, region.y - 1, region.width + 2, region.height + 2)
+                        .intersection(new Rectangle(0, 0, img.getWidth(), img.getHeight()));
+        if (src.isEmpty()) {
+            return;
+        }
+        Shape oldClip = g.getClip();
+        if (region != null) {
+            g.clipRect(dx + (int) Math.floor(region.x * scale) - 1, dy + (int) Math.floor(region.y * scale) - 1,
+                    (int) Math.ceil(region.width * scale) + 3, (int) Math.ceil(region.height * scale) + 3);
+        }
+        // 부분 이미지(래스터 공유, 복사 없음)만 변환해서 그립니다.
+        AffineTransform at = new AffineTransform(scale, 0, 0, scale, dx + src.x * scale, dy + src.y * scale);
+        g.drawImage(img.getSubimage(src.x, src.y, src.width, src.height), at, null);
+        g.setClip(oldClip);
+    }
+
+    private void updateLayout(BufferedImage img) {
+        double s;
+        switch (scaleMode) {
+            case ONE_TO_ONE:
+                s = 1.0;
+                break;
+            case INTEGER:
+                s = Math.max(1, Math.min(getWidth() / img.getWidth(), getHeight() / img.getHeight()));
+                break;
+            case FIT:
+            default:
+                s = Math.min((double) getWidth() / img.getWidth(), (double) getHeight() / img.getHeight());
+                break;
+        }
+        if (s <= 0) {
+            s = 1.0;
+        }
+        if (s != scale) {
+            cacheDirty = true;
+        }
+        scale = s;
+        if (scaleMode == ScaleMode.ONE_TO_ONE) {
+            offsetX = 0;
+            offsetY = 0;
+        } else {
+            // 남는 공간은 가운데 정렬
+            offsetX = Math.max(0, (getWidth() - (int) Math.ceil(img.getWidth() * s)) / 2);
+            offsetY = Math.max(0, (getHeight() - (int) Math.ceil(img.getHeight() * s)) / 2);
+        }
+    }
+
+    // 프레임버퍼 좌표의 사각형 -> 패널 좌표 (보간 여유 포함)
+    private Rectangle toPanel(Rectangle r) {
+        double s = scale;
+        int x = offsetX + (int) Math.floor(r.x * s) - 2;
+        int y = offsetY + (int) Math.floor(r.y * s) - 2;
+        return new Rectangle(x, y, (int) Math.ceil(r.width * s) + 4, (int) Math.ceil(r.height * s) + 4);
     }
-}
\ No newline at end of file
+}
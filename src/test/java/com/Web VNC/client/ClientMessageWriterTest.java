@@ -0,0 +1,150 @@
+package com.myvnc.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 송신 스레드를 첫 write에서 붙잡아 두고 그동안 쌓인 배치를 확인합니다.
+class ClientMessageWriterTest {
+
+    @Test
+    void coalescesPointerMovesWithTheSameButtons() throws Exception {
+        GatedOutput out = new GatedOutput();
+        ClientMessageWriter writer = new ClientMessageWriter(out);
+        try {
+            writer.writePointerEvent(0, 1, 1);
+            out.awaitEntered(); // 첫 배치는 송신 중
+            writer.writePointerEvent(0, 2, 2);
+            writer.writePointerEvent(0, 3, 3); // 합쳐짐
+            writer.writePointerEvent(1, 3, 3); // 버튼 눌림은 합치지 않음
+            writer.writePointerEvent(1, 4, 4); // 합쳐짐
+            writeKey(writer, 0x61);
+            writer.writePointerEvent(1, 5, 5); // 키 이벤트 뒤이므로 합치지 않음
+            out.open();
+            awaitSent(writer);
+            assertEquals(List.of("P0:1,1", "P0:3,3", "P1:4,4", "K61", "P1:5,5"), out.messages());
+            assertEquals(2, writer.getPointerEventsCoalesced());
+        } finally {
+            out.open();
+            writer.close();
+        }
+    }
+
+    @Test
+    void blocksSendersWhileTheUnsentBatchIsFull() throws Exception {
+        GatedOutput out = new GatedOutput();
+        ClientMessageWriter writer = new ClientMessageWriter(out);
+        int keys = 40_000; // 8바이트씩 320 KB: 상한(256 KB)을 넘김
+        Thread sender = new Thread(() -> {
+            try {
+                for (int i = 0; i < keys; i++) {
+                    writeKey(writer, i);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        try {
+            writeKey(writer, 0);
+            out.awaitEntered();
+            sender.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (sender.getState() != Thread.State.WAITING) {
+                assertTrue(System.nanoTime() < deadline, "상한에서 막히지 않았습니다.");
+                Thread.sleep(1);
+            }
+            long queued = writer.getMessagesQueued();
+            assertTrue(queued > 1 && queued < 1 + keys, "막힐 때까지 쌓인 메시지: " + queued);
+            out.open();
+            sender.join(TimeUnit.SECONDS.toMillis(5));
+            assertEquals(Thread.State.TERMINATED, sender.getState());
+            awaitSent(writer);
+            assertEquals(1 + keys, out.messages().size()); // 잃거나 순서가 바뀐 메시지 없음
+        } finally {
+            out.open();
+            writer.close();
+        }
+    }
+
+    private static void writeKey(ClientMessageWriter writer, int key) throws IOException {
+        writer.begin();
+        writer.writeByte(4); // KeyEvent
+        writer.writeByte(1);
+        writer.writeShort(0);
+        writer.writeInt(key);
+        writer.end();
+    }
+
+    private static void awaitSent(ClientMessageWriter writer) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (writer.getMessagesSent() < writer.getMessagesQueued()) {
+            assertTrue(System.nanoTime() < deadline, "메시지가 전송되지 않았습니다.");
+            Thread.sleep(1);
+        }
+    }
+
+    // 첫 write에서 open()될 때까지 기다리는 출력
+    private static final class GatedOutput extends OutputStream {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch opened = new CountDownLatch(1);
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            entered.countDown();
+            try {
+                opened.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            synchronized (data) {
+                data.write(b, off, len);
+            }
+        }
+
+        void awaitEntered() throws InterruptedException {
+            assertTrue(entered.await(5, TimeUnit.SECONDS), "송신 스레드가 쓰지 않았습니다.");
+        }
+
+        void open() {
+            opened.countDown();
+        }
+
+        List<String> messages() throws IOException {
+            byte[] bytes;
+            synchronized (data) {
+                bytes = data.toByteArray();
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            List<String> messages = new ArrayList<>();
+            while (in.available() > 0) {
+                int type = in.readUnsignedByte();
+                if (type == 5) {
+                    int mask = in.readUnsignedByte();
+                    messages.add("P" + mask + ":" + in.readUnsignedShort() + "," + in.readUnsignedShort());
+                } else {
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                    messages.add("K" + Integer.toHexString(in.readInt()));
+                }
+            }
+            return messages;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.myvnc.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DamageRegionTest {
+
+    @Test
+    void mergesOverlappingAndTouchingRects() {
+        DamageRegion region = new DamageRegion();
+        region.add(0, 0, 10, 10);
+        region.add(5, 5, 10, 10);
+        region.add(15, 0, 5, 5); // 맞닿음
+        assertEquals(List.of(new Rectangle(0, 0, 20, 15)), region.drain());
+    }
+
+    @Test
+    void keepsSeparateRectsApart() {
+        DamageRegion region = new DamageRegion();
+        region.add(0, 0, 10, 10);
+        region.add(50, 50, 10, 10);
+        List<Rectangle> rects = region.drain();
+        assertEquals(2, rects.size());
+        assertTrue(rects.contains(new Rectangle(0, 0, 10, 10)));
+        assertTrue(rects.contains(new Rectangle(50, 50, 10, 10)));
+    }
+
+    @Test
+    void mergeCascadesThroughBridgingRect() {
+        DamageRegion region = new DamageRegion();
+        region.add(0, 0, 10, 10);
+        region.add(30, 0, 10, 10);
+        region.add(60, 0, 10, 10);
+        region.add(5, 0, 60, 2); // 세 사각형을 모두 잇는 띠
+        assertEquals(List.of(new Rectangle(0, 0, 70, 10)), region.drain());
+    }
+
+    @Test
+    void collapsesToBoundsWhenTooManyRects() {
+        DamageRegion region = new DamageRegion();
+        for (int i = 0; i < 33; i++) {
+            region.add(i * 20, 0, 10, 10);
+        }
+        assertEquals(List.of(new Rectangle(0, 0, 32 * 20 + 10, 10)), region.drain());
+    }
+
+    @Test
+    void ignoresEmptyRects() {
+        DamageRegion region = new DamageRegion();
+        region.add(0, 0, 0, 10);
+        region.add(0, 0, 10, -1);
+        assertTrue(region.isEmpty());
+        assertEquals(new Rectangle(), region.getBounds());
+    }
+
+    @Test
+    void addAllMovesAndDrainEmpties() {
+        DamageRegion source = new DamageRegion();
+        source.add(0, 0, 4, 4);
+        source.add(100, 100, 4, 4);
+        DamageRegion target = new DamageRegion();
+        target.add(4, 0, 4, 4);
+        target.addAll(source);
+        assertTrue(source.isEmpty());
+        assertEquals(new Rectangle(0, 0, 104, 104), target.getBounds());
+        assertEquals(2, target.drain().size());
+        assertTrue(target.isEmpty());
+    }
+}
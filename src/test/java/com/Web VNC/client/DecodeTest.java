@@ -0,0 +1,252 @@
+package com.myvnc.client;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// 합성 서버 인코더(SyntheticEncoder)가 만든 업데이트를 수신 경로 조합마다 디코딩해 원래 화면과 비교합니다.
+// 같은 업데이트를 두 번 보내므로 ZRLE의 이어지는 zlib 스트림과 타일 캐시 적중 경로도 함께 지나갑니다.
+class DecodeTest {
+    private static final int WIDTH = 256;
+    private static final int HEIGHT = 192;
+
+    enum Path {
+        STREAM, NIO, PARALLEL_STREAM, PARALLEL_NIO, PARALLEL_CACHE, CACHE
+    }
+
+    static Stream<Arguments> cases() {
+        List<Arguments> cases = new ArrayList<>();
+        for (String format : List.of("rgb888", "rgb565", "bgr233")) {
+            for (String screen : List.of("text", "photo", "solid")) {
+                for (String encoding : List.of("raw", "rre", "hextile", "zrle", "tight")) {
+                    for (Path path : Path.values()) {
+                        cases.add(Arguments.of(format, screen, encoding, path));
+                    }
+                }
+            }
+        }
+        return cases.stream();
+    }
+
+    // rgb565는 Lut16, bgr233은 Lut8 변환기를 지나갑니다. 기대값은 인코더와 같은 양자화 뒤 반올림 확장으로 따로 계산합니다.
+    @ParameterizedTest(name = "{0} / {1} / {2} / {3}")
+    @MethodSource("cases")
+    void decodesSyntheticUpdates(String format, String screen, String encoding, Path path) throws Exception {
+        RFBPixelFormat pf = format(format);
+        int[] pixels = SyntheticScreens.create(screen, WIDTH, HEIGHT);
+        byte[] stream = encodeTwice(pf, pixels, encoding);
+        int[] expected = quantize(pf, pixels);
+
+        boolean nio = path == Path.NIO || path == Path.PARALLEL_NIO;
+        DataOutputStream sink = new DataOutputStream(new ByteArrayOutputStream());
+        RFBProtocolHandler handler = nio
+                ? new RFBProtocolHandler(new RFBChannelReader(Channels.newChannel(new ByteArrayInputStream(stream)), 4096), sink)
+                : new RFBProtocolHandler(new DataInputStream(new ByteArrayInputStream(stream)), sink);
+        TileCache tileCache = path == Path.CACHE || path == Path.PARALLEL_CACHE ? new TileCache(16 << 20) : null;
+        ParallelRectDecoder parallel = null;
+        if (path.name().startsWith("PARALLEL")) {
+            // RFBClient와 같은 구성 (Raw는 수신 스레드에서)
+            Map<Integer, Supplier<RFBEncoding>> factories = new LinkedHashMap<>();
+            factories.put(7, TightEncoding::new);
+            factories.put(5, HextileEncoding::new);
+            factories.put(2, RREEncoding::new);
+            parallel = new ParallelRectDecoder(2, factories);
+            parallel.setTileCache(tileCache);
+            handler.setParallelDecoder(parallel);
+        } else {
+            handler.setTileCache(tileCache);
+        }
+        try {
+            Map<Integer, RFBEncoding> encodings = RFBClient.createEncodings(null);
+            BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            for (int update = 0; update < 2; update++) {
+                Arrays.fill(RasterAccess.pixels(image), 0);
+                assertEquals(0, handler.readServerMessageHeader());
+                handler.handleFramebufferUpdate(pf, encodings, image, new DamageRegion());
+                assertEquals(0, countDifferences(image, expected), "업데이트 " + (update + 1) + "의 다른 픽셀 수");
+            }
+        } finally {
+            if (parallel != null) {
+                parallel.shutdown();
+            }
+            handler.close();
+        }
+    }
+
+    // 겹치는 복사(스크롤 위/아래)도 원본을 먼저 읽은 것처럼 결과가 같아야 합니다.
+    @Test
+    void copyRectHandlesOverlappingScrolls() throws Exception {
+        int[] pixels = SyntheticScreens.create("text", WIDTH, HEIGHT);
+        int[][] copies = {
+                {0, 0, WIDTH, HEIGHT - 16, 0, 16}, // 아래로 스크롤 (대상이 원본보다 아래)
+                {0, 8, WIDTH, HEIGHT - 8, 0, 0}, // 위로 스크롤
+                {40, 40, 64, 64, 48, 44} // 오른쪽 아래로 조금
+        };
+        int[] expected = pixels.clone();
+        for (int[] c : copies) {
+            int[] before = expected.clone();
+            for (int row = 0; row < c[3]; row++) {
+                System.arraycopy(before, (c[5] + row) * WIDTH + c[4], expected, (c[1] + row) * WIDTH + c[0], c[2]);
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(0); // FramebufferUpdate
+        out.writeByte(0);
+        out.writeShort(1 + copies.length);
+        writeRectHeader(out, 0, 0, WIDTH, HEIGHT, 0);
+        out.write(new SyntheticEncoder(RFBPixelFormat.rgb888()).encode("raw", pixels, WIDTH, 0, 0, WIDTH, HEIGHT));
+        for (int[] c : copies) {
+            writeRectHeader(out, c[0], c[1], c[2], c[3], 1);
+            out.writeShort(c[4]);
+            out.writeShort(c[5]);
+        }
+        for (boolean nio : new boolean[]{false, true}) {
+            DataOutputStream sink = new DataOutputStream(new ByteArrayOutputStream());
+            ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+            RFBProtocolHandler handler = nio
+                    ? new RFBProtocolHandler(new RFBChannelReader(Channels.newChannel(in), 4096), sink)
+                    : new RFBProtocolHandler(new DataInputStream(in), sink);
+            try {
+                BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+                assertEquals(0, handler.readServerMessageHeader());
+                handler.handleFramebufferUpdate(RFBPixelFormat.rgb888(), RFBClient.createEncodings(null), image, new DamageRegion());
+                assertEquals(0, countDifferences(image, expected), nio ? "NIO" : "스트림");
+            } finally {
+                handler.close();
+            }
+        }
+    }
+
+    // rgb565는 Lut16, bgr233은 Lut8 변환기를 지나갑니다. 기대값은 같은 양자화 뒤 반올림 확장으로 따로 계산합니다.
+    @Test
+    void decodesRawInSixteenAndEightBitFormats() throws Exception {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = i * 0x9E3779B1 >>> 8;
+        }
+        for (RFBPixelFormat pf : new RFBPixelFormat[]{RFBPixelFormat.rgb565(), RFBPixelFormat.bgr233()}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int p : pixels) {
+                int value = (p >> 16 & 0xFF) * pf.redMax / 255 << pf.redShift
+                        | (p >> 8 & 0xFF) * pf.greenMax / 255 << pf.greenShift
+                        | (p & 0xFF) * pf.blueMax / 255 << pf.blueShift;
+                for (int b = 0; b < pf.bitsPerPixel / 8; b++) {
+                    bytes.write(value >> (8 * b)); // 리틀 엔디언
+                }
+            }
+            BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+            new RawEncoding().decode(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                    image, 0, 0, WIDTH, HEIGHT, pf);
+            assertEquals(0, countDifferences(image, quantize(pf, pixels)), pf.bitsPerPixel + "bpp");
+        }
+    }
+
+    private static void writeRectHeader(DataOutputStream out, int x, int y, int w, int h, int type) throws IOException {
+        out.writeShort(x);
+        out.writeShort(y);
+        out.writeShort(w);
+        out.writeShort(h);
+        out.writeInt(type);
+    }
+
+    // 하위 사각형 수는 부호 없는 32비트이므로 길이 계산이 int로 넘치면 스트림이 조용히 어긋납니다.
+    @Test
+    void rejectsImpossibleRreSubrectCounts() {
+        RFBPixelFormat pf = RFBPixelFormat.rgb888();
+        byte[] allOnes = {-1, -1, -1, -1, 0, 0, 0, 0};
+        assertThrows(IOException.class, () -> new RREEncoding().readPayload(
+                new DataInputStream(new ByteArrayInputStream(allOnes)), new RectPayload(), 4, 4, pf));
+        assertThrows(IOException.class, () -> new RREEncoding().decode(
+                new DataInputStream(new ByteArrayInputStream(allOnes)), new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB), 0, 0, 4, 4, pf));
+        byte[] overflow = {0x10, 0, 0, 0, 0, 0, 0, 0}; // 픽셀 수보다는 적지만 x 12바이트가 int를 넘음
+        assertThrows(IOException.class, () -> new RREEncoding().readPayload(
+                new DataInputStream(new ByteArrayInputStream(overflow)), new RectPayload(), 65535, 65535, pf));
+    }
+
+    // 위쪽은 큰 사각형 하나, 아래쪽은 32x32 타일로 나눈 업데이트를 같은 인코더로 두 번 만듭니다.
+    private static byte[] encodeTwice(RFBPixelFormat pf, int[] pixels, String encoding) throws IOException {
+        SyntheticEncoder encoder = new SyntheticEncoder(pf);
+        int type = SyntheticEncoder.TYPES.get(encoding);
+        List<int[]> rects = new ArrayList<>();
+        rects.add(new int[]{0, 0, WIDTH, 128});
+        for (int y = 128; y < HEIGHT; y += 32) {
+            for (int x = 0; x < WIDTH; x += 32) {
+                rects.add(new int[]{x, y, 32, 32});
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int update = 0; update < 2; update++) {
+            out.writeByte(0); // FramebufferUpdate
+            out.writeByte(0);
+            out.writeShort(rects.size());
+            for (int[] r : rects) {
+                out.writeShort(r[0]);
+                out.writeShort(r[1]);
+                out.writeShort(r[2]);
+                out.writeShort(r[3]);
+                out.writeInt(type);
+                out.write(encoder.encode(encoding, pixels, WIDTH, r[0], r[1], r[2], r[3]));
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static RFBPixelFormat format(String name) {
+        switch (name) {
+            case "rgb565":
+                return RFBPixelFormat.rgb565();
+            case "bgr233":
+                return RFBPixelFormat.bgr233();
+            default:
+                return RFBPixelFormat.rgb888();
+        }
+    }
+
+    private static int[] quantize(RFBPixelFormat pf, int[] pixels) {
+        int[] out = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int p = pixels[i];
+            out[i] = channel(p >> 16 & 0xFF, pf.redMax) << 16 | channel(p >> 8 & 0xFF, pf.greenMax) << 8
+                    | channel(p & 0xFF, pf.blueMax);
+        }
+        return out;
+    }
+
+    private static int channel(int value, int max) {
+        int q = value * max / 255;
+        return (q * 255 + max / 2) / max;
+    }
+
+    private static int countDifferences(BufferedImage image, int[] expected) {
+        int differences = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                if ((image.getRGB(x, y) & 0xFFFFFF) != (expected[y * WIDTH + x] & 0xFFFFFF)) {
+                    differences++;
+                }
+            }
+        }
+        return differences;
+    }
+}
@@ -0,0 +1,157 @@
+package com.myvnc.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 내보낸 파일을 FramebufferExportReader로 다시 열어 변경 영역 링과 seqlock을 확인합니다.
+class FramebufferExportTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    private Path dir;
+    private Path file;
+    private FramebufferExport export;
+    private BufferedImage image;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("framebuffer-export");
+        file = dir.resolve("screen.fb");
+        export = new FramebufferExport(file);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        fill(new Rectangle(0, 0, WIDTH, HEIGHT), 0x102030);
+        export.setFramebuffer(image);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        export.close();
+        try (var files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    void readsOnlyChangedRectangles() throws IOException {
+        FramebufferExportReader reader = new FramebufferExportReader(file);
+        assertEquals(WIDTH, reader.getWidth());
+        int[] dst = new int[WIDTH * HEIGHT];
+        assertEquals(List.of(new Rectangle(0, 0, WIDTH, HEIGHT)), reader.readChanges(dst)); // 첫 호출은 전체
+        assertArrayEquals(RasterAccess.pixels(image), dst);
+
+        List<Rectangle> damage = List.of(new Rectangle(3, 4, 10, 5), new Rectangle(40, 30, 8, 8));
+        for (Rectangle r : damage) {
+            fill(r, 0xABCDEF);
+        }
+        export.publish(image, damage);
+        assertEquals(damage, reader.readChanges(dst));
+        assertArrayEquals(RasterAccess.pixels(image), dst);
+        assertEquals(List.of(), reader.readChanges(dst)); // 그사이 바뀐 것 없음
+        assertEquals(0, reader.beginRead() & 1);
+    }
+
+    // 읽지 않은 사이에 링이 한 바퀴 넘게 돌면 놓친 항목 대신 전체 화면을 다시 읽습니다.
+    @Test
+    void fallsBackToFullScreenWhenRingOverflows() throws IOException {
+        FramebufferExportReader reader = new FramebufferExportReader(file);
+        int[] dst = new int[WIDTH * HEIGHT];
+        reader.readChanges(dst);
+        for (int i = 0; i <= FramebufferExport.RING_SIZE; i++) {
+            Rectangle r = new Rectangle(i % WIDTH, i / WIDTH, 1, 1);
+            fill(r, i);
+            export.publish(image, List.of(r));
+        }
+        assertEquals(List.of(new Rectangle(0, 0, WIDTH, HEIGHT)), reader.readChanges(dst));
+        assertArrayEquals(RasterAccess.pixels(image), dst);
+    }
+
+    // 화면 전체를 한 색으로 바꾸는 업데이트를 계속 내보내는 동안, endRead가 true인 읽기는 한 색만 봐야 합니다.
+    @Test
+    void seqlockNeverExposesTornFrames() throws Exception {
+        FramebufferExportReader reader = new FramebufferExportReader(file);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int frame = 1; frame <= 2000; frame++) {
+                    fill(new Rectangle(0, 0, WIDTH, HEIGHT), frame);
+                    export.publish(image, List.of(new Rectangle(0, 0, WIDTH, HEIGHT)));
+                }
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        writer.start();
+        int consistent = 0;
+        int[] frame = new int[WIDTH * HEIGHT];
+        int[] changes = new int[WIDTH * HEIGHT];
+        while (writer.isAlive() || consistent == 0) {
+            long sequence = reader.beginRead();
+            assertEquals(0, sequence & 1);
+            reader.getPixels().get(frame);
+            if (reader.endRead(sequence)) {
+                assertUniform(frame);
+                consistent++;
+            }
+            reader.readChanges(changes);
+            assertUniform(changes);
+        }
+        writer.join();
+        assertNull(failure.get());
+        assertTrue(consistent > 0);
+    }
+
+    @Test
+    void replacesFileOnResize() throws IOException {
+        FramebufferExportReader old = new FramebufferExportReader(file);
+        export.setState(FramebufferExport.STATE_CONNECTED | FramebufferExport.STATE_STALE);
+        assertEquals(FramebufferExport.STATE_CONNECTED | FramebufferExport.STATE_STALE, old.getState());
+        image = new BufferedImage(WIDTH * 2, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        fill(new Rectangle(0, 0, WIDTH * 2, HEIGHT), 0x445566);
+        export.setFramebuffer(image);
+        assertEquals(FramebufferExport.STATE_REPLACED, old.getState());
+        FramebufferExportReader reader = new FramebufferExportReader(file);
+        assertEquals(WIDTH * 2, reader.getWidth());
+        IntBuffer pixels = reader.getPixels();
+        int[] read = new int[pixels.remaining()];
+        pixels.get(read);
+        assertArrayEquals(RasterAccess.pixels(image), read);
+    }
+
+    private void fill(Rectangle r, int rgb) {
+        int[] pixels = RasterAccess.pixels(image);
+        int stride = RasterAccess.stride(image);
+        for (int row = r.y; row < r.y + r.height; row++) {
+            Arrays.fill(pixels, row * stride + r.x, row * stride + r.x + r.width, rgb);
+        }
+    }
+
+    private static void assertUniform(int[] pixels) {
+        List<Integer> colours = new ArrayList<>();
+        for (int p : pixels) {
+            if (!colours.contains(p) && colours.size() < 2) {
+                colours.add(p);
+            }
+        }
+        assertEquals(1, colours.size(), "섞인 프레임: " + colours);
+    }
+}
@@ -0,0 +1,82 @@
+package com.myvnc.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentileNanos(50));
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMicros());
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        for (long v = 0; v < 32; v++) {
+            assertEquals(v, LatencyHistogram.bucketValue(LatencyHistogram.bucket(v)));
+        }
+    }
+
+    // 버킷 대표값은 구간 중간이므로 상대 오차가 1/32 이하
+    @Test
+    void bucketValueIsWithinRelativeError() {
+        Random random = new Random(1);
+        int previous = -1;
+        for (int i = 0; i < 100_000; i++) {
+            long v = 32 + (long) (Math.pow(10, random.nextDouble() * 12));
+            long represented = LatencyHistogram.bucketValue(LatencyHistogram.bucket(v));
+            assertTrue(Math.abs(represented - v) <= v / 32, v + " -> " + represented);
+        }
+        for (long v = 0; v < 1 << 20; v += 7) {
+            int bucket = LatencyHistogram.bucket(v);
+            assertTrue(bucket >= previous, "버킷 번호가 값 순서를 따라야 합니다: " + v);
+            previous = bucket;
+        }
+        LatencyHistogram.bucket(Long.MAX_VALUE); // 마지막 버킷도 배열 안
+    }
+
+    @Test
+    void percentilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1000L); // 1µs ~ 10ms
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertClose(5_000_000, histogram.percentileNanos(50));
+        assertClose(9_000_000, histogram.percentileNanos(90));
+        assertClose(9_900_000, histogram.percentileNanos(99));
+        assertEquals(10_000, histogram.getMaxMicros());
+        assertEquals(5000.5, histogram.getMeanMicros(), 1e-9);
+        assertTrue(histogram.percentileNanos(100) <= 10_000_000);
+    }
+
+    @Test
+    void percentileNeverExceedsMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        assertEquals(1000, histogram.percentileNanos(50));
+        assertEquals(1000, histogram.percentileNanos(99.9));
+    }
+
+    @Test
+    void negativeRecordsAsZeroAndResetClears() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(0, histogram.percentileNanos(50));
+        assertEquals(1, histogram.getCount());
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+    }
+
+    private static void assertClose(long expected, long actual) {
+        assertTrue(Math.abs(actual - expected) <= expected / 16, "예상 " + expected + ", 실제 " + actual);
+    }
+}
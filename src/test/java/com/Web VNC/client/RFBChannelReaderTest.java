@@ -0,0 +1,35 @@
+package com.myvnc.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RFBChannelReaderTest {
+
+    @Test
+    void growsForLargeRectAndShrinksOnceItIsConsumed() throws Exception {
+        byte[] data = new byte[10_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        RFBChannelReader reader = new RFBChannelReader(Channels.newChannel(new ByteArrayInputStream(data)), 1024);
+        assertEquals(0, reader.readU8());
+        assertEquals(4096, reader.require(4096).capacity()); // 수신 버퍼 안에서 그대로 파싱
+        int offset = reader.take(4096);
+        assertEquals(1, reader.array()[offset]);
+        assertEquals(1024, reader.require(16).capacity());
+        assertEquals((byte) 4097, reader.array()[reader.take(1)]);
+        assertEquals(4098 & 0xFF, reader.readU8()); // 되돌릴 때 남은 바이트를 잃지 않음
+    }
+
+    @Test
+    void rejectsNegativeLength() {
+        RFBChannelReader reader = new RFBChannelReader(Channels.newChannel(new ByteArrayInputStream(new byte[8])), 16);
+        assertThrows(IOException.class, () -> reader.require(-1));
+    }
+}
@@ -0,0 +1,249 @@
+package com.myvnc.client;
+
+import com.myvnc.ui.VNCDisplayPanel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// ZRLE 업데이트 네 개를 녹화한 뒤 재생기로 각 프레임 사이를 찾아가 수신할 때의 화면과 비교합니다.
+// 두 번째 키프레임은 ZRLE zlib 스트림 중간에서 찍으므로 seek가 zlib 상태 복원을 거칩니다.
+class SessionRecordingTest {
+    private static final int WIDTH = 128;
+    private static final int HEIGHT = 96;
+    private static final int FRAMES = 4;
+
+    private Path dir;
+    private Path file;
+    private final List<int[]> frames = new ArrayList<>(); // 각 업데이트를 적용한 뒤의 화면
+    private final List<long[]> flushed = new ArrayList<>(); // 각 업데이트 'D' 레코드 시각의 (하한, 상한)
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dir = Files.createTempDirectory("session-recording");
+        file = dir.resolve("session.rec");
+        record();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (var files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                Files.delete(p);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    void seeksToEveryFrame() throws Exception {
+        replay(file);
+    }
+
+    // 비정상 종료로 색인과 꼬리가 없으면 레코드를 훑어 같은 색인을 만듭니다.
+    @Test
+    void seeksWithoutIndex() throws Exception {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(raf.length() - 16);
+            long indexPosition = raf.readLong();
+            byte[] magic = new byte[8];
+            raf.readFully(magic);
+            assertArrayEquals(SessionRecorder.INDEX_MAGIC, magic);
+            raf.setLength(indexPosition);
+        }
+        replay(file);
+    }
+
+    private void record() throws Exception {
+        RFBPixelFormat pf = RFBPixelFormat.rgb888();
+        Map<Integer, RFBEncoding> encodings = RFBClient.createEncodings(null);
+        for (ZlibInStream stream : SessionRecorder.sessionStreams(encodings)) {
+            stream.setHistoryEnabled(true); // RFBClient가 녹화를 시작할 때처럼
+        }
+        BufferedImage framebuffer = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Deflater zrleStream = new Deflater(6); // 서버처럼 업데이트 사이에 이어지는 ZRLE zlib 스트림
+        long before = System.nanoTime();
+        SessionRecorder recorder = new SessionRecorder(file, WIDTH, HEIGHT, pf, "test");
+        long after = System.nanoTime();
+        try {
+            recorder.keyframe(0, pf, framebuffer, encodings);
+            for (int i = 0; i < FRAMES; i++) {
+                Thread.sleep(30); // seek 목표를 프레임 사이에 둘 여유
+                byte[] message = update(zrleStream, screen(i));
+                long start = System.nanoTime();
+                recorder.data(message, 0, message.length);
+                recorder.flushData();
+                flushed.add(new long[]{start - after, System.nanoTime() - before});
+                decode(message, pf, encodings, framebuffer);
+                frames.add(RasterAccess.pixels(framebuffer).clone());
+                if (i == 1) {
+                    recorder.keyframe(recorder.getDataBytes(), pf, framebuffer, encodings);
+                }
+                if (i == 2) {
+                    byte[] other = otherMessages();
+                    recorder.data(other, 0, other.length); // 재생기가 건너뛰어야 하는 메시지
+                    recorder.flushData();
+                }
+            }
+        } finally {
+            recorder.close();
+            zrleStream.end();
+        }
+    }
+
+    private void replay(Path path) throws Exception {
+        CapturingPanel panel = new CapturingPanel();
+        SessionPlayer player = new SessionPlayer(path, panel);
+        try {
+            assertEquals("test", player.getServerName());
+            int[] order = {2, 0, 1}; // 앞으로, 뒤로, 다시 앞으로
+            for (int i : order) {
+                long target = (flushed.get(i)[1] + flushed.get(i + 1)[0]) / 2;
+                assertTrue(flushed.get(i)[1] < target && target < flushed.get(i + 1)[0], "프레임 사이 간격이 너무 좁습니다.");
+                player.seek(target);
+                awaitPosition(player, target);
+                assertArrayEquals(frames.get(i), RasterAccess.pixels(panel.image), "프레임 " + i);
+            }
+            player.seek(player.getDurationNanos());
+            awaitPosition(player, player.getDurationNanos());
+            assertArrayEquals(frames.get(FRAMES - 1), RasterAccess.pixels(panel.image), "마지막 프레임");
+        } finally {
+            player.close();
+        }
+    }
+
+    private static void awaitPosition(SessionPlayer player, long position) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (player.getPositionNanos() != position) {
+            assertTrue(System.nanoTime() < deadline, "seek가 끝나지 않았습니다.");
+            Thread.sleep(1);
+        }
+    }
+
+    // 0: 흰 바탕에 짧은 획, 1: 그라데이션 + 잡음, 2: 단색, 3: 0과 비슷하지만 다른 픽셀이 섞인 화면
+    private static int[] screen(int index) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Random random = new Random(index == 3 ? 0 : index);
+        if (index == 1) {
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    pixels[y * WIDTH + x] = (x * 2 << 16) | ((y * 2 + random.nextInt(8)) << 8) | random.nextInt(256);
+                }
+            }
+            return pixels;
+        }
+        Arrays.fill(pixels, index == 2 ? 0x3A6EA5 : 0xFFFFFF);
+        if (index != 2) {
+            for (int stroke = 0; stroke < 200; stroke++) {
+                int x = random.nextInt(WIDTH - 8);
+                int y = random.nextInt(HEIGHT);
+                Arrays.fill(pixels, y * WIDTH + x, y * WIDTH + x + 6, 0x1F4E9E);
+            }
+        }
+        if (index == 3) {
+            for (int p = 0; p < pixels.length; p += 7) {
+                pixels[p] ^= 0x00FF00; // 첫 프레임과 구별
+            }
+        }
+        return pixels;
+    }
+
+    // 사각형 하나짜리 ZRLE FramebufferUpdate. 타일은 모두 Raw 부호화 (CPIXEL 3바이트, B G R 순서)
+    private static byte[] update(Deflater zrleStream, int[] screen) throws IOException {
+        ByteArrayOutputStream tiles = new ByteArrayOutputStream();
+        for (int ty = 0; ty < HEIGHT; ty += 64) {
+            int th = Math.min(64, HEIGHT - ty);
+            for (int tx = 0; tx < WIDTH; tx += 64) {
+                int tw = Math.min(64, WIDTH - tx);
+                tiles.write(0); // Raw
+                for (int row = 0; row < th; row++) {
+                    for (int col = 0; col < tw; col++) {
+                        int p = screen[(ty + row) * WIDTH + tx + col];
+                        tiles.write(p);
+                        tiles.write(p >> 8);
+                        tiles.write(p >> 16);
+                    }
+                }
+            }
+        }
+        // 서버처럼 사각형 끝에서 sync flush (스트림은 계속 이어짐)
+        zrleStream.setInput(tiles.toByteArray());
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        do {
+            n = zrleStream.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            compressed.write(buffer, 0, n);
+        } while (n == buffer.length || !zrleStream.needsInput());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(0); // FramebufferUpdate
+        out.writeByte(0);
+        out.writeShort(1);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(WIDTH);
+        out.writeShort(HEIGHT);
+        out.writeInt(16); // ZRLE
+        out.writeInt(compressed.size());
+        compressed.writeTo(out);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] otherMessages() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(2); // Bell
+        byte[] text = "clipboard".getBytes(StandardCharsets.ISO_8859_1);
+        out.writeByte(3); // ServerCutText
+        out.write(new byte[3]);
+        out.writeInt(text.length);
+        out.write(text);
+        return bytes.toByteArray();
+    }
+
+    private static void decode(byte[] message, RFBPixelFormat pf, Map<Integer, RFBEncoding> encodings,
+                               BufferedImage framebuffer) throws IOException {
+        RFBProtocolHandler handler = new RFBProtocolHandler(new DataInputStream(new ByteArrayInputStream(message)),
+                new DataOutputStream(new ByteArrayOutputStream()));
+        try {
+            assertEquals(0, handler.readServerMessageHeader());
+            handler.handleFramebufferUpdate(pf, encodings, framebuffer);
+        } finally {
+            handler.close();
+        }
+    }
+
+    // 재생기가 그리는 프레임버퍼를 잡아 둡니다.
+    private static final class CapturingPanel extends VNCDisplayPanel {
+        volatile BufferedImage image;
+
+        @Override
+        public void setImage(BufferedImage image) {
+            this.image = image;
+            super.setImage(image);
+        }
+    }
+}
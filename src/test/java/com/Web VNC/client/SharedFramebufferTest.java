@@ -0,0 +1,114 @@
+package com.myvnc.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SharedFramebufferTest {
+
+    @Test
+    void newSubscriberStartsWithFullSnapshot() {
+        SharedFramebuffer shared = new SharedFramebuffer();
+        shared.setFramebuffer(new BufferedImage(8, 6, BufferedImage.TYPE_INT_RGB));
+        SharedFramebuffer.Subscription subscription = shared.subscribe(null);
+        assertEquals(List.of(new Rectangle(0, 0, 8, 6)), subscription.takeDamage());
+        assertEquals(List.of(), subscription.takeDamage());
+    }
+
+    @Test
+    void notifiesOnceUntilDamageIsTaken() {
+        SharedFramebuffer shared = new SharedFramebuffer();
+        AtomicInteger notified = new AtomicInteger();
+        SharedFramebuffer.Subscription subscription = shared.subscribe(notified::incrementAndGet);
+        shared.publish(List.of(new Rectangle(0, 0, 4, 4)));
+        shared.publish(List.of(new Rectangle(4, 0, 4, 4)));
+        assertEquals(1, notified.get()); // 느린 구독자에게는 합쳐진 영역 하나
+        assertEquals(List.of(new Rectangle(0, 0, 8, 4)), subscription.takeDamage());
+        shared.publish(List.of(new Rectangle(0, 0, 1, 1)));
+        assertEquals(2, notified.get());
+        subscription.close();
+        shared.publish(List.of(new Rectangle(0, 0, 1, 1)));
+        assertEquals(2, notified.get());
+        assertEquals(0, shared.getSubscriberCount());
+    }
+
+    @Test
+    void awaitDamageWakesOnPublish() throws Exception {
+        SharedFramebuffer shared = new SharedFramebuffer();
+        SharedFramebuffer.Subscription subscription = shared.subscribe(null);
+        assertFalse(subscription.awaitDamage(10, TimeUnit.MILLISECONDS));
+        Thread publisher = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                return;
+            }
+            shared.publish(List.of(new Rectangle(1, 1, 2, 2)));
+        });
+        publisher.start();
+        assertTrue(subscription.awaitDamage(5, TimeUnit.SECONDS));
+        publisher.join();
+    }
+
+    // 구독자가 비우는 순간과 새 영역이 겹쳐도 알림을 잃으면 안 됩니다. (잃으면 구독자가 영원히 기다림)
+    @Test
+    void noLostNotificationWhileTakingDamage() throws Exception {
+        SharedFramebuffer shared = new SharedFramebuffer();
+        Semaphore wakeups = new Semaphore(0);
+        SharedFramebuffer.Subscription subscription = shared.subscribe(wakeups::release);
+        int updates = 20_000;
+        AtomicBoolean sawLast = new AtomicBoolean();
+        Thread consumer = new Thread(() -> {
+            try {
+                while (!sawLast.get()) {
+                    if (!wakeups.tryAcquire(5, TimeUnit.SECONDS)) {
+                        return; // 알림을 잃음
+                    }
+                    for (Rectangle r : subscription.takeDamage()) {
+                        if (r.contains(updates, 0)) {
+                            sawLast.set(true);
+                        }
+                    }
+                }
+            } catch (InterruptedException ignored) {
+                // 테스트 종료
+            }
+        });
+        consumer.start();
+        for (int i = 0; i <= updates; i++) {
+            shared.publish(List.of(new Rectangle(i, 0, 1, 1)));
+        }
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+        consumer.interrupt();
+        assertTrue(sawLast.get());
+    }
+
+    @Test
+    void copyRegionClipsToFramebuffer() {
+        SharedFramebuffer shared = new SharedFramebuffer();
+        BufferedImage image = new BufferedImage(4, 3, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 3; y++) {
+            for (int x = 0; x < 4; x++) {
+                image.setRGB(x, y, y * 16 + x);
+            }
+        }
+        shared.setFramebuffer(image);
+        SharedFramebuffer.Subscription subscription = shared.subscribe(null);
+        int[] dst = new int[6];
+        subscription.copyRegion(new Rectangle(2, 1, 5, 5), dst, 1, 3);
+        assertArrayEquals(new int[]{0, 0x12, 0x13, 0, 0x22, 0x23}, dst);
+        assertEquals(4, subscription.getWidth());
+        assertEquals(3, subscription.getHeight());
+    }
+}
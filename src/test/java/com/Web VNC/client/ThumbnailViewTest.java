@@ -0,0 +1,65 @@
+package com.myvnc.client;
+
+import com.myvnc.ui.ThumbnailView;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// ThumbnailView는 com.myvnc.ui에 있지만 SharedFramebuffer.publish()가 패키지 전용이라 여기에 둡니다.
+class ThumbnailViewTest {
+
+    // 실행기가 작업마다 새 스레드를 쓰더라도, 갱신 중에 들어온 변경 영역은 같은 작업이 이어서 처리해야 합니다.
+    @Test
+    void damageDuringRefreshDoesNotStartASecondRefresh() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger unfinished = new AtomicInteger();
+        Executor threadPerTask = task -> {
+            unfinished.incrementAndGet();
+            new Thread(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    task.run();
+                } finally {
+                    running.decrementAndGet();
+                    unfinished.decrementAndGet();
+                }
+            }).start();
+        };
+
+        SharedFramebuffer shared = new SharedFramebuffer();
+        BufferedImage fb = new BufferedImage(1920, 1080, BufferedImage.TYPE_INT_RGB);
+        shared.setFramebuffer(fb);
+        ThumbnailView view = new ThumbnailView(shared, 240, threadPerTask);
+        int[] pixels = RasterAccess.pixels(fb);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+        int color = 0;
+        while (System.nanoTime() < deadline) {
+            color = (color + 0x010203) & 0xFFFFFF;
+            Arrays.fill(pixels, color);
+            shared.publish(List.of(new Rectangle(0, 0, 1920, 1080)));
+            Thread.sleep(1);
+        }
+        long wait = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (unfinished.get() > 0) {
+            assertTrue(System.nanoTime() < wait, "갱신 작업이 끝나지 않았습니다.");
+            Thread.sleep(1);
+        }
+        assertEquals(1, maxRunning.get());
+
+        view.setSize(240, 135);
+        BufferedImage painted = new BufferedImage(240, 135, BufferedImage.TYPE_INT_RGB);
+        view.paint(painted.getGraphics());
+        assertEquals(color, painted.getRGB(120, 67) & 0xFFFFFF); // 마지막 화면이 반영됨
+        view.close();
+    }
+}
@@ -0,0 +1,185 @@
+package com.myvnc.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 페이서가 보낸 클라이언트 메시지를 이름으로 풀어 요청 흐름을 확인합니다.
+//   Req: 비증분 FramebufferUpdateRequest, Req+: 증분, SetPF: SetPixelFormat, ECU0/ECU1: EnableContinuousUpdates
+//   Fence<플래그><내용>
+class UpdatePacerTest {
+    private final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+    private RFBProtocolHandler handler;
+    private UpdatePacer pacer;
+
+    @BeforeEach
+    void setUp() {
+        handler = new RFBProtocolHandler(new DataInputStream(new ByteArrayInputStream(new byte[0])), new DataOutputStream(sink));
+        pacer = new UpdatePacer(handler, 3, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pacer.stop();
+        handler.close();
+    }
+
+    @Test
+    void requestsOneAtATimeWithoutFence() throws Exception {
+        pacer.start(100, 100);
+        assertEquals(List.of("Req"), sent());
+        pacer.onUpdateReceived();
+        assertEquals(List.of("Req+"), sent());
+    }
+
+    @Test
+    void pipelinesRequestsOnceServerSendsFence() throws Exception {
+        pacer.start(100, 100);
+        assertEquals(List.of("Req"), sent());
+        pacer.setFenceSupported();
+        assertEquals(List.of("Req+", "Req+"), sent());
+        pacer.onUpdateReceived();
+        assertEquals(List.of("Req+"), sent());
+    }
+
+    @Test
+    void switchesToContinuousUpdatesAndBack() throws Exception {
+        pacer.start(100, 100);
+        sent();
+        pacer.onEndOfContinuousUpdates(); // 지원 알림
+        assertEquals(List.of("ECU1"), sent());
+        assertTrue(pacer.isContinuous());
+        pacer.onUpdateReceived();
+        assertEquals(List.of(), sent());
+        pacer.onEndOfContinuousUpdates(); // 서버가 중단
+        assertFalse(pacer.isContinuous());
+        assertEquals(List.of("Req+"), sent());
+    }
+
+    @Test
+    void formatChangeWaitsForOutstandingRequest() throws Exception {
+        pacer.start(100, 100);
+        sent();
+        pacer.changePixelFormat(RFBPixelFormat.rgb565());
+        assertEquals(List.of(), sent());
+        assertNull(pacer.takeFormatForNextUpdate());
+        pacer.onUpdateReceived();
+        assertEquals(List.of("SetPF", "Req"), sent());
+        assertNotNull(pacer.takeFormatForNextUpdate());
+    }
+
+    @Test
+    void formatChangeRestoresContinuousUpdates() throws Exception {
+        pacer.start(100, 100);
+        sent();
+        pacer.onEndOfContinuousUpdates();
+        assertEquals(List.of("ECU1"), sent());
+        pacer.changePixelFormat(RFBPixelFormat.rgb565());
+        assertEquals(List.of("ECU0"), sent());
+        pacer.onEndOfContinuousUpdates();
+        assertEquals(List.of("SetPF", "Req"), sent());
+        assertFalse(pacer.isContinuous());
+        assertNotNull(pacer.takeFormatForNextUpdate());
+        pacer.onUpdateReceived(); // 새 포맷의 첫 업데이트
+        assertEquals(List.of("ECU1"), sent());
+        assertTrue(pacer.isContinuous());
+    }
+
+    @Test
+    void formatChangeWithFenceUsesSyncNext() throws Exception {
+        pacer.start(100, 100);
+        pacer.setFenceSupported();
+        sent();
+        pacer.changePixelFormat(RFBPixelFormat.bgr233());
+        assertEquals(List.of("Fence80000005P", "SetPF", "Req"), sent());
+        assertNull(pacer.takeFormatForNextUpdate());
+        assertFalse(pacer.onFenceResponse(new byte[]{1})); // 왕복 시간 측정용 Fence
+        assertTrue(pacer.onFenceResponse(new byte[]{'P'}));
+        assertNotNull(pacer.takeFormatForNextUpdate());
+        assertNull(pacer.takeFormatForNextUpdate());
+    }
+
+    @Test
+    void updateAnswersAllOutstandingRequests() throws Exception {
+        pacer.start(100, 100);
+        pacer.setFenceSupported();
+        sent();
+        long first = pacer.takeRequestNanos();
+        assertNotEquals(0, first);
+        assertEquals(0, pacer.takeRequestNanos()); // 서버가 합쳐 응답한 나머지 요청
+        pacer.onUpdateReceived();
+        assertEquals(List.of("Req+"), sent());
+        assertTrue(pacer.takeRequestNanos() > first);
+    }
+
+    @Test
+    void continuousUpdatesAreNotTimed() throws Exception {
+        pacer.start(100, 100);
+        pacer.onEndOfContinuousUpdates();
+        sent();
+        assertEquals(0, pacer.takeRequestNanos());
+        pacer.requestFullUpdate();
+        assertEquals(List.of("Req"), sent());
+        assertEquals(0, pacer.takeRequestNanos());
+    }
+
+    // 송신 스레드가 지금까지 쌓인 메시지를 모두 쓸 때까지 기다렸다가 풀어 냅니다.
+    private List<String> sent() throws Exception {
+        ClientMessageWriter writer = handler.getMessageWriter();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (writer.getMessagesSent() < writer.getMessagesQueued()) {
+            assertTrue(System.nanoTime() < deadline, "메시지가 전송되지 않았습니다.");
+            Thread.sleep(1);
+        }
+        byte[] bytes;
+        synchronized (sink) {
+            bytes = sink.toByteArray();
+            sink.reset();
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        List<String> messages = new ArrayList<>();
+        while (in.available() > 0) {
+            int type = in.readUnsignedByte();
+            switch (type) {
+                case 0:
+                    in.readFully(new byte[3 + 16]);
+                    messages.add("SetPF");
+                    break;
+                case 3:
+                    messages.add(in.readUnsignedByte() != 0 ? "Req+" : "Req");
+                    in.readFully(new byte[8]);
+                    break;
+                case 150:
+                    messages.add(in.readUnsignedByte() != 0 ? "ECU1" : "ECU0");
+                    in.readFully(new byte[8]);
+                    break;
+                case 248:
+                    in.readFully(new byte[3]);
+                    int flags = in.readInt();
+                    byte[] payload = new byte[in.readUnsignedByte()];
+                    in.readFully(payload);
+                    messages.add("Fence" + Integer.toHexString(flags) + new String(payload, "US-ASCII"));
+                    break;
+                default:
+                    messages.add("?" + type);
+                    break;
+            }
+        }
+        return messages;
+    }
+}
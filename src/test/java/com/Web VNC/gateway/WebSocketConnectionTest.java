@@ -0,0 +1,251 @@
+package com.myvnc.gateway;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 루프백 소켓 한 쌍으로 업그레이드 응답, 프레임 인코딩과 마스크 해제, 제어 프레임 처리를 확인합니다.
+class WebSocketConnectionTest {
+    private static final byte[] MASK = {0x37, (byte) 0xFA, 0x21, 0x3D};
+
+    private Socket browser; // 테스트가 직접 프레임을 쓰는 쪽
+    private Socket gateway;
+    private DataInputStream fromGateway;
+    private OutputStream toGateway;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            browser = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+            gateway = server.accept();
+        }
+        browser.setSoTimeout(5000);
+        gateway.setSoTimeout(5000);
+        fromGateway = new DataInputStream(browser.getInputStream());
+        toGateway = browser.getOutputStream();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        browser.close();
+        gateway.close();
+    }
+
+    @Test
+    void parsesUpgradeRequest() throws IOException {
+        WebSocketConnection.Request request = WebSocketConnection.readUpgradeRequest(stream(
+                "GET /desktop?x=1 HTTP/1.1\r\nHost: localhost\r\nUpgrade: WebSocket\r\nSec-WebSocket-Key: abc\r\n"
+                        + "Origin: https://vnc.example.com\r\n\r\n"));
+        assertEquals("/desktop?x=1", request.path);
+        assertEquals("abc", request.headers.get("sec-websocket-key"));
+        assertEquals("https://vnc.example.com", request.headers.get("origin"));
+    }
+
+    @Test
+    void rejectsNonWebSocketRequests() {
+        assertThrows(IOException.class, () -> WebSocketConnection.readUpgradeRequest(stream("GET / HTTP/1.1\r\nHost: x\r\n\r\n")));
+        assertThrows(IOException.class, () -> WebSocketConnection.readUpgradeRequest(
+                stream("POST / HTTP/1.1\r\nUpgrade: websocket\r\nSec-WebSocket-Key: abc\r\n\r\n")));
+        assertThrows(IOException.class, () -> WebSocketConnection.readUpgradeRequest(stream("GET / HTTP/1.1\r\nUpgrade: websocket\r\n")));
+    }
+
+    // RFC 6455 1.3의 예시 키
+    @Test
+    void acceptsUpgradeWithRfcAcceptKey() throws IOException {
+        WebSocketConnection.accept(gateway, gateway.getInputStream(), new WebSocketConnection.Request("/", Map.of(
+                "sec-websocket-key", "dGhlIHNhbXBsZSBub25jZQ==", "sec-websocket-protocol", "base64, binary")), 1024);
+        List<String> response = readResponse();
+        assertEquals("HTTP/1.1 101 Switching Protocols", response.get(0));
+        assertTrue(response.contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo="));
+        assertTrue(response.contains("Sec-WebSocket-Protocol: binary"));
+    }
+
+    @Test
+    void unmasksClientFramesIntoOneStream() throws IOException {
+        WebSocketConnection conn = open(1024);
+        byte[] first = bytes(5, 1);
+        byte[] second = bytes(300, 2); // 16비트 길이
+        writeClientFrame(0x02, first, true);
+        writeClientFrame(0x00, new byte[0], true); // 빈 연속 프레임은 건너뜀
+        writeClientFrame(0x02, second, true);
+        byte[] received = new byte[first.length + second.length];
+        new DataInputStream(conn.getInputStream()).readFully(received);
+        byte[] expected = Arrays.copyOf(first, received.length);
+        System.arraycopy(second, 0, expected, first.length, second.length);
+        assertArrayEquals(expected, received);
+    }
+
+    @Test
+    void sendsUnmaskedFramesWithMinimalLength() throws IOException {
+        WebSocketConnection conn = open(70_000);
+        for (int length : new int[]{5, 300, 70_000}) {
+            byte[] payload = bytes(length, length);
+            conn.sendBinary(payload, 0, length);
+            assertEquals(0x82, fromGateway.readUnsignedByte());
+            int b1 = fromGateway.readUnsignedByte();
+            assertEquals(0, b1 & 0x80, "서버 프레임은 마스크하지 않음");
+            long received = b1 & 0x7F;
+            if (length < 126) {
+                assertEquals(length, received);
+            } else if (length <= 0xFFFF) {
+                assertEquals(126, received);
+                assertEquals(length, fromGateway.readUnsignedShort());
+            } else {
+                assertEquals(127, received);
+                assertEquals(length, fromGateway.readLong());
+            }
+            byte[] data = new byte[length];
+            fromGateway.readFully(data);
+            assertArrayEquals(payload, data);
+        }
+        assertThrows(IOException.class, () -> conn.sendBinary(new byte[70_001], 0, 70_001));
+    }
+
+    @Test
+    void answersPingWithPong() throws IOException {
+        WebSocketConnection conn = open(1024);
+        writeClientFrame(0x09, "hi".getBytes(StandardCharsets.US_ASCII), true);
+        writeClientFrame(0x02, new byte[]{42}, true);
+        assertEquals(42, conn.getInputStream().read()); // 읽는 쪽이 제어 프레임을 처리
+        assertEquals(0x8A, fromGateway.readUnsignedByte());
+        assertEquals(2, fromGateway.readUnsignedByte());
+        assertEquals('h', fromGateway.readUnsignedByte());
+        assertEquals('i', fromGateway.readUnsignedByte());
+    }
+
+    @Test
+    void closeFrameEndsStream() throws IOException {
+        WebSocketConnection conn = open(1024);
+        writeClientFrame(0x08, new byte[]{0x03, (byte) 0xE8}, true);
+        assertEquals(-1, conn.getInputStream().read());
+        assertEquals(WebSocketConnection.CLOSE_NORMAL, readCloseCode());
+        assertThrows(IOException.class, () -> conn.sendBinary(new byte[1], 0, 1));
+    }
+
+    @Test
+    void rejectsUnmaskedClientFrame() throws IOException {
+        WebSocketConnection conn = open(1024);
+        writeClientFrame(0x02, new byte[]{1}, false);
+        assertThrows(IOException.class, () -> conn.getInputStream().read());
+        assertEquals(WebSocketConnection.CLOSE_PROTOCOL_ERROR, readCloseCode());
+    }
+
+    @Test
+    void rejectsTextFrame() throws IOException {
+        WebSocketConnection conn = open(1024);
+        writeClientFrame(0x01, "x".getBytes(StandardCharsets.US_ASCII), true);
+        assertThrows(IOException.class, () -> conn.getInputStream().read());
+        assertEquals(WebSocketConnection.CLOSE_UNSUPPORTED_DATA, readCloseCode());
+    }
+
+    @Test
+    void rejectsMalformedFrameHeaders() throws IOException {
+        byte[][] frames = {
+                {(byte) 0xC2, (byte) 0x81, 0, 0, 0, 0, 1}, // RSV1
+                {(byte) 0x82, (byte) 0xFF, (byte) 0x80, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, // 64비트 길이의 최상위 비트
+                {(byte) 0x82, (byte) 0xFF, 0, 0, 0, 0, 0x10, 0, 0, 0, 0, 0, 0, 0}, // 256 MiB
+                {0x09, (byte) 0x80, 0, 0, 0, 0}, // FIN 없는 ping
+                {(byte) 0x83, (byte) 0x80, 0, 0, 0, 0} // 예약된 opcode
+        };
+        for (int i = 0; i < frames.length; i++) {
+            if (i > 0) {
+                tearDown(); // 닫힌 연결마다 새 소켓 쌍
+                setUp();
+            }
+            WebSocketConnection conn = open(1024);
+            toGateway.write(frames[i]);
+            toGateway.flush();
+            assertThrows(IOException.class, () -> conn.getInputStream().read(new byte[16]));
+            assertEquals(WebSocketConnection.CLOSE_PROTOCOL_ERROR, readCloseCode());
+        }
+    }
+
+    @Test
+    void gatewayChecksOrigin() {
+        WebSocketGateway wall = new WebSocketGateway(0, Map.of("desktop", InetSocketAddress.createUnresolved("localhost", 5900)), 1024, 1);
+        assertTrue(wall.isOriginAllowed("https://anything.example"));
+        wall.setAllowedOrigins(List.of("https://VNC.example.com/"));
+        assertTrue(wall.isOriginAllowed("https://vnc.example.com"));
+        assertTrue(wall.isOriginAllowed(null)); // 브라우저가 아닌 클라이언트
+        assertFalse(wall.isOriginAllowed("https://evil.example"));
+    }
+
+    private WebSocketConnection open(int maxFramePayload) throws IOException {
+        WebSocketConnection conn = WebSocketConnection.accept(gateway, new BufferedInputStream(gateway.getInputStream(), 256),
+                new WebSocketConnection.Request("/", Map.of("sec-websocket-key", "dGhlIHNhbXBsZSBub25jZQ==")), maxFramePayload);
+        readResponse();
+        return conn;
+    }
+
+    private List<String> readResponse() throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        while (!header.toString(StandardCharsets.ISO_8859_1).endsWith("\r\n\r\n")) {
+            header.write(fromGateway.readUnsignedByte());
+        }
+        return List.of(header.toString(StandardCharsets.ISO_8859_1).split("\r\n"));
+    }
+
+    private void writeClientFrame(int opcode, byte[] payload, boolean masked) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(0x80 | opcode);
+        int maskBit = masked ? 0x80 : 0;
+        if (payload.length < 126) {
+            frame.write(maskBit | payload.length);
+        } else {
+            frame.write(maskBit | 126);
+            frame.write(payload.length >> 8);
+            frame.write(payload.length);
+        }
+        if (masked) {
+            frame.write(MASK);
+        }
+        for (int i = 0; i < payload.length; i++) {
+            frame.write(masked ? payload[i] ^ MASK[i & 3] : payload[i]);
+        }
+        toGateway.write(frame.toByteArray());
+        toGateway.flush();
+    }
+
+    private int readCloseCode() throws IOException {
+        assertEquals(0x88, fromGateway.readUnsignedByte());
+        int length = fromGateway.readUnsignedByte();
+        assertTrue(length >= 2);
+        int code = fromGateway.readUnsignedShort();
+        fromGateway.readFully(new byte[length - 2]);
+        return code;
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static byte[] bytes(int length, int seed) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+}
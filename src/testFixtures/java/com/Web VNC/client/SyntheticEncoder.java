@@ -0,0 +1,391 @@
+package com.myvnc.client;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+// 테스트와 벤치마크용 최소 서버 인코더: 디코더가 받는 것과 같은 사각형 데이터(헤더 제외)를 만듭니다.
+// 압축률보다 서버들이 실제로 보내는 형태(서브인코딩 선택)를 흉내 내는 데 목적이 있습니다.
+//   raw, rre, hextile (단색 / 배경+색 있는 서브사각형 / raw 타일)
+//   zrle (단색 / packed palette / raw 타일, 세션 zlib 스트림 하나)
+//   tight (fill / palette 필터 / copy 필터, 사각형마다 스트림 리셋), tight-jpeg (색이 많으면 JPEG)
+// ZRLE만 사각형 사이에 zlib 상태가 이어지므로, 같은 인코더로 만든 사각형은 순서대로 디코딩해야 합니다.
+final class SyntheticEncoder {
+    static final Map<String, Integer> TYPES = new LinkedHashMap<>();
+
+    static {
+        TYPES.put("raw", 0);
+        TYPES.put("rre", 2);
+        TYPES.put("hextile", 5);
+        TYPES.put("zrle", 16);
+        TYPES.put("tight", 7);
+        TYPES.put("tight-jpeg", 7);
+    }
+
+    private RFBPixelFormat pf;
+    private int bytesPerPixel;
+    private final Deflater zrleStream = new Deflater(6);
+
+    SyntheticEncoder(RFBPixelFormat pf) {
+        setPixelFormat(pf);
+    }
+
+    // SetPixelFormat (SyntheticRfbServer). ZRLE zlib 스트림은 실제 서버처럼 그대로 이어 갑니다.
+    void setPixelFormat(RFBPixelFormat pf) {
+        this.pf = pf;
+        this.bytesPerPixel = pf.bitsPerPixel / 8;
+    }
+
+    // screen의 (x, y, w, h) 영역을 encoding으로 인코딩합니다.
+    byte[] encode(String encoding, int[] screen, int stride, int x, int y, int w, int h) {
+        int[] px = new int[w * h];
+        for (int row = 0; row < h; row++) {
+            System.arraycopy(screen, (y + row) * stride + x, px, row * w, w);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            switch (encoding) {
+                case "raw":
+                    for (int p : px) {
+                        writePixel(out, p);
+                    }
+                    break;
+                case "rre":
+                    encodeRre(out, px, w, h);
+                    break;
+                case "hextile":
+                    encodeHextile(out, px, w, h);
+                    break;
+                case "zrle":
+                    encodeZrle(out, px, w, h);
+                    break;
+                case "tight":
+                    encodeTight(out, px, w, h, false);
+                    break;
+                case "tight-jpeg":
+                    encodeTight(out, px, w, h, true);
+                    break;
+                default:
+                    throw new IllegalArgumentException("알 수 없는 인코딩: " + encoding);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // --- 픽셀 형식 ---
+
+    private int pixelValue(int rgb) {
+        int r = (rgb >> 16 & 0xFF) * pf.redMax / 255;
+        int g = (rgb >> 8 & 0xFF) * pf.greenMax / 255;
+        int b = (rgb & 0xFF) * pf.blueMax / 255;
+        return (r << pf.redShift) | (g << pf.greenShift) | (b << pf.blueShift);
+    }
+
+    void writePixel(DataOutputStream out, int rgb) throws IOException {
+        int v = pixelValue(rgb);
+        for (int i = 0; i < bytesPerPixel; i++) {
+            int shift = pf.bigEndianFlag ? (bytesPerPixel - 1 - i) * 8 : i * 8;
+            out.writeByte(v >> shift);
+        }
+    }
+
+    // ZRLE CPIXEL: 32bpp이고 depth가 24 이하면 3바이트
+    private void writeCPixel(DataOutputStream out, int rgb) throws IOException {
+        if (!(pf.trueColorFlag && pf.bitsPerPixel == 32 && pf.depth <= 24)) {
+            writePixel(out, rgb);
+            return;
+        }
+        int v = pixelValue(rgb);
+        boolean low = ((pf.redMax << pf.redShift) < (1 << 24)) && ((pf.greenMax << pf.greenShift) < (1 << 24))
+                && ((pf.blueMax << pf.blueShift) < (1 << 24));
+        if (!low) {
+            v >>>= 8;
+        }
+        if (pf.bigEndianFlag) {
+            out.writeByte(v >> 16);
+            out.writeByte(v >> 8);
+            out.writeByte(v);
+        } else {
+            out.writeByte(v);
+            out.writeByte(v >> 8);
+            out.writeByte(v >> 16);
+        }
+    }
+
+    // Tight TPIXEL: 32bpp depth 24면 R, G, B
+    private void writeTPixel(DataOutputStream out, int rgb) throws IOException {
+        if (PixelConverter.isTightRgb24(pf)) {
+            out.writeByte(rgb >> 16);
+            out.writeByte(rgb >> 8);
+            out.writeByte(rgb);
+        } else {
+            writePixel(out, rgb);
+        }
+    }
+
+    private static int mostCommon(int[] px, int offset, int stride, int w, int h) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        int best = px[offset];
+        int bestCount = 0;
+        for (int row = 0; row < h; row++) {
+            for (int col = 0; col < w; col++) {
+                int p = px[offset + row * stride + col];
+                int c = counts.merge(p, 1, Integer::sum);
+                if (c > bestCount) {
+                    best = p;
+                    bestCount = c;
+                }
+            }
+        }
+        return best;
+    }
+
+    // --- RRE: 배경 + 배경이 아닌 가로 연속 구간마다 1행짜리 서브사각형 ---
+
+    private void encodeRre(DataOutputStream out, int[] px, int w, int h) throws IOException {
+        int bg = mostCommon(px, 0, w, w, h);
+        ByteArrayOutputStream subrects = new ByteArrayOutputStream();
+        DataOutputStream sub = new DataOutputStream(subrects);
+        int count = 0;
+        for (int row = 0; row < h; row++) {
+            int col = 0;
+            while (col < w) {
+                int p = px[row * w + col];
+                int start = col;
+                while (col < w && px[row * w + col] == p) {
+                    col++;
+                }
+                if (p != bg) {
+                    writePixel(sub, p);
+                    sub.writeShort(start);
+                    sub.writeShort(row);
+                    sub.writeShort(col - start);
+                    sub.writeShort(1);
+                    count++;
+                }
+            }
+        }
+        out.writeInt(count);
+        writePixel(out, bg);
+        subrects.writeTo(out);
+    }
+
+    // --- Hextile ---
+
+    private void encodeHextile(DataOutputStream out, int[] px, int w, int h) throws IOException {
+        for (int ty = 0; ty < h; ty += 16) {
+            int th = Math.min(16, h - ty);
+            for (int tx = 0; tx < w; tx += 16) {
+                int tw = Math.min(16, w - tx);
+                int offset = ty * w + tx;
+                int bg = mostCommon(px, offset, w, tw, th);
+                ByteArrayOutputStream subrects = new ByteArrayOutputStream();
+                DataOutputStream sub = new DataOutputStream(subrects);
+                int count = 0;
+                for (int row = 0; row < th; row++) {
+                    int col = 0;
+                    while (col < tw) {
+                        int p = px[offset + row * w + col];
+                        int start = col;
+                        while (col < tw && px[offset + row * w + col] == p) {
+                            col++;
+                        }
+                        if (p != bg) {
+                            writePixel(sub, p);
+                            sub.writeByte((start << 4) | row);
+                            sub.writeByte(((col - start - 1) << 4));
+                            count++;
+                        }
+                    }
+                }
+                if (count == 0) {
+                    out.writeByte(2); // BackgroundSpecified
+                    writePixel(out, bg);
+                } else if (count <= 255 && subrects.size() < tw * th * bytesPerPixel) {
+                    out.writeByte(2 | 8 | 16); // BackgroundSpecified | AnySubrects | SubrectsColoured
+                    writePixel(out, bg);
+                    out.writeByte(count);
+                    subrects.writeTo(out);
+                } else {
+                    out.writeByte(1); // Raw
+                    for (int row = 0; row < th; row++) {
+                        for (int col = 0; col < tw; col++) {
+                            writePixel(out, px[offset + row * w + col]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // --- ZRLE ---
+
+    private void encodeZrle(DataOutputStream out, int[] px, int w, int h) throws IOException {
+        ByteArrayOutputStream tiles = new ByteArrayOutputStream();
+        DataOutputStream t = new DataOutputStream(tiles);
+        for (int ty = 0; ty < h; ty += 64) {
+            int th = Math.min(64, h - ty);
+            for (int tx = 0; tx < w; tx += 64) {
+                int tw = Math.min(64, w - tx);
+                int offset = ty * w + tx;
+                Map<Integer, Integer> palette = palette(px, offset, w, tw, th, 16);
+                if (palette != null && palette.size() == 1) {
+                    t.writeByte(1); // Solid
+                    writeCPixel(t, px[offset]);
+                } else if (palette != null) {
+                    t.writeByte(palette.size()); // Packed palette
+                    for (int color : palette.keySet()) {
+                        writeCPixel(t, color);
+                    }
+                    int bits = palette.size() == 2 ? 1 : palette.size() <= 4 ? 2 : 4;
+                    writePacked(t, px, offset, w, tw, th, palette, bits);
+                } else {
+                    t.writeByte(0); // Raw
+                    for (int row = 0; row < th; row++) {
+                        for (int col = 0; col < tw; col++) {
+                            writeCPixel(t, px[offset + row * w + col]);
+                        }
+                    }
+                }
+            }
+        }
+        byte[] compressed = deflate(zrleStream, tiles.toByteArray());
+        out.writeInt(compressed.length);
+        out.write(compressed);
+    }
+
+    // 색이 max개 이하면 (색 -> 인덱스), 넘으면 null
+    private static Map<Integer, Integer> palette(int[] px, int offset, int stride, int w, int h, int max) {
+        Map<Integer, Integer> palette = new LinkedHashMap<>();
+        for (int row = 0; row < h; row++) {
+            for (int col = 0; col < w; col++) {
+                int p = px[offset + row * stride + col];
+                if (!palette.containsKey(p)) {
+                    if (palette.size() == max) {
+                        return null;
+                    }
+                    palette.put(p, palette.size());
+                }
+            }
+        }
+        return palette;
+    }
+
+    // 행마다 바이트 경계로 패딩된 bits비트 인덱스
+    private static void writePacked(DataOutputStream out, int[] px, int offset, int stride, int w, int h,
+                                    Map<Integer, Integer> palette, int bits) throws IOException {
+        for (int row = 0; row < h; row++) {
+            int value = 0;
+            int used = 0;
+            for (int col = 0; col < w; col++) {
+                value = (value << bits) | palette.get(px[offset + row * stride + col]);
+                used += bits;
+                if (used == 8) {
+                    out.writeByte(value);
+                    value = 0;
+                    used = 0;
+                }
+            }
+            if (used > 0) {
+                out.writeByte(value << (8 - used));
+            }
+        }
+    }
+
+    // --- Tight ---
+
+    private void encodeTight(DataOutputStream out, int[] px, int w, int h, boolean jpeg) throws IOException {
+        Map<Integer, Integer> palette = palette(px, 0, w, w, h, 256);
+        if (palette != null && palette.size() == 1) {
+            out.writeByte(0x80); // Fill
+            writeTPixel(out, px[0]);
+            return;
+        }
+        if (palette == null && jpeg) {
+            BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            image.setRGB(0, 0, w, h, px, 0, w);
+            ByteArrayOutputStream jpegBytes = new ByteArrayOutputStream();
+            ImageIO.write(image, "jpeg", jpegBytes);
+            out.writeByte(0x90); // JPEG
+            writeCompactLength(out, jpegBytes.size());
+            jpegBytes.writeTo(out);
+            return;
+        }
+        // 기본 압축: 스트림 0 = copy 필터, 스트림 1 = palette 필터. 리셋 비트로 사각형마다 새 스트림
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        DataOutputStream d = new DataOutputStream(data);
+        int stream;
+        if (palette == null) {
+            stream = 0;
+            out.writeByte(((0x04 | stream) << 4) | (1 << stream));
+            out.writeByte(0); // copy 필터
+            for (int p : px) {
+                writeTPixel(d, p);
+            }
+        } else {
+            stream = 1;
+            out.writeByte(((0x04 | stream) << 4) | (1 << stream));
+            out.writeByte(1); // palette 필터
+            out.writeByte(palette.size() - 1);
+            for (int color : palette.keySet()) {
+                writeTPixel(out, color);
+            }
+            if (palette.size() == 2) {
+                writePacked(d, px, 0, w, w, h, palette, 1);
+            } else {
+                for (int p : px) {
+                    d.writeByte(palette.get(p));
+                }
+            }
+        }
+        byte[] raw = data.toByteArray();
+        if (raw.length < 12) {
+            out.write(raw);
+            return;
+        }
+        Deflater deflater = new Deflater(6);
+        try {
+            byte[] compressed = deflate(deflater, raw);
+            writeCompactLength(out, compressed.length);
+            out.write(compressed);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeCompactLength(DataOutputStream out, int length) throws IOException {
+        if (length < 0x80) {
+            out.writeByte(length);
+        } else if (length < 0x4000) {
+            out.writeByte(0x80 | (length & 0x7F));
+            out.writeByte(length >> 7);
+        } else {
+            out.writeByte(0x80 | (length & 0x7F));
+            out.writeByte(0x80 | ((length >> 7) & 0x7F));
+            out.writeByte(length >> 14);
+        }
+    }
+
+    // 서버처럼 사각형 끝에서 sync flush (스트림은 계속 이어짐)
+    private static byte[] deflate(Deflater deflater, byte[] input) {
+        deflater.setInput(input);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 64);
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        do {
+            n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            out.write(buffer, 0, n);
+        } while (n == buffer.length || !deflater.needsInput());
+        return out.toByteArray();
+    }
+}
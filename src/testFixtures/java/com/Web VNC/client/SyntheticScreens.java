@@ -0,0 +1,86 @@
+package com.myvnc.client;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// 테스트와 벤치마크용 화면 내용 (0x00RRGGBB, 행 우선)
+// text: 흰 배경에 짧은 글자 획 (색이 적고 같은 색이 길게 이어짐)
+// photo: 부드러운 그라데이션 + 잡음 (거의 모든 픽셀의 색이 다름)
+// solid: 한 색
+// scroll: text와 같은 내용. 프레임 단위 벤치마크에서 CopyRect + 새 줄로 전송됩니다.
+final class SyntheticScreens {
+
+    private SyntheticScreens() {
+    }
+
+    static int[] create(String screen, int width, int height) {
+        switch (screen) {
+            case "text":
+            case "scroll":
+                return text(width, height);
+            case "photo":
+                return photo(width, height);
+            case "solid":
+                return solid(width, height);
+            default:
+                throw new IllegalArgumentException("알 수 없는 화면: " + screen);
+        }
+    }
+
+    private static int[] text(int width, int height) {
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, 0xFFFFFF);
+        Random random = new Random(1);
+        int[] inks = {0x000000, 0x202020, 0x1F4E9E, 0xA31515};
+        // 16픽셀 줄 안에 8x12 글자 칸, 각 칸에 가로/세로 획 몇 개
+        for (int line = 0; line + 16 <= height; line += 16) {
+            int lineLength = random.nextInt(width / 8);
+            int ink = inks[random.nextInt(inks.length)];
+            for (int col = 0; col < lineLength && (col + 1) * 8 <= width; col++) {
+                if (random.nextInt(6) == 0) {
+                    continue; // 공백
+                }
+                int gx = col * 8;
+                int gy = line + 2;
+                for (int stroke = 0; stroke < 3; stroke++) {
+                    if (random.nextBoolean()) {
+                        int sy = gy + random.nextInt(12);
+                        for (int x = gx + 1; x < gx + 7; x++) {
+                            pixels[sy * width + x] = ink;
+                        }
+                    } else {
+                        int sx = gx + 1 + random.nextInt(6);
+                        for (int y = gy; y < gy + 12; y++) {
+                            pixels[y * width + sx] = ink;
+                        }
+                    }
+                }
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] photo(int width, int height) {
+        int[] pixels = new int[width * height];
+        Random random = new Random(2);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = clamp(128 + (int) (100 * Math.sin(x / 37.0)) + random.nextInt(17) - 8);
+                int g = clamp(x * 255 / width + random.nextInt(17) - 8);
+                int b = clamp(y * 255 / height + random.nextInt(17) - 8);
+                pixels[y * width + x] = (r << 16) | (g << 8) | b;
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] solid(int width, int height) {
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, 0x3A6EA5);
+        return pixels;
+    }
+
+    private static int clamp(int v) {
+        return Math.max(0, Math.min(255, v));
+    }
+}